@@ -15,52 +15,129 @@
  */
 package org.infrastructurebuilder.data;
 
+import static java.util.Objects.requireNonNull;
 import static java.util.Optional.empty;
 import static java.util.Optional.of;
 import static java.util.Optional.ofNullable;
 import static org.infrastructurebuilder.IBConstants.AVRO_BINARY;
+import static org.infrastructurebuilder.data.IBDataException.cet;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
-import java.util.Vector;
+import java.util.Spliterator;
+import java.util.Spliterators.AbstractSpliterator;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
+import org.apache.avro.Schema;
 import org.apache.avro.file.DataFileStream;
 import org.apache.avro.generic.GenericDatumReader;
 import org.apache.avro.generic.GenericRecord;
 
-public class DefaultAvroGenericRecordStreamSupplier implements IBDataSpecificStreamFactory<GenericRecord> {
+/**
+ * Reads an Avro data file lazily, one record at a time, from the file's own block iterator. The underlying input is
+ * closed when the returned stream is closed or fully consumed.
+ *
+ * When datum reuse is enabled every record handed out is the same instance, refilled for each row. That saves an
+ * allocation per record but is only safe for consumers that do not keep a record once they have moved past it.
+ *
+ * Records can be read with a reader schema instead of the file's schema, or projected down to a list of fields. Either
+ * way the fields the reader schema lacks are skipped as the file is decoded.
+ */
+public class DefaultAvroGenericRecordStreamSupplier implements IBDataProjectingStreamFactory<GenericRecord> {
   public final static List<String> TYPES = Arrays.asList(AVRO_BINARY);
 
-  public final static Function<InputStream, Optional<Stream<GenericRecord>>> genericStreamFromInputStream = (ins) -> {
-    List<GenericRecord> l = new Vector<>();
-
-    try (DataFileStream<GenericRecord> s = new DataFileStream<GenericRecord>(ins,
-        new GenericDatumReader<GenericRecord>())) {
-      // FIXME OBVIOUSLY NOT CORRECT!!!!  You WILL run out of memory
-      s.forEach(l::add);
-      return of(l.stream());
-      //      stream(
-      //          // From splterator
-      //          spliteratorUnknownSize(s, 0), // with no characteristics
-      //          // not parallel
-      //          false);
+  public final static Function<InputStream, Optional<Stream<GenericRecord>>> genericStreamFromInputStream = (
+      ins) -> genericStreamFromInputStream(ins, false);
+
+  /**
+   * @param ins         an Avro data file. Closed when the stream is closed or consumed, or here if the file header
+   *                      cannot be read
+   * @param reuseDatums refill a single record instance rather than allocating one per row
+   * @return a lazy stream of the file's records, or empty if the header could not be read
+   */
+  public static Optional<Stream<GenericRecord>> genericStreamFromInputStream(InputStream ins, boolean reuseDatums) {
+    return genericStreamFromInputStream(ins, reuseDatums, writer -> null);
+  }
+
+  /**
+   * @param ins          an Avro data file. Closed when the stream is closed or consumed, or here if the file header
+   *                       cannot be read
+   * @param reuseDatums  refill a single record instance rather than allocating one per row
+   * @param readerSchema produces the reader schema from the file's writer schema. Returning null reads with the
+   *                       writer schema
+   * @return a lazy stream of the file's records, or empty if the header could not be read
+   */
+  public static Optional<Stream<GenericRecord>> genericStreamFromInputStream(InputStream ins, boolean reuseDatums,
+      Function<Schema, Schema> readerSchema) {
+    final GenericDatumReader<GenericRecord> reader = new GenericDatumReader<GenericRecord>();
+    final DataFileStream<GenericRecord> s;
+    try {
+      s = new DataFileStream<GenericRecord>(ins, reader);
     } catch (IOException e) {
+      cet.withTranslation(() -> ins.close());
       return empty();
-    } finally {
-      IBDataException.cet.withTranslation(() -> {
-        ins.close();
-      });
     }
-  };
+    try {
+      // The header has been read, so the writer schema is known
+      ofNullable(readerSchema.apply(s.getSchema())).ifPresent(reader::setExpected);
+    } catch (RuntimeException e) {
+      cet.withTranslation(() -> s.close());
+      throw e;
+    }
+    return of(StreamSupport.stream(new DataFileSpliterator(s, reuseDatums), false)
+        .onClose(() -> cet.withTranslation(() -> s.close())));
+  }
+
+  private final boolean reuseDatums;
+  private final Schema readerSchema;
+
+  public DefaultAvroGenericRecordStreamSupplier() {
+    this(false);
+  }
+
+  /**
+   * @param reuseDatums refill a single record instance rather than allocating one per row
+   */
+  public DefaultAvroGenericRecordStreamSupplier(boolean reuseDatums) {
+    this(reuseDatums, null);
+  }
+
+  /**
+   * @param reuseDatums  refill a single record instance rather than allocating one per row
+   * @param readerSchema schema to read records with, or null to use each file's own schema
+   */
+  public DefaultAvroGenericRecordStreamSupplier(boolean reuseDatums, Schema readerSchema) {
+    this.reuseDatums = reuseDatums;
+    this.readerSchema = readerSchema;
+  }
+
+  public boolean isReuseDatums() {
+    return reuseDatums;
+  }
+
+  public Optional<Schema> getReaderSchema() {
+    return ofNullable(readerSchema);
+  }
 
   @Override
   public Optional<Stream<GenericRecord>> from(IBDataStream ds) {
-    return ofNullable(ds).flatMap(d -> genericStreamFromInputStream.apply(d.get()));
+    return ofNullable(ds).flatMap(d -> genericStreamFromInputStream(d.get(), reuseDatums, writer -> readerSchema));
+  }
+
+  /**
+   * Read only the named fields of the reader schema, or of each file's own schema if there is no reader schema
+   */
+  @Override
+  public Optional<Stream<GenericRecord>> from(IBDataStream ds, List<String> fields) {
+    requireNonNull(fields);
+    return ofNullable(ds).flatMap(d -> genericStreamFromInputStream(d.get(), reuseDatums,
+        writer -> IBDataAvroUtils.projectSchema(ofNullable(readerSchema).orElse(writer), fields)));
   }
 
   @Override
@@ -68,4 +145,32 @@ public class DefaultAvroGenericRecordStreamSupplier implements IBDataSpecificStr
     return TYPES;
   }
 
+  private static final class DataFileSpliterator extends AbstractSpliterator<GenericRecord> {
+    private final DataFileStream<GenericRecord> s;
+    private final boolean reuse;
+    private GenericRecord datum = null;
+    private boolean done = false;
+
+    private DataFileSpliterator(DataFileStream<GenericRecord> s, boolean reuse) {
+      super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+      this.s = s;
+      this.reuse = reuse;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super GenericRecord> action) {
+      if (done)
+        return false;
+      if (!s.hasNext()) {
+        done = true;
+        cet.withTranslation(() -> s.close());
+        return false;
+      }
+      GenericRecord next = cet.withReturningTranslation(() -> s.next(reuse ? datum : null));
+      if (reuse)
+        datum = next;
+      action.accept(next);
+      return true;
+    }
+  }
 }
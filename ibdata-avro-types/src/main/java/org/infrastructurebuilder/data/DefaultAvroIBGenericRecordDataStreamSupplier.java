@@ -18,23 +18,69 @@ package org.infrastructurebuilder.data;
 import static org.infrastructurebuilder.data.IBDataException.cet;
 
 import java.nio.file.Path;
-import java.util.Optional;
+import java.util.List;
 
 import org.apache.avro.Schema;
-import org.apache.avro.file.DataFileReader;
 import org.apache.avro.generic.GenericDatumReader;
 import org.apache.avro.generic.GenericRecord;
 
+/**
+ * Generic records from an Avro container file. With <code>parallel</code> set, the stream splits on block boundaries
+ * and each split decodes its own part of the file.
+ *
+ * Records are read with a reader schema, which is the supplied schema or else the file's own. Supplying a list of
+ * fields projects that schema down to those fields, and the rest are skipped as the file is decoded.
+ */
 public final class DefaultAvroIBGenericRecordDataStreamSupplier
     extends DefaultIBTypedDataStreamSupplier<GenericRecord> {
 
+  private final Schema schema;
+
+  /**
+   * @param targetPath working path for a copy of a stream that is not on disk
+   * @param stream     the stream to read
+   * @param parallel   produce parallel streams
+   * @param schema     reader schema, or null to read with the file's schema
+   */
   public DefaultAvroIBGenericRecordDataStreamSupplier(Path targetPath, IBDataStream stream, boolean parallel,
       Schema schema) {
-    super(stream,
-        cet.withReturningTranslation(
-            () -> new DataFileReader<GenericRecord>(new DefaultSeekableInputFromInputStream(targetPath, stream.get()),
-                new GenericDatumReader<GenericRecord>(schema))),
+    this(targetPath, stream, parallel, schema, null);
+  }
+
+  /**
+   * @param targetPath working path for a copy of a stream that is not on disk
+   * @param stream     the stream to read
+   * @param parallel   produce parallel streams
+   * @param schema     reader schema, or null to read with the file's schema
+   * @param fields     fields of the reader schema to read, or null for all of them
+   */
+  public DefaultAvroIBGenericRecordDataStreamSupplier(Path targetPath, IBDataStream stream, boolean parallel,
+      Schema schema, List<String> fields) {
+    this(stream, cet.withReturningTranslation(() -> IBDataAvroUtils.localFileFor(targetPath, stream)), parallel,
+        schema, fields);
+  }
+
+  private DefaultAvroIBGenericRecordDataStreamSupplier(IBDataStream stream, Path file, boolean parallel,
+      Schema schema, List<String> fields) {
+    this(stream, file, parallel, readerSchema(file, schema, fields));
+  }
+
+  private DefaultAvroIBGenericRecordDataStreamSupplier(IBDataStream stream, Path file, boolean parallel,
+      Schema reader) {
+    super(stream, IBDataAvroBlockSpliterator.over(file, () -> new GenericDatumReader<GenericRecord>(reader)),
         parallel);
+    this.schema = reader;
   }
 
-}
\ No newline at end of file
+  /**
+   * @return the schema records are read with, after any projection
+   */
+  public Schema getSchema() {
+    return schema;
+  }
+
+  private static Schema readerSchema(Path file, Schema schema, List<String> fields) {
+    Schema s = schema != null ? schema : IBDataAvroUtils.readSchema(file);
+    return fields == null ? s : IBDataAvroUtils.projectSchema(s, fields);
+  }
+}
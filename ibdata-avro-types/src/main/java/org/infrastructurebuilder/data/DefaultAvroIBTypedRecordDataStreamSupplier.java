@@ -18,21 +18,70 @@ package org.infrastructurebuilder.data;
 import static org.infrastructurebuilder.data.IBDataException.cet;
 
 import java.nio.file.Path;
-import java.util.Optional;
+import java.util.List;
+import java.util.function.Supplier;
 
-import org.apache.avro.file.DataFileReader;
+import org.apache.avro.Schema;
+import org.apache.avro.io.DatumReader;
 import org.apache.avro.specific.SpecificData;
 import org.apache.avro.specific.SpecificDatumReader;
 
+/**
+ * Specific records from an Avro container file. With <code>parallel</code> set, the stream splits on block
+ * boundaries and each split decodes its own part of the file.
+ *
+ * Supplying the record class and a list of fields reads only those fields into each record, skipping the rest as the
+ * file is decoded. The other fields keep the values of a new instance of the class.
+ */
 public final class DefaultAvroIBTypedRecordDataStreamSupplier<T> extends DefaultIBTypedDataStreamSupplier<T> {
 
+  private final Schema schema;
+
   public DefaultAvroIBTypedRecordDataStreamSupplier(Path targetPath, IBDataStream stream, SpecificData c,
       boolean parallel) {
-    super(stream,
-        cet.withReturningTranslation(
-            () -> new DataFileReader<T>(new DefaultSeekableInputFromInputStream(targetPath, stream.get()),
-                new SpecificDatumReader<T>(c))),
-        parallel);
+    this(stream, cet.withReturningTranslation(() -> IBDataAvroUtils.localFileFor(targetPath, stream)), c, parallel);
   }
 
-}
\ No newline at end of file
+  /**
+   * @param targetPath working path for a copy of a stream that is not on disk
+   * @param stream     the stream to read
+   * @param c          specific data for the record class
+   * @param parallel   produce parallel streams
+   * @param type       the record class
+   * @param fields     fields of the record class to read
+   */
+  public DefaultAvroIBTypedRecordDataStreamSupplier(Path targetPath, IBDataStream stream, SpecificData c,
+      boolean parallel, Class<T> type, List<String> fields) {
+    this(stream, cet.withReturningTranslation(() -> IBDataAvroUtils.localFileFor(targetPath, stream)), parallel,
+        IBDataAvroUtils.projectSchema(c.getSchema(type), fields), c);
+  }
+
+  private DefaultAvroIBTypedRecordDataStreamSupplier(IBDataStream stream, Path file, SpecificData c,
+      boolean parallel) {
+    this(stream, file, parallel, classSchemaFor(file, c), () -> new SpecificDatumReader<T>(c));
+  }
+
+  private DefaultAvroIBTypedRecordDataStreamSupplier(IBDataStream stream, Path file, boolean parallel,
+      Schema projected, SpecificData c) {
+    this(stream, file, parallel, projected, () -> new IBDataProjectingSpecificDatumReader<T>(projected, c));
+  }
+
+  private DefaultAvroIBTypedRecordDataStreamSupplier(IBDataStream stream, Path file, boolean parallel, Schema schema,
+      Supplier<? extends DatumReader<T>> readers) {
+    super(stream, IBDataAvroBlockSpliterator.over(file, readers), parallel);
+    this.schema = schema;
+  }
+
+  /**
+   * @return the schema records are read with, after any projection
+   */
+  public Schema getSchema() {
+    return schema;
+  }
+
+  private static Schema classSchemaFor(Path file, SpecificData c) {
+    Schema writer = IBDataAvroUtils.readSchema(file);
+    Class<?> k = c.getClass(writer);
+    return k == null ? writer : c.getSchema(k);
+  }
+}
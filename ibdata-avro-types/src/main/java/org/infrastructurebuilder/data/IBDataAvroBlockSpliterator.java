@@ -0,0 +1,164 @@
+/**
+ * Copyright © 2019 admin (admin@infrastructurebuilder.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.infrastructurebuilder.data;
+
+import static java.util.Objects.requireNonNull;
+import static org.infrastructurebuilder.data.IBDataException.cet;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Queue;
+import java.util.Spliterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import org.apache.avro.file.DataFileReader;
+import org.apache.avro.file.SeekableFileInput;
+import org.apache.avro.io.DatumReader;
+
+/**
+ * Spliterator over an Avro container file that splits on block boundaries.
+ *
+ * A split covers a byte range of the file and reads the blocks whose leading sync marker starts inside that range.
+ * Each split opens its own reader, seeks to the first sync marker at or after the start of its range, and stops at the
+ * first block that starts past its end. The ranges of all splits cover the file, so every block is read by exactly
+ * one split, wherever the split points fall.
+ *
+ * A split is only made before the spliterator has started reading and while its range is at least twice the minimum
+ * split size. The size estimate is in bytes, not records.
+ *
+ * Closing any spliterator from a split tree closes every reader that any of them still has open.
+ *
+ * @param <T> record type
+ */
+public final class IBDataAvroBlockSpliterator<T> implements Spliterator<T>, AutoCloseable {
+  public static final long DEFAULT_MIN_SPLIT_BYTES = 1024L * 1024L;
+
+  private final Path file;
+  private final Supplier<? extends DatumReader<T>> datumReaders;
+  private final long minSplitBytes;
+  // Readers open anywhere in this split tree
+  private final Queue<DataFileReader<T>> open;
+  private long start;
+  private final long end;
+  private DataFileReader<T> reader = null;
+  private boolean done = false;
+
+  /**
+   * Produce a fresh spliterator over the whole file on each call
+   *
+   * @param file         an Avro container file
+   * @param datumReaders supplies a new datum reader for each split
+   * @return spliterator supplier
+   */
+  public static <T> Supplier<Spliterator<T>> over(Path file, Supplier<? extends DatumReader<T>> datumReaders) {
+    requireNonNull(file);
+    requireNonNull(datumReaders);
+    return () -> new IBDataAvroBlockSpliterator<>(file, datumReaders);
+  }
+
+  public IBDataAvroBlockSpliterator(Path file, Supplier<? extends DatumReader<T>> datumReaders) {
+    this(file, datumReaders, DEFAULT_MIN_SPLIT_BYTES);
+  }
+
+  /**
+   * @param file          an Avro container file
+   * @param datumReaders  supplies a new datum reader for each split
+   * @param minSplitBytes smallest byte range a split may cover
+   */
+  public IBDataAvroBlockSpliterator(Path file, Supplier<? extends DatumReader<T>> datumReaders, long minSplitBytes) {
+    this(file, datumReaders, minSplitBytes, new ConcurrentLinkedQueue<>(), 0L,
+        cet.withReturningTranslation(() -> Files.size(file)));
+    if (minSplitBytes < 1L)
+      throw new IBDataException("minSplitBytes must be positive");
+  }
+
+  private IBDataAvroBlockSpliterator(Path file, Supplier<? extends DatumReader<T>> datumReaders, long minSplitBytes,
+      Queue<DataFileReader<T>> open, long start, long end) {
+    this.file = requireNonNull(file);
+    this.datumReaders = requireNonNull(datumReaders);
+    this.minSplitBytes = minSplitBytes;
+    this.open = open;
+    this.start = start;
+    this.end = end;
+  }
+
+  @Override
+  public boolean tryAdvance(Consumer<? super T> action) {
+    if (done)
+      return false;
+    if (reader == null)
+      openReader();
+    DataFileReader<T> r = reader;
+    if (!r.hasNext() || cet.withReturningTranslation(() -> r.pastSync(end))) {
+      finish();
+      return false;
+    }
+    action.accept(r.next());
+    return true;
+  }
+
+  @Override
+  public Spliterator<T> trySplit() {
+    if (reader != null || done || end - start < 2 * minSplitBytes)
+      return null;
+    long mid = start + (end - start) / 2;
+    // The prefix goes to the new spliterator, to keep encounter order
+    IBDataAvroBlockSpliterator<T> prefix = new IBDataAvroBlockSpliterator<>(file, datumReaders, minSplitBytes, open,
+        start, mid);
+    start = mid;
+    return prefix;
+  }
+
+  @Override
+  public long estimateSize() {
+    return done ? 0L : end - start;
+  }
+
+  @Override
+  public int characteristics() {
+    return ORDERED | NONNULL;
+  }
+
+  @Override
+  public void close() {
+    done = true;
+    reader = null;
+    for (DataFileReader<T> r = open.poll(); r != null; r = open.poll()) {
+      DataFileReader<T> c = r;
+      cet.withTranslation(() -> c.close());
+    }
+  }
+
+  private void openReader() {
+    DataFileReader<T> r = cet.withReturningTranslation(
+        () -> new DataFileReader<T>(new SeekableFileInput(file.toFile()), datumReaders.get()));
+    open.add(r);
+    reader = r;
+    // A reader starts just past the header, which is where the first split starts anyway
+    if (start > 0L)
+      cet.withTranslation(() -> r.sync(start));
+  }
+
+  private void finish() {
+    done = true;
+    DataFileReader<T> r = reader;
+    reader = null;
+    if (r != null && open.remove(r))
+      cet.withTranslation(() -> r.close());
+  }
+}
@@ -0,0 +1,136 @@
+/**
+ * Copyright © 2019 admin (admin@infrastructurebuilder.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.infrastructurebuilder.data;
+
+import static java.util.Objects.requireNonNull;
+import static org.infrastructurebuilder.data.IBDataException.cet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.net.URL;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.avro.Schema;
+
+/**
+ * Bounded cache of parsed Avro schemas, keyed by the URL a schema was read from.
+ *
+ * Every lookup reads the content at the URL and compares its SHA-256 digest with that of the cached parse, so a
+ * schema whose content changes is parsed again. Reading is cheap next to parsing, particularly from inside a jar. The
+ * least recently used schema is dropped once the cache is full.
+ *
+ * {@link IBDataAvroUtils#avroSchemaFromString} reads through {@link #SHARED}, so every module that resolves schemas
+ * that way shares a single cache. Cached schemas are shared instances and must not be modified.
+ *
+ * Instances are thread safe. Parsing happens outside the lock, so two threads missing on the same schema may both
+ * parse it.
+ */
+public class IBDataAvroSchemaCache {
+  public static final int DEFAULT_MAX_ENTRIES = 256;
+  public static final IBDataAvroSchemaCache SHARED = new IBDataAvroSchemaCache(DEFAULT_MAX_ENTRIES);
+
+  private static final class Entry {
+    final byte[] digest;
+    final Schema schema;
+
+    Entry(byte[] digest, Schema schema) {
+      this.digest = digest;
+      this.schema = schema;
+    }
+  }
+
+  private final int maxEntries;
+  private final Map<String, Entry> entries;
+  private long hits = 0L;
+  private long misses = 0L;
+
+  public IBDataAvroSchemaCache(int maxEntries) {
+    if (maxEntries < 1)
+      throw new IBDataException("maxEntries must be positive");
+    this.maxEntries = maxEntries;
+    this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+        return size() > IBDataAvroSchemaCache.this.maxEntries;
+      }
+    };
+  }
+
+  /**
+   * @param url location of an Avro schema (avsc)
+   * @return the parsed schema, from the cache if the content at the URL is unchanged
+   */
+  public Schema get(URL url) {
+    String key = requireNonNull(url).toExternalForm();
+    byte[] content = read(url);
+    byte[] digest = cet.withReturningTranslation(() -> MessageDigest.getInstance("SHA-256").digest(content));
+    synchronized (this) {
+      Entry e = entries.get(key);
+      if (e != null && Arrays.equals(e.digest, digest)) {
+        ++hits;
+        return e.schema;
+      }
+      ++misses;
+    }
+    Schema s = cet.withReturningTranslation(() -> new Schema.Parser().parse(new ByteArrayInputStream(content)));
+    synchronized (this) {
+      entries.put(key, new Entry(digest, s));
+    }
+    return s;
+  }
+
+  public synchronized void invalidate(URL url) {
+    entries.remove(requireNonNull(url).toExternalForm());
+  }
+
+  public synchronized void clear() {
+    entries.clear();
+  }
+
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  public int getMaxEntries() {
+    return maxEntries;
+  }
+
+  public synchronized long getHits() {
+    return hits;
+  }
+
+  public synchronized long getMisses() {
+    return misses;
+  }
+
+  private static byte[] read(URL url) {
+    return cet.withReturningTranslation(() -> {
+      try (InputStream in = url.openStream()) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] b = new byte[8192];
+        for (int n; (n = in.read(b)) >= 0;)
+          out.write(b, 0, n);
+        return out.toByteArray();
+      }
+    });
+  }
+}
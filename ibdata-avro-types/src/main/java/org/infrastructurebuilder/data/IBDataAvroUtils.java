@@ -20,24 +20,39 @@ import static java.util.Optional.ofNullable;
 import static org.infrastructurebuilder.IBConstants.FILE_PREFIX;
 import static org.infrastructurebuilder.IBConstants.HTTPS_PREFIX;
 import static org.infrastructurebuilder.IBConstants.HTTP_PREFIX;
+import static org.infrastructurebuilder.IBConstants.IBDATA_PREFIX;
+import static org.infrastructurebuilder.IBConstants.IBDATA_SUFFIX;
 import static org.infrastructurebuilder.IBConstants.ZIP_PREFIX;
 import static org.infrastructurebuilder.data.IBDataException.cet;
 import static org.infrastructurebuilder.data.transform.line.DefaultMapToGenericRecordIBDataLineTransformerSupplier.SCHEMA_PARAM;
+import static org.infrastructurebuilder.util.files.DefaultIBChecksumPathType.copyToDeletedOnExitTempChecksumAndPath;
 
 import java.io.IOException;
-import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.function.BiFunction;
 import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import org.apache.avro.Schema;
+import org.apache.avro.Schema.Field;
+import org.apache.avro.file.CodecFactory;
+import org.apache.avro.file.DataFileConstants;
+import org.apache.avro.file.DataFileReader;
 import org.apache.avro.file.DataFileWriter;
 import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumReader;
 import org.apache.avro.generic.GenericDatumWriter;
 import org.apache.avro.generic.GenericRecord;
 import org.apache.avro.generic.MapProxyGenericData;
@@ -46,8 +61,23 @@ import org.infrastructurebuilder.util.config.ConfigMap;
 
 public interface IBDataAvroUtils {
   public static final String NO_SCHEMA_CONFIG_FOR_MAPPER = "No schema config for mapper";
+  /** Avro codec: null, deflate, snappy, zstandard (or zstd), xz or bzip2. Defaults to null (uncompressed) */
+  public static final String CODEC_PARAM = "codec";
+  /** Compression level for the deflate, zstandard and xz codecs */
+  public static final String CODEC_LEVEL_PARAM = "codecLevel";
+  /** Approximate number of uncompressed bytes in each Avro block */
+  public static final String SYNC_INTERVAL_PARAM = "syncInterval";
+  /** Flush the underlying stream after every block rather than only when the writer is flushed or closed */
+  public static final String FLUSH_ON_EVERY_BLOCK_PARAM = "flushOnEveryBlock";
+  public static final int DEFAULT_DEFLATE_LEVEL = 6;
+  public static final int DEFAULT_ZSTANDARD_LEVEL = 3;
+  public static final int DEFAULT_XZ_LEVEL = 6;
   public final static String JAR_PREFIX = "jar:"; // TODO Move to IBConstants next core release
 
+  /**
+   * Parse a schema from a path, a URL or a classpath resource. Parsed schemas are held in
+   * {@link IBDataAvroSchemaCache#SHARED}, so the same unchanged schema is only parsed once.
+   */
   public static final Function<String, Schema> avroSchemaFromString = schema -> {
     String q = ofNullable(schema).orElseThrow(() -> new IBDataException(NO_SCHEMA_CONFIG_FOR_MAPPER + "3"));
     String s = IBDataException.cet.withReturningTranslation(
@@ -55,11 +85,11 @@ public interface IBDataAvroUtils {
 
     boolean isURL = s.startsWith(JAR_PREFIX) ||s.startsWith(HTTP_PREFIX) || s.startsWith(HTTPS_PREFIX) || s.startsWith(FILE_PREFIX)
         || s.startsWith(ZIP_PREFIX) ;
-    try (InputStream in = isURL ? IBUtils.translateToWorkableArchiveURL(s).openStream() : IBDataAvroUtils.class.getResourceAsStream(s)) {
-      return cet.withReturningTranslation(() -> new Schema.Parser().parse(in));
-    } catch (IOException e) {
-      throw new IBDataException(e); // Handles the clos() of try-with-resources
-    }
+    URL u = isURL ? cet.withReturningTranslation(() -> IBUtils.translateToWorkableArchiveURL(s))
+        : IBDataAvroUtils.class.getResource(s);
+    if (u == null)
+      throw new IBDataException("Schema " + q + " not found");
+    return IBDataAvroSchemaCache.SHARED.get(u);
   };
 
   public final static BiFunction<Path, ConfigMap, DataFileWriter<GenericRecord>> fromMapAndWP = (workingPath, map) -> {
@@ -68,12 +98,27 @@ public interface IBDataAvroUtils {
     Schema s = avroSchemaFromString
         .apply(schema.orElseThrow(() -> new IBDataException(NO_SCHEMA_CONFIG_FOR_MAPPER + " 2")));
     // Get the DataFileWriter or die
-    DataFileWriter<GenericRecord> w = new DataFileWriter<GenericRecord>(new GenericDatumWriter<GenericRecord>(s, new MapProxyGenericData(new Formatters(map))));
+    DataFileWriter<GenericRecord> w = configureWriter(new DataFileWriter<GenericRecord>(new GenericDatumWriter<GenericRecord>(s, new MapProxyGenericData(new Formatters(map)))), map);
     // create the working data file or die
     cet.withTranslation(() -> w.create(s, workingPath.toFile()));
     return w;
   };
 
+  /**
+   * As fromMapAndWP, but writes to a supplied OutputStream rather than creating a file
+   */
+  public final static BiFunction<OutputStream, ConfigMap, DataFileWriter<GenericRecord>> fromMapAndOutputStream = (
+      out, map) -> {
+    // Get the schema or die
+    Optional<String> schema = ofNullable(requireNonNull(map).getString(SCHEMA_PARAM));
+    Schema s = avroSchemaFromString
+        .apply(schema.orElseThrow(() -> new IBDataException(NO_SCHEMA_CONFIG_FOR_MAPPER + " 2")));
+    DataFileWriter<GenericRecord> w = configureWriter(new DataFileWriter<GenericRecord>(
+        new GenericDatumWriter<GenericRecord>(s, new MapProxyGenericData(new Formatters(map)))), map);
+    cet.withTranslation(() -> w.create(s, requireNonNull(out)));
+    return w;
+  };
+
   /**
    * Produces a DataFileWriter for the schema provided.  If supplied, a GenericData will be used for
    * translation.
@@ -85,12 +130,198 @@ public interface IBDataAvroUtils {
    */
   public static DataFileWriter<GenericRecord> fromSchemaAndPathAndTranslator(Path targetPath, Schema s,
       Optional<GenericData> genericData) {
+    return fromSchemaAndPathAndTranslator(targetPath, s, genericData, new ConfigMap());
+  }
+
+  /**
+   * As fromSchemaAndPathAndTranslator, applying the codec and block settings in the supplied config
+   *
+   * @param targetPath   The file to write
+   * @param s            The schema to use in the output file
+   * @param genericData  Optional GenericData
+   * @param writerConfig Config containing any of the writer settings keys
+   * @return DataFileWriter to write records
+   */
+  public static DataFileWriter<GenericRecord> fromSchemaAndPathAndTranslator(Path targetPath, Schema s,
+      Optional<GenericData> genericData, ConfigMap writerConfig) {
     GenericData gd = requireNonNull(genericData).orElse(new GenericData());
     // Get the DataFileWriter or die
-    DataFileWriter<GenericRecord> w = new DataFileWriter<>(new GenericDatumWriter<>(requireNonNull(s), gd));
+    DataFileWriter<GenericRecord> w = configureWriter(
+        new DataFileWriter<>(new GenericDatumWriter<>(requireNonNull(s), gd)), writerConfig);
     // create the working data file or die
     cet.withTranslation(() -> w.create(s, targetPath.toFile()));
     return w;
   }
 
+  /**
+   * As fromSchemaAndPathAndTranslator, but writes to a supplied OutputStream rather than creating a file
+   *
+   * @param out         The stream to write
+   * @param s           The schema to use in the output file
+   * @param genericData Optional GenericData
+   * @return DataFileWriter to write records
+   */
+  public static DataFileWriter<GenericRecord> fromSchemaAndOutputStreamAndTranslator(OutputStream out, Schema s,
+      Optional<GenericData> genericData) {
+    return fromSchemaAndOutputStreamAndTranslator(out, s, genericData, new ConfigMap());
+  }
+
+  /**
+   * As fromSchemaAndOutputStreamAndTranslator, applying the codec and block settings in the supplied config
+   *
+   * @param out          The stream to write
+   * @param s            The schema to use in the output file
+   * @param genericData  Optional GenericData
+   * @param writerConfig Config containing any of the writer settings keys
+   * @return DataFileWriter to write records
+   */
+  public static DataFileWriter<GenericRecord> fromSchemaAndOutputStreamAndTranslator(OutputStream out, Schema s,
+      Optional<GenericData> genericData, ConfigMap writerConfig) {
+    GenericData gd = requireNonNull(genericData).orElse(new GenericData());
+    DataFileWriter<GenericRecord> w = configureWriter(
+        new DataFileWriter<>(new GenericDatumWriter<>(requireNonNull(s), gd)), writerConfig);
+    cet.withTranslation(() -> w.create(s, requireNonNull(out)));
+    return w;
+  }
+
+  /**
+   * Reader schema holding only some fields of a record schema. Reading with it skips every other field in the decoder.
+   * Fields keep the order and definitions they have in <code>schema</code>.
+   *
+   * @param schema a record schema
+   * @param fields names of the fields to keep
+   * @return the projected schema, with the same name as <code>schema</code>
+   */
+  public static Schema projectSchema(Schema schema, Collection<String> fields) {
+    if (requireNonNull(schema).getType() != Schema.Type.RECORD)
+      throw new IBDataException("Only record schemas can be projected, not " + schema.getType());
+    Set<String> wanted = new HashSet<>(requireNonNull(fields));
+    List<String> missing = wanted.stream().filter(f -> schema.getField(f) == null).sorted()
+        .collect(Collectors.toList());
+    if (!missing.isEmpty())
+      throw new IBDataException("Fields " + missing + " are not in " + schema.getFullName());
+    List<Field> projected = new ArrayList<>();
+    for (Field f : schema.getFields()) {
+      if (!wanted.contains(f.name()))
+        continue;
+      Field n = new Field(f.name(), f.schema(), f.doc(), f.defaultVal(), f.order());
+      f.aliases().forEach(n::addAlias);
+      f.getObjectProps().forEach(n::addProp);
+      projected.add(n);
+    }
+    Schema r = Schema.createRecord(schema.getName(), schema.getDoc(), schema.getNamespace(), schema.isError(),
+        projected);
+    schema.getAliases().forEach(r::addAlias);
+    schema.getObjectProps().forEach(r::addProp);
+    return r;
+  }
+
+  /**
+   * @param file an Avro container file
+   * @return the writer schema from the file's header
+   */
+  public static Schema readSchema(Path file) {
+    return cet.withReturningTranslation(() -> {
+      try (DataFileReader<Object> r = new DataFileReader<>(file.toFile(), new GenericDatumReader<>())) {
+        return r.getSchema();
+      }
+    });
+  }
+
+  /**
+   * @param stream a stream
+   * @return the stream's file, if it is a regular file on the default filesystem
+   */
+  public static Optional<Path> localFileIfAvailable(IBDataStream stream) {
+    return requireNonNull(stream).getPathIfAvailable()
+        .filter(path -> path.getFileSystem() == FileSystems.getDefault()).filter(Files::isRegularFile);
+  }
+
+  /**
+   * A local file holding the stream's bytes. A stream backed by a regular file on the default filesystem is used in
+   * place. Anything else, such as a zip entry, is copied to a temporary file under <code>targetPath</code>.
+   *
+   * @param targetPath working path for any copy
+   * @param stream     the stream
+   * @return a regular file
+   * @throws IOException
+   */
+  public static Path localFileFor(Path targetPath, IBDataStream stream) throws IOException {
+    Optional<Path> p = localFileIfAvailable(stream);
+    if (p.isPresent())
+      return p.get();
+    return copyToDeletedOnExitTempChecksumAndPath(targetPath, IBDATA_PREFIX, IBDATA_SUFFIX, stream.get()).getPath();
+  }
+
+  /**
+   * Produce the Avro codec named in the config
+   *
+   * @param map config that may contain CODEC_PARAM and CODEC_LEVEL_PARAM
+   * @return codec factory. The null codec if none is configured
+   */
+  public static CodecFactory codecFromConfig(ConfigMap map) {
+    String codec = ofNullable(requireNonNull(map).getString(CODEC_PARAM)).map(String::trim).map(String::toLowerCase)
+        .orElse(DataFileConstants.NULL_CODEC);
+    Optional<Integer> level = ofNullable(map.getString(CODEC_LEVEL_PARAM)).map(Integer::parseInt);
+    switch (codec) {
+    case DataFileConstants.NULL_CODEC:
+      return CodecFactory.nullCodec();
+    case DataFileConstants.DEFLATE_CODEC:
+      return CodecFactory.deflateCodec(level.orElse(DEFAULT_DEFLATE_LEVEL));
+    case DataFileConstants.SNAPPY_CODEC:
+      return CodecFactory.snappyCodec();
+    case "zstd":
+    case DataFileConstants.ZSTANDARD_CODEC:
+      return CodecFactory.zstandardCodec(level.orElse(DEFAULT_ZSTANDARD_LEVEL));
+    case DataFileConstants.XZ_CODEC:
+      return CodecFactory.xzCodec(level.orElse(DEFAULT_XZ_LEVEL));
+    case DataFileConstants.BZIP2_CODEC:
+      return CodecFactory.bzip2Codec();
+    default:
+      throw new IBDataException("Unknown Avro codec '" + codec + "'");
+    }
+  }
+
+  /**
+   * Apply the codec, sync interval and flush settings in the config to a writer that has not yet been created
+   *
+   * @param w   the writer
+   * @param map config that may contain any of the writer settings keys
+   * @return the writer
+   */
+  public static <T> DataFileWriter<T> configureWriter(DataFileWriter<T> w, ConfigMap map) {
+    requireNonNull(w).setCodec(codecFromConfig(map));
+    ofNullable(map.getString(SYNC_INTERVAL_PARAM)).map(Integer::parseInt).ifPresent(w::setSyncInterval);
+    ofNullable(map.getString(FLUSH_ON_EVERY_BLOCK_PARAM)).map(Boolean::parseBoolean).ifPresent(w::setFlushOnEveryBlock);
+    return w;
+  }
+
+  /**
+   * Map an Avro field to the structured metadata type reported for it. Enums are reported as INT, and the non-null
+   * branch of a nullable union is used.
+   *
+   * @param field the field
+   * @return the type, or null for types with no structured metadata equivalent
+   */
+  public static IBDataStructuredDataMetadataType metadataTypeFromField(Field field) {
+    Schema s = field.schema();
+    if (s.isUnion()) {
+      s = s.getTypes().get(s.getTypes().size() - 1);
+    }
+    switch (s.getType()) {
+    case ENUM:
+      return IBDataStructuredDataMetadataType.INT;
+    case BOOLEAN:
+    case BYTES:
+    case DOUBLE:
+    case FLOAT:
+    case INT:
+    case LONG:
+    case STRING:
+      return IBDataStructuredDataMetadataType.valueOf(s.getType().getName().toUpperCase());
+    default:
+      return null;
+    }
+  }
+
 }
@@ -0,0 +1,64 @@
+/**
+ * Copyright © 2019 admin (admin@infrastructurebuilder.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.infrastructurebuilder.data;
+
+import java.io.IOException;
+
+import org.apache.avro.Conversion;
+import org.apache.avro.LogicalType;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.IndexedRecord;
+import org.apache.avro.io.ResolvingDecoder;
+import org.apache.avro.specific.SpecificData;
+import org.apache.avro.specific.SpecificDatumReader;
+import org.apache.avro.specific.SpecificRecordBase;
+
+/**
+ * Reads specific records with a reader schema that holds only some of the class's fields.
+ *
+ * The decoder skips the fields that are not in the reader schema. Each field that is read is stored at its position
+ * in the record class, which differs from its position in the projected schema, and uses the class's conversion for
+ * that position. Fields that are not read keep the values a new instance of the class has. Field values are never
+ * reused from an old record, since the old record's positions are those of the class.
+ *
+ * @param <T> record class
+ */
+public class IBDataProjectingSpecificDatumReader<T> extends SpecificDatumReader<T> {
+
+  /**
+   * @param projected reader schema, as produced by {@link IBDataAvroUtils#projectSchema} from the class schema
+   * @param data      specific data for the record class
+   */
+  public IBDataProjectingSpecificDatumReader(Schema projected, SpecificData data) {
+    super(projected, projected, data);
+  }
+
+  @Override
+  protected void readField(Object r, Schema.Field f, Object oldDatum, ResolvingDecoder in, Object state)
+      throws IOException {
+    IndexedRecord record = (IndexedRecord) r;
+    Schema.Field target = record.getSchema().getField(f.name());
+    if (target == null)
+      throw new IBDataException("Field " + f.name() + " is not in " + record.getSchema().getFullName());
+    LogicalType logicalType = f.schema().getLogicalType();
+    Conversion<?> conversion = (r instanceof SpecificRecordBase && logicalType != null)
+        ? ((SpecificRecordBase) r).getConversion(target.pos())
+        : null;
+    Object datum = conversion != null ? readWithConversion(null, f.schema(), logicalType, conversion, in)
+        : readWithoutConversion(null, f.schema(), in);
+    record.put(target.pos(), datum);
+  }
+}
@@ -15,16 +15,22 @@
  */
 package org.infrastructurebuilder.data.transform.line;
 
+import java.lang.invoke.MethodHandle;
 import java.nio.file.Path;
-import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
+import org.apache.avro.AvroRuntimeException;
 import org.apache.avro.Schema;
 import org.apache.avro.Schema.Field;
-import org.apache.avro.generic.GenericRecordBuilder;
+import org.apache.avro.Schema.Type;
+import org.apache.avro.generic.GenericData;
 import org.apache.avro.generic.IndexedRecord;
 import org.infrastructurebuilder.data.Formatters;
 import org.infrastructurebuilder.util.config.ConfigMap;
@@ -33,7 +39,109 @@ import org.slf4j.Logger;
 abstract public class AbstractMapToAvroGenericRecordIBDataLineTransformer
     extends AbstractAvroGenericIBDataLineTransformer<Map<String, Object>> {
 
-  private final List<String> alreadyWarned = new ArrayList<>();
+  /**
+   * Everything about a schema that {@link #apply(Map)} would otherwise work out again for every record
+   */
+  static final class RecordLayout {
+    final Schema schema;
+    final Map<String, Integer> positions;
+    final Field[] fields;
+    final Object[] defaults;
+    final boolean[] hasDefault;
+    final boolean[] copyDefault;
+    final boolean[] acceptsNull;
+    final MethodHandle[] converters;
+
+    RecordLayout(Schema schema) {
+      this(schema, null);
+    }
+
+    /**
+     * @param converters (Object)Object handle per field position applied to each supplied value, or null
+     */
+    RecordLayout(Schema schema, MethodHandle[] converters) {
+      this.schema = schema;
+      this.converters = converters;
+      List<Field> fl = schema.getFields();
+      int n = fl.size();
+      this.positions = new HashMap<>(n * 2);
+      this.fields = new Field[n];
+      this.defaults = new Object[n];
+      this.hasDefault = new boolean[n];
+      this.copyDefault = new boolean[n];
+      this.acceptsNull = new boolean[n];
+      for (Field f : fl) {
+        int i = f.pos();
+        positions.put(f.name(), i);
+        fields[i] = f;
+        acceptsNull[i] = acceptsNull(f.schema());
+        try {
+          defaults[i] = GenericData.get().getDefaultValue(f);
+          hasDefault[i] = true;
+          copyDefault[i] = defaults[i] != null && isMutable(f.schema());
+        } catch (AvroRuntimeException e) {
+          // No default; the field must be supplied
+        }
+      }
+    }
+
+    private static boolean acceptsNull(Schema s) {
+      return s.getType() == Type.NULL
+          || (s.getType() == Type.UNION && s.getTypes().stream().anyMatch(t -> t.getType() == Type.NULL));
+    }
+
+    private static boolean isMutable(Schema s) {
+      switch (s.getType()) {
+      case RECORD:
+      case ARRAY:
+      case MAP:
+      case FIXED:
+      case BYTES:
+      case UNION:
+        return true;
+      default:
+        return false;
+      }
+    }
+
+    /**
+     * Fill a record positionally, with the same outcome as setting each known key on a GenericRecordBuilder
+     */
+    GenericData.Record toRecord(Map<String, Object> t, Consumer<String> unknown) {
+      GenericData.Record r = new GenericData.Record(schema);
+      boolean[] set = new boolean[fields.length];
+      for (Map.Entry<String, Object> e : t.entrySet()) {
+        Integer pos = positions.get(e.getKey());
+        if (pos == null) {
+          unknown.accept(e.getKey());
+          continue;
+        }
+        int i = pos;
+        Object v = e.getValue();
+        if (converters != null && converters[i] != null)
+          v = MapToGenericRecordConverters.convert(converters[i], v);
+        if (v == null && !acceptsNull[i] && !hasDefault[i])
+          throw new AvroRuntimeException("Field " + fields[i] + " does not accept null values");
+        r.put(i, v);
+        set[i] = true;
+      }
+      for (int i = 0; i < fields.length; ++i) {
+        if (set[i])
+          continue;
+        if (!hasDefault[i])
+          throw new AvroRuntimeException("Field " + fields[i] + " not set and has no default value");
+        r.put(i, copyDefault[i] ? GenericData.get().deepCopy(fields[i].schema(), defaults[i]) : defaults[i]);
+      }
+      return r;
+    }
+  }
+
+  private final Set<String> alreadyWarned = ConcurrentHashMap.newKeySet();
+  private final Consumer<String> warnUnknown = k -> {
+    if (alreadyWarned.add(k))
+      getLogger().warn("*** Field '" + k + "' not known in schema!  ");
+  };
+  private volatile RecordLayout layout;
 
   protected AbstractMapToAvroGenericRecordIBDataLineTransformer(Path workingPath, ConfigMap config, Logger l) {
     super(workingPath, config, l);
@@ -42,27 +150,19 @@ abstract public class AbstractMapToAvroGenericRecordIBDataLineTransformer
   @Override
   public IndexedRecord apply(Map<String, Object> t) {
     Objects.requireNonNull(t);
-    Schema s = getSchema();
-    GenericRecordBuilder rb = new GenericRecordBuilder(s);
-    //    final GenericRecord r = new GenericData.Record(s);
-    t.keySet().forEach(k -> {
-      Field f = s.getField(k);
-      if (f != null) {
-        rb.set(f, t.get(k));
-        //      else {
-        //
-        //      }
-        //      Field v = s.getField(k);
-        //      if (v != null) {
-        //        r.put(k, managedValue(v.schema(), k, t.get(k), getFormatters()));
-      } else {
-        if (!alreadyWarned.contains(k)) {
-          getLogger().warn("*** Field '" + k + "' not known in schema!  ");
-          alreadyWarned.add(k);
-        }
-      }
-    }); // FIXME mebbe we need to catch some of the RuntimeException instances
-    return rb.build();
+    return getLayout().toRecord(t, warnUnknown); // FIXME mebbe we need to catch some of the RuntimeException instances
+  }
+
+  RecordLayout getLayout() {
+    Schema s = Objects.requireNonNull(getSchema());
+    RecordLayout l = layout;
+    if (l == null || l.schema != s)
+      layout = l = createLayout(s);
+    return l;
+  }
+
+  RecordLayout createLayout(Schema s) {
+    return new RecordLayout(s);
   }
 
   abstract public Schema getSchema();
@@ -49,6 +49,7 @@ public class DefaultMapToGenericRecordIBDataLineTransformerSupplier
   public final static String NAME = "map-to-generic-avro";
   public static final List<String> ACCEPTABLE_TYPES = Arrays.asList(Map.class.getCanonicalName());
   public final static String SCHEMA_PARAM = "schema"; // Required **
+  public final static String GENERATED_CONVERTER_PARAM = "generated.converter";
 
   @Inject
   public DefaultMapToGenericRecordIBDataLineTransformerSupplier(@Named(IBDATA_WORKING_PATH_SUPPLIER) PathSupplier wps,
@@ -82,6 +83,7 @@ public class DefaultMapToGenericRecordIBDataLineTransformerSupplier
 
     private final Schema schema;
     private final Formatters formatters;
+    private final boolean generated;
 
     /**
      * @param workingPath
@@ -96,6 +98,10 @@ public class DefaultMapToGenericRecordIBDataLineTransformerSupplier
           : avroSchemaFromString.apply(ofNullable(getConfiguration(SCHEMA_PARAM))
               .orElseThrow(() -> new IBDataException(NO_SCHEMA_CONFIG_FOR_MAPPER + " (invalid?)")));
       this.formatters = new Formatters(Optional.ofNullable(getConfig()).orElse(new ConfigMap()));
+      this.generated = config != null
+          && Boolean.parseBoolean(String.valueOf(getObjectConfiguration(GENERATED_CONVERTER_PARAM, "false")));
+      if (this.generated)
+        getLayout(); // Generate the converters now rather than on the first record
     }
 
     /**
@@ -105,6 +111,19 @@ public class DefaultMapToGenericRecordIBDataLineTransformerSupplier
       this(workingPath, null, l);
     }
 
+    /**
+     * With {@link #GENERATED_CONVERTER_PARAM} set, date and time fields are converted as the record is built
+     */
+    @Override
+    RecordLayout createLayout(Schema s) {
+      return this.generated ? new RecordLayout(s, MapToGenericRecordConverters.convertersFor(s, getFormatters()))
+          : super.createLayout(s);
+    }
+
+    boolean isGenerated() {
+      return this.generated;
+    }
+
     @Override
     Formatters getFormatters() {
       return this.formatters;
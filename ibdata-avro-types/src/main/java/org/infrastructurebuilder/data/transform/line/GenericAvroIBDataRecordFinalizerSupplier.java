@@ -16,32 +16,41 @@
 package org.infrastructurebuilder.data.transform.line;
 
 import static org.infrastructurebuilder.data.IBDataConstants.IBDATA_WORKING_PATH_SUPPLIER;
-import static org.infrastructurebuilder.data.IBDataStructuredDataMetadataType.FLOAT;
 
 import java.math.BigDecimal;
-import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.function.Supplier;
 
 import javax.inject.Inject;
 import javax.inject.Named;
 
 import org.apache.avro.AvroRuntimeException;
-import org.apache.avro.Schema;
 import org.apache.avro.Schema.Field;
+import org.apache.avro.file.DataFileStream;
 import org.apache.avro.file.DataFileWriter;
+import org.apache.avro.generic.GenericDatumReader;
 import org.apache.avro.generic.GenericRecord;
 import org.apache.avro.generic.IndexedRecord;
+import org.codehaus.plexus.util.xml.Xpp3Dom;
 import org.infrastructurebuilder.IBConstants;
 import org.infrastructurebuilder.data.IBDataAvroUtils;
 import org.infrastructurebuilder.data.IBDataDataStreamRecordFinalizerSupplier;
-import org.infrastructurebuilder.data.IBDataException;
+import org.infrastructurebuilder.data.IBDataColumnSketches;
+import org.infrastructurebuilder.data.IBDataFieldAccumulator;
+import org.infrastructurebuilder.data.IBDataFrequentItems;
+import org.infrastructurebuilder.data.IBDataHyperLogLog;
+import org.infrastructurebuilder.data.IBDataStream;
+import org.infrastructurebuilder.data.IBDataStreamIdentifier;
 import org.infrastructurebuilder.data.IBDataStreamRecordFinalizer;
 import org.infrastructurebuilder.data.IBDataStructuredDataMetadata;
 import org.infrastructurebuilder.data.IBDataStructuredDataMetadataType;
+import org.infrastructurebuilder.data.model.DataStream;
 import org.infrastructurebuilder.data.model.DataStreamStructuredMetadata;
 import org.infrastructurebuilder.data.model.StructuredFieldMetadata;
 import org.infrastructurebuilder.util.LoggerSupplier;
@@ -55,6 +64,16 @@ public class GenericAvroIBDataRecordFinalizerSupplier
     extends AbstractIBDataStreamRecordFinalizerSupplier<GenericRecord> {
 
   public static final String NAME = "avro-generic";
+  /** Element added to the finalized stream's metadata to record the Avro codec used */
+  public static final String AVRO_CODEC_METADATA = "avroCodec";
+  /** Element added to the finalized stream's metadata holding the total and null count of each field */
+  public static final String FIELD_COUNTS_METADATA = "fieldCounts";
+  /** Element added to the finalized stream's metadata holding the serialized column sketches */
+  public static final String SKETCHES_METADATA = "sketches";
+  /** Set to "true" to compute distinct count, quantile and heavy hitter sketches for each column */
+  public static final String SKETCHES_PARAM = "sketches";
+  /** Number of heavy hitters kept for each categorical column */
+  public static final String SKETCH_TOP_K_PARAM = "sketchTopK";
   private static final List<Class<?>> ACCEPTABLE_TYPES = Arrays.asList(IndexedRecord.class);
 
   @Inject
@@ -80,13 +99,22 @@ public class GenericAvroIBDataRecordFinalizerSupplier
   }
 
   public final class GenericAvroIBDataStreamRecordFinalizer
-      extends AbstractIBDataStreamRecordFinalizer<GenericRecord, DataFileWriter<GenericRecord>> {
+      extends AbstractIBDataStreamRecordFinalizer<GenericRecord, DataFileWriter<GenericRecord>>
+      implements IBDataMergeableRecordFinalizer<GenericRecord> {
 
     private final int numberOfRowsToSkip;
+    private IBDataStructuredDataMetadataType[] kinds = null;
+    private IBDataFieldAccumulator[] accumulators = null;
+    private IBDataColumnSketches[] sketches = null;
+    private final boolean sketching;
+    private final int topK;
 
     public GenericAvroIBDataStreamRecordFinalizer(String id, Path workingPath, Logger l, ConfigMap map) {
-      super(id, workingPath, l, map, Optional.of(IBDataAvroUtils.fromMapAndWP.apply(workingPath, map)));
+      super(id, workingPath, l, map, out -> IBDataAvroUtils.fromMapAndOutputStream.apply(out, map));
       this.numberOfRowsToSkip = Integer.parseInt(map.getOrDefault(NUMBER_OF_ROWS_TO_SKIP_PARAM, "0"));
+      this.sketching = Boolean.parseBoolean(map.getOrDefault(SKETCHES_PARAM, "false"));
+      this.topK = Integer
+          .parseInt(map.getOrDefault(SKETCH_TOP_K_PARAM, Integer.toString(IBDataFrequentItems.DEFAULT_TOP_K)));
     }
 
     @Override
@@ -94,6 +122,42 @@ public class GenericAvroIBDataRecordFinalizerSupplier
       return this.numberOfRowsToSkip;
     }
 
+    /**
+     * @return name of the Avro codec this finalizer writes with, for example "deflate-6"
+     */
+    public String getCodec() {
+      return IBDataAvroUtils.codecFromConfig(getConfig()).toString();
+    }
+
+    @Override
+    public Supplier<IBDataStream> finalizeRecord(IBDataStreamIdentifier ds) {
+      if (ds instanceof DataStream && ((DataStream) ds).getMetadata() instanceof Xpp3Dom) {
+        Xpp3Dom codec = new Xpp3Dom(AVRO_CODEC_METADATA);
+        codec.setValue(getCodec());
+        ((Xpp3Dom) ((DataStream) ds).getMetadata()).addChild(codec);
+        getFieldAccumulators().ifPresent(l -> ((Xpp3Dom) ((DataStream) ds).getMetadata()).addChild(fieldCounts(l)));
+        getColumnSketches().ifPresent(l -> {
+          Xpp3Dom sk = new Xpp3Dom(SKETCHES_METADATA);
+          for (int i = 0; i < l.size(); ++i)
+            sk.addChild(l.get(i).asMetadata(i));
+          ((Xpp3Dom) ((DataStream) ds).getMetadata()).addChild(sk);
+        });
+      }
+      return super.finalizeRecord(ds);
+    }
+
+    private Xpp3Dom fieldCounts(List<IBDataFieldAccumulator> l) {
+      Xpp3Dom counts = new Xpp3Dom(FIELD_COUNTS_METADATA);
+      for (int i = 0; i < l.size(); ++i) {
+        Xpp3Dom f = new Xpp3Dom("field");
+        f.setAttribute("index", Integer.toString(i));
+        f.setAttribute("count", Long.toString(l.get(i).getCount()));
+        f.setAttribute("nulls", Long.toString(l.get(i).getNullCount()));
+        counts.addChild(f);
+      }
+      return counts;
+    }
+
     @Override
     protected void writeThrows(GenericRecord recordToWrite) throws Throwable {
       getWriter().append(recordToWrite);
@@ -109,120 +173,195 @@ public class GenericAvroIBDataRecordFinalizerSupplier
       return Optional.of(ACCEPTABLE_TYPES);
     }
 
+    @Override
+    public IBDataMergeableRecordFinalizer<GenericRecord> newPartial(Path workingPath) {
+      return new GenericAvroIBDataStreamRecordFinalizer(getId(), workingPath, getLog(), getConfig());
+    }
+
+    @Override
+    public Object fieldValue(GenericRecord recordToWrite, String field) {
+      return recordToWrite.get(field);
+    }
+
+    /**
+     * Partials share this finalizer's schema and codec, so their data blocks are copied as they are, without
+     * decoding or recompressing the records.
+     */
+    @Override
+    public void merge(IBDataMergeableRecordFinalizer<GenericRecord> partial) throws Exception {
+      try (DataFileStream<GenericRecord> in = new DataFileStream<>(Files.newInputStream(partial.getWorkingPath()),
+          new GenericDatumReader<GenericRecord>())) {
+        getWriter().appendAllFrom(in, false);
+      }
+      mergeRecordCount(partial);
+      if (partial instanceof GenericAvroIBDataStreamRecordFinalizer) {
+        GenericAvroIBDataStreamRecordFinalizer other = (GenericAvroIBDataStreamRecordFinalizer) partial;
+        if (other.accumulators == null)
+          return;
+        if (this.accumulators == null) {
+          this.smd = other.smd;
+          this.kinds = other.kinds;
+          this.accumulators = new IBDataFieldAccumulator[other.accumulators.length];
+          for (int i = 0; i < this.accumulators.length; ++i)
+            this.accumulators[i] = new IBDataFieldAccumulator();
+          this.sketches = newSketches(other.sketches == null ? null : this.kinds);
+        }
+        for (int i = 0; i < this.accumulators.length && i < other.accumulators.length; ++i)
+          this.accumulators[i].merge(other.accumulators[i]);
+        if (this.sketches != null && other.sketches != null)
+          for (int i = 0; i < this.sketches.length && i < other.sketches.length; ++i)
+            this.sketches[i].merge(other.sketches[i]);
+      }
+    }
+
+    /**
+     * @return per-field statistics, indexed as the schema's fields, or empty if nothing has been written
+     */
+    public Optional<List<IBDataFieldAccumulator>> getFieldAccumulators() {
+      return Optional.ofNullable(this.accumulators).map(Arrays::asList);
+    }
+
+    /**
+     * @return per-field sketches, indexed as the schema's fields, or empty if sketching is off or nothing has been
+     *         written
+     */
+    public Optional<List<IBDataColumnSketches>> getColumnSketches() {
+      return Optional.ofNullable(this.sketches).map(Arrays::asList);
+    }
+
+    private IBDataColumnSketches[] newSketches(IBDataStructuredDataMetadataType[] k) {
+      if (!this.sketching || k == null)
+        return null;
+      IBDataColumnSketches[] s = new IBDataColumnSketches[k.length];
+      for (int i = 0; i < k.length; ++i) {
+        if (k[i] == null) // enumeration
+          s[i] = IBDataColumnSketches.categorical(this.topK);
+        else
+          switch (k[i]) {
+          case DOUBLE:
+          case FLOAT:
+          case INT:
+          case LONG:
+            s[i] = IBDataColumnSketches.numeric();
+            break;
+          case STRING:
+          case BOOLEAN:
+            s[i] = IBDataColumnSketches.categorical(this.topK);
+            break;
+          default:
+            s[i] = IBDataColumnSketches.distinctOnly();
+            break;
+          }
+      }
+      return s;
+    }
+
+    @Override
+    public void close() throws Exception {
+      super.close();
+      materializeStructuredMetadata();
+    }
+
+    /**
+     * Copy the accumulated ranges into the structured metadata. Integral fields report their range, strings and bytes
+     * their length range, and reals their range as decimals.
+     */
+    private void materializeStructuredMetadata() {
+      if (this.accumulators == null || this.smd == null)
+        return;
+      for (int i = 0; i < this.accumulators.length; ++i) {
+        IBDataFieldAccumulator a = this.accumulators[i];
+        StructuredFieldMetadata element = this.smd.getFields().get(i);
+        if (a.hasLongs()) {
+          element.setMin(Long.toString(a.getLongMin()));
+          element.setMax(Long.toString(a.getLongMax()));
+        }
+        if (a.hasDoubles()) {
+          element.setMin(new BigDecimal(a.getDoubleMin()).toString());
+          element.setMax(new BigDecimal(a.getDoubleMax()).toString());
+        }
+      }
+    }
+
     @Override
     protected DataStreamStructuredMetadata updateStructuredMetadata(DataStreamStructuredMetadata current,
         GenericRecord recordToWrite) {
-      Field[] fields = recordToWrite.getSchema().getFields().toArray(new Field[0]);
-      if (current == null) {
+      if (current == null || this.accumulators == null) {
+        Field[] fields = recordToWrite.getSchema().getFields().toArray(new Field[0]);
         current = new DataStreamStructuredMetadata();
+        this.kinds = new IBDataStructuredDataMetadataType[fields.length];
+        this.accumulators = new IBDataFieldAccumulator[fields.length];
         for (int i = 0; i < fields.length; ++i) {
           StructuredFieldMetadata fm = new StructuredFieldMetadata();
           fm.setIndex(i);
-          IBDataStructuredDataMetadataType mdt = getMetadataTypeFromField(fields[i]);
+          IBDataStructuredDataMetadataType mdt = IBDataAvroUtils.metadataTypeFromField(fields[i]);
           fm.setMetadataType(mdt.name());
           fm.setNullable(new Boolean(fields[i].schema().isNullable()).toString());
+          // Enums are reported as INT but carry symbols, not numbers
+          this.kinds[i] = null;
           try {
             fm.setEnumerations(fields[i].schema().getEnumSymbols());
           } catch (AvroRuntimeException a) {
             fm.setEnumerations(null);
+            this.kinds[i] = mdt;
           }
           current.addField(fm);
+          this.accumulators[i] = new IBDataFieldAccumulator();
         }
+        this.sketches = newSketches(this.kinds);
       }
-      for (int i = 0; i < fields.length; ++i) {
-        int j = i;
-        StructuredFieldMetadata element = current.getFields().get(i);
-        element.getType().ifPresent(mdt -> {
-          BigInteger v2;
-          Object val = recordToWrite.get(j);
-          BigInteger max2;
-          BigInteger min2;
-          long ll;
-          switch (mdt) {
-          case DOUBLE:
-          case FLOAT:
-            BigDecimal v = new BigDecimal((double) val);
-            BigDecimal min = element.getMinRealValue().orElse(v);
-            if (v.compareTo(min) <= 0)
-              element.setMin(v.toString());
-            BigDecimal max = element.getMaxRealValue().orElse(v);
-            if (v.compareTo(max) >= 0)
-              element.setMax(v.toString());
-            break;
-          case INT:
-          case LONG:
-          case STRING:
-          case BYTES:
-            switch (mdt) {
-            case BYTES:
-              ll = ((byte[]) val).length;
-              break;
-            case INT:
-              val = ((Integer)val).longValue();
-            case LONG:
-              ll = (long) val;
-              break;
-            case STRING:
-              ll = (long)( val.toString()).length();
-              break;
-            default:
-              throw new IBDataException("Impossible");
-            }
-            v2 = BigInteger.valueOf(ll);
-            min2 = element.getMinIntValue().orElse(v2);
-            max2 = element.getMaxIntValue().orElse(v2);
-            if (v2.compareTo(min2) <= 0)
-              element.setMin(v2.toString());
-            if (v2.compareTo(max2) >= 0)
-              element.setMax(v2.toString());
-            break;
-          case DATE:
-            break;
-          case TIMESTAMP:
-            break;
-          default:
-            break;
-          }
-        });
+      for (int i = 0; i < this.accumulators.length; ++i) {
+        IBDataFieldAccumulator a = this.accumulators[i];
+        Object val = recordToWrite.get(i);
+        if (val == null) {
+          a.acceptNull();
+          continue;
+        }
+        IBDataColumnSketches sk = this.sketches == null ? null : this.sketches[i];
+        IBDataStructuredDataMetadataType mdt = this.kinds[i];
+        if (mdt == null) {
+          a.acceptOther();
+          if (sk != null)
+            sk.updateString(val.toString());
+          continue;
+        }
+        switch (mdt) {
+        case DOUBLE:
+        case FLOAT:
+          double d = ((Number) val).doubleValue();
+          a.acceptDouble(d);
+          if (sk != null)
+            sk.updateDouble(d);
+          break;
+        case INT:
+        case LONG:
+          long l = ((Number) val).longValue();
+          a.acceptLong(l);
+          if (sk != null)
+            sk.updateLong(l);
+          break;
+        case STRING:
+          CharSequence cs = (CharSequence) val;
+          a.acceptLong(cs instanceof String ? cs.length() : cs.toString().length());
+          if (sk != null)
+            sk.updateString(cs);
+          break;
+        case BYTES:
+          a.acceptLong(val instanceof ByteBuffer ? ((ByteBuffer) val).remaining() : ((byte[]) val).length);
+          if (sk != null)
+            sk.updateHash(val instanceof ByteBuffer ? IBDataHyperLogLog.hash((ByteBuffer) val)
+                : IBDataHyperLogLog.hash((byte[]) val));
+          break;
+        default:
+          a.acceptOther();
+          if (sk != null)
+            sk.updateString(val.toString());
+          break;
+        }
       }
       return current;
     }
 
-    private IBDataStructuredDataMetadataType getMetadataTypeFromField(Field field) {
-      IBDataStructuredDataMetadataType t;
-      Schema s = field.schema();
-      if (s.isUnion()) {
-        s = s.getTypes().get(s.getTypes().size() - 1);
-      }
-      switch (s.getType()) {
-      case ENUM:
-        return IBDataStructuredDataMetadataType.INT;
-      case BOOLEAN:
-      case BYTES:
-      case DOUBLE:
-      case FLOAT:
-      case INT:
-      case LONG:
-      case STRING:
-        String thisTypeString = s.getType().getName().toUpperCase();
-        return IBDataStructuredDataMetadataType.valueOf(thisTypeString);
-      //      case MAP:
-      //        break;
-      //      case NULL:
-      //        break;
-      //      case RECORD:
-      //        break;
-      //      case ARRAY:
-      //        break;
-      //      case FIXED:
-      //        break;
-      //      case UNION:
-      //        break;
-      default:
-        return null;
-      }
-    }
-
   }
 
 }
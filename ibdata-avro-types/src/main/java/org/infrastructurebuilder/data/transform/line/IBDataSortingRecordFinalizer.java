@@ -0,0 +1,414 @@
+/**
+ * Copyright © 2019 admin (admin@infrastructurebuilder.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.infrastructurebuilder.data.transform.line;
+
+import static java.util.Objects.requireNonNull;
+import static java.util.Optional.empty;
+import static java.util.Optional.of;
+import static org.infrastructurebuilder.data.IBDataException.cet;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import org.apache.avro.Schema;
+import org.apache.avro.Schema.Field;
+import org.apache.avro.file.CodecFactory;
+import org.apache.avro.file.DataFileStream;
+import org.apache.avro.file.DataFileWriter;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.BinaryDecoder;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.io.EncoderFactory;
+import org.codehaus.plexus.util.xml.Xpp3Dom;
+import org.infrastructurebuilder.data.DefaultIBDataTransformationError;
+import org.infrastructurebuilder.data.IBDataException;
+import org.infrastructurebuilder.data.IBDataStream;
+import org.infrastructurebuilder.data.IBDataStreamIdentifier;
+import org.infrastructurebuilder.data.IBDataStreamRecordFinalizer;
+import org.infrastructurebuilder.data.IBDataTransformationError;
+import org.infrastructurebuilder.data.model.DataStream;
+
+/**
+ * Writes records to another finalizer ordered by a list of fields, using an external merge sort.
+ *
+ * Each record is normalized on arrival by encoding it with the output's {@link GenericData} and decoding it again, so
+ * values awaiting conversion (dates held as strings, for instance) compare correctly and bad records are rejected
+ * immediately. Records are held in memory up to a budget of encoded bytes. When the budget is reached they are sorted
+ * and spilled to a Snappy-compressed Avro run file in a directory beside the working path. At close the remaining records are sorted
+ * and, if any runs were spilled, all runs are merged k ways into the wrapped finalizer; more than
+ * {@link #MAX_MERGE_WIDTH} runs are first merged in passes. The sort is stable. Run files are deleted at close.
+ *
+ * Records are only written to the wrapped finalizer at close, so its errors are deferred.
+ */
+public final class IBDataSortingRecordFinalizer implements IBDataDeferredErrorsRecordFinalizer<GenericRecord> {
+  /** Element added to the finalized stream's metadata holding the sort order */
+  public static final String SORT_ORDER_METADATA = "sortOrder";
+  /** Maximum number of runs read at once while merging */
+  public static final int MAX_MERGE_WIDTH = 64;
+  private static final int RUN_BUFFER_SIZE = 64 * 1024;
+
+  private final IBDataStreamRecordFinalizer<GenericRecord> delegate;
+  private final List<SortKey> keys;
+  private final long bufferBytes;
+  private final GenericData data;
+  private final ExposedByteArrayOutputStream encoded = new ExposedByteArrayOutputStream();
+  private BinaryEncoder encoder = null;
+  private BinaryDecoder decoder = null;
+  private GenericDatumWriter<GenericRecord> normalizer = null;
+  private GenericDatumReader<GenericRecord> denormalizer = null;
+  private long bufferedBytes = 0L;
+  private final Path runDirectory;
+  private final List<GenericRecord> buffer = new ArrayList<>();
+  private final List<Path> runs = new ArrayList<>();
+  private final List<IBDataTransformationError> errors = new ArrayList<>();
+  private Schema schema = null;
+  private Comparator<GenericRecord> comparator = null;
+  private int runsWritten = 0;
+  private boolean closed = false;
+
+  /**
+   * A field to sort by, and its direction
+   */
+  public static final class SortKey {
+    private final String field;
+    private final boolean descending;
+
+    public SortKey(String field, boolean descending) {
+      this.field = requireNonNull(field);
+      this.descending = descending;
+    }
+
+    public String getField() {
+      return field;
+    }
+
+    public boolean isDescending() {
+      return descending;
+    }
+
+    /**
+     * @param spec comma separated field names, each optionally followed by ":asc" or ":desc"
+     * @return the keys in order
+     */
+    public static List<SortKey> parse(String spec) {
+      List<SortKey> l = new ArrayList<>();
+      for (String s : requireSpec(spec).split(",")) {
+        String[] p = s.trim().split(":");
+        String dir = p.length > 1 ? p[1].trim().toLowerCase() : "asc";
+        if (p[0].trim().isEmpty() || p.length > 2 || !(dir.equals("asc") || dir.equals("desc")))
+          throw new IBDataException("Invalid sort field '" + s + "' in '" + spec + "'");
+        l.add(new SortKey(p[0].trim(), dir.equals("desc")));
+      }
+      return l;
+    }
+
+    private static String requireSpec(String spec) {
+      if (spec == null || spec.trim().isEmpty())
+        throw new IBDataException("No sort fields supplied");
+      return spec;
+    }
+
+    @Override
+    public String toString() {
+      return field + (descending ? ":desc" : ":asc");
+    }
+  }
+
+  /**
+   * @param delegate      finalizer that writes the sorted output
+   * @param keys          fields to sort by, most significant first
+   * @param bufferBytes   encoded size of the records sorted in memory before a run is spilled
+   * @param runDirectory  directory for run files, created when the first run is spilled
+   * @param data          data model the output is written with
+   */
+  public IBDataSortingRecordFinalizer(IBDataStreamRecordFinalizer<GenericRecord> delegate, List<SortKey> keys,
+      long bufferBytes, Path runDirectory, GenericData data) {
+    this.delegate = requireNonNull(delegate);
+    this.keys = Collections.unmodifiableList(new ArrayList<>(requireNonNull(keys)));
+    if (this.keys.isEmpty())
+      throw new IBDataException("No sort fields supplied");
+    if (bufferBytes < 1)
+      throw new IBDataException("Sort buffer must be positive");
+    this.bufferBytes = bufferBytes;
+    this.runDirectory = requireNonNull(runDirectory);
+    this.data = requireNonNull(data);
+  }
+
+  public List<SortKey> getKeys() {
+    return keys;
+  }
+
+  /**
+   * @return number of run files spilled so far, including intermediate merge passes
+   */
+  public int getRunsWritten() {
+    return runsWritten;
+  }
+
+  public IBDataStreamRecordFinalizer<GenericRecord> getDelegate() {
+    return delegate;
+  }
+
+  @Override
+  public Optional<IBDataTransformationError> writeRecord(GenericRecord recordToWrite) {
+    if (closed)
+      throw new IBDataException("Finalizer " + getId() + " is closed");
+    if (recordToWrite == null)
+      return of(new DefaultIBDataTransformationError(of(new IBDataException("Cannot sort a null record")), empty()));
+    if (schema == null) {
+      comparator = comparatorFor(recordToWrite.getSchema(), keys);
+      schema = recordToWrite.getSchema();
+      normalizer = new GenericDatumWriter<>(schema, data);
+      denormalizer = new GenericDatumReader<>(schema);
+    } else if (!schema.equals(recordToWrite.getSchema()))
+      return of(new DefaultIBDataTransformationError(
+          of(new IBDataException("Record schema differs from " + schema.getFullName())),
+          of(recordToWrite.toString())));
+    try {
+      encoded.reset();
+      encoder = EncoderFactory.get().binaryEncoder(encoded, encoder);
+      normalizer.write(recordToWrite, encoder);
+      encoder.flush();
+      decoder = DecoderFactory.get().binaryDecoder(encoded.buffer(), 0, encoded.size(), decoder);
+      buffer.add(denormalizer.read(null, decoder));
+    } catch (Throwable e) {
+      return of(new DefaultIBDataTransformationError(of(e), of(recordToWrite.toString())));
+    }
+    bufferedBytes += encoded.size();
+    if (bufferedBytes >= bufferBytes)
+      spill();
+    return empty();
+  }
+
+  private static final class ExposedByteArrayOutputStream extends ByteArrayOutputStream {
+    private byte[] buffer() {
+      return buf;
+    }
+  }
+
+  /**
+   * Compare records by the value of each key field in turn, in Avro's sort order for the field's schema
+   */
+  static Comparator<GenericRecord> comparatorFor(Schema schema, List<SortKey> keys) {
+    Comparator<GenericRecord> c = null;
+    for (SortKey k : keys) {
+      Field f = schema.getField(k.getField());
+      if (f == null)
+        throw new IBDataException("Sort field " + k.getField() + " is not in " + schema.getFullName());
+      int pos = f.pos();
+      Schema fs = f.schema();
+      Comparator<GenericRecord> kc = (a, b) -> GenericData.get().compare(a.get(pos), b.get(pos), fs);
+      if (k.isDescending())
+        kc = kc.reversed();
+      c = c == null ? kc : c.thenComparing(kc);
+    }
+    return c;
+  }
+
+  private void spill() {
+    buffer.sort(comparator);
+    runs.add(writeRun(buffer::forEach));
+    buffer.clear();
+    bufferedBytes = 0L;
+  }
+
+  private Path writeRun(Consumer<Consumer<GenericRecord>> records) {
+    Path p = runDirectory.resolve(String.format("run-%06d.avro", runsWritten++));
+    cet.withTranslation(() -> {
+      Files.createDirectories(runDirectory);
+      try (DataFileWriter<GenericRecord> w = new DataFileWriter<>(new GenericDatumWriter<GenericRecord>(schema))) {
+        w.setCodec(CodecFactory.snappyCodec());
+        w.create(schema, new BufferedOutputStream(Files.newOutputStream(p), RUN_BUFFER_SIZE));
+        records.accept(r -> cet.withTranslation(() -> w.append(r)));
+      }
+    });
+    return p;
+  }
+
+  private static final class Head {
+    private final int run;
+    private final DataFileStream<GenericRecord> stream;
+    private GenericRecord record;
+
+    private Head(int run, DataFileStream<GenericRecord> stream) {
+      this.run = run;
+      this.stream = stream;
+    }
+  }
+
+  /**
+   * Merge runs, in order, into a sink. Equal records keep the order of their runs
+   */
+  private void merge(List<Path> group, Consumer<GenericRecord> sink) {
+    PriorityQueue<Head> heads = new PriorityQueue<>(Math.max(1, group.size()),
+        Comparator.<Head, GenericRecord> comparing(h -> h.record, comparator).thenComparingInt(h -> h.run));
+    List<Head> opened = new ArrayList<>();
+    try {
+      for (int i = 0; i < group.size(); ++i) {
+        Path p = group.get(i);
+        InputStream in = cet.withReturningTranslation(
+            () -> new BufferedInputStream(Files.newInputStream(p), RUN_BUFFER_SIZE));
+        Head h = new Head(i, cet.withReturningTranslation(
+            () -> new DataFileStream<GenericRecord>(in, new GenericDatumReader<GenericRecord>(schema))));
+        opened.add(h);
+        if (h.stream.hasNext()) {
+          h.record = h.stream.next();
+          heads.add(h);
+        }
+      }
+      Head h;
+      while ((h = heads.poll()) != null) {
+        sink.accept(h.record);
+        if (h.stream.hasNext()) {
+          h.record = h.stream.next();
+          heads.add(h);
+        }
+      }
+    } finally {
+      opened.forEach(o -> cet.withTranslation(() -> o.stream.close()));
+    }
+  }
+
+  private void write(GenericRecord r) {
+    delegate.writeRecord(r).ifPresent(errors::add);
+  }
+
+  @Override
+  public void close() throws Exception {
+    if (closed)
+      return;
+    closed = true;
+    try {
+      if (runs.isEmpty()) {
+        buffer.sort(comparator);
+        buffer.forEach(this::write);
+        buffer.clear();
+      } else {
+        if (!buffer.isEmpty())
+          spill();
+        List<Path> pass = new ArrayList<>(runs);
+        while (pass.size() > MAX_MERGE_WIDTH) {
+          List<Path> next = new ArrayList<>();
+          for (int i = 0; i < pass.size(); i += MAX_MERGE_WIDTH) {
+            List<Path> group = pass.subList(i, Math.min(pass.size(), i + MAX_MERGE_WIDTH));
+            Path merged = writeRun(sink -> merge(group, sink));
+            for (Path p : group)
+              Files.deleteIfExists(p);
+            runs.add(merged);
+            next.add(merged);
+          }
+          pass = next;
+        }
+        merge(pass, this::write);
+      }
+    } finally {
+      try {
+        for (Path p : runs)
+          Files.deleteIfExists(p);
+        Files.deleteIfExists(runDirectory);
+      } finally {
+        delegate.close();
+      }
+    }
+  }
+
+  @Override
+  public int drainErrors(Collection<IBDataTransformationError> target) {
+    int n = errors.size();
+    target.addAll(errors);
+    errors.clear();
+    if (delegate instanceof IBDataDeferredErrorsRecordFinalizer)
+      n += ((IBDataDeferredErrorsRecordFinalizer<?>) delegate).drainErrors(target);
+    return n;
+  }
+
+  /**
+   * @return the sort order as a metadata element, with a "field" child for each key
+   */
+  public Xpp3Dom sortOrderMetadata() {
+    Xpp3Dom d = new Xpp3Dom(SORT_ORDER_METADATA);
+    d.setValue(keys.stream().map(SortKey::toString).collect(Collectors.joining(",")));
+    for (SortKey k : keys) {
+      Xpp3Dom f = new Xpp3Dom("field");
+      f.setAttribute("name", k.getField());
+      f.setAttribute("order", k.isDescending() ? "descending" : "ascending");
+      d.addChild(f);
+    }
+    return d;
+  }
+
+  @Override
+  public Supplier<IBDataStream> finalizeRecord(IBDataStreamIdentifier ds) {
+    if (ds instanceof DataStream && ((DataStream) ds).getMetadata() instanceof Xpp3Dom)
+      ((Xpp3Dom) ((DataStream) ds).getMetadata()).addChild(sortOrderMetadata());
+    return delegate.finalizeRecord(ds);
+  }
+
+  @Override
+  public String getId() {
+    return delegate.getId();
+  }
+
+  @Override
+  public Path getWorkingPath() {
+    return delegate.getWorkingPath();
+  }
+
+  @Override
+  public InputStream get() {
+    return delegate.get();
+  }
+
+  @Override
+  public OutputStream getWriterTarget() throws IOException {
+    return delegate.getWriterTarget();
+  }
+
+  @Override
+  public int getNumberOfRowsToSkip() {
+    return delegate.getNumberOfRowsToSkip();
+  }
+
+  @Override
+  public Optional<String> produces() {
+    return delegate.produces();
+  }
+
+  @Override
+  public Optional<List<Class<?>>> accepts() {
+    return delegate.accepts();
+  }
+}
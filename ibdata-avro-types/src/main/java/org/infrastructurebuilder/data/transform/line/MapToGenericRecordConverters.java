@@ -0,0 +1,205 @@
+/**
+ * Copyright © 2019 admin (admin@infrastructurebuilder.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.infrastructurebuilder.data.transform.line;
+
+import static java.lang.invoke.MethodType.methodType;
+import static java.util.Objects.requireNonNull;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.avro.LogicalType;
+import org.apache.avro.Schema;
+import org.apache.avro.Schema.Field;
+import org.apache.avro.Schema.Type;
+import org.apache.avro.SchemaNormalization;
+import org.apache.avro.generic.MapProxyGenericData.IBDataJRMPDateConversion;
+import org.apache.avro.generic.MapProxyGenericData.IBDataJRMPTimeConversion;
+import org.apache.avro.generic.MapProxyGenericData.IBDataJRMPTimestampConversion;
+import org.infrastructurebuilder.data.Formatters;
+import org.infrastructurebuilder.data.IBDataException;
+
+/**
+ * Per schema field converters for map-to-generic-avro, composed from method handles.
+ *
+ * For every date, time-millis and timestamp-millis field (directly or as the single non-null branch of a union) the
+ * matching {@link org.apache.avro.generic.MapProxyGenericData} pre-conversion is wired in, so string values become the
+ * Avro int or long when the record is built instead of being converted field by field through GenericData when the
+ * record is written. Values that are not strings pass through unchanged.
+ *
+ * The unbound handles depend only on the schema and are cached by its fingerprint. Binding them to the formatters of a
+ * transformer is cheap.
+ */
+public final class MapToGenericRecordConverters {
+  private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+  private static final MethodHandle IS_STRING;
+
+  static {
+    try {
+      IS_STRING = LOOKUP.findVirtual(Class.class, "isInstance", methodType(boolean.class, Object.class))
+          .bindTo(String.class);
+    } catch (ReflectiveOperationException e) {
+      throw new ExceptionInInitializerError(e);
+    }
+  }
+
+  private enum Kind {
+    DATE("date", IBDataJRMPDateConversion.class, "toInt", Integer.class),
+    TIME("time-millis", IBDataJRMPTimeConversion.class, "toInt", Integer.class),
+    TIMESTAMP("timestamp-millis", IBDataJRMPTimestampConversion.class, "toLong", Long.class);
+
+    private final String logicalTypeName;
+    private final Class<?> conversion;
+    private final String method;
+    private final Class<?> returnType;
+
+    Kind(String logicalTypeName, Class<?> conversion, String method, Class<?> returnType) {
+      this.logicalTypeName = logicalTypeName;
+      this.conversion = conversion;
+      this.method = method;
+      this.returnType = returnType;
+    }
+
+    Object conversionFor(Formatters f) {
+      switch (this) {
+      case DATE:
+        return new IBDataJRMPDateConversion(f.getDateFormatter());
+      case TIME:
+        return new IBDataJRMPTimeConversion(f.getTimeFormatter());
+      default:
+        return new IBDataJRMPTimestampConversion(f.getTimestampFormatter());
+      }
+    }
+
+    static Kind of(LogicalType t) {
+      if (t != null)
+        for (Kind k : values())
+          if (k.logicalTypeName.equals(t.getName()))
+            return k;
+      return null;
+    }
+  }
+
+  /**
+   * The converters of one schema, not yet bound to any formatters
+   */
+  private static final class Template {
+    final Schema schema;
+    final Kind[] kinds;
+    /** (conversion, Object)Object for each converted field, otherwise null */
+    final MethodHandle[] handles;
+
+    Template(Schema schema) {
+      this.schema = schema;
+      List<Field> fields = schema.getFields();
+      this.kinds = new Kind[fields.size()];
+      this.handles = new MethodHandle[fields.size()];
+      for (Field f : fields) {
+        int i = f.pos();
+        Schema s = f.schema();
+        if (s.getType() == Type.UNION) {
+          Schema nonNull = null;
+          int others = 0;
+          for (Schema b : s.getTypes())
+            if (b.getType() != Type.NULL) {
+              nonNull = b;
+              ++others;
+            }
+          if (others != 1)
+            continue;
+          s = nonNull;
+        }
+        kinds[i] = Kind.of(s.getLogicalType());
+        if (kinds[i] != null)
+          handles[i] = handleFor(kinds[i], s);
+      }
+    }
+
+    MethodHandle[] bind(Formatters f) {
+      MethodHandle[] bound = new MethodHandle[handles.length];
+      Object[] conversions = new Object[Kind.values().length];
+      for (int i = 0; i < handles.length; ++i) {
+        if (handles[i] == null)
+          continue;
+        int k = kinds[i].ordinal();
+        if (conversions[k] == null)
+          conversions[k] = kinds[i].conversionFor(f);
+        bound[i] = handles[i].bindTo(conversions[k]);
+      }
+      return bound;
+    }
+  }
+
+  private static final Map<Long, Template> TEMPLATES = new ConcurrentHashMap<>();
+
+  private MapToGenericRecordConverters() {
+  }
+
+  /**
+   * @param schema record schema
+   * @param f      formatters supplying the date, time and timestamp formats
+   * @return one (Object)Object handle per field position, null where the value is used as is
+   */
+  public static MethodHandle[] convertersFor(Schema schema, Formatters f) {
+    requireNonNull(f);
+    if (requireNonNull(schema).getType() != Type.RECORD)
+      throw new IBDataException("Schema " + schema.getFullName() + " is not a record");
+    Template t = TEMPLATES.computeIfAbsent(fingerprint(schema), k -> new Template(schema));
+    // A fingerprint collision is vanishingly unlikely, but never use another schema's template
+    return (t.schema.equals(schema) ? t : new Template(schema)).bind(f);
+  }
+
+  /**
+   * Fingerprint of the full schema text, so that logical types and defaults (absent from the parsing canonical form)
+   * are part of it
+   */
+  public static long fingerprint(Schema schema) {
+    return SchemaNormalization.fingerprint64(schema.toString().getBytes(StandardCharsets.UTF_8));
+  }
+
+  static int cachedSchemas() {
+    return TEMPLATES.size();
+  }
+
+  static Object convert(MethodHandle h, Object value) {
+    try {
+      return (Object) h.invokeExact(value);
+    } catch (RuntimeException | Error e) {
+      throw e;
+    } catch (Throwable e) {
+      throw new IBDataException(e);
+    }
+  }
+
+  private static MethodHandle handleFor(Kind k, Schema s) {
+    try {
+      // conversion.toX(String, Schema, LogicalType) with the schema and logical type fixed
+      MethodHandle call = LOOKUP.findVirtual(k.conversion, k.method,
+          methodType(k.returnType, String.class, Schema.class, LogicalType.class));
+      call = MethodHandles.insertArguments(call, 2, s, s.getLogicalType())
+          .asType(methodType(Object.class, k.conversion, Object.class));
+      MethodHandle pass = MethodHandles.dropArguments(MethodHandles.identity(Object.class), 0, k.conversion);
+      MethodHandle test = MethodHandles.dropArguments(IS_STRING, 0, k.conversion);
+      return MethodHandles.guardWithTest(test, call, pass).asType(methodType(Object.class, Object.class, Object.class));
+    } catch (ReflectiveOperationException e) {
+      throw new IBDataException(e);
+    }
+  }
+}
@@ -0,0 +1,345 @@
+/**
+ * Copyright © 2019 admin (admin@infrastructurebuilder.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.infrastructurebuilder.data.transform.line;
+
+import static java.util.Optional.ofNullable;
+import static org.infrastructurebuilder.data.IBDataConstants.IBDATA_WORKING_PATH_SUPPLIER;
+import static org.infrastructurebuilder.data.IBDataException.cet;
+import static org.infrastructurebuilder.data.transform.line.DefaultMapToGenericRecordIBDataLineTransformerSupplier.SCHEMA_PARAM;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import org.apache.avro.Schema;
+import org.apache.avro.Schema.Field;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.generic.IndexedRecord;
+import org.apache.avro.generic.MapProxyGenericData;
+import org.apache.parquet.avro.AvroParquetWriter;
+import org.apache.parquet.column.statistics.Statistics;
+import org.apache.parquet.hadoop.ParquetWriter;
+import org.apache.parquet.hadoop.metadata.BlockMetaData;
+import org.apache.parquet.hadoop.metadata.ColumnChunkMetaData;
+import org.apache.parquet.hadoop.metadata.CompressionCodecName;
+import org.apache.parquet.io.OutputFile;
+import org.apache.parquet.io.PositionOutputStream;
+import org.codehaus.plexus.util.xml.Xpp3Dom;
+import org.infrastructurebuilder.IBConstants;
+import org.infrastructurebuilder.data.Formatters;
+import org.infrastructurebuilder.data.IBDataAvroUtils;
+import org.infrastructurebuilder.data.IBDataDataStreamRecordFinalizerSupplier;
+import org.infrastructurebuilder.data.IBDataException;
+import org.infrastructurebuilder.data.IBDataStream;
+import org.infrastructurebuilder.data.IBDataStreamIdentifier;
+import org.infrastructurebuilder.data.IBDataStreamRecordFinalizer;
+import org.infrastructurebuilder.data.IBDataStructuredDataMetadataType;
+import org.infrastructurebuilder.data.model.DataStream;
+import org.infrastructurebuilder.data.model.DataStreamStructuredMetadata;
+import org.infrastructurebuilder.data.model.StructuredFieldMetadata;
+import org.infrastructurebuilder.util.LoggerSupplier;
+import org.infrastructurebuilder.util.config.ConfigMap;
+import org.infrastructurebuilder.util.config.ConfigMapSupplier;
+import org.infrastructurebuilder.util.config.PathSupplier;
+import org.slf4j.Logger;
+
+/**
+ * Writes the same IndexedRecord input as {@link GenericAvroIBDataRecordFinalizerSupplier}, but as columnar Parquet, so
+ * that readers of a few columns need not scan whole rows.
+ *
+ * Structured metadata is taken from the column chunk statistics in the footer once the file is closed, rather than
+ * computed per record.
+ */
+@Named(ParquetIBDataRecordFinalizerSupplier.NAME)
+public class ParquetIBDataRecordFinalizerSupplier extends AbstractIBDataStreamRecordFinalizerSupplier<GenericRecord> {
+
+  public static final String NAME = "parquet-avro";
+  public static final String PARQUET_MIME_TYPE = "application/x-parquet";
+  /** Parquet codec: uncompressed, snappy, gzip, lzo, brotli, lz4 or zstd. Defaults to snappy */
+  public static final String PARQUET_CODEC_PARAM = "parquetCodec";
+  /** Target row group size in bytes */
+  public static final String ROW_GROUP_SIZE_PARAM = "rowGroupSize";
+  /** Target page size in bytes */
+  public static final String PAGE_SIZE_PARAM = "pageSize";
+  private static final List<Class<?>> ACCEPTABLE_TYPES = Arrays.asList(IndexedRecord.class);
+
+  @Inject
+  public ParquetIBDataRecordFinalizerSupplier(@Named(IBDATA_WORKING_PATH_SUPPLIER) PathSupplier wps,
+      LoggerSupplier l) {
+    this(wps, l, null);
+  }
+
+  private ParquetIBDataRecordFinalizerSupplier(PathSupplier ps, LoggerSupplier l, ConfigMapSupplier cms) {
+    super(ps, l, cms);
+  }
+
+  @Override
+  public IBDataDataStreamRecordFinalizerSupplier<GenericRecord> configure(ConfigMapSupplier cms) {
+    return new ParquetIBDataRecordFinalizerSupplier(getWps(), () -> getLog(), cms);
+  }
+
+  @Override
+  public IBDataStreamRecordFinalizer<GenericRecord> get() {
+    return new ParquetIBDataStreamRecordFinalizer(NAME, getWps().get().resolve(UUID.randomUUID().toString()),
+        getLog(), getCms().get());
+  }
+
+  public static CompressionCodecName codecFromConfig(ConfigMap map) {
+    String codec = ofNullable(map.getString(PARQUET_CODEC_PARAM)).map(String::trim).map(String::toUpperCase)
+        .orElse(CompressionCodecName.SNAPPY.name());
+    try {
+      return CompressionCodecName.valueOf(codec);
+    } catch (IllegalArgumentException e) {
+      throw new IBDataException("Unknown Parquet codec '" + codec + "'", e);
+    }
+  }
+
+  static Schema schemaFromConfig(ConfigMap map) {
+    return IBDataAvroUtils.avroSchemaFromString.apply(ofNullable(map.getString(SCHEMA_PARAM))
+        .orElseThrow(() -> new IBDataException(IBDataAvroUtils.NO_SCHEMA_CONFIG_FOR_MAPPER + " parquet")));
+  }
+
+  static ParquetWriter<GenericRecord> writerFromConfig(OutputStream out, ConfigMap map) {
+    Schema s = schemaFromConfig(map);
+    return cet.withReturningTranslation(() -> AvroParquetWriter.<GenericRecord> builder(new StreamOutputFile(out))
+        .withSchema(s)
+        .withDataModel(new MapProxyGenericData(new Formatters(map)))
+        .withCompressionCodec(codecFromConfig(map))
+        .withRowGroupSize(Integer
+            .parseInt(map.getOrDefault(ROW_GROUP_SIZE_PARAM, Integer.toString(ParquetWriter.DEFAULT_BLOCK_SIZE))))
+        .withPageSize(
+            Integer.parseInt(map.getOrDefault(PAGE_SIZE_PARAM, Integer.toString(ParquetWriter.DEFAULT_PAGE_SIZE))))
+        .build());
+  }
+
+  /**
+   * Compare two footer statistics of a numeric column. Integral columns compare as long, since a double cannot hold
+   * every long above 2^53.
+   */
+  static int compareStatistic(IBDataStructuredDataMetadataType type, Number a, Number b) {
+    switch (type) {
+    case INT:
+    case LONG:
+      return Long.compare(a.longValue(), b.longValue());
+    default:
+      return Double.compare(a.doubleValue(), b.doubleValue());
+    }
+  }
+
+  /**
+   * A Parquet OutputFile over a stream that has already been opened, which lets the writer target the finalizer's
+   * digesting stream instead of a Hadoop path.
+   */
+  static final class StreamOutputFile implements OutputFile {
+    private final OutputStream out;
+
+    StreamOutputFile(OutputStream out) {
+      this.out = out;
+    }
+
+    @Override
+    public PositionOutputStream create(long blockSizeHint) throws IOException {
+      return new PositionOutputStream() {
+        private long pos = 0L;
+
+        @Override
+        public long getPos() throws IOException {
+          return pos;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+          out.write(b);
+          ++pos;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+          out.write(b, off, len);
+          pos += len;
+        }
+
+        @Override
+        public void flush() throws IOException {
+          out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+          out.close();
+        }
+      };
+    }
+
+    @Override
+    public PositionOutputStream createOrOverwrite(long blockSizeHint) throws IOException {
+      return create(blockSizeHint);
+    }
+
+    @Override
+    public boolean supportsBlockSize() {
+      return false;
+    }
+
+    @Override
+    public long defaultBlockSize() {
+      return 0L;
+    }
+  }
+
+  public final class ParquetIBDataStreamRecordFinalizer
+      extends AbstractIBDataStreamRecordFinalizer<GenericRecord, ParquetWriter<GenericRecord>> {
+
+    private final int numberOfRowsToSkip;
+    private final Schema schema;
+    private long[] valueCounts = null;
+    private long[] nullCounts = null;
+
+    public ParquetIBDataStreamRecordFinalizer(String id, Path workingPath, Logger l, ConfigMap map) {
+      super(id, workingPath, l, map, out -> writerFromConfig(out, map));
+      this.numberOfRowsToSkip = Integer.parseInt(map.getOrDefault(NUMBER_OF_ROWS_TO_SKIP_PARAM, "0"));
+      this.schema = schemaFromConfig(map);
+    }
+
+    @Override
+    public int getNumberOfRowsToSkip() {
+      return this.numberOfRowsToSkip;
+    }
+
+    @Override
+    protected void writeThrows(GenericRecord recordToWrite) throws Throwable {
+      getWriter().write(recordToWrite);
+    }
+
+    @Override
+    public Optional<String> produces() {
+      return Optional.of(PARQUET_MIME_TYPE);
+    }
+
+    @Override
+    public Optional<List<Class<?>>> accepts() {
+      return Optional.of(ACCEPTABLE_TYPES);
+    }
+
+    @Override
+    public void close() throws Exception {
+      super.close();
+      if (this.smd == null && getRecordCount() > 0L)
+        this.smd = structuredMetadataFromFooter(getWriter().getFooter().getBlocks());
+    }
+
+    @Override
+    public Supplier<IBDataStream> finalizeRecord(IBDataStreamIdentifier ds) {
+      if (this.valueCounts != null && ds instanceof DataStream && ((DataStream) ds).getMetadata() instanceof Xpp3Dom) {
+        Xpp3Dom counts = new Xpp3Dom(GenericAvroIBDataRecordFinalizerSupplier.FIELD_COUNTS_METADATA);
+        for (int i = 0; i < this.valueCounts.length; ++i) {
+          Xpp3Dom f = new Xpp3Dom("field");
+          f.setAttribute("index", Integer.toString(i));
+          f.setAttribute("count", Long.toString(this.valueCounts[i]));
+          if (this.nullCounts[i] >= 0L) // Not known when some row group did not record it
+            f.setAttribute("nulls", Long.toString(this.nullCounts[i]));
+          counts.addChild(f);
+        }
+        ((Xpp3Dom) ((DataStream) ds).getMetadata()).addChild(counts);
+      }
+      return super.finalizeRecord(ds);
+    }
+
+    /**
+     * Combine the statistics of every row group. Only top-level primitive columns map to fields. Numeric fields get a
+     * value range; string and bytes statistics are lexical rather than length ranges, so they are not reported.
+     */
+    private DataStreamStructuredMetadata structuredMetadataFromFooter(List<BlockMetaData> blocks) {
+      List<Field> fields = this.schema.getFields();
+      Map<String, Integer> byName = new HashMap<>();
+      DataStreamStructuredMetadata m = new DataStreamStructuredMetadata();
+      IBDataStructuredDataMetadataType[] types = new IBDataStructuredDataMetadataType[fields.size()];
+      for (int i = 0; i < fields.size(); ++i) {
+        Field f = fields.get(i);
+        byName.put(f.name(), i);
+        StructuredFieldMetadata fm = new StructuredFieldMetadata();
+        fm.setIndex(i);
+        types[i] = IBDataAvroUtils.metadataTypeFromField(f);
+        if (types[i] != null)
+          fm.setMetadataType(types[i].name());
+        fm.setNullable(Boolean.toString(f.schema().isNullable()));
+        Schema fs = f.schema().isUnion() ? f.schema().getTypes().get(f.schema().getTypes().size() - 1) : f.schema();
+        if (fs.getType() == Schema.Type.ENUM) {
+          fm.setEnumerations(fs.getEnumSymbols());
+          types[i] = null;
+        }
+        m.addField(fm);
+      }
+      this.valueCounts = new long[fields.size()];
+      this.nullCounts = new long[fields.size()];
+      Number[] mins = new Number[fields.size()];
+      Number[] maxs = new Number[fields.size()];
+      boolean[] nullsUnknown = new boolean[fields.size()];
+      for (BlockMetaData b : blocks)
+        for (ColumnChunkMetaData c : b.getColumns()) {
+          String[] path = c.getPath().toArray();
+          Integer i = path.length == 1 ? byName.get(path[0]) : null;
+          if (i == null)
+            continue;
+          Statistics<?> st = c.getStatistics();
+          this.valueCounts[i] += c.getValueCount();
+          // A writer that did not record null counts reports -1
+          if (st.isNumNullsSet())
+            this.nullCounts[i] += st.getNumNulls();
+          else
+            nullsUnknown[i] = true;
+          if (types[i] == null || !st.hasNonNullValue())
+            continue;
+          switch (types[i]) {
+          case INT:
+          case LONG:
+          case FLOAT:
+          case DOUBLE:
+            Number min = (Number) st.genericGetMin();
+            Number max = (Number) st.genericGetMax();
+            if (mins[i] == null || compareStatistic(types[i], min, mins[i]) < 0)
+              mins[i] = min;
+            if (maxs[i] == null || compareStatistic(types[i], max, maxs[i]) > 0)
+              maxs[i] = max;
+            break;
+          default:
+            break;
+          }
+        }
+      for (int i = 0; i < fields.size(); ++i)
+        if (nullsUnknown[i])
+          this.nullCounts[i] = -1L;
+      for (int i = 0; i < fields.size(); ++i)
+        if (mins[i] != null) {
+          StructuredFieldMetadata fm = m.getFields().get(i);
+          fm.setMin(mins[i].toString());
+          fm.setMax(maxs[i].toString());
+        }
+      return m;
+    }
+  }
+
+}
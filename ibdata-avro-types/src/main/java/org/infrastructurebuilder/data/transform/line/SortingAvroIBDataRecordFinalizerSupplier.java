@@ -0,0 +1,86 @@
+/**
+ * Copyright © 2019 admin (admin@infrastructurebuilder.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.infrastructurebuilder.data.transform.line;
+
+import static org.infrastructurebuilder.data.IBDataConstants.IBDATA_WORKING_PATH_SUPPLIER;
+
+import java.util.List;
+import java.util.UUID;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.generic.MapProxyGenericData;
+import org.infrastructurebuilder.data.Formatters;
+import org.infrastructurebuilder.data.IBDataDataStreamRecordFinalizerSupplier;
+import org.infrastructurebuilder.data.IBDataException;
+import org.infrastructurebuilder.data.IBDataStreamRecordFinalizer;
+import org.infrastructurebuilder.data.transform.line.IBDataSortingRecordFinalizer.SortKey;
+import org.infrastructurebuilder.util.LoggerSupplier;
+import org.infrastructurebuilder.util.config.ConfigMap;
+import org.infrastructurebuilder.util.config.ConfigMapSupplier;
+import org.infrastructurebuilder.util.config.PathSupplier;
+
+/**
+ * Writes the same Avro output as {@link GenericAvroIBDataRecordFinalizerSupplier}, with records ordered by
+ * {@link #SORT_FIELDS_PARAM}. The order is recorded in the stream metadata.
+ */
+@Named(SortingAvroIBDataRecordFinalizerSupplier.NAME)
+public class SortingAvroIBDataRecordFinalizerSupplier extends AbstractIBDataStreamRecordFinalizerSupplier<GenericRecord> {
+
+  public static final String NAME = "avro-generic-sorted";
+  /** Comma separated fields to sort by, most significant first, each optionally followed by ":asc" or ":desc" */
+  public static final String SORT_FIELDS_PARAM = "sortFields";
+  /**
+   * Records are sorted in memory until their encoded size reaches this many bytes, then spilled as a run to the working
+   * path. Records take several times their encoded size in memory
+   */
+  public static final String SORT_BUFFER_BYTES_PARAM = "sortBufferBytes";
+  public static final long DEFAULT_SORT_BUFFER_BYTES = 32L * 1024 * 1024;
+
+  @Inject
+  public SortingAvroIBDataRecordFinalizerSupplier(@Named(IBDATA_WORKING_PATH_SUPPLIER) PathSupplier wps,
+      LoggerSupplier l) {
+    this(wps, l, null);
+  }
+
+  private SortingAvroIBDataRecordFinalizerSupplier(PathSupplier ps, LoggerSupplier l, ConfigMapSupplier cms) {
+    super(ps, l, cms);
+  }
+
+  @Override
+  public IBDataDataStreamRecordFinalizerSupplier<GenericRecord> configure(ConfigMapSupplier cms) {
+    return new SortingAvroIBDataRecordFinalizerSupplier(getWps(), () -> getLog(), cms);
+  }
+
+  @Override
+  public IBDataStreamRecordFinalizer<GenericRecord> get() {
+    ConfigMap map = getCms().get();
+    // Validate the sort configuration before the output file is created
+    List<SortKey> keys = SortKey.parse(map.getString(SORT_FIELDS_PARAM));
+    long bufferBytes = Long
+        .parseLong(map.getOrDefault(SORT_BUFFER_BYTES_PARAM, Long.toString(DEFAULT_SORT_BUFFER_BYTES)));
+    if (bufferBytes < 1)
+      throw new IBDataException(SORT_BUFFER_BYTES_PARAM + " must be positive");
+    IBDataStreamRecordFinalizer<GenericRecord> output = new GenericAvroIBDataRecordFinalizerSupplier(getWps(),
+        () -> getLog()).configure(getCms()).get();
+    return new IBDataSortingRecordFinalizer(output, keys, bufferBytes,
+        output.getWorkingPath().resolveSibling("sort-" + UUID.randomUUID().toString()),
+        new MapProxyGenericData(new Formatters(map)));
+  }
+
+}
@@ -16,16 +16,26 @@
 package org.infrastructurebuilder.data;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import org.apache.avro.Schema;
 import org.apache.avro.generic.GenericRecord;
 import org.codehaus.plexus.util.xml.Xpp3Dom;
 import org.infrastructurebuilder.IBConstants;
@@ -91,4 +101,83 @@ public class DefaultAvroGenericRecordStreamSupplierTest {
     DefaultAvroGenericRecordStreamSupplier.genericStreamFromInputStream.apply(ins);
   }
 
+  @Test
+  public void testLazyAndClosesInput() throws IOException {
+    boolean[] closed = { false };
+    InputStream in = new FilterInputStream(Files.newInputStream(wps.getTestClasses().resolve("ba.avro"))) {
+      @Override
+      public void close() throws IOException {
+        closed[0] = true;
+        super.close();
+      }
+    };
+    try (Stream<GenericRecord> s = DefaultAvroGenericRecordStreamSupplier.genericStreamFromInputStream(in, false)
+        .get()) {
+      assertEquals(10L, s.limit(10).count());
+      assertFalse(closed[0]);
+    }
+    assertTrue(closed[0]);
+  }
+
+  @Test
+  public void testClosesInputWhenConsumed() throws IOException {
+    boolean[] closed = { false };
+    InputStream in = new FilterInputStream(Files.newInputStream(wps.getTestClasses().resolve("ba.avro"))) {
+      @Override
+      public void close() throws IOException {
+        closed[0] = true;
+        super.close();
+      }
+    };
+    assertEquals(5000L, DefaultAvroGenericRecordStreamSupplier.genericStreamFromInputStream(in, false).get().count());
+    assertTrue(closed[0]);
+  }
+
+  @Test
+  public void testReuseDatums() {
+    DefaultAvroGenericRecordStreamSupplier r = new DefaultAvroGenericRecordStreamSupplier(true);
+    assertTrue(r.isReuseDatums());
+    assertFalse(d.isReuseDatums());
+    try (Stream<GenericRecord> s = r.from(identifier).get()) {
+      Iterator<GenericRecord> i = s.iterator();
+      GenericRecord first = i.next();
+      assertSame(first, i.next());
+    }
+    try (Stream<GenericRecord> s = d.from(identifier).get()) {
+      Iterator<GenericRecord> i = s.iterator();
+      GenericRecord first = i.next();
+      assertNotSame(first, i.next());
+    }
+    assertEquals(5000L, r.from(identifier).get().count());
+  }
+
+  @Test
+  public void testNotAvro() {
+    assertFalse(DefaultAvroGenericRecordStreamSupplier
+        .genericStreamFromInputStream(new ByteArrayInputStream("not avro".getBytes()), false).isPresent());
+  }
+
+  @Test
+  public void testProjection() {
+    List<GenericRecord> l;
+    try (Stream<GenericRecord> s = d.from(identifier, Arrays.asList("last_name")).get()) {
+      l = s.collect(Collectors.toList());
+    }
+    assertEquals(5000, l.size());
+    assertEquals(1, l.get(0).getSchema().getFields().size());
+    assertEquals("last_name", l.get(0).getSchema().getFields().get(0).name());
+    List<GenericRecord> full = d.from(identifier).get().collect(Collectors.toList());
+    assertEquals(full.get(42).get("last_name").toString(), l.get(42).get("last_name").toString());
+  }
+
+  @Test
+  public void testReaderSchema() {
+    Schema reader = IBDataAvroUtils.projectSchema(d.from(identifier).get().findFirst().get().getSchema(),
+        Arrays.asList("age"));
+    DefaultAvroGenericRecordStreamSupplier r = new DefaultAvroGenericRecordStreamSupplier(false, reader);
+    assertEquals(reader, r.getReaderSchema().get());
+    assertFalse(d.getReaderSchema().isPresent());
+    assertEquals(reader, r.from(identifier).get().findFirst().get().getSchema());
+  }
+
 }
@@ -16,9 +16,11 @@
 package org.infrastructurebuilder.data;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import java.io.InputStream;
 import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
 import java.util.Optional;
@@ -85,4 +87,38 @@ public class DefaultAvroIBGenericRecordDataStreamSupplierTest {
     assertEquals(5000, l2.size());
   }
 
+  @Test
+  public void testGetParallel() {
+    DefaultAvroIBGenericRecordDataStreamSupplier pq = new DefaultAvroIBGenericRecordDataStreamSupplier(targetPath,
+        stream, true, schema);
+    List<GenericRecord> serial = q.get().collect(Collectors.toList());
+    try (Stream<GenericRecord> p = pq.get()) {
+      assertTrue(p.isParallel());
+      assertEquals(serial, p.collect(Collectors.toList()));
+    }
+    // Each get() reads the file again
+    assertEquals(5000, q.get().count());
+  }
+
+  @Test
+  public void testProjection() {
+    assertEquals(schema, q.getSchema());
+    DefaultAvroIBGenericRecordDataStreamSupplier p = new DefaultAvroIBGenericRecordDataStreamSupplier(targetPath,
+        stream, false, null, Arrays.asList("age", "id"));
+    assertEquals(2, p.getSchema().getFields().size());
+    List<GenericRecord> full = q.get().collect(Collectors.toList());
+    List<GenericRecord> projected = p.get().collect(Collectors.toList());
+    assertEquals(full.size(), projected.size());
+    for (int i = 0; i < full.size(); ++i) {
+      assertEquals(p.getSchema(), projected.get(i).getSchema());
+      assertEquals(full.get(i).get("age"), projected.get(i).get("age"));
+      assertEquals(full.get(i).get("id").toString(), projected.get(i).get("id").toString());
+    }
+  }
+
+  @Test(expected = IBDataException.class)
+  public void testProjectionUnknownField() {
+    new DefaultAvroIBGenericRecordDataStreamSupplier(targetPath, stream, false, schema, Arrays.asList("nope"));
+  }
+
 }
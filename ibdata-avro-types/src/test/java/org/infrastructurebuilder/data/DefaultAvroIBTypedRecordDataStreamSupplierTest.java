@@ -16,9 +16,11 @@
 package org.infrastructurebuilder.data;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 
 import java.io.InputStream;
 import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
 import java.util.Optional;
@@ -85,4 +87,26 @@ public class DefaultAvroIBTypedRecordDataStreamSupplierTest {
     assertEquals(5000, l2.size());
   }
 
+  @Test
+  public void testProjection() {
+    DefaultAvroIBTypedRecordDataStreamSupplier<BA> p = new DefaultAvroIBTypedRecordDataStreamSupplier<>(targetPath,
+        stream, new BA().getSpecificData(), true, BA.class, Arrays.asList("date_of_birth", "first_name"));
+    Schema s = p.getSchema();
+    assertEquals(Arrays.asList("first_name", "date_of_birth"),
+        s.getFields().stream().map(Schema.Field::name).collect(Collectors.toList()));
+    assertEquals(BA.SCHEMA$, q.getSchema());
+    List<BA> full = q.get().collect(Collectors.toList());
+    List<BA> projected = p.get().collect(Collectors.toList());
+    assertEquals(full.size(), projected.size());
+    int first = BA.SCHEMA$.getField("first_name").pos();
+    int dob = BA.SCHEMA$.getField("date_of_birth").pos();
+    int last = BA.SCHEMA$.getField("last_name").pos();
+    for (int i = 0; i < full.size(); ++i) {
+      assertEquals(full.get(i).get(first).toString(), projected.get(i).get(first).toString());
+      // The class's date conversion is applied at the class position
+      assertEquals(full.get(i).get(dob), projected.get(i).get(dob));
+      assertNull(projected.get(i).get(last));
+    }
+  }
+
 }
@@ -0,0 +1,145 @@
+/**
+ * Copyright © 2019 admin (admin@infrastructurebuilder.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.infrastructurebuilder.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+import org.apache.avro.file.DataFileStream;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.DatumReader;
+import org.infrastructurebuilder.util.config.TestingPathSupplier;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+
+public class IBDataAvroBlockSpliteratorTest {
+  private final static TestingPathSupplier wps = new TestingPathSupplier();
+
+  @AfterClass
+  public static void tearDownAfterClass() throws Exception {
+    wps.finalize();
+  }
+
+  private Path file;
+  private Supplier<DatumReader<GenericRecord>> readers;
+  private List<GenericRecord> expected;
+
+  @Before
+  public void setUp() throws Exception {
+    file = wps.getTestClasses().resolve("ba.avro");
+    readers = () -> new GenericDatumReader<GenericRecord>();
+    expected = new ArrayList<>();
+    try (InputStream in = Files.newInputStream(file);
+        DataFileStream<GenericRecord> s = new DataFileStream<>(in, new GenericDatumReader<GenericRecord>())) {
+      s.forEach(expected::add);
+    }
+  }
+
+  private static void leaves(Spliterator<GenericRecord> s, List<Spliterator<GenericRecord>> into) {
+    Spliterator<GenericRecord> prefix = s.trySplit();
+    if (prefix == null) {
+      into.add(s);
+      return;
+    }
+    leaves(prefix, into);
+    leaves(s, into);
+  }
+
+  @Test
+  public void testSerial() {
+    IBDataAvroBlockSpliterator<GenericRecord> s = new IBDataAvroBlockSpliterator<>(file, readers);
+    // Smaller than the minimum split size
+    assertNull(s.trySplit());
+    assertEquals(expected, StreamSupport.stream(s, false).collect(Collectors.toList()));
+    assertEquals(0L, s.estimateSize());
+    assertFalse(s.tryAdvance(r -> {
+    }));
+  }
+
+  @Test
+  public void testSplitsCoverEveryBlockOnce() throws IOException {
+    IBDataAvroBlockSpliterator<GenericRecord> s = new IBDataAvroBlockSpliterator<>(file, readers, 1024L);
+    assertEquals(Files.size(file), s.estimateSize());
+    assertTrue(s.hasCharacteristics(Spliterator.ORDERED));
+    List<Spliterator<GenericRecord>> l = new ArrayList<>();
+    leaves(s, l);
+    assertTrue(l.size() > 8);
+    List<GenericRecord> actual = new ArrayList<>();
+    int nonEmpty = 0;
+    for (Spliterator<GenericRecord> leaf : l) {
+      int before = actual.size();
+      leaf.forEachRemaining(actual::add);
+      if (actual.size() > before)
+        ++nonEmpty;
+    }
+    // ba.avro holds several blocks, each read by exactly one split
+    assertTrue(nonEmpty > 1);
+    assertEquals(expected, actual);
+  }
+
+  @Test
+  public void testParallelStream() {
+    assertEquals(expected, StreamSupport
+        .stream(new IBDataAvroBlockSpliterator<>(file, readers, 1024L), true).collect(Collectors.toList()));
+  }
+
+  @Test
+  public void testNoSplitOnceStarted() {
+    try (IBDataAvroBlockSpliterator<GenericRecord> s = new IBDataAvroBlockSpliterator<>(file, readers, 1024L)) {
+      assertTrue(s.tryAdvance(r -> {
+      }));
+      assertNull(s.trySplit());
+    }
+  }
+
+  @Test
+  public void testCloseStopsEverySplit() {
+    IBDataAvroBlockSpliterator<GenericRecord> s = new IBDataAvroBlockSpliterator<>(file, readers, 1024L);
+    Spliterator<GenericRecord> prefix = s.trySplit();
+    assertTrue(prefix.tryAdvance(r -> {
+    }));
+    s.close();
+    assertFalse(s.tryAdvance(r -> {
+    }));
+  }
+
+  @Test
+  public void testOver() {
+    Supplier<Spliterator<GenericRecord>> o = IBDataAvroBlockSpliterator.over(file, readers);
+    assertEquals(expected.size(), StreamSupport.stream(o.get(), false).count());
+    assertEquals(expected.size(), StreamSupport.stream(o.get(), false).count());
+  }
+
+  @Test(expected = IBDataException.class)
+  public void testBadMinSplit() {
+    new IBDataAvroBlockSpliterator<>(file, readers, 0L);
+  }
+}
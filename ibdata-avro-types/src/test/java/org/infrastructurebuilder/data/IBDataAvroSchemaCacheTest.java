@@ -0,0 +1,138 @@
+/**
+ * Copyright © 2019 admin (admin@infrastructurebuilder.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.infrastructurebuilder.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.apache.avro.Schema;
+import org.infrastructurebuilder.util.config.TestingPathSupplier;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+
+public class IBDataAvroSchemaCacheTest {
+  private final static TestingPathSupplier wps = new TestingPathSupplier();
+
+  private static String schemaText(String name) {
+    return "{\"type\":\"record\",\"name\":\"" + name
+        + "\",\"namespace\":\"org.test\",\"fields\":[{\"name\":\"a\",\"type\":\"string\"}]}";
+  }
+
+  private static URL write(Path p, String content) throws Exception {
+    Files.write(p, content.getBytes(StandardCharsets.UTF_8));
+    return p.toUri().toURL();
+  }
+
+  private IBDataAvroSchemaCache cache;
+  private Path dir;
+
+  @AfterClass
+  public static void afterClass() {
+    wps.finalize();
+  }
+
+  @Before
+  public void setUp() throws Exception {
+    cache = new IBDataAvroSchemaCache(2);
+    dir = wps.get();
+    Files.createDirectories(dir);
+  }
+
+  @Test
+  public void testHit() throws Exception {
+    URL u = write(dir.resolve("a.avsc"), schemaText("A"));
+    Schema s1 = cache.get(u);
+    Schema s2 = cache.get(u);
+    assertSame(s1, s2);
+    assertEquals("org.test.A", s1.getFullName());
+    assertEquals(1L, cache.getHits());
+    assertEquals(1L, cache.getMisses());
+  }
+
+  @Test
+  public void testChangedContentIsReparsed() throws Exception {
+    Path p = dir.resolve("a.avsc");
+    Schema s1 = cache.get(write(p, schemaText("A")));
+    Schema s2 = cache.get(write(p, schemaText("B")));
+    assertNotSame(s1, s2);
+    assertEquals("org.test.B", s2.getFullName());
+    assertEquals(1, cache.size());
+    assertEquals(2L, cache.getMisses());
+  }
+
+  @Test
+  public void testBounded() throws Exception {
+    URL a = write(dir.resolve("a.avsc"), schemaText("A"));
+    URL b = write(dir.resolve("b.avsc"), schemaText("B"));
+    URL c = write(dir.resolve("c.avsc"), schemaText("C"));
+    Schema sa = cache.get(a);
+    cache.get(b);
+    cache.get(a); // b is now least recently used
+    cache.get(c);
+    assertEquals(2, cache.size());
+    assertSame(sa, cache.get(a));
+    cache.get(b);
+    assertEquals(4L, cache.getMisses());
+    assertEquals(2, cache.getMaxEntries());
+  }
+
+  @Test
+  public void testInvalidateAndClear() throws Exception {
+    URL a = write(dir.resolve("a.avsc"), schemaText("A"));
+    Schema s1 = cache.get(a);
+    cache.invalidate(a);
+    assertEquals(0, cache.size());
+    assertNotSame(s1, cache.get(a));
+    cache.clear();
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void testSharedThroughUtils() throws Exception {
+    Path p = dir.resolve("shared.avsc");
+    write(p, schemaText("Shared"));
+    Schema s1 = IBDataAvroUtils.avroSchemaFromString.apply(p.toAbsolutePath().toString());
+    Schema s2 = IBDataAvroUtils.avroSchemaFromString.apply(p.toUri().toURL().toExternalForm());
+    assertSame(s1, s2);
+  }
+
+  @Test(expected = IBDataException.class)
+  public void testUnparseable() throws Exception {
+    cache.get(write(dir.resolve("bad.avsc"), "{ not a schema"));
+  }
+
+  @Test(expected = IBDataException.class)
+  public void testMissing() throws Exception {
+    cache.get(dir.resolve("missing.avsc").toUri().toURL());
+  }
+
+  @Test(expected = IBDataException.class)
+  public void testMissingResource() {
+    IBDataAvroUtils.avroSchemaFromString.apply("/no/such/schema.avsc");
+  }
+
+  @Test(expected = IBDataException.class)
+  public void testBadSize() {
+    new IBDataAvroSchemaCache(0);
+  }
+}
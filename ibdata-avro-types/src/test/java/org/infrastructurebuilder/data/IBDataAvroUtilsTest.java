@@ -16,10 +16,17 @@
 package org.infrastructurebuilder.data;
 
 import static org.infrastructurebuilder.data.IBDataAvroUtils.avroSchemaFromString;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Date;
 import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
@@ -28,11 +35,16 @@ import java.util.stream.Collectors;
 
 import org.apache.avro.Schema;
 import org.apache.avro.Schema.Field;
+import org.apache.avro.file.DataFileConstants;
+import org.apache.avro.file.DataFileStream;
 import org.apache.avro.file.DataFileWriter;
 import org.apache.avro.generic.GenericData;
 import org.apache.avro.generic.GenericData.Record;
+import org.apache.avro.generic.GenericDatumReader;
 import org.apache.avro.generic.GenericRecord;
+import org.codehaus.plexus.util.xml.Xpp3Dom;
 import org.infrastructurebuilder.IBException;
+import org.infrastructurebuilder.data.model.DataStream;
 import org.infrastructurebuilder.data.transform.BA;
 import org.infrastructurebuilder.util.config.ConfigMap;
 import org.infrastructurebuilder.util.config.TestingPathSupplier;
@@ -78,6 +90,59 @@ public class IBDataAvroUtilsTest {
 
   }
 
+  private ConfigMap codecConfig(String codec, String level) {
+    ConfigMap m = new ConfigMap();
+    m.put(IBDataAvroUtils.CODEC_PARAM, codec);
+    if (level != null)
+      m.put(IBDataAvroUtils.CODEC_LEVEL_PARAM, level);
+    return m;
+  }
+
+  @Test
+  public void testCodecFromConfig() {
+    assertEquals("null", IBDataAvroUtils.codecFromConfig(new ConfigMap()).toString());
+    assertEquals("deflate-6", IBDataAvroUtils.codecFromConfig(codecConfig("deflate", null)).toString());
+    assertEquals("deflate-9", IBDataAvroUtils.codecFromConfig(codecConfig("Deflate", "9")).toString());
+    assertEquals("snappy", IBDataAvroUtils.codecFromConfig(codecConfig("snappy", null)).toString());
+    assertEquals("xz-1", IBDataAvroUtils.codecFromConfig(codecConfig("xz", "1")).toString());
+    assertEquals("bzip2", IBDataAvroUtils.codecFromConfig(codecConfig("bzip2", null)).toString());
+    assertTrue(IBDataAvroUtils.codecFromConfig(codecConfig("zstd", null)).toString().startsWith("zstandard"));
+  }
+
+  @Test(expected = IBDataException.class)
+  public void testUnknownCodec() {
+    IBDataAvroUtils.codecFromConfig(codecConfig("lz4", null));
+  }
+
+  @Test
+  public void testWriterConfig() throws IOException {
+    Path targetPath = wps.get().resolve(UUID.randomUUID().toString() + ".avro");
+    ConfigMap m = codecConfig("deflate", "1");
+    m.put(IBDataAvroUtils.SYNC_INTERVAL_PARAM, "65536");
+    m.put(IBDataAvroUtils.FLUSH_ON_EVERY_BLOCK_PARAM, "false");
+    try (DataFileWriter<GenericRecord> d = IBDataAvroUtils.fromSchemaAndOutputStreamAndTranslator(
+        Files.newOutputStream(targetPath), schema, Optional.empty(), m)) {
+      assertNotNull(d);
+    }
+    try (DataFileStream<GenericRecord> in = new DataFileStream<>(Files.newInputStream(targetPath),
+        new GenericDatumReader<GenericRecord>())) {
+      assertEquals("deflate", in.getMetaString(DataFileConstants.CODEC));
+    }
+  }
+
+  @Test
+  public void testPathWriterConfig() throws IOException {
+    Path targetPath = wps.get().resolve(UUID.randomUUID().toString() + ".avro");
+    try (DataFileWriter<GenericRecord> d = IBDataAvroUtils.fromSchemaAndPathAndTranslator(targetPath, schema,
+        Optional.empty(), codecConfig("xz", "1"))) {
+      assertNotNull(d);
+    }
+    try (DataFileStream<GenericRecord> in = new DataFileStream<>(Files.newInputStream(targetPath),
+        new GenericDatumReader<GenericRecord>())) {
+      assertEquals("xz", in.getMetaString(DataFileConstants.CODEC));
+    }
+  }
+
   @Test(expected = IBException.class)
   public void testNotObvioyslyBrokenURLZip() {
     avroSchemaFromString.apply("zip:file:/nope.jar");
@@ -117,4 +182,55 @@ public class IBDataAvroUtilsTest {
   public void testFromMapAndWpNulled() {
     IBDataAvroUtils.fromMapAndWP.apply(wps.getTestClasses(), new ConfigMap());
   }
+
+  @Test
+  public void testLocalFileFor() throws IOException {
+    DataStream id = new DataStream();
+    id.setUuid(UUID.randomUUID().toString());
+    id.setCreationDate(new Date());
+    id.setSha512(DefaultAvroIBGenericRecordDataStreamSupplierTest.CHECKSUM);
+    id.setMetadata(new Xpp3Dom("metadata"));
+    Path avro = wps.getTestClasses().resolve("ba.avro");
+    IBDataStream onDisk = new DefaultIBDataStream(id, avro);
+    // A file on disk is read in place
+    assertEquals(avro, IBDataAvroUtils.localFileIfAvailable(onDisk).get());
+    assertEquals(avro, IBDataAvroUtils.localFileFor(wps.get(), onDisk));
+    // Without a usable path the stream is copied
+    IBDataStream notOnDisk = new DefaultIBDataStream(id, avro) {
+      @Override
+      public Optional<Path> getPathIfAvailable() {
+        return Optional.empty();
+      }
+    };
+    assertFalse(IBDataAvroUtils.localFileIfAvailable(notOnDisk).isPresent());
+    Path copy = IBDataAvroUtils.localFileFor(wps.get(), notOnDisk);
+    assertNotEquals(avro, copy);
+    assertEquals(Files.size(avro), Files.size(copy));
+  }
+
+  @Test
+  public void testProjectSchema() {
+    Schema p = IBDataAvroUtils.projectSchema(schema2, Arrays.asList("id", "index"));
+    assertEquals(schema2.getFullName(), p.getFullName());
+    assertEquals(Arrays.asList("index", "id"), p.getFields().stream().map(Field::name).collect(Collectors.toList()));
+    assertEquals(schema2.getField("index").order(), p.getField("index").order());
+    assertEquals(schema2.getField("id").schema(), p.getField("id").schema());
+  }
+
+  @Test(expected = IBDataException.class)
+  public void testProjectSchemaUnknownField() {
+    IBDataAvroUtils.projectSchema(schema2, Arrays.asList("id", "nope"));
+  }
+
+  @Test(expected = IBDataException.class)
+  public void testProjectNotARecord() {
+    IBDataAvroUtils.projectSchema(Schema.create(Schema.Type.STRING), Arrays.asList("id"));
+  }
+
+  @Test
+  public void testReadSchema() {
+    assertEquals(schema2.getFields().size(),
+        IBDataAvroUtils.readSchema(wps.getTestClasses().resolve("ba.avro")).getFields().size());
+  }
+
 }
@@ -0,0 +1,117 @@
+/**
+ * Copyright © 2019 admin (admin@infrastructurebuilder.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.infrastructurebuilder.data.benchmark;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.avro.Schema;
+import org.apache.avro.Schema.Field;
+import org.apache.avro.generic.GenericRecordBuilder;
+import org.infrastructurebuilder.data.transform.line.DefaultMapToGenericRecordIBDataLineTransformerSupplier;
+import org.infrastructurebuilder.data.transform.line.DefaultMapToGenericRecordIBDataLineTransformerSupplier.DefaultMapSSToGenericRecordIBDataLineTransformer;
+import org.infrastructurebuilder.util.config.ConfigMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compares the original GenericRecordBuilder based map to record conversion with the positional conversion in
+ * AbstractMapToAvroGenericRecordIBDataLineTransformer, on a 100 column schema where half of the columns take their
+ * default.
+ *
+ * Not a unit test. Run {@link #main(String[])} from the test classpath.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class MapToRecordBenchmark {
+  private final static Logger log = LoggerFactory.getLogger(MapToRecordBenchmark.class);
+  private final static int COLUMNS = 100;
+
+  private Schema schema;
+  private Map<String, Object> row;
+  private DefaultMapSSToGenericRecordIBDataLineTransformer transformer;
+
+  @Setup
+  public void setUp() throws Exception {
+    StringBuilder sb = new StringBuilder("{\"type\":\"record\",\"name\":\"Wide\",\"namespace\":\"bench\",\"fields\":[");
+    row = new HashMap<>();
+    for (int i = 0; i < COLUMNS; ++i) {
+      if (i > 0)
+        sb.append(',');
+      String name = "c" + i;
+      if (i % 2 == 0) {
+        sb.append("{\"name\":\"").append(name).append("\",\"type\":\"string\"}");
+        row.put(name, "v" + i);
+      } else
+        sb.append("{\"name\":\"").append(name).append("\",\"type\":[\"null\",\"long\"],\"default\":null}");
+    }
+    sb.append("]}");
+    row.put("not_in_schema", "x");
+    Path wp = Files.createTempDirectory("map-to-record");
+    Path sf = wp.resolve("wide.avsc");
+    Files.write(sf, sb.toString().getBytes(StandardCharsets.UTF_8));
+    sf.toFile().deleteOnExit();
+    wp.toFile().deleteOnExit();
+    ConfigMap cm = new ConfigMap();
+    cm.put(DefaultMapToGenericRecordIBDataLineTransformerSupplier.SCHEMA_PARAM, sf.toAbsolutePath().toString());
+    transformer = new DefaultMapSSToGenericRecordIBDataLineTransformer(wp, cm, log);
+    schema = transformer.getSchema();
+  }
+
+  /**
+   * The conversion as it was before the positional layout
+   */
+  @Benchmark
+  public Object builder() {
+    GenericRecordBuilder rb = new GenericRecordBuilder(schema);
+    row.keySet().forEach(k -> {
+      Field f = schema.getField(k);
+      if (f != null)
+        rb.set(f, row.get(k));
+    });
+    return rb.build();
+  }
+
+  @Benchmark
+  public Object positional() {
+    return transformer.apply(row);
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(MapToRecordBenchmark.class.getSimpleName()).build()).run();
+  }
+}
@@ -0,0 +1,162 @@
+/**
+ * Copyright © 2019 admin (admin@infrastructurebuilder.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.infrastructurebuilder.data.benchmark;
+
+import static java.util.Optional.empty;
+import static java.util.Optional.of;
+import static java.util.Optional.ofNullable;
+import static org.infrastructurebuilder.data.transform.Record.FIELD_KEY;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.infrastructurebuilder.data.IBDataException;
+import org.infrastructurebuilder.data.IBDataRowRangeIndex;
+import org.infrastructurebuilder.data.transform.line.ArraySplitIBDataLineTransformerSupplier;
+import org.infrastructurebuilder.data.transform.line.ArrayToNameMapIBDataLineTransformerSupplier;
+import org.infrastructurebuilder.data.transform.line.DefaultMapToGenericRecordIBDataLineTransformerSupplier;
+import org.infrastructurebuilder.data.transform.line.IBDataRecordTransformer;
+import org.infrastructurebuilder.data.transform.line.IBDataRecordTransformerChain;
+import org.infrastructurebuilder.util.LoggerSupplier;
+import org.infrastructurebuilder.util.config.ConfigMap;
+import org.infrastructurebuilder.util.config.DefaultConfigMapSupplier;
+import org.infrastructurebuilder.util.config.PathSupplier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compares the original per-record loop of AbstractIBDataRecordBasedTransformer with the compiled
+ * {@link IBDataRecordTransformerChain}, using the CSV to generic Avro chain (regex-array-split, array-to-name-map,
+ * map-to-generic-avro) over ba.csv.
+ *
+ * Not a unit test. Run {@link #main(String[])} from the test classpath.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class RecordChainBenchmark {
+  private final static Logger log = LoggerFactory.getLogger(RecordChainBenchmark.class);
+  private final static int BATCH_SIZE = 1024;
+  private final static List<String> FIELDS = Arrays.asList("index", "first_name", "last_name", "gender", "country",
+      "age", "date_of_birth", "id");
+
+  private String[] lines;
+  private List<IBDataRecordTransformer<?, ?>> transformers;
+  private IBDataRecordTransformerChain chain;
+  private Object[] batch;
+
+  @Setup
+  public void setUp() throws Exception {
+    Path wp = Paths.get(System.getProperty("java.io.tmpdir"));
+    PathSupplier wps = () -> wp;
+    LoggerSupplier l = () -> log;
+    try (BufferedReader r = new BufferedReader(
+        new InputStreamReader(getClass().getResourceAsStream("/ba.csv"), StandardCharsets.UTF_8))) {
+      // Skip the header
+      lines = r.lines().skip(1).toArray(String[]::new);
+    }
+    ConfigMap split = new ConfigMap();
+    ConfigMap toMap = new ConfigMap();
+    toMap.put(FIELD_KEY, FIELDS);
+    ConfigMap toAvro = new ConfigMap();
+    toAvro.put(DefaultMapToGenericRecordIBDataLineTransformerSupplier.SCHEMA_PARAM, "/ba.avsc");
+    transformers = Arrays.asList(
+        new ArraySplitIBDataLineTransformerSupplier(wps, l).configure(new DefaultConfigMapSupplier(split)).get(),
+        new ArrayToNameMapIBDataLineTransformerSupplier(wps, l).configure(new DefaultConfigMapSupplier(toMap)).get(),
+        new DefaultMapToGenericRecordIBDataLineTransformerSupplier(wps, l)
+            .configure(new DefaultConfigMapSupplier(toAvro)).get());
+    chain = new IBDataRecordTransformerChain(transformers);
+    batch = new Object[BATCH_SIZE];
+  }
+
+  private List<IBDataRecordTransformer<?, ?>> getConfiguredTransformers() {
+    return ofNullable(transformers).orElseThrow(() -> new IBDataException("No list of configured record transformers"));
+  }
+
+  /**
+   * The loop as it was before the chain was compiled
+   */
+  @SuppressWarnings({ "rawtypes", "unchecked" })
+  @Benchmark
+  public void perRecordLoop(Blackhole bh) {
+    Map<String, List<Long>> errors = new HashMap<>();
+    long lineCount = 0;
+    Class<?> inbound = String.class;
+    for (String line : lines) {
+      lineCount++;
+      Optional<Object> inboundObject = empty(), s = of(line);
+      for (IBDataRecordTransformer t : getConfiguredTransformers()) {
+        inboundObject = ofNullable(t.apply(s.get()));
+        if (!inboundObject.isPresent()) {
+          errors.computeIfAbsent(t.getHint(), k -> new ArrayList<Long>()).add(lineCount);
+          break;
+        }
+        s = inboundObject;
+        inbound = (Class<?>) t.produces().orElse(inbound);
+      }
+      inboundObject.ifPresent(bh::consume);
+    }
+    bh.consume(inbound);
+    bh.consume(errors);
+  }
+
+  @Benchmark
+  public void compiledChain(Blackhole bh) {
+    Map<String, IBDataRowRangeIndex> errors = new HashMap<>();
+    for (int off = 0; off < lines.length; off += BATCH_SIZE) {
+      int n = Math.min(BATCH_SIZE, lines.length - off);
+      System.arraycopy(lines, off, batch, 0, n);
+      BitSet rejected = chain.apply(batch, n, off + 1,
+          h -> errors.computeIfAbsent(h, k -> new IBDataRowRangeIndex()));
+      for (int i = 0; i < n; ++i)
+        if (!rejected.get(i))
+          bh.consume(batch[i]);
+    }
+    bh.consume(errors);
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(RecordChainBenchmark.class.getSimpleName()).build()).run();
+  }
+}
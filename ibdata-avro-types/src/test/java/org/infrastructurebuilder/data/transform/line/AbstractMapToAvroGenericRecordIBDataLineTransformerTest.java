@@ -0,0 +1,158 @@
+/**
+ * Copyright © 2019 admin (admin@infrastructurebuilder.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.infrastructurebuilder.data.transform.line;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.avro.AvroRuntimeException;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.generic.GenericRecordBuilder;
+import org.infrastructurebuilder.data.transform.line.AbstractMapToAvroGenericRecordIBDataLineTransformer.RecordLayout;
+import org.infrastructurebuilder.data.transform.line.DefaultMapToGenericRecordIBDataLineTransformerSupplier.DefaultMapSSToGenericRecordIBDataLineTransformer;
+import org.infrastructurebuilder.util.config.ConfigMap;
+import org.infrastructurebuilder.util.config.TestingPathSupplier;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class AbstractMapToAvroGenericRecordIBDataLineTransformerTest {
+  public final static Logger log = LoggerFactory.getLogger(AbstractMapToAvroGenericRecordIBDataLineTransformerTest.class);
+  private final static TestingPathSupplier wps = new TestingPathSupplier();
+  private final static String SCHEMA = "{\"type\":\"record\",\"name\":\"R\",\"namespace\":\"org.test\",\"fields\":["
+      + "{\"name\":\"a\",\"type\":\"string\"}," //
+      + "{\"name\":\"b\",\"type\":\"int\",\"default\":3}," //
+      + "{\"name\":\"c\",\"type\":[\"null\",\"string\"],\"default\":null}," //
+      + "{\"name\":\"d\",\"type\":{\"type\":\"array\",\"items\":\"int\"},\"default\":[1,2]}," //
+      + "{\"name\":\"e\",\"type\":[\"null\",\"string\"]}" //
+      + "]}";
+
+  @AfterClass
+  public static void afterClass() {
+    wps.finalize();
+  }
+
+  private Schema schema;
+  private DefaultMapSSToGenericRecordIBDataLineTransformer t;
+  private RecordLayout layout;
+
+  @Before
+  public void setUp() throws Exception {
+    Path p = wps.get();
+    Files.createDirectories(p);
+    Path sf = p.resolve("r.avsc");
+    Files.write(sf, SCHEMA.getBytes(StandardCharsets.UTF_8));
+    ConfigMap cm = new ConfigMap();
+    cm.put(DefaultMapToGenericRecordIBDataLineTransformerSupplier.SCHEMA_PARAM, sf.toAbsolutePath().toString());
+    t = new DefaultMapSSToGenericRecordIBDataLineTransformer(p, cm, log);
+    schema = t.getSchema();
+    layout = new RecordLayout(schema);
+  }
+
+  private Map<String, Object> full() {
+    Map<String, Object> m = new HashMap<>();
+    m.put("a", "x");
+    m.put("e", "y");
+    return m;
+  }
+
+  @Test
+  public void testDefaultsMatchBuilder() {
+    Map<String, Object> m = full();
+    m.put("unknown", 9);
+    GenericRecord r = (GenericRecord) t.apply(m);
+    GenericRecordBuilder rb = new GenericRecordBuilder(schema);
+    rb.set("a", "x");
+    rb.set("e", "y");
+    assertEquals(rb.build(), r);
+    assertEquals(3, r.get("b"));
+    assertNull(r.get("c"));
+  }
+
+  @Test
+  public void testMutableDefaultsAreCopied() {
+    GenericRecord r1 = (GenericRecord) t.apply(full());
+    GenericRecord r2 = (GenericRecord) t.apply(full());
+    assertEquals(r1.get("d"), r2.get("d"));
+    assertNotSame(r1.get("d"), r2.get("d"));
+  }
+
+  @Test
+  public void testLayoutReused() {
+    assertSame(t.getLayout(), t.getLayout());
+  }
+
+  @Test
+  public void testUnknownKeysReported() {
+    List<String> unknown = new ArrayList<>();
+    Map<String, Object> m = full();
+    m.put("z", 1);
+    GenericData.Record r = layout.toRecord(m, unknown::add);
+    assertEquals("x", r.get(0));
+    assertEquals(1, unknown.size());
+    assertEquals("z", unknown.get(0));
+  }
+
+  @Test
+  public void testNullableFieldAcceptsNull() {
+    Map<String, Object> m = full();
+    m.put("e", null);
+    assertNull(layout.toRecord(m, k -> {
+    }).get("e"));
+  }
+
+  @Test(expected = AvroRuntimeException.class)
+  public void testMissingRequired() {
+    Map<String, Object> m = full();
+    m.remove("a");
+    t.apply(m);
+  }
+
+  @Test(expected = AvroRuntimeException.class)
+  public void testMissingNullableWithoutDefault() {
+    Map<String, Object> m = full();
+    m.remove("e");
+    t.apply(m);
+  }
+
+  @Test(expected = AvroRuntimeException.class)
+  public void testNullForNonNullable() {
+    Map<String, Object> m = full();
+    m.put("a", null);
+    t.apply(m);
+  }
+
+  @Test
+  public void testNullForNonNullableWithDefault() {
+    Map<String, Object> m = full();
+    m.put("b", null);
+    assertNull(((GenericRecord) t.apply(m)).get("b"));
+  }
+}
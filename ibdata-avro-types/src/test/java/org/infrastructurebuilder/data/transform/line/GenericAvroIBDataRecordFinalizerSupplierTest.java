@@ -19,6 +19,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
@@ -29,13 +30,16 @@ import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import org.apache.avro.Schema;
+import org.apache.avro.file.DataFileStream;
 import org.apache.avro.generic.GenericData.Record;
+import org.apache.avro.generic.GenericDatumReader;
 import org.codehaus.plexus.util.xml.Xpp3Dom;
 import org.apache.avro.generic.GenericRecord;
 import org.infrastructurebuilder.data.DefaultAvroGenericRecordStreamSupplier;
 import org.infrastructurebuilder.data.DefaultAvroGenericRecordStreamSupplierTest;
 import org.infrastructurebuilder.data.DefaultIBDataStream;
 import org.infrastructurebuilder.data.IBDataAvroUtils;
+import org.infrastructurebuilder.data.IBDataColumnSketches;
 import org.infrastructurebuilder.data.IBDataDataStreamRecordFinalizerSupplier;
 import org.infrastructurebuilder.data.IBDataStreamRecordFinalizer;
 import org.infrastructurebuilder.data.IBDataStructuredDataFieldMetadata;
@@ -128,5 +132,86 @@ public class GenericAvroIBDataRecordFinalizerSupplierTest {
     assertFalse(smd.get(3).isEnumeration());
     assertEquals(13, smd.get(4).getMaxIntValue().get().intValue());
     assertEquals(6, smd.get(4).getMinIntValue().get().intValue());
+    assertEquals(w.size(), f.getFieldAccumulators().get().get(4).getCount());
+    assertEquals(0L, f.getFieldAccumulators().get().get(5).getNullCount());
+  }
+
+  @Test
+  public void testMerge() throws Exception {
+    DataStream id = new DataStream();
+    id.setUuid(UUID.randomUUID().toString());
+    id.setCreationDate(new Date());
+    id.setSha512(DefaultAvroGenericRecordStreamSupplierTest.CHECKSUM);
+    id.setMetadata(new Xpp3Dom("metadata"));
+    DefaultIBDataStream identifier = new DefaultIBDataStream(id, wps.getTestClasses().resolve("ba.avro"));
+    List<GenericRecord> w = new DefaultAvroGenericRecordStreamSupplier().from(identifier).get()
+        .collect(Collectors.toList());
+    GenericAvroIBDataStreamRecordFinalizer f = (GenericAvroIBDataStreamRecordFinalizer) g.configure(cms).get();
+    IBDataMergeableRecordFinalizer<GenericRecord> p = f.newPartial(wps.get().resolve(UUID.randomUUID().toString()));
+    int half = w.size() / 2;
+    w.subList(0, half).forEach(f::writeRecord);
+    w.subList(half, w.size()).forEach(p::writeRecord);
+    p.close();
+    f.merge(p);
+    f.close();
+
+    try (DataFileStream<GenericRecord> in = new DataFileStream<>(Files.newInputStream(f.getWorkingPath()),
+        new GenericDatumReader<GenericRecord>())) {
+      int count = 0;
+      for (GenericRecord r : in)
+        assertEquals(w.get(count++).toString(), r.toString());
+      assertEquals(w.size(), count);
+    }
+    Map<Integer, ? extends IBDataStructuredDataFieldMetadata> smd = f.getStructuredMetadata().get().getFieldMap();
+    assertEquals(13, smd.get(4).getMaxIntValue().get().intValue());
+    assertEquals(6, smd.get(4).getMinIntValue().get().intValue());
+    assertEquals(w.size(), f.getFieldAccumulators().get().get(4).getCount());
+    assertEquals(w.size(), f.getRecordCount());
+  }
+
+  @Test
+  public void testCodecRecordedInMetadata() throws Exception {
+    cms.addValue(IBDataAvroUtils.CODEC_PARAM, "deflate");
+    GenericAvroIBDataStreamRecordFinalizer f = (GenericAvroIBDataStreamRecordFinalizer) g.configure(cms).get();
+    assertEquals("deflate-6", f.getCodec());
+    f.close();
+    DataStream id = new DataStream();
+    id.setUuid(UUID.randomUUID().toString());
+    id.setCreationDate(new Date());
+    id.setSha512(DefaultAvroGenericRecordStreamSupplierTest.CHECKSUM);
+    id.setMetadata(new Xpp3Dom("metadata"));
+    f.finalizeRecord(id);
+    assertEquals("deflate-6",
+        ((Xpp3Dom) id.getMetadata()).getChild(GenericAvroIBDataRecordFinalizerSupplier.AVRO_CODEC_METADATA).getValue());
+  }
+
+  @Test
+  public void testSketchesMergedAndRecordedInMetadata() throws Exception {
+    cms.addValue(GenericAvroIBDataRecordFinalizerSupplier.SKETCHES_PARAM, "true");
+    DataStream id = new DataStream();
+    id.setUuid(UUID.randomUUID().toString());
+    id.setCreationDate(new Date());
+    id.setSha512(DefaultAvroGenericRecordStreamSupplierTest.CHECKSUM);
+    id.setMetadata(new Xpp3Dom("metadata"));
+    DefaultIBDataStream identifier = new DefaultIBDataStream(id, wps.getTestClasses().resolve("ba.avro"));
+    List<GenericRecord> w = new DefaultAvroGenericRecordStreamSupplier().from(identifier).get()
+        .collect(Collectors.toList());
+    GenericAvroIBDataStreamRecordFinalizer f = (GenericAvroIBDataStreamRecordFinalizer) g.configure(cms).get();
+    IBDataMergeableRecordFinalizer<GenericRecord> p = f.newPartial(wps.get().resolve(UUID.randomUUID().toString()));
+    int half = w.size() / 2;
+    w.subList(0, half).forEach(f::writeRecord);
+    w.subList(half, w.size()).forEach(p::writeRecord);
+    p.close();
+    f.merge(p);
+    f.close();
+
+    List<IBDataColumnSketches> sk = f.getColumnSketches().get();
+    assertEquals(8, sk.size());
+    long distinct = w.stream().map(r -> String.valueOf(r.get(0))).distinct().count();
+    assertEquals(distinct, sk.get(0).getDistinct().estimate(), Math.max(1.0, distinct * 0.05));
+    f.finalizeRecord(id);
+    Xpp3Dom sketches = ((Xpp3Dom) id.getMetadata())
+        .getChild(GenericAvroIBDataRecordFinalizerSupplier.SKETCHES_METADATA);
+    assertEquals(8, sketches.getChildCount());
   }
 }
@@ -0,0 +1,146 @@
+/**
+ * Copyright © 2019 admin (admin@infrastructurebuilder.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.infrastructurebuilder.data.transform.line;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.invoke.MethodHandle;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericRecord;
+import org.infrastructurebuilder.data.Formatters;
+import org.infrastructurebuilder.data.IBDataException;
+import org.infrastructurebuilder.data.transform.line.DefaultMapToGenericRecordIBDataLineTransformerSupplier.DefaultMapSSToGenericRecordIBDataLineTransformer;
+import org.infrastructurebuilder.util.config.ConfigMap;
+import org.infrastructurebuilder.util.config.TestingPathSupplier;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class MapToGenericRecordConvertersTest {
+  public final static Logger log = LoggerFactory.getLogger(MapToGenericRecordConvertersTest.class);
+  private final static TestingPathSupplier wps = new TestingPathSupplier();
+  private final static String SCHEMA = "{\"type\":\"record\",\"name\":\"C\",\"namespace\":\"org.test\",\"fields\":["
+      + "{\"name\":\"s\",\"type\":\"string\"}," //
+      + "{\"name\":\"d\",\"type\":{\"type\":\"int\",\"logicalType\":\"date\"}}," //
+      + "{\"name\":\"ts\",\"type\":[\"null\",{\"type\":\"long\",\"logicalType\":\"timestamp-millis\"}],\"default\":null}," //
+      + "{\"name\":\"n\",\"type\":[\"null\",\"int\"],\"default\":null}," //
+      + "{\"name\":\"ns\",\"type\":[\"null\",\"string\"],\"default\":null}" //
+      + "]}";
+
+  @AfterClass
+  public static void afterClass() {
+    wps.finalize();
+  }
+
+  private Schema schema;
+  private Formatters f;
+
+  @Before
+  public void setUp() {
+    schema = new Schema.Parser().parse(SCHEMA);
+    f = new Formatters(new ConfigMap());
+  }
+
+  @Test
+  public void testConverters() {
+    MethodHandle[] c = MapToGenericRecordConverters.convertersFor(schema, f);
+    assertEquals(5, c.length);
+    // Only logical types are converted, so other values, blank or not, are used as they would be without converters
+    assertNull(c[0]);
+    assertNull(c[3]);
+    assertNull(c[4]);
+    assertEquals(13801, MapToGenericRecordConverters.convert(c[1], "10-15-07"));
+    assertEquals(13801, MapToGenericRecordConverters.convert(c[1], 13801));
+    assertEquals(1192406400000L, MapToGenericRecordConverters.convert(c[2], "2007-10-15T00:00:00Z"));
+    assertNull(MapToGenericRecordConverters.convert(c[2], null));
+  }
+
+  @Test
+  public void testCachedByFingerprint() {
+    MapToGenericRecordConverters.convertersFor(schema, f);
+    int cached = MapToGenericRecordConverters.cachedSchemas();
+    Schema again = new Schema.Parser().parse(SCHEMA);
+    assertEquals(MapToGenericRecordConverters.fingerprint(schema), MapToGenericRecordConverters.fingerprint(again));
+    assertNotNull(MapToGenericRecordConverters.convertersFor(again, f));
+    assertEquals(cached, MapToGenericRecordConverters.cachedSchemas());
+    Schema noLogical = new Schema.Parser().parse(SCHEMA.replace(",\"logicalType\":\"date\"", ""));
+    assertNotEquals(MapToGenericRecordConverters.fingerprint(schema), MapToGenericRecordConverters.fingerprint(noLogical));
+    assertNull(MapToGenericRecordConverters.convertersFor(noLogical, f)[1]);
+  }
+
+  @Test(expected = IBDataException.class)
+  public void testNotARecord() {
+    MapToGenericRecordConverters.convertersFor(Schema.create(Schema.Type.STRING), f);
+  }
+
+  private DefaultMapSSToGenericRecordIBDataLineTransformer transformer(boolean generated) {
+    ConfigMap cm = new ConfigMap();
+    cm.put(DefaultMapToGenericRecordIBDataLineTransformerSupplier.SCHEMA_PARAM,
+        wps.getTestClasses().resolve("ba.avsc").toAbsolutePath().toString());
+    cm.put(DefaultMapToGenericRecordIBDataLineTransformerSupplier.GENERATED_CONVERTER_PARAM,
+        Boolean.toString(generated));
+    return new DefaultMapSSToGenericRecordIBDataLineTransformer(wps.get(), cm, log);
+  }
+
+  @Test
+  public void testGeneratedMatchesDefault() {
+    DefaultMapSSToGenericRecordIBDataLineTransformer d = transformer(false);
+    DefaultMapSSToGenericRecordIBDataLineTransformer g = transformer(true);
+    assertFalse(d.isGenerated());
+    assertTrue(g.isGenerated());
+    Map<String, Object> m = new HashMap<>();
+    m.put("index", 7);
+    m.put("last_name", "alvis");
+    m.put("first_name", "mkel");
+    m.put("country", "USA");
+    m.put("date_of_birth", 13801);
+    m.put("id", "3598");
+    m.put("gender", "");
+    m.put("age", 34);
+    GenericRecord expected = (GenericRecord) d.apply(m);
+    GenericRecord actual = (GenericRecord) g.apply(m);
+    assertEquals(expected, actual);
+    // index is ignored by record equality
+    assertEquals(expected.get("index"), actual.get("index"));
+  }
+
+  @Test
+  public void testGeneratedTransformer() throws Exception {
+    DefaultMapSSToGenericRecordIBDataLineTransformer t = transformer(true);
+    assertTrue(t.isGenerated());
+    Map<String, Object> m = new HashMap<>();
+    m.put("index", 7);
+    m.put("last_name", "alvis");
+    m.put("first_name", "mkel");
+    m.put("country", "USA");
+    m.put("date_of_birth", "10-15-07");
+    m.put("id", "3598");
+    m.put("gender", "F");
+    m.put("age", 34);
+    GenericRecord r = (GenericRecord) t.apply(m);
+    assertEquals(13801, r.get("date_of_birth"));
+  }
+}
@@ -0,0 +1,134 @@
+/**
+ * Copyright © 2019 admin (admin@infrastructurebuilder.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.infrastructurebuilder.data.transform.line;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Files;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import org.apache.avro.generic.GenericRecord;
+import org.apache.parquet.hadoop.metadata.CompressionCodecName;
+import org.codehaus.plexus.util.xml.Xpp3Dom;
+import org.infrastructurebuilder.data.DefaultAvroGenericRecordStreamSupplier;
+import org.infrastructurebuilder.data.DefaultAvroGenericRecordStreamSupplierTest;
+import org.infrastructurebuilder.data.DefaultIBDataStream;
+import org.infrastructurebuilder.data.IBDataException;
+import org.infrastructurebuilder.data.IBDataStreamRecordFinalizer;
+import org.infrastructurebuilder.data.IBDataStructuredDataFieldMetadata;
+import org.infrastructurebuilder.data.IBDataStructuredDataMetadataType;
+import org.infrastructurebuilder.data.model.DataStream;
+import org.infrastructurebuilder.data.transform.line.ParquetIBDataRecordFinalizerSupplier.ParquetIBDataStreamRecordFinalizer;
+import org.infrastructurebuilder.util.config.ConfigMapSupplier;
+import org.infrastructurebuilder.util.config.DefaultConfigMapSupplier;
+import org.infrastructurebuilder.util.config.TestingPathSupplier;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class ParquetIBDataRecordFinalizerSupplierTest {
+
+  public final static Logger log = LoggerFactory.getLogger(ParquetIBDataRecordFinalizerSupplierTest.class);
+  private final static TestingPathSupplier wps = new TestingPathSupplier();
+
+  @AfterClass
+  public static void tearDownAfterClass() throws Exception {
+    wps.finalize();
+  }
+
+  private ParquetIBDataRecordFinalizerSupplier g;
+  private ConfigMapSupplier cms;
+  private DataStream id;
+  private List<GenericRecord> records;
+
+  @Before
+  public void setUp() throws Exception {
+    cms = new DefaultConfigMapSupplier();
+    cms.addValue(DefaultMapToGenericRecordIBDataLineTransformerSupplier.SCHEMA_PARAM,
+        wps.getTestClasses().resolve("ba.avsc").toAbsolutePath().toString());
+    g = new ParquetIBDataRecordFinalizerSupplier(wps, () -> log);
+    id = new DataStream();
+    id.setUuid(UUID.randomUUID().toString());
+    id.setCreationDate(new Date());
+    id.setSha512(DefaultAvroGenericRecordStreamSupplierTest.CHECKSUM);
+    id.setMetadata(new Xpp3Dom("metadata"));
+    records = new DefaultAvroGenericRecordStreamSupplier()
+        .from(new DefaultIBDataStream(id, wps.getTestClasses().resolve("ba.avro"))).get()
+        .collect(Collectors.toList());
+  }
+
+  @Test
+  public void testCodecFromConfig() {
+    assertEquals(CompressionCodecName.SNAPPY, ParquetIBDataRecordFinalizerSupplier.codecFromConfig(cms.get()));
+    cms.addValue(ParquetIBDataRecordFinalizerSupplier.PARQUET_CODEC_PARAM, "gzip");
+    assertEquals(CompressionCodecName.GZIP, ParquetIBDataRecordFinalizerSupplier.codecFromConfig(cms.get()));
+  }
+
+  @Test(expected = IBDataException.class)
+  public void testUnknownCodec() {
+    cms.addValue(ParquetIBDataRecordFinalizerSupplier.PARQUET_CODEC_PARAM, "nope");
+    ParquetIBDataRecordFinalizerSupplier.codecFromConfig(cms.get());
+  }
+
+  @Test
+  public void testWriteAndStatistics() throws Exception {
+    cms.addValue(ParquetIBDataRecordFinalizerSupplier.ROW_GROUP_SIZE_PARAM, "4096");
+    cms.addValue(ParquetIBDataRecordFinalizerSupplier.PAGE_SIZE_PARAM, "1024");
+    IBDataStreamRecordFinalizer<GenericRecord> q = g.configure(cms).get();
+    assertEquals(ParquetIBDataRecordFinalizerSupplier.PARQUET_MIME_TYPE, q.produces().get());
+    ParquetIBDataStreamRecordFinalizer f = (ParquetIBDataStreamRecordFinalizer) q;
+    records.forEach(f::writeRecord);
+    f.close();
+
+    assertEquals(records.size(), f.getRecordCount());
+    assertTrue(Files.size(f.getWorkingPath()) > 0L);
+    assertEquals(Files.size(f.getWorkingPath()), f.getLength().get().longValue());
+
+    int min = records.stream().mapToInt(r -> (Integer) r.get(5)).min().getAsInt();
+    int max = records.stream().mapToInt(r -> (Integer) r.get(5)).max().getAsInt();
+    Map<Integer, ? extends IBDataStructuredDataFieldMetadata> smd = f.getStructuredMetadata().get().getFieldMap();
+    assertEquals(8, smd.size());
+    assertEquals(min, smd.get(5).getMinIntValue().get().intValue());
+    assertEquals(max, smd.get(5).getMaxIntValue().get().intValue());
+    assertFalse(smd.get(1).getMinIntValue().isPresent());
+
+    f.finalizeRecord(id);
+    Xpp3Dom counts = ((Xpp3Dom) id.getMetadata())
+        .getChild(GenericAvroIBDataRecordFinalizerSupplier.FIELD_COUNTS_METADATA);
+    assertEquals(Integer.toString(records.size()), counts.getChild(0).getAttribute("count"));
+    assertEquals("0", counts.getChild(0).getAttribute("nulls"));
+  }
+
+  @Test
+  public void testCompareStatisticKeepsLongPrecision() {
+    // Equal as doubles
+    long a = (1L << 53) + 1L;
+    long b = 1L << 53;
+    assertTrue(ParquetIBDataRecordFinalizerSupplier.compareStatistic(IBDataStructuredDataMetadataType.LONG, a, b) > 0);
+    assertEquals(0, ParquetIBDataRecordFinalizerSupplier.compareStatistic(IBDataStructuredDataMetadataType.DOUBLE,
+        (double) a, (double) b));
+    assertTrue(ParquetIBDataRecordFinalizerSupplier.compareStatistic(IBDataStructuredDataMetadataType.FLOAT, 1.5f,
+        2.5f) < 0);
+  }
+}
@@ -0,0 +1,180 @@
+/**
+ * Copyright © 2019 admin (admin@infrastructurebuilder.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.infrastructurebuilder.data.transform.line;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.apache.avro.file.DataFileStream;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericRecord;
+import org.codehaus.plexus.util.xml.Xpp3Dom;
+import org.infrastructurebuilder.data.DefaultAvroGenericRecordStreamSupplier;
+import org.infrastructurebuilder.data.DefaultAvroGenericRecordStreamSupplierTest;
+import org.infrastructurebuilder.data.DefaultIBDataStream;
+import org.infrastructurebuilder.data.IBDataException;
+import org.infrastructurebuilder.data.IBDataTransformationError;
+import org.infrastructurebuilder.data.model.DataStream;
+import org.infrastructurebuilder.data.transform.line.IBDataSortingRecordFinalizer.SortKey;
+import org.infrastructurebuilder.util.config.ConfigMapSupplier;
+import org.infrastructurebuilder.util.config.DefaultConfigMapSupplier;
+import org.infrastructurebuilder.util.config.TestingPathSupplier;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class SortingAvroIBDataRecordFinalizerSupplierTest {
+  public final static Logger log = LoggerFactory.getLogger(SortingAvroIBDataRecordFinalizerSupplierTest.class);
+  private final static TestingPathSupplier wps = new TestingPathSupplier();
+  private static final String SORT = "age:desc,last_name";
+
+  @AfterClass
+  public static void tearDownAfterClass() throws Exception {
+    wps.finalize();
+  }
+
+  private SortingAvroIBDataRecordFinalizerSupplier g;
+  private ConfigMapSupplier cms;
+  private DataStream id;
+  private List<GenericRecord> records;
+
+  @Before
+  public void setUp() throws Exception {
+    cms = new DefaultConfigMapSupplier();
+    cms.addValue(DefaultMapToGenericRecordIBDataLineTransformerSupplier.SCHEMA_PARAM,
+        wps.getTestClasses().resolve("ba.avsc").toAbsolutePath().toString());
+    cms.addValue(SortingAvroIBDataRecordFinalizerSupplier.SORT_FIELDS_PARAM, SORT);
+    g = new SortingAvroIBDataRecordFinalizerSupplier(wps, () -> log);
+    id = new DataStream();
+    id.setUuid(UUID.randomUUID().toString());
+    id.setCreationDate(new Date());
+    id.setSha512(DefaultAvroGenericRecordStreamSupplierTest.CHECKSUM);
+    id.setMetadata(new Xpp3Dom("metadata"));
+    records = new DefaultAvroGenericRecordStreamSupplier()
+        .from(new DefaultIBDataStream(id, wps.getTestClasses().resolve("ba.avro"))).get()
+        .collect(Collectors.toList());
+  }
+
+  private List<String> expected() {
+    List<GenericRecord> l = new ArrayList<>(records);
+    l.sort(IBDataSortingRecordFinalizer.comparatorFor(records.get(0).getSchema(), SortKey.parse(SORT)));
+    return l.stream().map(Object::toString).collect(Collectors.toList());
+  }
+
+  private static List<String> read(Path p) throws Exception {
+    List<String> l = new ArrayList<>();
+    try (InputStream in = Files.newInputStream(p);
+        DataFileStream<GenericRecord> s = new DataFileStream<>(in, new GenericDatumReader<GenericRecord>())) {
+      s.forEach(r -> l.add(r.toString()));
+    }
+    return l;
+  }
+
+  private IBDataSortingRecordFinalizer write(long bufferBytes) throws Exception {
+    cms.addValue(SortingAvroIBDataRecordFinalizerSupplier.SORT_BUFFER_BYTES_PARAM, Long.toString(bufferBytes));
+    IBDataSortingRecordFinalizer f = (IBDataSortingRecordFinalizer) g.configure(cms).get();
+    records.forEach(r -> assertFalse(f.writeRecord(r).isPresent()));
+    f.close();
+    List<IBDataTransformationError> errors = new ArrayList<>();
+    assertEquals(0, f.drainErrors(errors));
+    return f;
+  }
+
+  @Test
+  public void testSortInMemory() throws Exception {
+    IBDataSortingRecordFinalizer f = write(Long.MAX_VALUE);
+    assertEquals(0, f.getRunsWritten());
+    assertEquals(expected(), read(f.getWorkingPath()));
+  }
+
+  @Test
+  public void testSortWithRunsAndMergePasses() throws Exception {
+    // The encoded size of the records is at least the size of the Avro file they came from
+    long buffer = Math.max(1L,
+        Files.size(wps.getTestClasses().resolve("ba.avro")) / (IBDataSortingRecordFinalizer.MAX_MERGE_WIDTH * 2));
+    IBDataSortingRecordFinalizer f = write(buffer);
+    assertTrue(f.getRunsWritten() > IBDataSortingRecordFinalizer.MAX_MERGE_WIDTH);
+    assertEquals(expected(), read(f.getWorkingPath()));
+    // Run files are removed
+    try (Stream<Path> s = Files.list(f.getWorkingPath().getParent())) {
+      assertEquals(0L, s.filter(p -> p.getFileName().toString().startsWith("sort-")).count());
+    }
+  }
+
+  @Test
+  public void testSortOrderMetadata() throws Exception {
+    IBDataSortingRecordFinalizer f = write(1000L);
+    f.finalizeRecord(id);
+    Xpp3Dom order = ((Xpp3Dom) id.getMetadata()).getChild(IBDataSortingRecordFinalizer.SORT_ORDER_METADATA);
+    assertEquals("age:desc,last_name:asc", order.getValue());
+    assertEquals("age", order.getChildren("field")[0].getAttribute("name"));
+    assertEquals("descending", order.getChildren("field")[0].getAttribute("order"));
+    assertEquals("ascending", order.getChildren("field")[1].getAttribute("order"));
+  }
+
+  @Test
+  public void testParse() {
+    List<SortKey> k = SortKey.parse(" a , b:DESC,c:asc");
+    assertEquals(3, k.size());
+    assertFalse(k.get(0).isDescending());
+    assertTrue(k.get(1).isDescending());
+    assertEquals("c", k.get(2).getField());
+  }
+
+  @Test(expected = IBDataException.class)
+  public void testParseBadDirection() {
+    SortKey.parse("a:sideways");
+  }
+
+  @Test(expected = IBDataException.class)
+  public void testBadBuffer() {
+    cms.addValue(SortingAvroIBDataRecordFinalizerSupplier.SORT_BUFFER_BYTES_PARAM, "0");
+    g.configure(cms).get();
+  }
+
+  @Test(expected = IBDataException.class)
+  public void testNoSortFields() {
+    g.configure(new DefaultConfigMapSupplier()).get();
+  }
+
+  @Test(expected = IBDataException.class)
+  public void testUnknownSortField() throws Exception {
+    cms.addValue(SortingAvroIBDataRecordFinalizerSupplier.SORT_FIELDS_PARAM, "nope");
+    try (IBDataSortingRecordFinalizer f = (IBDataSortingRecordFinalizer) g.configure(cms).get()) {
+      f.writeRecord(records.get(0));
+    }
+  }
+
+  @Test
+  public void testNullRecord() throws Exception {
+    try (IBDataSortingRecordFinalizer f = (IBDataSortingRecordFinalizer) g.configure(cms).get()) {
+      assertTrue(f.writeRecord(null).isPresent());
+    }
+  }
+}
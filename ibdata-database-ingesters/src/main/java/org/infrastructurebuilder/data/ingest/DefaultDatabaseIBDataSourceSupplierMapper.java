@@ -163,7 +163,7 @@ public class DefaultDatabaseIBDataSourceSupplierMapper extends AbstractIBDataSou
                                                                                // schema
             getLog().info("Reading data from dataset");
             read = Arrays.asList(
-                new JooqRecordWriter(() -> getLog(), () -> targetPath, schema, this.jrmpGD).writeRecords(result));
+                new JooqRecordWriter(() -> getLog(), () -> targetPath, schema, this.jrmpGD, cfg).writeRecords(result));
           } else
             throw new IBDataException("Processor " + getId() + " cannot handle protocol for " + source);
         }
@@ -19,10 +19,11 @@ import static java.nio.file.Files.createTempFile;
 import static java.util.Objects.requireNonNull;
 import static java.util.Optional.of;
 import static org.infrastructurebuilder.IBConstants.AVRO_BINARY;
-import static org.infrastructurebuilder.data.IBDataAvroUtils.fromSchemaAndPathAndTranslator;
+import static org.infrastructurebuilder.data.IBDataAvroUtils.fromSchemaAndOutputStreamAndTranslator;
 import static org.infrastructurebuilder.data.IBDataException.cet;
 
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 
 import org.apache.avro.Schema;
@@ -33,6 +34,7 @@ import org.infrastructurebuilder.data.IBDataException;
 import org.infrastructurebuilder.data.ingest.IBDataAvroRecordWriter;
 import org.infrastructurebuilder.util.LoggerSupplier;
 import org.infrastructurebuilder.util.artifacts.Checksum;
+import org.infrastructurebuilder.util.config.ConfigMap;
 import org.infrastructurebuilder.util.config.PathSupplier;
 import org.infrastructurebuilder.util.files.BasicIBChecksumPathType;
 import org.infrastructurebuilder.util.files.IBChecksumPathType;
@@ -50,26 +52,39 @@ public class JooqRecordWriter implements IBDataAvroRecordWriter<Record> {
   private final Schema schema;
   private final Logger log;
   private final GenericData f;
+  private final ConfigMap writerConfig;
 
   public JooqRecordWriter(LoggerSupplier l, PathSupplier wps, Schema schema, GenericData f) {
+    this(l, wps, schema, f, new ConfigMap());
+  }
+
+  /**
+   * @param writerConfig Avro writer settings (codec, codecLevel, syncInterval, flushOnEveryBlock) as understood by
+   *                     {@link IBDataAvroUtils#configureWriter(DataFileWriter, ConfigMap)}
+   */
+  public JooqRecordWriter(LoggerSupplier l, PathSupplier wps, Schema schema, GenericData f, ConfigMap writerConfig) {
     this.log = requireNonNull(l).get();
     this.workingPath = requireNonNull(wps).get();
     this.schema = requireNonNull(schema);
     this.f = requireNonNull(f);
+    this.writerConfig = requireNonNull(writerConfig);
   }
 
   @Override
   public IBChecksumPathType writeRecords(Iterable<Record> result) {
 //    GenericData gd = new MapProxyGenericData(this.f);
     Path path = cet.withReturningTranslation(() -> createTempFile(workingPath, "JooqRecords", ".avro"));
-    try (DataFileWriter<GenericRecord> w = fromSchemaAndPathAndTranslator(path, schema, of(f))) {
+    // Checksum while writing rather than reading the file again afterwards
+    IBDataDigestingOutputStream out = new IBDataDigestingOutputStream(
+        cet.withReturningTranslation(() -> Files.newOutputStream(path)));
+    try (DataFileWriter<GenericRecord> w = fromSchemaAndOutputStreamAndTranslator(out, schema, of(f), writerConfig)) {
       for (Record r : result) {
         w.append(new JooqRecordMapProxy(r, schema, log).get());
       }
     } catch (IOException e) {
       throw new IBDataException("Failed to writeRecords", e);
     }
-    Checksum c = new Checksum(path);
+    Checksum c = out.getChecksum().orElseThrow(() -> new IBDataException("Output of writeRecords was not closed"));
     Path targetName = this.workingPath.resolve(c.asUUID().get().toString() + ".avro");
     return cet.withReturningTranslation(() -> new BasicIBChecksumPathType(path, c, AVRO_BINARY).moveTo(targetName));
   }
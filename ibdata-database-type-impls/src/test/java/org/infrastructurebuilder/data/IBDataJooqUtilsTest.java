@@ -20,6 +20,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 
 import java.math.BigInteger;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.sql.Connection;
 import java.sql.DriverManager;
@@ -31,7 +32,11 @@ import java.util.UUID;
 
 import org.apache.avro.Schema;
 import org.apache.avro.Schema.Type;
+import org.apache.avro.file.DataFileConstants;
+import org.apache.avro.file.DataFileStream;
 import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericRecord;
 import org.apache.avro.generic.MapProxyGenericData;
 import org.codehaus.plexus.configuration.xml.XmlPlexusConfiguration;
 import org.infrastructurebuilder.IBConstants;
@@ -157,6 +162,23 @@ public class IBDataJooqUtilsTest {
       conn.close();
   }
 
+  private String codecOf(IBChecksumPathType written) throws Exception {
+    try (DataFileStream<GenericRecord> in = new DataFileStream<>(Files.newInputStream(written.getPath()),
+        new GenericDatumReader<GenericRecord>())) {
+      return in.getMetaString(DataFileConstants.CODEC);
+    }
+  }
+
+  @Test
+  public void testWriterConfig() throws Exception {
+    assertEquals("null", codecOf(read));
+    ConfigMap writerConfig = new ConfigMap();
+    writerConfig.put(IBDataAvroUtils.CODEC_PARAM, "deflate");
+    JooqRecordWriter d = new JooqRecordWriter(() -> getLog(), () -> targetPath, schema, jrmpGD, writerConfig);
+    IBChecksumPathType deflated = d.writeRecords(result);
+    assertEquals("deflate", codecOf(deflated));
+  }
+
   @Test
   public void testGetFieldFromType() {
     Field<?>[] fList = firstRecord.fields();
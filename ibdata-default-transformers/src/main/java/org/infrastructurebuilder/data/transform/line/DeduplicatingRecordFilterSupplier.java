@@ -0,0 +1,311 @@
+/**
+ * Copyright © 2019 admin (admin@infrastructurebuilder.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.infrastructurebuilder.data.transform.line;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.infrastructurebuilder.data.IBDataConstants.IBDATA_WORKING_PATH_SUPPLIER;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import javax.inject.Named;
+
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericRecord;
+import org.infrastructurebuilder.data.IBDataException;
+import org.infrastructurebuilder.data.IBDataFingerprintSet;
+import org.infrastructurebuilder.util.LoggerSupplier;
+import org.infrastructurebuilder.util.config.ConfigMap;
+import org.infrastructurebuilder.util.config.ConfigMapSupplier;
+import org.infrastructurebuilder.util.config.PathSupplier;
+import org.slf4j.Logger;
+
+/**
+ * Drops records that have already been seen in this transformation.
+ *
+ * Records are identified by a 128-bit fingerprint of either the whole record or of the configured key fields. The
+ * fingerprints are kept in an {@link IBDataFingerprintSet}, off-heap and spilling to the working path when they
+ * outgrow the memory budget. Exactly one occurrence of a record is kept and the others are rejected, so they are
+ * counted against this transformer's hint in the transformation result.
+ *
+ * Only serial processing keeps the first occurrence in input order. With parallel, pipeline or concurrent stream
+ * processing, batches reach the fingerprint set in scheduling order, so which occurrence survives is not determined.
+ */
+@Named(DeduplicatingRecordFilterSupplier.DEDUP)
+public class DeduplicatingRecordFilterSupplier extends AbstractIBDataRecordTransformerSupplier<Object, Object> {
+  public static final String DEDUP = "dedup";
+  /** List (or comma separated string) of fields that identify a record. The whole record is used if absent */
+  public static final String DEDUP_FIELDS = "dedupFields";
+  /** Bytes of off-heap memory for fingerprints before they spill to disk */
+  public static final String DEDUP_MEMORY_BYTES = "dedupMemoryBytes";
+  public static final String DEFAULT_DEDUP_MEMORY_BYTES = Long.toString(64L * 1024 * 1024);
+  /** Number of high fingerprint bits used to partition spilled fingerprints */
+  public static final String DEDUP_PARTITION_BITS = "dedupPartitionBits";
+
+  @javax.inject.Inject
+  public DeduplicatingRecordFilterSupplier(@Named(IBDATA_WORKING_PATH_SUPPLIER) PathSupplier wps, LoggerSupplier l) {
+    this(wps, null, l);
+  }
+
+  private DeduplicatingRecordFilterSupplier(PathSupplier wps, ConfigMapSupplier cms, LoggerSupplier l) {
+    super(wps, cms, l);
+  }
+
+  @Override
+  public DeduplicatingRecordFilterSupplier configure(ConfigMapSupplier cms) {
+    return new DeduplicatingRecordFilterSupplier(getWps(), cms, () -> getLogger());
+  }
+
+  @Override
+  protected IBDataRecordTransformer<Object, Object> getUnconfiguredTransformerInstance(Path workingPath) {
+    return new DeduplicatingRecordFilter(workingPath, getLogger());
+  }
+
+  @Override
+  public String getHint() {
+    return DEDUP;
+  }
+
+  private class DeduplicatingRecordFilter extends AbstractIBDataRecordTransformer<Object, Object>
+      implements AutoCloseable {
+    private final List<String> fields;
+    private final long memoryBytes;
+    private final int partitionBits;
+    // Created on first use and released when the transformation closes the chain
+    private IBDataFingerprintSet seen = null;
+    private long dropped = 0L;
+
+    public DeduplicatingRecordFilter(Path ps, ConfigMap config, Logger l) {
+      super(ps, config, l);
+      Object f = getObjectConfiguration(DEDUP_FIELDS, null);
+      if (f == null)
+        this.fields = Collections.emptyList();
+      else if (f instanceof Collection)
+        this.fields = ((Collection<?>) f).stream().map(String::valueOf).collect(Collectors.toList());
+      else
+        this.fields = Arrays.stream(f.toString().split(",")).map(String::trim).filter(s -> !s.isEmpty())
+            .collect(Collectors.toList());
+      try {
+        this.memoryBytes = Long.parseLong(getConfiguration(DEDUP_MEMORY_BYTES, DEFAULT_DEDUP_MEMORY_BYTES));
+        this.partitionBits = Integer.parseInt(getConfiguration(DEDUP_PARTITION_BITS,
+            Integer.toString(IBDataFingerprintSet.DEFAULT_PARTITION_BITS)));
+      } catch (NumberFormatException e) {
+        throw new IBDataException("Bad " + DEDUP_MEMORY_BYTES + " or " + DEDUP_PARTITION_BITS, e);
+      }
+      // Fail on a bad budget now rather than on the first record
+      if (memoryBytes < (long) IBDataFingerprintSet.MIN_CAPACITY * IBDataFingerprintSet.SLOT_BYTES)
+        throw new IBDataException(DEDUP_MEMORY_BYTES + " must be at least "
+            + (IBDataFingerprintSet.MIN_CAPACITY * IBDataFingerprintSet.SLOT_BYTES));
+      if (partitionBits < 1 || partitionBits > IBDataFingerprintSet.MAX_PARTITION_BITS)
+        throw new IBDataException(
+            DEDUP_PARTITION_BITS + " must be between 1 and " + IBDataFingerprintSet.MAX_PARTITION_BITS);
+    }
+
+    public DeduplicatingRecordFilter(Path ps, Logger l) {
+      this(ps, new ConfigMap(), l);
+    }
+
+    @Override
+    public IBDataRecordTransformer<Object, Object> configure(ConfigMap cms) {
+      return new DeduplicatingRecordFilter(getWorkingPath(), cms, getLogger());
+    }
+
+    @Override
+    public Object apply(Object t) {
+      if (t == null)
+        return null;
+      long[] fp = fingerprint(t, new Encoder(), new long[2]);
+      synchronized (this) {
+        return firstSighting(fp[0], fp[1]) ? t : null;
+      }
+    }
+
+    @Override
+    public void applyBatch(Object[] in, Object[] out, int length, BitSet rejected) {
+      // Fingerprint outside the lock so that concurrent batches only serialise on the set itself
+      long[] fps = new long[length * 2];
+      long[] fp = new long[2];
+      Encoder e = new Encoder();
+      for (int i = rejected.nextClearBit(0); i < length; i = rejected.nextClearBit(i + 1)) {
+        if (in[i] == null)
+          continue;
+        fingerprint(in[i], e, fp);
+        fps[i * 2] = fp[0];
+        fps[i * 2 + 1] = fp[1];
+      }
+      synchronized (this) {
+        for (int i = rejected.nextClearBit(0); i < length; i = rejected.nextClearBit(i + 1)) {
+          if (in[i] != null && firstSighting(fps[i * 2], fps[i * 2 + 1]))
+            out[i] = in[i];
+          else {
+            out[i] = null;
+            rejected.set(i);
+          }
+        }
+      }
+    }
+
+    @Override
+    public synchronized void close() {
+      if (seen == null)
+        return;
+      getLogger().info("Dropped " + dropped + " duplicates of " + seen.size() + " distinct records ("
+          + seen.getSpillCount() + " spills)");
+      seen.close();
+      seen = null;
+      dropped = 0L;
+    }
+
+    private boolean firstSighting(long hi, long lo) {
+      if (seen == null)
+        seen = new IBDataFingerprintSet(memoryBytes, getWorkingPath().resolve(DEDUP + "-" + UUID.randomUUID()),
+            partitionBits);
+      if (seen.add(hi, lo))
+        return true;
+      ++dropped;
+      return false;
+    }
+
+    private long[] fingerprint(Object record, Encoder e, long[] out) {
+      e.reset();
+      if (fields.isEmpty())
+        e.encode(record);
+      else if (record instanceof Map)
+        for (String f : fields)
+          e.encode(((Map<?, ?>) record).get(f));
+      else if (record instanceof GenericRecord) {
+        GenericRecord r = (GenericRecord) record;
+        for (String f : fields)
+          e.encode(r.getSchema().getField(f) == null ? null : r.get(f));
+      } else
+        throw new IBDataException("Key fields for " + DEDUP + " need Map or GenericRecord records, not "
+            + record.getClass().getName());
+      return IBDataFingerprintSet.hash128(e.buf, e.len, 0L, out);
+    }
+
+    @Override
+    public String getHint() {
+      return DEDUP;
+    }
+
+    @Override
+    public Class<Object> getInboundClass() {
+      return Object.class;
+    }
+
+    @Override
+    public Class<Object> getOutboundClass() {
+      return Object.class;
+    }
+  }
+
+  /**
+   * Tagged, length-prefixed encoding of a value, so that values that are equal encode identically and distinct values
+   * cannot run together. Maps are encoded in key order.
+   */
+  private static class Encoder {
+    private static final byte NULL = 0;
+    private static final byte TEXT = 1;
+    private static final byte SCALAR = 2;
+    private static final byte MAP = 3;
+    private static final byte SEQUENCE = 4;
+    private static final byte BYTES = 5;
+    private byte[] buf = new byte[256];
+    private int len = 0;
+
+    void reset() {
+      len = 0;
+    }
+
+    void encode(Object v) {
+      if (v == null)
+        tag(NULL);
+      else if (v instanceof CharSequence)
+        bytes(TEXT, v.toString().getBytes(UTF_8));
+      else if (v instanceof byte[])
+        bytes(BYTES, (byte[]) v);
+      else if (v instanceof ByteBuffer) {
+        ByteBuffer b = ((ByteBuffer) v).duplicate();
+        byte[] a = new byte[b.remaining()];
+        b.get(a);
+        bytes(BYTES, a);
+      } else if (v instanceof Map) {
+        Map<String, Object> sorted = new TreeMap<>();
+        ((Map<?, ?>) v).forEach((k, x) -> sorted.put(String.valueOf(k), x));
+        tag(MAP);
+        length(sorted.size());
+        sorted.forEach((k, x) -> {
+          encode(k);
+          encode(x);
+        });
+      } else if (v instanceof GenericRecord) {
+        GenericRecord r = (GenericRecord) v;
+        List<Schema.Field> f = r.getSchema().getFields();
+        tag(SEQUENCE);
+        length(f.size());
+        for (Schema.Field x : f)
+          encode(r.get(x.pos()));
+      } else if (v instanceof Collection) {
+        tag(SEQUENCE);
+        length(((Collection<?>) v).size());
+        for (Object x : (Collection<?>) v)
+          encode(x);
+      } else if (v instanceof Object[]) {
+        tag(SEQUENCE);
+        length(((Object[]) v).length);
+        for (Object x : (Object[]) v)
+          encode(x);
+      } else
+        bytes(SCALAR, v.toString().getBytes(UTF_8));
+    }
+
+    private void tag(byte t) {
+      ensure(1);
+      buf[len++] = t;
+    }
+
+    private void length(int n) {
+      ensure(4);
+      buf[len++] = (byte) (n >>> 24);
+      buf[len++] = (byte) (n >>> 16);
+      buf[len++] = (byte) (n >>> 8);
+      buf[len++] = (byte) n;
+    }
+
+    private void bytes(byte t, byte[] b) {
+      tag(t);
+      length(b.length);
+      ensure(b.length);
+      System.arraycopy(b, 0, buf, len, b.length);
+      len += b.length;
+    }
+
+    private void ensure(int n) {
+      if (len + n > buf.length)
+        buf = Arrays.copyOf(buf, Math.max(buf.length * 2, len + n));
+    }
+  }
+
+}
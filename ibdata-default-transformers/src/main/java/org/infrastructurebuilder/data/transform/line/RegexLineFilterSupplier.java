@@ -21,8 +21,10 @@ import static org.infrastructurebuilder.data.IBDataConstants.IBDATA_WORKING_PATH
 
 import java.nio.file.Path;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import javax.inject.Named;
@@ -89,6 +91,21 @@ public class RegexLineFilterSupplier extends AbstractIBDataRecordTransformerSupp
       return ofNullable(t).flatMap(s -> ofNullable(splitRegex.matcher(s).matches() ? s : null)).orElse(null);
     }
 
+    @Override
+    public void applyBatch(Object[] in, Object[] out, int length, BitSet rejected) {
+      // One matcher per batch, reset for each record. Batches may run concurrently, so it is never shared
+      Matcher m = splitRegex.matcher("");
+      for (int i = rejected.nextClearBit(0); i < length; i = rejected.nextClearBit(i + 1)) {
+        Object s = in[i];
+        if (s != null && m.reset((String) s).matches())
+          out[i] = s;
+        else {
+          out[i] = null;
+          rejected.set(i);
+        }
+      }
+    }
+
     @Override
     public String getHint() {
       return REGEX_LINE_FILTER;
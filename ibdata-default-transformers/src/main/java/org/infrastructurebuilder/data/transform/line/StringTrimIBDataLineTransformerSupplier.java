@@ -19,6 +19,7 @@ import static java.util.Optional.ofNullable;
 
 import java.nio.file.Path;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
 import java.util.Optional;
 
@@ -81,6 +82,18 @@ public class StringTrimIBDataLineTransformerSupplier extends AbstractIBDataRecor
       return ofNullable(t).map(s -> s.trim()).orElse(null);
     }
 
+    @Override
+    public void applyBatch(Object[] in, Object[] out, int length, BitSet rejected) {
+      for (int i = rejected.nextClearBit(0); i < length; i = rejected.nextClearBit(i + 1)) {
+        Object s = in[i];
+        if (s == null) {
+          out[i] = null;
+          rejected.set(i);
+        } else
+          out[i] = ((String) s).trim();
+      }
+    }
+
     @Override
     public String getHint() {
       return STRING_TRIM;
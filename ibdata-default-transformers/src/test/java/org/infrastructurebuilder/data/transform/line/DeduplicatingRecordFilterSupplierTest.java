@@ -0,0 +1,169 @@
+/**
+ * Copyright © 2019 admin (admin@infrastructurebuilder.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.infrastructurebuilder.data.transform.line;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.infrastructurebuilder.data.IBDataException;
+import org.infrastructurebuilder.data.IBDataRowRangeIndex;
+import org.infrastructurebuilder.util.LoggerSupplier;
+import org.infrastructurebuilder.util.config.ConfigMap;
+import org.infrastructurebuilder.util.config.ConfigMapSupplier;
+import org.infrastructurebuilder.util.config.DefaultConfigMapSupplier;
+import org.infrastructurebuilder.util.config.PathSupplier;
+import org.junit.Test;
+
+public class DeduplicatingRecordFilterSupplierTest
+    extends AbstractTTestClass<DeduplicatingRecordFilterSupplier, Object, Object> {
+
+  @Override
+  Class<Object> getI() {
+    return Object.class;
+  }
+
+  @Override
+  Class<Object> getO() {
+    return Object.class;
+  }
+
+  @Override
+  DeduplicatingRecordFilterSupplier getT(PathSupplier wps, LoggerSupplier l) {
+    return new DeduplicatingRecordFilterSupplier(wps, l);
+  }
+
+  @Override
+  public ConfigMapSupplier getCMS() {
+    ConfigMap cm = new ConfigMap();
+    cm.put(DeduplicatingRecordFilterSupplier.DEDUP_FIELDS, Arrays.asList("A"));
+    return new DefaultConfigMapSupplier(cm);
+  }
+
+  private IBDataRecordTransformer<Object, Object> configured(String key, Object value) {
+    ConfigMap cm = new ConfigMap();
+    if (key != null)
+      cm.put(key, value);
+    return t.configure(new DefaultConfigMapSupplier(cm)).get();
+  }
+
+  private static Map<String, Object> map(Object a, Object b) {
+    Map<String, Object> m = new HashMap<>();
+    m.put("A", a);
+    m.put("B", b);
+    return m;
+  }
+
+  @Override
+  public void runSuccessTestOn(IBDataRecordTransformer<Object, Object> c) {
+    // Same key, different record
+    assertNull(c.apply(map("1", "3")));
+    Map<String, Object> m = map("2", "3");
+    assertSame(m, c.apply(m));
+    Map<String, Object> n = map(null, "3");
+    assertSame(n, c.apply(n));
+    assertNull(c.apply(new HashMap<>()));
+  }
+
+  @Override
+  @Test(expected = IBDataException.class)
+  public void failTest() throws Exception {
+    t.configure(getDefaultCMS()).get().apply("Not a map");
+  }
+
+  @Override
+  Object getSuccessTestValue() {
+    return map("1", "2");
+  }
+
+  @Override
+  Object getSuccessTestData() {
+    return map("1", "2");
+  }
+
+  @Test
+  public void testWholeRecord() {
+    IBDataRecordTransformer<Object, Object> c = configured(null, null);
+    assertEquals("a", c.apply("a"));
+    assertNull(c.apply("a"));
+    assertEquals("b", c.apply("b"));
+    assertNull(c.apply(null));
+    // Map order does not matter
+    Map<String, Object> m1 = new LinkedHashMap<>();
+    m1.put("x", 1);
+    m1.put("y", "2");
+    Map<String, Object> m2 = new LinkedHashMap<>();
+    m2.put("y", "2");
+    m2.put("x", 1);
+    assertSame(m1, c.apply(m1));
+    assertNull(c.apply(m2));
+    // Values cannot run together
+    assertEquals(3, ((Object[]) c.apply(new Object[] { "ab", "c", null })).length);
+    assertEquals(3, ((Object[]) c.apply(new Object[] { "a", "bc", null })).length);
+    assertNull(c.apply(new Object[] { "a", "bc", null }));
+  }
+
+  @Test
+  public void testCommaSeparatedFields() {
+    IBDataRecordTransformer<Object, Object> c = configured(DeduplicatingRecordFilterSupplier.DEDUP_FIELDS, "A, B");
+    assertEquals(map("1", "2"), c.apply(map("1", "2")));
+    assertEquals(map("1", "3"), c.apply(map("1", "3")));
+    assertNull(c.apply(map("1", "2")));
+  }
+
+  @Test
+  public void testBatchSpillAndClose() throws Exception {
+    IBDataRecordTransformer<Object, Object> c = configured(DeduplicatingRecordFilterSupplier.DEDUP_MEMORY_BYTES,
+        "16384");
+    IBDataRecordTransformerChain chain = new IBDataRecordTransformerChain(Arrays.asList(c));
+    Map<String, IBDataRowRangeIndex> errors = new HashMap<>();
+    int n = 20000;
+    Object[] batch = new Object[n * 2];
+    for (int i = 0; i < n * 2; ++i)
+      batch[i] = "row-" + (i % n);
+    BitSet rejected = chain.apply(batch, batch.length, 1L,
+        h -> errors.computeIfAbsent(h, k -> new IBDataRowRangeIndex()));
+    assertEquals(n, rejected.cardinality());
+    assertEquals(n, rejected.nextSetBit(0));
+    assertEquals((long) n, errors.get(DeduplicatingRecordFilterSupplier.DEDUP).getCount());
+    // State is released on close, and the next run starts afresh
+    chain.close();
+    Object[] again = { "row-1", "row-1" };
+    assertEquals(1, chain.apply(again, 2, 1L, h -> new IBDataRowRangeIndex()).cardinality());
+    chain.close();
+  }
+
+  @Test(expected = IBDataException.class)
+  public void testBadMemory() {
+    configured(DeduplicatingRecordFilterSupplier.DEDUP_MEMORY_BYTES, "100");
+  }
+
+  @Test(expected = IBDataException.class)
+  public void testBadPartitionBits() {
+    configured(DeduplicatingRecordFilterSupplier.DEDUP_PARTITION_BITS, "9");
+  }
+
+  @Test(expected = IBDataException.class)
+  public void testNotANumber() {
+    configured(DeduplicatingRecordFilterSupplier.DEDUP_MEMORY_BYTES, "lots");
+  }
+}
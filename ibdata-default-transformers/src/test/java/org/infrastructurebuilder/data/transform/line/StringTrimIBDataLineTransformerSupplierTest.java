@@ -0,0 +1,77 @@
+/**
+ * Copyright © 2019 admin (admin@infrastructurebuilder.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.infrastructurebuilder.data.transform.line;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.BitSet;
+
+import org.infrastructurebuilder.data.IBDataException;
+import org.infrastructurebuilder.util.LoggerSupplier;
+import org.infrastructurebuilder.util.config.ConfigMap;
+import org.infrastructurebuilder.util.config.ConfigMapSupplier;
+import org.infrastructurebuilder.util.config.DefaultConfigMapSupplier;
+import org.infrastructurebuilder.util.config.PathSupplier;
+
+public class StringTrimIBDataLineTransformerSupplierTest
+    extends AbstractTTestClass<StringTrimIBDataLineTransformerSupplier, String, String> {
+
+  @Override
+  Class<String> getI() {
+    return String.class;
+  }
+
+  @Override
+  Class<String> getO() {
+    return String.class;
+  }
+
+  @Override
+  StringTrimIBDataLineTransformerSupplier getT(PathSupplier wps, LoggerSupplier l) {
+    return new StringTrimIBDataLineTransformerSupplier(wps, l);
+  }
+
+  @Override
+  public ConfigMapSupplier getCMS() {
+    return new DefaultConfigMapSupplier(new ConfigMap());
+  }
+
+  @Override
+  public void failTest() throws Exception {
+    throw new IBDataException();
+  }
+
+  @Override
+  String getSuccessTestValue() {
+    return "abc";
+  }
+
+  @Override
+  String getSuccessTestData() {
+    return "  abc ";
+  }
+
+  @Override
+  public void runSuccessTestOn(IBDataRecordTransformer<String, String> c) {
+    Object[] batch = { " a", null, "b " };
+    BitSet rejected = new BitSet();
+    IBDataBatchRecordTransformer.from(c).applyBatch(batch, batch, batch.length, rejected);
+    assertArrayEquals(new Object[] { "a", null, "b" }, batch);
+    assertTrue(rejected.get(1));
+  }
+
+}
@@ -23,7 +23,9 @@ import static org.infrastructurebuilder.data.IBDataConstants.IBDATA_WORKING_PATH
 import static org.infrastructurebuilder.data.IBDataException.cet;
 
 import java.net.URL;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
@@ -51,6 +53,7 @@ import org.infrastructurebuilder.data.IBDataEngine;
 import org.infrastructurebuilder.data.IBDataException;
 import org.infrastructurebuilder.data.IBDataSetFinalizer;
 import org.infrastructurebuilder.data.IBDataSetFinalizerSupplier;
+import org.infrastructurebuilder.data.IBDataStageMetrics;
 import org.infrastructurebuilder.data.IBDataStream;
 import org.infrastructurebuilder.data.IBDataTransformationResult;
 import org.infrastructurebuilder.data.IBDataTransformer;
@@ -90,6 +93,8 @@ public final class IBDataTransformMavenComponent extends AbstractIBDataMavenComp
     return new DefaultIBDataTransformationResult(ds.get(), previous.getPath());
   };
 
+  public final static String IBDATA_METRICS_PROPERTIES = "ibdata-metrics.properties";
+
   private final Map<String, IBDataDataStreamRecordFinalizerSupplier<?>> allRecordFinalizers;
   private final Map<String, IBDataTransformerSupplier> allTransformers;
   private final IBDataEngine engine;
@@ -208,10 +213,16 @@ public final class IBDataTransformMavenComponent extends AbstractIBDataMavenComp
           ref = fromPrevious.apply(retVal);
         }
         // Walk the transformations list.
+        List<IBDataStageMetrics> metrics = new ArrayList<>();
         for (Transformer t : transformation.getTransformers()) {
           if (ref.get().isPresent()) {
             IBDataTransformer transformer = configuredMap.get(t.getId());
             ref = transformer.transform(t, ref.get().get(), sources, t.isFailOnAnyError());
+            if (ref instanceof DefaultIBDataTransformationResult) {
+              List<IBDataStageMetrics> m = ((DefaultIBDataTransformationResult) ref).getStageMetrics();
+              m.forEach(sm -> getLog().info("Transformer " + t.getId() + " " + sm));
+              metrics.addAll(m);
+            }
           }
         }
 
@@ -223,6 +234,10 @@ public final class IBDataTransformMavenComponent extends AbstractIBDataMavenComp
             .map(r -> cet.withReturningTranslation(() -> finalizer.finalize(r, transformation, r.getStreamSuppliers(), getBaseDir())))
             // Or throw exception if no such dataset exists
             .orElseThrow(() -> new IBDataException("Failed to finalize.  IBDataSet unavailable from processing"));
+        // Persist the stage metrics next to the dataset descriptor
+        Path ibdata = retVal.getPath().resolve(IBDATA);
+        if (!metrics.isEmpty() && Files.isDirectory(ibdata))
+          cet.withTranslation(() -> IBDataStageMetrics.write(metrics, ibdata.resolve(IBDATA_METRICS_PROPERTIES)));
       }
       return retVal;
     } catch (IBDataException e) {
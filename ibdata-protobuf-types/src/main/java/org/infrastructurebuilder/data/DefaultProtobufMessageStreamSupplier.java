@@ -0,0 +1,105 @@
+/**
+ * Copyright © 2019 admin (admin@infrastructurebuilder.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.infrastructurebuilder.data;
+
+import static java.util.Objects.requireNonNull;
+import static java.util.Optional.empty;
+import static org.infrastructurebuilder.data.IBDataException.cet;
+
+import java.io.BufferedInputStream;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators.AbstractSpliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import com.google.protobuf.Message;
+import com.google.protobuf.Parser;
+
+/**
+ * Reads a stream of length-delimited protobuf messages lazily, one message at a time, decompressing according to the
+ * stream's MIME type. The underlying input is closed when the returned stream is closed or fully consumed.
+ *
+ * @param <T> message type
+ */
+public class DefaultProtobufMessageStreamSupplier<T extends Message> implements IBDataSpecificStreamFactory<T> {
+  public final static List<String> TYPES = IBDataProtobufCodec.mimeTypes();
+  private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+  private final Parser<T> parser;
+
+  @SuppressWarnings("unchecked")
+  public DefaultProtobufMessageStreamSupplier(T defaultInstance) {
+    this.parser = (Parser<T>) requireNonNull(defaultInstance).getParserForType();
+  }
+
+  public DefaultProtobufMessageStreamSupplier(String className) {
+    this(IBDataProtobufUtils.<T> defaultInstanceFor(className));
+  }
+
+  @Override
+  public Optional<Stream<T>> from(IBDataStream ds) {
+    if (ds == null)
+      return empty();
+    return IBDataProtobufCodec.fromMimeType(ds.getMimeType()).map(codec -> {
+      final InputStream raw = ds.get();
+      final InputStream in;
+      try {
+        in = cet.withReturningTranslation(() -> codec.unwrap(new BufferedInputStream(raw, READ_BUFFER_SIZE)));
+      } catch (RuntimeException e) {
+        // A bad compression header fails here, before the returned stream owns the input
+        cet.withTranslation(() -> raw.close());
+        throw e;
+      }
+      return StreamSupport.stream(new DelimitedSpliterator<>(parser, in), false)
+          .onClose(() -> cet.withTranslation(() -> in.close()));
+    });
+  }
+
+  @Override
+  public List<String> getRespondTypes() {
+    return TYPES;
+  }
+
+  private static final class DelimitedSpliterator<T> extends AbstractSpliterator<T> {
+    private final Parser<T> parser;
+    private final InputStream in;
+    private boolean done = false;
+
+    private DelimitedSpliterator(Parser<T> parser, InputStream in) {
+      super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+      this.parser = parser;
+      this.in = in;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super T> action) {
+      if (done)
+        return false;
+      T next = cet.withReturningTranslation(() -> parser.parseDelimitedFrom(in));
+      if (next == null) {
+        done = true;
+        cet.withTranslation(() -> in.close());
+        return false;
+      }
+      action.accept(next);
+      return true;
+    }
+  }
+}
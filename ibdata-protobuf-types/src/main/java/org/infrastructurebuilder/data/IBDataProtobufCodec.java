@@ -0,0 +1,110 @@
+/**
+ * Copyright © 2019 admin (admin@infrastructurebuilder.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.infrastructurebuilder.data;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.xerial.snappy.SnappyFramedInputStream;
+import org.xerial.snappy.SnappyFramedOutputStream;
+
+/**
+ * Optional compression of a stream of length-delimited protobuf messages. Each codec has its own MIME type, so a reader
+ * knows how to decode a stream from its type alone.
+ *
+ * {@link #GZIP} compresses the whole stream as a single deflate stream, so it can only be read from the start.
+ * {@link #SNAPPY} uses the Snappy framing format, which compresses in independent chunks of at most 64KB.
+ */
+public enum IBDataProtobufCodec {
+  NONE(IBDataProtobufUtils.PROTOBUF_DELIMITED) {
+    @Override
+    public OutputStream wrap(OutputStream out) {
+      return out;
+    }
+
+    @Override
+    public InputStream unwrap(InputStream in) {
+      return in;
+    }
+  },
+  GZIP(IBDataProtobufUtils.PROTOBUF_DELIMITED + "+gzip") {
+    @Override
+    public OutputStream wrap(OutputStream out) throws IOException {
+      return new GZIPOutputStream(out, BUFFER_SIZE);
+    }
+
+    @Override
+    public InputStream unwrap(InputStream in) throws IOException {
+      return new GZIPInputStream(in, BUFFER_SIZE);
+    }
+  },
+  SNAPPY(IBDataProtobufUtils.PROTOBUF_DELIMITED + "+snappy") {
+    @Override
+    public OutputStream wrap(OutputStream out) throws IOException {
+      return new SnappyFramedOutputStream(out);
+    }
+
+    @Override
+    public InputStream unwrap(InputStream in) throws IOException {
+      return new SnappyFramedInputStream(in);
+    }
+  };
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private final String mimeType;
+
+  private IBDataProtobufCodec(String mimeType) {
+    this.mimeType = mimeType;
+  }
+
+  public String getMimeType() {
+    return mimeType;
+  }
+
+  public abstract OutputStream wrap(OutputStream out) throws IOException;
+
+  public abstract InputStream unwrap(InputStream in) throws IOException;
+
+  public static Optional<IBDataProtobufCodec> fromMimeType(String mimeType) {
+    return Arrays.stream(values()).filter(c -> c.mimeType.equals(mimeType)).findFirst();
+  }
+
+  /**
+   * @param name codec name, case insensitive, or null for {@link #NONE}
+   * @return the codec
+   */
+  public static IBDataProtobufCodec fromName(String name) {
+    if (name == null)
+      return NONE;
+    try {
+      return valueOf(name.trim().toUpperCase());
+    } catch (IllegalArgumentException e) {
+      throw new IBDataException("Unknown protobuf codec '" + name + "'");
+    }
+  }
+
+  public static List<String> mimeTypes() {
+    return Arrays.stream(values()).map(IBDataProtobufCodec::getMimeType).collect(Collectors.toList());
+  }
+}
@@ -17,80 +17,65 @@ package org.infrastructurebuilder.data;
 
 import static java.util.Objects.requireNonNull;
 import static java.util.Optional.ofNullable;
-import static org.infrastructurebuilder.IBConstants.FILE_PREFIX;
-import static org.infrastructurebuilder.IBConstants.HTTPS_PREFIX;
-import static org.infrastructurebuilder.IBConstants.HTTP_PREFIX;
-import static org.infrastructurebuilder.IBConstants.ZIP_PREFIX;
-import static org.infrastructurebuilder.data.IBDataException.cet;
 
-import java.io.IOException;
-import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.util.Optional;
+import java.nio.file.StandardOpenOption;
 import java.util.function.BiFunction;
-import java.util.function.Function;
-
-import javax.xml.validation.Schema;
 
 import org.infrastructurebuilder.data.transform.line.ProtobufDataFileWriter;
-import org.infrastructurebuilder.util.IBUtils;
 import org.infrastructurebuilder.util.config.ConfigMap;
 
-import com.google.protobuf.GeneratedMessageV3;
+import com.google.protobuf.Message;
 
 public interface IBDataProtobufUtils {
   public static final String NO_SCHEMA_CONFIG_FOR_MAPPER = "No schema config for mapper";
-  public final static String JAR_PREFIX = "jar:"; // TODO Move to IBConstants next core release
-
-//  public static final Function<String, Schema> avroSchemaFromString = schema -> {
-//    String q = ofNullable(schema).orElseThrow(() -> new IBDataException(NO_SCHEMA_CONFIG_FOR_MAPPER + "3"));
-//    String s = IBDataException.cet.withReturningTranslation(
-//        () -> ((Files.exists(Paths.get(schema))) ? Paths.get(schema).toUri().toURL().toExternalForm() : q));
-//
-//    boolean isURL = s.startsWith(JAR_PREFIX) || s.startsWith(HTTP_PREFIX) || s.startsWith(HTTPS_PREFIX)
-//        || s.startsWith(FILE_PREFIX) || s.startsWith(ZIP_PREFIX);
-//    try (InputStream in = isURL ? IBUtils.translateToWorkableArchiveURL(s).openStream()
-//        : IBDataProtobufUtils.class.getResourceAsStream(s)) {
-//      return cet.withReturningTranslation(() -> new Schema.Parser().parse(in));
-//    } catch (IOException e) {
-//      throw new IBDataException(e); // Handles the clos() of try-with-resources
-//    }
-//  };
+  /** MIME type of a stream of length-delimited protobuf messages */
+  public static final String PROTOBUF_DELIMITED = "application/x-protobuf-delimited";
+  /** Fully qualified name of the generated message class */
+  public static final String SCHEMA_PARAM = "schema";
+  /** Stream compression: none, gzip or snappy. Defaults to none */
+  public static final String CODEC_PARAM = "codec";
+  /** Size of the write buffer in bytes */
+  public static final String BUFFER_SIZE_PARAM = "bufferSize";
+  public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
 
-  public final static BiFunction<Path, ConfigMap, ProtobufDataFileWriter> fromMapAndWP = (workingPath, map) -> {
-    // Get the schema or die
-    String schema = ofNullable(requireNonNull(map).getString("schema"))
-        .orElseThrow(() -> new IBDataException("Schema is required"));
-    Class<?> clazz;
+  /**
+   * Find the default instance of a generated message class
+   *
+   * @param className fully qualified class name
+   * @return the default instance, from which builders and parsers are obtained
+   */
+  @SuppressWarnings("unchecked")
+  public static <T extends Message> T defaultInstanceFor(String className) {
     try {
-      clazz = Class.forName(schema);
-      GeneratedMessageV3 s = (GeneratedMessageV3) clazz.newInstance();
-      return ProtobufDataFileWriter.create(workingPath);
+      Class<?> clazz = Class.forName(requireNonNull(className));
+      if (!Message.class.isAssignableFrom(clazz))
+        throw new IBDataException("Schema " + className + " is not a protobuf Message");
+      return (T) clazz.getMethod("getDefaultInstance").invoke(null);
     } catch (ClassNotFoundException e) {
-      throw new IBDataException("Schema " + schema + " not available for instantiation");
-    } catch (InstantiationException | IllegalAccessException | ClassCastException cce) {
-      throw new IBDataException("Schema " + schema + " is not a GeneratedMessageV3");
+      throw new IBDataException("Schema " + className + " not available for instantiation");
+    } catch (ReflectiveOperationException e) {
+      throw new IBDataException("Schema " + className + " is not a generated protobuf message", e);
     }
-  };
+  }
 
-  /**
-   * Produces a DataFileWriter for the schema provided. If supplied, a GenericData
-   * will be used for translation.
-   *
-   * @param targetPath  The file to write
-   * @param s           The schema to use in the output file
-   * @param genericData Optional GenericData. If not provided a default
-   *                    GenericData instannnce will be used with no converters.
-   * @return DataFileWriter to write records
-   */
-  public static ProtobufDataFileWriter fromSchemaAndPathAndTranslator(Path targetPath, GeneratedMessageV3 s,
-      Optional<GeneratedMessageV3> genericData) {
-    GeneratedMessageV3 gd = requireNonNull(genericData)
-        .orElseThrow(() -> new IBDataException("Data required for fromSchemaAndPathAndTranslator"));
-    // Get the DataFileWriter or die
-    return ProtobufDataFileWriter.create(targetPath);
+  public static <T extends Message> T defaultInstanceFromConfig(ConfigMap map) {
+    return defaultInstanceFor(ofNullable(requireNonNull(map).getString(SCHEMA_PARAM))
+        .orElseThrow(() -> new IBDataException(NO_SCHEMA_CONFIG_FOR_MAPPER)));
   }
 
+  public final static BiFunction<OutputStream, ConfigMap, ProtobufDataFileWriter> fromMapAndOutputStream = (out,
+      map) -> {
+    // Fail early if the schema is not a message
+    defaultInstanceFromConfig(map);
+    return new ProtobufDataFileWriter(out, IBDataProtobufCodec.fromName(map.getString(CODEC_PARAM)),
+        ofNullable(map.getString(BUFFER_SIZE_PARAM)).map(Integer::parseInt).orElse(DEFAULT_BUFFER_SIZE));
+  };
+
+  public final static BiFunction<Path, ConfigMap, ProtobufDataFileWriter> fromMapAndWP = (workingPath,
+      map) -> fromMapAndOutputStream.apply(IBDataException.cet
+          .withReturningTranslation(() -> Files.newOutputStream(workingPath, StandardOpenOption.CREATE_NEW)), map);
+
 }
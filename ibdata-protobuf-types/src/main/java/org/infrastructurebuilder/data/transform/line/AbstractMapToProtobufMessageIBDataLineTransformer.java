@@ -17,20 +17,26 @@
 package org.infrastructurebuilder.data.transform.line;
 
 import java.nio.file.Path;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Locale;
+import java.util.Collection;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
-import org.infrastructurebuilder.data.Formatters;
+import org.infrastructurebuilder.data.IBDataException;
 import org.infrastructurebuilder.util.config.ConfigMap;
 import org.slf4j.Logger;
 
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Descriptors.Descriptor;
+import com.google.protobuf.Descriptors.EnumValueDescriptor;
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.Message;
+
 abstract public class AbstractMapToProtobufMessageIBDataLineTransformer
     extends AbstractProtobufIBDataLineTransformer<Map<String, Object>> {
 
-  private final List<String> alreadyWarned = new ArrayList<>();
+  private final Set<String> alreadyWarned = ConcurrentHashMap.newKeySet();
 
   protected AbstractMapToProtobufMessageIBDataLineTransformer(Path workingPath, ConfigMap config, Logger l) {
     super(workingPath, config, l);
@@ -39,34 +45,64 @@ abstract public class AbstractMapToProtobufMessageIBDataLineTransformer
   @Override
   public com.google.protobuf.GeneratedMessageV3 apply(Map<String, Object> t) {
     Objects.requireNonNull(t);
-//    Schema s = getSchema();
-//    GenericRecordBuilder rb = new GenericRecordBuilder(s);
-    // final GenericRecord r = new GenericData.Record(s);
-//    t.keySet().forEach(k -> {
-//      Field f = s.getField(k);
-//      if (f != null) {
-//        rb.set(f, t.get(k));
-//        //      else {
-//        //
-//        //      }
-//        //      Field v = s.getField(k);
-//        //      if (v != null) {
-//        //        r.put(k, managedValue(v.schema(), k, t.get(k), getFormatters()));
-//      } else {
-//        if (!alreadyWarned.contains(k)) {
-//          getLogger().warn("*** Field '" + k + "' not known in schema!  ");
-//          alreadyWarned.add(k);
-//        }
-//      }
-//    }); // FIXME mebbe we need to catch some of the RuntimeException instances
-//    return rb.build();
-    return null;
+    Message.Builder rb = getDefaultInstance().newBuilderForType();
+    Descriptor d = rb.getDescriptorForType();
+    t.forEach((k, v) -> {
+      FieldDescriptor f = d.findFieldByName(k);
+      if (f == null) {
+        if (alreadyWarned.add(k))
+          getLogger().warn("*** Field '" + k + "' not known in schema!  ");
+      } else if (v != null) { // Protobuf has no nulls; absent fields keep their default
+        if (f.isRepeated() && v instanceof Collection)
+          ((Collection<?>) v).forEach(e -> rb.addRepeatedField(f, toFieldValue(f, e)));
+        else
+          rb.setField(f, toFieldValue(f, v));
+      }
+    });
+    return (com.google.protobuf.GeneratedMessageV3) rb.build();
   }
 
-//  abstract public Schema getSchema();
-
-  abstract Locale getLocale();
+  /**
+   * Convert a map value to the java type protobuf expects for a field. Values that are already of that type pass
+   * through; anything else is converted from its string form.
+   */
+  static Object toFieldValue(FieldDescriptor f, Object v) {
+    String s = v.toString();
+    try {
+      switch (f.getJavaType()) {
+      case INT:
+        return (v instanceof Integer) ? v : (v instanceof Number) ? ((Number) v).intValue() : Integer.valueOf(s.trim());
+      case LONG:
+        return (v instanceof Long) ? v : (v instanceof Number) ? ((Number) v).longValue() : Long.valueOf(s.trim());
+      case FLOAT:
+        return (v instanceof Float) ? v : (v instanceof Number) ? ((Number) v).floatValue() : Float.valueOf(s.trim());
+      case DOUBLE:
+        return (v instanceof Double) ? v
+            : (v instanceof Number) ? ((Number) v).doubleValue() : Double.valueOf(s.trim());
+      case BOOLEAN:
+        return (v instanceof Boolean) ? v : Boolean.valueOf(s.trim());
+      case STRING:
+        return s;
+      case BYTES:
+        return (v instanceof ByteString) ? v
+            : (v instanceof byte[]) ? ByteString.copyFrom((byte[]) v) : ByteString.copyFromUtf8(s);
+      case ENUM:
+        if (v instanceof EnumValueDescriptor)
+          return v;
+        EnumValueDescriptor e = f.getEnumType().findValueByName(s.trim());
+        if (e == null)
+          throw new IBDataException("Value '" + s + "' is not a member of " + f.getEnumType().getFullName());
+        return e;
+      default: // MESSAGE
+        if (v instanceof Message)
+          return v;
+        throw new IBDataException("Field " + f.getName() + " requires a message, not " + v.getClass().getName());
+      }
+    } catch (NumberFormatException e) {
+      throw new IBDataException("Field " + f.getName() + " cannot accept '" + s + "'", e);
+    }
+  }
 
-  abstract Formatters getFormatters();
+  abstract public Message getDefaultInstance();
 
 }
@@ -18,34 +18,32 @@ package org.infrastructurebuilder.data.transform.line;
 
 import static java.util.Optional.ofNullable;
 import static org.infrastructurebuilder.data.IBDataConstants.IBDATA_WORKING_PATH_SUPPLIER;
-import static org.infrastructurebuilder.data.IBDataConstants.LOCALE_LANGUAGE_PARAM;
-import static org.infrastructurebuilder.data.IBDataConstants.LOCALE_REGION_PARAM;
 import static org.infrastructurebuilder.data.IBDataProtobufUtils.NO_SCHEMA_CONFIG_FOR_MAPPER;
 
 import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.List;
-import java.util.Locale;
 import java.util.Map;
-import java.util.Optional;
 
 import javax.inject.Inject;
 import javax.inject.Named;
 
-import org.infrastructurebuilder.data.Formatters;
 import org.infrastructurebuilder.data.IBDataException;
+import org.infrastructurebuilder.data.IBDataProtobufUtils;
 import org.infrastructurebuilder.util.LoggerSupplier;
 import org.infrastructurebuilder.util.config.ConfigMap;
 import org.infrastructurebuilder.util.config.ConfigMapSupplier;
 import org.infrastructurebuilder.util.config.PathSupplier;
 import org.slf4j.Logger;
 
+import com.google.protobuf.Message;
+
 @Named(DefaultMapToProtobufIBDataLineTransformerSupplier.NAME)
 public class DefaultMapToProtobufIBDataLineTransformerSupplier
     extends AbstractIBDataRecordTransformerSupplier<Map<String, Object>, com.google.protobuf.GeneratedMessageV3> {
-  public final static String NAME = "map-to-generic-avro";
+  public final static String NAME = "map-to-protobuf";
   public static final List<String> ACCEPTABLE_TYPES = Arrays.asList(Map.class.getCanonicalName());
-  public final static String SCHEMA_PARAM = "schema"; // Required **
+  public final static String SCHEMA_PARAM = IBDataProtobufUtils.SCHEMA_PARAM; // Required ** message class name
 
   @Inject
   public DefaultMapToProtobufIBDataLineTransformerSupplier(@Named(IBDATA_WORKING_PATH_SUPPLIER) PathSupplier wps,
@@ -76,8 +74,7 @@ public class DefaultMapToProtobufIBDataLineTransformerSupplier
   public static class DefaultMapSSToProtobufIBDataLineTransformer
       extends AbstractMapToProtobufMessageIBDataLineTransformer {
 
-//    private final Schema schema;
-    private final Formatters formatters;
+    private final Message defaultInstance;
 
     /**
      * @param workingPath
@@ -88,10 +85,9 @@ public class DefaultMapToProtobufIBDataLineTransformerSupplier
 
       if (config != null && !config.keySet().contains(SCHEMA_PARAM))
         throw new IBDataException(NO_SCHEMA_CONFIG_FOR_MAPPER);
-//      this.schema = config == null ? null
-//          : avroSchemaFromString.apply(ofNullable(getConfiguration(SCHEMA_PARAM))
-//              .orElseThrow(() -> new IBDataException(NO_SCHEMA_CONFIG_FOR_MAPPER + " (invalid?)")));
-      this.formatters = new Formatters(Optional.ofNullable(getConfig()).orElse(new ConfigMap()));
+      this.defaultInstance = config == null ? null
+          : IBDataProtobufUtils.defaultInstanceFor(ofNullable(getConfiguration(SCHEMA_PARAM))
+              .orElseThrow(() -> new IBDataException(NO_SCHEMA_CONFIG_FOR_MAPPER + " (invalid?)")));
     }
 
     /**
@@ -102,17 +98,8 @@ public class DefaultMapToProtobufIBDataLineTransformerSupplier
     }
 
     @Override
-    Formatters getFormatters() {
-      return this.formatters;
-    }
-
-    @Override
-    Locale getLocale() {
-      return ofNullable(getConfiguration(LOCALE_LANGUAGE_PARAM)).map(language -> {
-        Locale.Builder lb = new Locale.Builder().setLanguage(language);
-        ofNullable(getConfiguration(LOCALE_REGION_PARAM)).ifPresent(region -> lb.setRegion(region));
-        return lb.build();
-      }).orElse(Locale.getDefault());
+    public Message getDefaultInstance() {
+      return this.defaultInstance;
     }
 
     @Override
@@ -26,7 +26,6 @@ import java.util.UUID;
 import javax.inject.Inject;
 import javax.inject.Named;
 
-import org.infrastructurebuilder.IBConstants;
 import org.infrastructurebuilder.data.IBDataDataStreamRecordFinalizerSupplier;
 import org.infrastructurebuilder.data.IBDataProtobufUtils;
 import org.infrastructurebuilder.data.IBDataStreamRecordFinalizer;
@@ -62,17 +61,17 @@ public class GenericProtobufIBDataRecordFinalizerSupplier
   @Override
   public IBDataStreamRecordFinalizer<com.google.protobuf.GeneratedMessageV3> get() {
     // The working path needs to be stable and pre-existent
-    return new GenericAvroIBDataStreamRecordFinalizer(NAME, getWps().get().resolve(UUID.randomUUID().toString()),
+    return new GenericProtobufIBDataStreamRecordFinalizer(NAME, getWps().get().resolve(UUID.randomUUID().toString()),
         getLog(), getCms().get());
   }
 
-  private class GenericAvroIBDataStreamRecordFinalizer
+  public final class GenericProtobufIBDataStreamRecordFinalizer
       extends AbstractIBDataStreamRecordFinalizer<com.google.protobuf.GeneratedMessageV3, ProtobufDataFileWriter> {
 
     private final int numberOfRowsToSkip;
 
-    public GenericAvroIBDataStreamRecordFinalizer(String id, Path workingPath, Logger l, ConfigMap map) {
-      super(id, workingPath, l, map, Optional.of(IBDataProtobufUtils.fromMapAndWP.apply(workingPath, map)));
+    public GenericProtobufIBDataStreamRecordFinalizer(String id, Path workingPath, Logger l, ConfigMap map) {
+      super(id, workingPath, l, map, out -> IBDataProtobufUtils.fromMapAndOutputStream.apply(out, map));
       this.numberOfRowsToSkip = Integer.parseInt(map.getOrDefault(NUMBER_OF_ROWS_TO_SKIP_PARAM, "0"));
     }
 
@@ -88,7 +87,7 @@ public class GenericProtobufIBDataRecordFinalizerSupplier
 
     @Override
     public Optional<String> produces() {
-      return Optional.of(IBConstants.AVRO_BINARY);
+      return Optional.of(getWriter().getCodec().getMimeType());
     }
 
     @Override
@@ -16,27 +16,30 @@
 package org.infrastructurebuilder.data.transform.line;
 
 import static java.util.stream.Collectors.toList;
-import static java.util.stream.Collectors.toSet;
 
+import java.util.AbstractMap.SimpleImmutableEntry;
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.List;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.function.Supplier;
-import java.util.stream.Collectors;
 
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.Message;
 
-import com.google.protobuf.GeneratedMessageV3;
-
-public class GenericRecordMapProxy<T extends GeneratedMessageV3> implements Map<String, Object>, Supplier<T> {
+/**
+ * Read-only {@link Map} view of a protobuf message, keyed by field name. Messages are immutable, so mutators throw
+ * {@link UnsupportedOperationException}.
+ */
+public class GenericRecordMapProxy<T extends Message> implements Map<String, Object>, Supplier<T> {
   private final T r;
-  private final List<String> fieldNames;
+  private final Map<String, FieldDescriptor> fields = new LinkedHashMap<>();
 
   public GenericRecordMapProxy(T r) {
     this.r = Objects.requireNonNull(r);
-    this.fieldNames = this.r.getSchema().getFields().stream().map(Field::name).collect(Collectors.toList());
+    this.r.getDescriptorForType().getFields().forEach(fd -> fields.put(fd.getName(), fd));
   }
 
   @Override
@@ -46,7 +49,7 @@ public class GenericRecordMapProxy<T extends GeneratedMessageV3> implements Map<
 
   @Override
   public int size() {
-    return fieldNames.size();
+    return fields.size();
   }
 
   @Override
@@ -56,62 +59,54 @@ public class GenericRecordMapProxy<T extends GeneratedMessageV3> implements Map<
 
   @Override
   public boolean containsKey(Object key) {
-    return fieldNames.contains(key);
+    return fields.containsKey(key);
   }
 
   @Override
   public boolean containsValue(Object value) {
-    return fieldNames.stream().map(r::get).filter(v -> value.equals(v)).findAny().isPresent();
+    return values().contains(value);
   }
 
   @Override
   public Object get(Object key) {
-    return r.get(key.toString());
+    FieldDescriptor fd = fields.get(key);
+    return fd == null ? null : r.getField(fd);
   }
 
   @Override
   public Object put(String key, Object value) {
-    if (!fieldNames.contains(key))
-      return null;
-    Object old = r.get(key);
-    r.put(key, value);
-    return old;
+    throw new UnsupportedOperationException("put");
   }
 
   @Override
   public Object remove(Object key) {
-    // You can't do this
-    return null;
+    throw new UnsupportedOperationException("remove");
   }
 
   @Override
   public void putAll(Map<? extends String, ? extends Object> m) {
-    m.forEach((k, v) -> {
-      this.put(k, v);
-    });
+    throw new UnsupportedOperationException("putAll");
   }
 
   @Override
   public void clear() {
-    for (Field k : this.r.getSchema().getFields())
-      this.put(k.name(), null);
+    throw new UnsupportedOperationException("clear");
   }
 
   @Override
   public Set<String> keySet() {
-    return fieldNames.stream().collect(toSet());
+    return new LinkedHashSet<>(fields.keySet());
   }
 
   @Override
   public Collection<Object> values() {
-    return fieldNames.stream().map(r::get).collect(toList());
+    return fields.values().stream().map(r::getField).collect(toList());
   }
 
   @Override
   public Set<Entry<String, Object>> entrySet() {
-    // FIXME Incorrect AND inefficient.  Make local Entry.  This doesn't conform to actual Entry specs, because it doesn't reference backing "map"
-    Map<String, Object> m = new HashMap<>();
-    fieldNames.stream().forEach(k -> m.put(k, get(k)));
-    return m.entrySet();
+    Set<Entry<String, Object>> s = new LinkedHashSet<>();
+    fields.forEach((k, fd) -> s.add(new SimpleImmutableEntry<>(k, r.getField(fd))));
+    return s;
   }
 }
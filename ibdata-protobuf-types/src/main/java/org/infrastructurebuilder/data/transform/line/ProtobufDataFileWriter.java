@@ -15,39 +15,65 @@
  */
 package org.infrastructurebuilder.data.transform.line;
 
+import static org.infrastructurebuilder.data.IBDataException.cet;
+
 import java.io.Closeable;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.Objects;
 
 import org.infrastructurebuilder.data.IBDataException;
+import org.infrastructurebuilder.data.IBDataProtobufCodec;
+import org.infrastructurebuilder.data.IBDataProtobufUtils;
 
-import com.google.protobuf.GeneratedMessageV3;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.MessageLite;
 
+/**
+ * Writes protobuf messages each preceded by its varint length, the framing read by
+ * {@code MessageLite.parseDelimitedFrom}, through a single buffer and optional compression.
+ */
 public class ProtobufDataFileWriter implements Closeable {
-  private final Path targetPath;
   private final OutputStream outputStream;
+  private final CodedOutputStream coded;
+  private final IBDataProtobufCodec codec;
 
   public final static ProtobufDataFileWriter create(Path p) {
-    return new ProtobufDataFileWriter(p);
+    Path targetPath = Objects.requireNonNull(p).toAbsolutePath();
+    if (Files.exists(targetPath))
+      throw new IBDataException("Target path " + targetPath + " exists");
+    return new ProtobufDataFileWriter(
+        cet.withReturningTranslation(() -> Files.newOutputStream(targetPath, StandardOpenOption.CREATE_NEW)),
+        IBDataProtobufCodec.NONE, IBDataProtobufUtils.DEFAULT_BUFFER_SIZE);
+  }
+
+  public ProtobufDataFileWriter(OutputStream out, IBDataProtobufCodec codec, int bufferSize) {
+    this.codec = Objects.requireNonNull(codec);
+    this.outputStream = cet.withReturningTranslation(() -> codec.wrap(Objects.requireNonNull(out)));
+    this.coded = CodedOutputStream.newInstance(this.outputStream, bufferSize);
   }
 
-  public ProtobufDataFileWriter(Path targetPath) {
-    this.targetPath = Objects.requireNonNull(targetPath).toAbsolutePath();
-    if (Files.exists(this.targetPath))
-      throw new IBDataException("Target path " + this.targetPath + " exists");
-    this.outputStream = IBDataException.cet.withReturningTranslation(() -> Files.newOutputStream(this.targetPath));
+  public IBDataProtobufCodec getCodec() {
+    return codec;
   }
 
-  public void append(GeneratedMessageV3 recordToWrite) {
-    IBDataException.cet.withTranslation(() -> recordToWrite.writeTo(this.outputStream));
+  public void append(MessageLite recordToWrite) {
+    cet.withTranslation(() -> {
+      coded.writeUInt32NoTag(recordToWrite.getSerializedSize());
+      recordToWrite.writeTo(coded);
+    });
   }
 
   @Override
   public void close() throws IOException {
-    this.outputStream.close();
+    try {
+      this.coded.flush();
+    } finally {
+      this.outputStream.close();
+    }
   }
 
 }
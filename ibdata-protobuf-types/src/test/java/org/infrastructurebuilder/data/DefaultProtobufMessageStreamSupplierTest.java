@@ -0,0 +1,149 @@
+/**
+ * Copyright © 2019 admin (admin@infrastructurebuilder.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.infrastructurebuilder.data;
+
+import static java.util.stream.Collectors.toList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import org.codehaus.plexus.util.xml.Xpp3Dom;
+import org.infrastructurebuilder.data.model.DataStream;
+import org.infrastructurebuilder.data.transform.BA;
+import org.infrastructurebuilder.data.transform.Shapes;
+import org.infrastructurebuilder.data.transform.line.ProtobufDataFileWriter;
+import org.infrastructurebuilder.util.artifacts.Checksum;
+import org.infrastructurebuilder.util.config.TestingPathSupplier;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DefaultProtobufMessageStreamSupplierTest {
+  private final static TestingPathSupplier wps = new TestingPathSupplier();
+
+  @AfterClass
+  public static void afterClass() {
+    wps.finalize();
+  }
+
+  private List<BA> records;
+  private DefaultProtobufMessageStreamSupplier<BA> s;
+
+  @Before
+  public void setUp() throws Exception {
+    records = new ArrayList<>();
+    for (int i = 0; i < 500; ++i)
+      records.add(BA.newBuilder().setFirstName("first" + i).setLastName("last").setAge(i).setAlive(i % 2 == 0)
+          .setShape(Shapes.forNumber(i % 4)).build());
+    s = new DefaultProtobufMessageStreamSupplier<>(BA.class.getName());
+  }
+
+  private IBDataStream write(IBDataProtobufCodec codec) throws Exception {
+    Path p = wps.get().resolve(UUID.randomUUID().toString());
+    try (ProtobufDataFileWriter w = new ProtobufDataFileWriter(Files.newOutputStream(p), codec, 128)) {
+      records.forEach(w::append);
+    }
+    DataStream id = new DataStream();
+    id.setUuid(UUID.randomUUID().toString());
+    id.setCreationDate(new Date());
+    id.setMimeType(codec.getMimeType());
+    id.setMetadata(new Xpp3Dom("metadata"));
+    try (InputStream ins = Files.newInputStream(p)) {
+      id.setSha512(new Checksum(ins).toString());
+    }
+    return new DefaultIBDataStream(id, p);
+  }
+
+  @Test
+  public void testGetRespondTypes() {
+    assertEquals(IBDataProtobufCodec.values().length, s.getRespondTypes().size());
+    assertTrue(s.getRespondTypes().contains(IBDataProtobufUtils.PROTOBUF_DELIMITED));
+  }
+
+  @Test
+  public void testNull() {
+    assertFalse(s.from(null).isPresent());
+  }
+
+  @Test
+  public void testRoundTrip() throws Exception {
+    for (IBDataProtobufCodec codec : IBDataProtobufCodec.values())
+      try (Stream<BA> str = s.from(write(codec)).get()) {
+        assertEquals(codec.name(), records, str.collect(toList()));
+      }
+  }
+
+  @Test
+  public void testLazy() throws Exception {
+    try (Stream<BA> str = s.from(write(IBDataProtobufCodec.SNAPPY)).get()) {
+      assertEquals(records.subList(0, 3), str.limit(3).collect(toList()));
+    }
+  }
+
+  @Test
+  public void testUnknownType() throws Exception {
+    DataStream id = new DataStream();
+    id.setUuid(UUID.randomUUID().toString());
+    id.setCreationDate(new Date());
+    id.setMimeType("application/octet-stream");
+    id.setMetadata(new Xpp3Dom("metadata"));
+    id.setSha512(write(IBDataProtobufCodec.NONE).getChecksum().toString());
+    assertFalse(s.from(new DefaultIBDataStream(id, wps.getTestClasses().resolve("ba.csv"))).isPresent());
+  }
+
+  @Test
+  public void testBadHeaderClosesInput() throws Exception {
+    DataStream id = new DataStream();
+    id.setUuid(UUID.randomUUID().toString());
+    id.setCreationDate(new Date());
+    id.setMimeType(IBDataProtobufCodec.GZIP.getMimeType());
+    id.setMetadata(new Xpp3Dom("metadata"));
+    id.setSha512(write(IBDataProtobufCodec.NONE).getChecksum().toString());
+    AtomicBoolean closed = new AtomicBoolean(false);
+    // Not gzip, so the codec fails on the header
+    IBDataStream notGzip = new DefaultIBDataStream(id, wps.getTestClasses().resolve("ba.csv")) {
+      @Override
+      public InputStream get() {
+        return new FilterInputStream(super.get()) {
+          @Override
+          public void close() throws IOException {
+            closed.set(true);
+            super.close();
+          }
+        };
+      }
+    };
+    try {
+      s.from(notGzip);
+      fail("A bad gzip header should fail");
+    } catch (IBDataException e) {
+      assertTrue(closed.get());
+    }
+  }
+}
@@ -0,0 +1,76 @@
+/**
+ * Copyright © 2019 admin (admin@infrastructurebuilder.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.infrastructurebuilder.data;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.junit.Test;
+
+public class IBDataProtobufCodecTest {
+  private static final byte[] DATA = "abcabcabcabcabcabcabcabcabcabcabcabc".getBytes(UTF_8);
+
+  @Test
+  public void testRoundTrip() throws Exception {
+    for (IBDataProtobufCodec c : IBDataProtobufCodec.values()) {
+      ByteArrayOutputStream bos = new ByteArrayOutputStream();
+      try (OutputStream out = c.wrap(bos)) {
+        out.write(DATA);
+      }
+      try (InputStream in = c.unwrap(new ByteArrayInputStream(bos.toByteArray()))) {
+        assertArrayEquals(c.name(), DATA, readAll(in));
+      }
+    }
+  }
+
+  private static byte[] readAll(InputStream in) throws Exception {
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    byte[] buf = new byte[256];
+    int n;
+    while ((n = in.read(buf)) != -1)
+      bos.write(buf, 0, n);
+    return bos.toByteArray();
+  }
+
+  @Test
+  public void testFromName() {
+    assertEquals(IBDataProtobufCodec.NONE, IBDataProtobufCodec.fromName(null));
+    assertEquals(IBDataProtobufCodec.GZIP, IBDataProtobufCodec.fromName("gzip"));
+    assertEquals(IBDataProtobufCodec.SNAPPY, IBDataProtobufCodec.fromName(" Snappy "));
+  }
+
+  @Test(expected = IBDataException.class)
+  public void testFromNameUnknown() {
+    IBDataProtobufCodec.fromName("lz77");
+  }
+
+  @Test
+  public void testFromMimeType() {
+    assertEquals(IBDataProtobufCodec.NONE, IBDataProtobufCodec.fromMimeType(IBDataProtobufUtils.PROTOBUF_DELIMITED).get());
+    assertEquals(IBDataProtobufCodec.SNAPPY,
+        IBDataProtobufCodec.fromMimeType(IBDataProtobufCodec.SNAPPY.getMimeType()).get());
+    assertFalse(IBDataProtobufCodec.fromMimeType("application/octet-stream").isPresent());
+    assertTrue(IBDataProtobufCodec.mimeTypes().contains(IBDataProtobufCodec.GZIP.getMimeType()));
+  }
+}
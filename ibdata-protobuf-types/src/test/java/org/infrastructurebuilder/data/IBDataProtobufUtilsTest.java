@@ -15,25 +15,15 @@
  */
 package org.infrastructurebuilder.data;
 
-import static org.infrastructurebuilder.data.IBDataProtobufUtils.avroSchemaFromString;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 
-import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.Map;
-import java.util.Optional;
 import java.util.UUID;
-import java.util.function.Function;
-import java.util.stream.Collectors;
 
-import org.apache.avro.Schema;
-import org.apache.avro.Schema.Field;
-import org.apache.avro.file.DataFileWriter;
-import org.apache.avro.generic.GenericData;
-import org.apache.avro.generic.GenericData.Record;
-import org.apache.avro.generic.GenericRecord;
-import org.infrastructurebuilder.IBException;
 import org.infrastructurebuilder.data.transform.BA;
+import org.infrastructurebuilder.data.transform.line.ProtobufDataFileWriter;
 import org.infrastructurebuilder.util.config.ConfigMap;
 import org.infrastructurebuilder.util.config.TestingPathSupplier;
 import org.junit.AfterClass;
@@ -42,20 +32,12 @@ import org.junit.Test;
 
 public class IBDataProtobufUtilsTest {
   private final static TestingPathSupplier wps = new TestingPathSupplier();
-  private Schema schema;
-  private Record r;
-  private Map<String, Field> fields;
-  private Schema schema2;
-  private Map<String, Field> fields2;
+  private ConfigMap map;
 
   @Before
   public void setUp() throws Exception {
-    Path p = wps.getTestClasses().resolve("ba.avsc");
-    schema = avroSchemaFromString.apply(p.toAbsolutePath().toString());
-    schema2 = BA.SCHEMA$;
-    r = new GenericData.Record(schema);
-    fields = schema.getFields().stream().collect(Collectors.toMap(Field::name, Function.identity()));
-    fields2 = schema2.getFields().stream().collect(Collectors.toMap(Field::name, Function.identity()));
+    map = new ConfigMap();
+    map.put(IBDataProtobufUtils.SCHEMA_PARAM, BA.class.getName());
   }
 
   @AfterClass
@@ -64,53 +46,36 @@ public class IBDataProtobufUtilsTest {
   }
 
   @Test
-  public void testFromSchemaAndPathAndTranslator() throws IOException {
-
-    Path targetPath = wps.get();
-    DataFileWriter<GenericRecord> d = IBDataProtobufUtils.fromSchemaAndPathAndTranslator(
-        targetPath.resolve(UUID.randomUUID().toString() + ".avro"), schema, Optional.empty());
-    assertNotNull(d);
-    d.close();
-    d = IBDataProtobufUtils.fromSchemaAndPathAndTranslator(targetPath.resolve(UUID.randomUUID().toString() + ".avro"),
-        schema, Optional.of(new GenericData()));
-    assertNotNull(d);
-    d.close();
-
-  }
-
-  @Test(expected = IBException.class)
-  public void testNotObvioyslyBrokenURLZip() {
-    avroSchemaFromString.apply("zip:file:/nope.jar");
+  public void testDefaultInstanceFor() {
+    assertEquals(BA.getDefaultInstance(), IBDataProtobufUtils.defaultInstanceFor(BA.class.getName()));
+    assertEquals(BA.getDefaultInstance(), IBDataProtobufUtils.defaultInstanceFromConfig(map));
   }
 
   @Test(expected = IBDataException.class)
-  public void testNotObvioyslyBrokenURLHttp() {
-    avroSchemaFromString.apply("http://www.example.com");
+  public void testDefaultInstanceForMissingClass() {
+    IBDataProtobufUtils.defaultInstanceFor("org.infrastructurebuilder.NoSuchMessage");
   }
 
   @Test(expected = IBDataException.class)
-  public void testNotObvioyslyBrokenURLHttps() {
-    avroSchemaFromString.apply("https://www.example.com");
-  }
-
-  @Test(expected = IBException.class)
-  public void testNotObvioyslyBrokenURLJar() {
-    avroSchemaFromString.apply("jar:file:/nope.zip");
+  public void testDefaultInstanceForNotAMessage() {
+    IBDataProtobufUtils.defaultInstanceFor(String.class.getName());
   }
 
-  @Test(expected = IBDataException.class)
-  public void testNotObvioyslyBrokenURLFile() {
-    avroSchemaFromString.apply("file:/nopw.www.example.com");
-  }
-
-  @Test(expected = IBDataException.class)
-  public void testNulled() {
-    avroSchemaFromString.apply(null);
+  @Test
+  public void testFromMapAndWP() throws Exception {
+    map.put(IBDataProtobufUtils.CODEC_PARAM, "gzip");
+    map.put(IBDataProtobufUtils.BUFFER_SIZE_PARAM, "1024");
+    Path p = wps.get().resolve(UUID.randomUUID().toString());
+    try (ProtobufDataFileWriter w = IBDataProtobufUtils.fromMapAndWP.apply(p, map)) {
+      assertNotNull(w);
+      assertEquals(IBDataProtobufCodec.GZIP, w.getCodec());
+    }
   }
 
   @Test(expected = IBDataException.class)
-  public void testBrokenURL() {
-    avroSchemaFromString.apply("noep:@3");
+  public void testFromMapAndWPExists() throws Exception {
+    Path p = Files.createTempFile(wps.get(), "exists", ".pb");
+    IBDataProtobufUtils.fromMapAndWP.apply(p, map);
   }
 
   @Test(expected = IBDataException.class)
@@ -15,16 +15,17 @@
  */
 package org.infrastructurebuilder.data.transform;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 
 import java.io.InputStream;
 import java.nio.file.Path;
 import java.time.format.DateTimeFormatter;
-import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Properties;
 
+import org.infrastructurebuilder.data.IBDataException;
 import org.infrastructurebuilder.data.transform.line.AbstractMapToProtobufMessageIBDataLineTransformer;
 import org.infrastructurebuilder.data.transform.line.DefaultMapToProtobufIBDataLineTransformerSupplier;
 import org.infrastructurebuilder.util.config.ConfigMap;
@@ -37,8 +38,6 @@ import org.slf4j.LoggerFactory;
 import com.google.protobuf.GeneratedMessageV3;
 
 public class AbstractMapToProtobufMessageIBDataLineTransformerTest {
-  static final String BA_AVSC = "ba.avsc";
-
   static final String LOAD1_PROPERTIES = "load1.properties";
 
   public final static Logger log = LoggerFactory.getLogger(AbstractMapToProtobufMessageIBDataLineTransformerTest.class);
@@ -54,27 +53,25 @@ public class AbstractMapToProtobufMessageIBDataLineTransformerTest {
 
   @Before
   public void setUp() throws Throwable {
-    Path schemaP = wps.getTestClasses().resolve(BA_AVSC);
     testData.put("first_name", "c1");
     testData.put("last_name", "c2");
     testData.put("gender", "f");
     testData.put("country", "usa");
     testData.put("age", "323");
-    testData.put("date_of_birth", "11-10-99");
+    testData.put("date_of_birth", "13801");
     testData.put("id", "1");
     testData.put("index", "1");
     testData.put("A", "B");
-    Object[] a = Arrays.asList("A", "B", 1, 2, 3).toArray(new Object[0]);
+    testData.put("alive", "true");
+    testData.put("dub", "1.5");
+    testData.put("f", 2);
+    testData.put("bytesType", "xyz");
+    testData.put("shape", "CIRCLE");
     Properties p1 = new Properties();
     try (InputStream in = getClass().getResourceAsStream("/" + LOAD1_PROPERTIES)) {
       p1.load(in);
     }
-    p1.setProperty(DefaultMapToProtobufIBDataLineTransformerSupplier.SCHEMA_PARAM, schemaP.toAbsolutePath().toString());
-
-//    try (InputStream ins = getClass().getResourceAsStream("/" + BA_AVSC)) {
-//      Parser p = new Schema.Parser();
-//      s = p.parse(ins);
-//    }
+    p1.setProperty(DefaultMapToProtobufIBDataLineTransformerSupplier.SCHEMA_PARAM, BA.class.getName());
 
     workingPath = wps.get();
 
@@ -86,6 +83,29 @@ public class AbstractMapToProtobufMessageIBDataLineTransformerTest {
   public void test() {
     GeneratedMessageV3 r = test.apply(testData);
     assertNotNull(r);
+    BA ba = (BA) r;
+    assertEquals("c1", ba.getFirstName());
+    assertEquals(323, ba.getAge());
+    assertEquals(13801L, ba.getDateOfBirth());
+    assertEquals(true, ba.getAlive());
+    assertEquals(1.5, ba.getDub(), 0.0);
+    assertEquals(2.0f, ba.getF(), 0.0f);
+    assertEquals("xyz", ba.getBytesType().toStringUtf8());
+    assertEquals(Shapes.CIRCLE, ba.getShape());
+    // Unknown fields are ignored
+    assertEquals(r, test.apply(testData));
+  }
+
+  @Test(expected = IBDataException.class)
+  public void testBadNumber() {
+    testData.put("age", "old");
+    test.apply(testData);
+  }
+
+  @Test(expected = IBDataException.class)
+  public void testBadEnum() {
+    testData.put("shape", "HEXAGON");
+    test.apply(testData);
   }
 
 }
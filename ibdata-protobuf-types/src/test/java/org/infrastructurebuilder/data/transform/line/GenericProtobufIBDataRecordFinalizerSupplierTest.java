@@ -15,22 +15,33 @@
  */
 package org.infrastructurebuilder.data.transform.line;
 
+import static java.util.stream.Collectors.toList;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 
-import org.apache.avro.Schema;
-import org.apache.avro.generic.GenericData.Record;
-import org.apache.avro.generic.GenericRecord;
-import org.infrastructurebuilder.data.IBDataProtobufUtils;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import org.codehaus.plexus.util.xml.Xpp3Dom;
+import org.infrastructurebuilder.data.DefaultIBDataStream;
+import org.infrastructurebuilder.data.DefaultProtobufMessageStreamSupplier;
 import org.infrastructurebuilder.data.IBDataDataStreamRecordFinalizerSupplier;
+import org.infrastructurebuilder.data.IBDataException;
+import org.infrastructurebuilder.data.IBDataProtobufCodec;
+import org.infrastructurebuilder.data.IBDataProtobufUtils;
 import org.infrastructurebuilder.data.IBDataStreamRecordFinalizer;
+import org.infrastructurebuilder.data.model.DataStream;
+import org.infrastructurebuilder.data.transform.BA;
+import org.infrastructurebuilder.data.transform.line.GenericProtobufIBDataRecordFinalizerSupplier.GenericProtobufIBDataStreamRecordFinalizer;
 import org.infrastructurebuilder.util.config.ConfigMapSupplier;
 import org.infrastructurebuilder.util.config.DefaultConfigMapSupplier;
 import org.infrastructurebuilder.util.config.TestingPathSupplier;
-import org.junit.After;
 import org.junit.AfterClass;
 import org.junit.Before;
-import org.junit.BeforeClass;
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -42,10 +53,6 @@ public class GenericProtobufIBDataRecordFinalizerSupplierTest {
   public final static Logger log = LoggerFactory.getLogger(GenericProtobufIBDataRecordFinalizerSupplierTest.class);
   private final static TestingPathSupplier wps = new TestingPathSupplier();
 
-  @BeforeClass
-  public static void setUpBeforeClass() throws Exception {
-  }
-
   @AfterClass
   public static void tearDownAfterClass() throws Exception {
     wps.finalize();
@@ -53,22 +60,17 @@ public class GenericProtobufIBDataRecordFinalizerSupplierTest {
 
   private GenericProtobufIBDataRecordFinalizerSupplier g;
   private ConfigMapSupplier cms;
-  private GeneratedMessageV3 record;
+  private List<BA> records;
 
   @Before
   public void setUp() throws Exception {
     cms = new DefaultConfigMapSupplier();
-    String schemaString = wps.getTestClasses().resolve("ba.avsc").toAbsolutePath().toString();
-    cms.addValue(DefaultMapToGenericRecordIBDataLineTransformerSupplier.SCHEMA_PARAM, schemaString);
+    cms.addValue(IBDataProtobufUtils.SCHEMA_PARAM, BA.class.getName());
     cms.addValue(IBDataStreamRecordFinalizer.NUMBER_OF_ROWS_TO_SKIP_PARAM, "1");
     g = new GenericProtobufIBDataRecordFinalizerSupplier(wps, () -> log);
-    schema = IBDataProtobufUtils.avroSchemaFromString.apply(schemaString);
-    record = new Record(schema);
-
-  }
-
-  @After
-  public void tearDown() throws Exception {
+    records = new ArrayList<>();
+    for (int i = 0; i < 100; ++i)
+      records.add(BA.newBuilder().setId(Integer.toString(i)).setFirstName("f" + i).setDateOfBirth(1000L * i).build());
   }
 
   @Test
@@ -81,8 +83,35 @@ public class GenericProtobufIBDataRecordFinalizerSupplierTest {
   public void testGet() {
     IBDataStreamRecordFinalizer<GeneratedMessageV3> q = g.configure(cms).get();
     assertEquals(1, q.getNumberOfRowsToSkip());
-    q.writeRecord(record);
+    assertEquals(IBDataProtobufUtils.PROTOBUF_DELIMITED, q.produces().get());
+    assertEquals(GeneratedMessageV3.class, q.accepts().get().get(0));
+  }
+
+  @Test
+  public void testWriteAndReadBack() throws Exception {
+    cms.addValue(IBDataProtobufUtils.CODEC_PARAM, "snappy");
+    cms.addValue(IBDataProtobufUtils.BUFFER_SIZE_PARAM, "512");
+    GenericProtobufIBDataStreamRecordFinalizer f = (GenericProtobufIBDataStreamRecordFinalizer) g.configure(cms).get();
+    assertEquals(IBDataProtobufCodec.SNAPPY.getMimeType(), f.produces().get());
+    records.forEach(f::writeRecord);
+    f.close();
+    assertEquals(Files.size(f.getWorkingPath()), f.getLength().get().longValue());
+
+    DataStream id = new DataStream();
+    id.setUuid(UUID.randomUUID().toString());
+    id.setCreationDate(new Date());
+    id.setMimeType(f.produces().get());
+    id.setSha512(f.getChecksum().get().toString());
+    id.setMetadata(new Xpp3Dom("metadata"));
+    try (Stream<BA> s = new DefaultProtobufMessageStreamSupplier<>(BA.getDefaultInstance())
+        .from(new DefaultIBDataStream(id, f.getWorkingPath())).get()) {
+      assertEquals(records, s.collect(toList()));
+    }
+  }
 
+  @Test(expected = IBDataException.class)
+  public void testNoSchema() {
+    g.configure(new DefaultConfigMapSupplier()).get();
   }
 
 }
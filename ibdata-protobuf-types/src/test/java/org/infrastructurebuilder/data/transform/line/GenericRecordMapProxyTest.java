@@ -21,54 +21,25 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
-import java.io.IOException;
-import java.io.InputStream;
-import java.nio.file.Files;
-import java.nio.file.Path;
 import java.util.HashMap;
-import java.util.Map;
-
-import org.apache.avro.Schema;
-import org.apache.avro.SchemaBuilder;
-import org.apache.avro.generic.GenericData;
-import org.apache.avro.generic.GenericRecord;
-import org.apache.avro.generic.GenericRecordBuilder;
-import org.infrastructurebuilder.data.IBDataProtobufUtils;
-import org.infrastructurebuilder.util.config.TestingPathSupplier;
-import org.junit.After;
-import org.junit.AfterClass;
+
+import org.infrastructurebuilder.data.transform.BA;
+import org.infrastructurebuilder.data.transform.Shapes;
 import org.junit.Before;
-import org.junit.BeforeClass;
 import org.junit.Test;
 
-public class GenericRecordMapProxyTest {
-
-  public final static TestingPathSupplier wps = new TestingPathSupplier();
+import com.google.protobuf.Empty;
 
-  @BeforeClass
-  public static void setUpBeforeClass() throws Exception {
-  }
-
-  @AfterClass
-  public static void tearDownAfterClass() throws Exception {
-  }
+public class GenericRecordMapProxyTest {
 
-  private Schema schema;
-  private GenericRecordBuilder b;
-  private GenericRecord r;
-  private GenericRecordMapProxy p;
+  private static final int BA_FIELDS = 16;
+  private BA r;
+  private GenericRecordMapProxy<BA> p;
 
   @Before
   public void setUp() throws Exception {
-    schema = IBDataProtobufUtils.avroSchemaFromString
-        .apply(wps.getTestClasses().resolve("ba.avsc").toAbsolutePath().toString());
-    b = new GenericRecordBuilder(schema);
-    r = new GenericData.Record(schema);
-    p = new GenericRecordMapProxy(r);
-  }
-
-  @After
-  public void tearDown() throws Exception {
+    r = BA.newBuilder().setFirstName("jeff").setAge(10).setShape(Shapes.OVAL).build();
+    p = new GenericRecordMapProxy<>(r);
   }
 
   @Test
@@ -77,16 +48,8 @@ public class GenericRecordMapProxyTest {
   }
 
   @Test
-  public void testEmptySchema() throws IOException {
-    Path p = wps.getTestClasses().resolve("baempty.avsc");
-
-    try (InputStream ins = Files.newInputStream(p)) {
-      Schema empty = new Schema.Parser().parse(ins);
-      GenericRecord eb = new GenericRecordBuilder(empty).build();
-      GenericRecordMapProxy e = new GenericRecordMapProxy(eb);
-      assertTrue(e.isEmpty());
-    }
-
+  public void testEmptySchema() {
+    assertTrue(new GenericRecordMapProxy<>(Empty.getDefaultInstance()).isEmpty());
   }
 
   @Test
@@ -97,11 +60,7 @@ public class GenericRecordMapProxyTest {
 
   @Test
   public void testSize() {
-    assertEquals(8, p.size());
-  }
-
-  @Test
-  public void testIsEmpty() {
+    assertEquals(BA_FIELDS, p.size());
     assertFalse(p.isEmpty());
   }
 
@@ -113,54 +72,43 @@ public class GenericRecordMapProxyTest {
 
   @Test
   public void testContainsValue() {
-    assertFalse(p.containsValue("jeff"));
+    assertTrue(p.containsValue("jeff"));
+    assertFalse(p.containsValue("bob"));
   }
 
   @Test
   public void testGetObject() {
-    assertNull(p.get("age"));
+    assertEquals(10, p.get("age"));
+    assertEquals("", p.get("country"));
+    assertEquals(Shapes.OVAL.getValueDescriptor(), p.get("shape"));
   }
 
-  @Test
+  @Test(expected = UnsupportedOperationException.class)
   public void testPut() {
-    p.put("country", null);
     p.put("age", 10);
-    assertEquals(10, p.get("age"));
-    assertNull(p.put("NOSUCHFIELD", "anything"));
   }
 
-  @Test
+  @Test(expected = UnsupportedOperationException.class)
   public void testRemove() {
-    p.remove("country"); // does nothing
+    p.remove("country");
   }
 
-  @Test
+  @Test(expected = UnsupportedOperationException.class)
   public void testPutAll() {
-    Map<String, Object> a = new HashMap<>();
-    p.putAll(a);
-    a.put("age", 10);
-    p.putAll(a);
-    assertEquals(10, p.get("age"));
+    p.putAll(new HashMap<>());
   }
 
-  @Test
+  @Test(expected = UnsupportedOperationException.class)
   public void testClear() {
     p.clear();
   }
 
   @Test
-  public void testKeySet() {
-    assertEquals(8, p.keySet().size());
-  }
-
-  @Test
-  public void testValues() {
-    assertEquals(8, p.values().size());
-  }
-
-  @Test
-  public void testEntrySet() {
-    assertEquals(8, p.entrySet().size());
+  public void testKeySetValuesEntrySet() {
+    assertEquals(BA_FIELDS, p.keySet().size());
+    assertEquals(BA_FIELDS, p.values().size());
+    assertEquals(BA_FIELDS, p.entrySet().size());
+    assertEquals("first_name", p.entrySet().iterator().next().getKey());
   }
 
 }
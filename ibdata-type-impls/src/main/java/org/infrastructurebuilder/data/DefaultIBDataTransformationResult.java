@@ -20,7 +20,10 @@ import static java.util.Optional.ofNullable;
 
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import org.infrastructurebuilder.util.config.PathSupplier;
@@ -36,15 +39,29 @@ public class DefaultIBDataTransformationResult implements IBDataTransformationRe
   private Optional<IBDataSet> dataSet;
   private List<IBDataTransformationError> errors;
   private final Path workingPath;
+  private final Map<String, IBDataRowRangeIndex> rejectedRows;
+  private final List<IBDataStageMetrics> stageMetrics;
 
   public DefaultIBDataTransformationResult(IBDataSet createdDataSet, Path workingPath) {
     this(ofNullable(createdDataSet), new ArrayList<>(), workingPath);
   }
 
   public DefaultIBDataTransformationResult(Optional<IBDataSet> createdSet, List<IBDataTransformationError> errors, Path workingPath) {
+    this(createdSet, errors, workingPath, Collections.emptyMap());
+  }
+
+  public DefaultIBDataTransformationResult(Optional<IBDataSet> createdSet, List<IBDataTransformationError> errors,
+      Path workingPath, Map<String, IBDataRowRangeIndex> rejectedRows) {
+    this(createdSet, errors, workingPath, rejectedRows, Collections.emptyList());
+  }
+
+  public DefaultIBDataTransformationResult(Optional<IBDataSet> createdSet, List<IBDataTransformationError> errors,
+      Path workingPath, Map<String, IBDataRowRangeIndex> rejectedRows, List<IBDataStageMetrics> stageMetrics) {
     this.dataSet = requireNonNull(createdSet);
     this.errors = requireNonNull(errors);
     this.workingPath = requireNonNull(workingPath);
+    this.rejectedRows = Collections.unmodifiableMap(new LinkedHashMap<>(requireNonNull(rejectedRows)));
+    this.stageMetrics = Collections.unmodifiableList(new ArrayList<>(requireNonNull(stageMetrics)));
   }
 
   @Override
@@ -57,6 +74,27 @@ public class DefaultIBDataTransformationResult implements IBDataTransformationRe
     return dataSet;
   }
 
+  /**
+   * @return index of the rows rejected by each record transformer, keyed by transformer hint
+   */
+  public Map<String, IBDataRowRangeIndex> getRejectedRows() {
+    return rejectedRows;
+  }
+
+  /**
+   * @return total number of rows rejected by all record transformers
+   */
+  public long getRejectedRowCount() {
+    return rejectedRows.values().stream().mapToLong(IBDataRowRangeIndex::getCount).sum();
+  }
+
+  /**
+   * @return throughput and latency metrics for each stage of the transformation, in pipeline order
+   */
+  public List<IBDataStageMetrics> getStageMetrics() {
+    return stageMetrics;
+  }
+
   @Override
   public PathSupplier getWorkingPathSupplier() {
     return () -> this.workingPath;
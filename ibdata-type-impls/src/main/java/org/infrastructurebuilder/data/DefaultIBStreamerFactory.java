@@ -56,4 +56,26 @@ public class DefaultIBStreamerFactory implements IBStreamerFactory {
         .flatMap(s -> s.from(ds));
   }
 
+  /**
+   * Stream a data stream, reading only some fields of each record.
+   *
+   * Factories that are not {@link IBDataProjectingStreamFactory} cannot project, and produce whole records.
+   *
+   * @param ds     the stream to read
+   * @param fields names of the fields to read
+   * @return a stream of records from the highest-weighted factory that responds to the stream's type
+   */
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  public Optional<Stream<? extends Object>> from(IBDataStream ds, List<String> fields) {
+    Objects.requireNonNull(fields);
+    return sortedSuppliers.stream()
+        // Only get responsive elements
+        .filter(ss -> ss.respondsTo(ds.getMimeType()))
+        // "first" has highest weight
+        .findFirst()
+        .flatMap(s -> s instanceof IBDataProjectingStreamFactory
+            ? ((IBDataProjectingStreamFactory) s).from(ds, fields)
+            : s.from(ds));
+  }
+
 }
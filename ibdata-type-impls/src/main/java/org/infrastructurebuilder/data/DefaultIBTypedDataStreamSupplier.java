@@ -18,14 +18,23 @@ package org.infrastructurebuilder.data;
 import static java.util.Objects.requireNonNull;
 import static java.util.Spliterators.spliteratorUnknownSize;
 import static java.util.stream.StreamSupport.stream;
+import static org.infrastructurebuilder.data.IBDataException.cet;
 
 import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.function.Supplier;
 import java.util.stream.Stream;
 
+/**
+ * Typed stream over an iterator, or over spliterators that can be split for parallel streams.
+ *
+ * An iterator can only be consumed once and cannot usefully be split. A spliterator supplier produces a fresh
+ * spliterator on every call to {@link #get()}. A spliterator that is {@link AutoCloseable} is closed with the stream.
+ */
 public class DefaultIBTypedDataStreamSupplier<T> extends DefaultIBDataStreamIdentifier
     implements IBTypedDataStreamSupplier<T> {
 
-  private final Iterator<T> iterable;
+  private final Supplier<? extends Spliterator<T>> spliterators;
   private final boolean parallel;
 
   public DefaultIBTypedDataStreamSupplier(IBDataStream original, Iterator<T> iterable) {
@@ -33,14 +42,31 @@ public class DefaultIBTypedDataStreamSupplier<T> extends DefaultIBDataStreamIden
   }
 
   public DefaultIBTypedDataStreamSupplier(IBDataStream original, Iterator<T> iterable, boolean parallel) {
+    this(original, fromIterator(iterable), parallel);
+  }
+
+  public DefaultIBTypedDataStreamSupplier(IBDataStream original, Supplier<? extends Spliterator<T>> spliterators,
+      boolean parallel) {
     super(original);
-    this.iterable = requireNonNull(iterable);
+    this.spliterators = requireNonNull(spliterators);
     this.parallel = parallel;
   }
 
+  public boolean isParallel() {
+    return parallel;
+  }
+
   @Override
   public Stream<T> get() {
-    return stream(spliteratorUnknownSize(requireNonNull(iterable), 0), parallel);
+    Spliterator<T> s = requireNonNull(spliterators.get());
+    Stream<T> st = stream(s, parallel);
+    if (s instanceof AutoCloseable)
+      st = st.onClose(() -> cet.withTranslation(() -> ((AutoCloseable) s).close()));
+    return st;
   }
 
+  private static <T> Supplier<Spliterator<T>> fromIterator(Iterator<T> iterable) {
+    requireNonNull(iterable);
+    return () -> spliteratorUnknownSize(iterable, 0);
+  }
 }
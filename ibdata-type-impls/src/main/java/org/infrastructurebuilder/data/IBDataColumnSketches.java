@@ -0,0 +1,165 @@
+/**
+ * Copyright © 2019 admin (admin@infrastructurebuilder.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.infrastructurebuilder.data;
+
+import static java.util.Optional.ofNullable;
+
+import java.util.Base64;
+import java.util.Map.Entry;
+import java.util.Optional;
+
+import org.codehaus.plexus.util.xml.Xpp3Dom;
+
+/**
+ * The sketches kept for one column: always a distinct count estimate, a quantile sketch for numeric columns, and
+ * heavy hitters for categorical ones.
+ *
+ * Sketches serialize to and from an Xpp3Dom element so they can be published with a stream's metadata and merged
+ * later without rescanning the data.
+ */
+public final class IBDataColumnSketches {
+  public static final String FIELD = "field";
+  public static final String INDEX = "index";
+  public static final String DISTINCT = "distinct";
+  public static final String QUANTILES = "quantiles";
+  public static final String TOP_K = "topK";
+  public static final String ITEM = "item";
+  public static final String TOTAL = "total";
+  public static final String MAXIMUM_ERROR = "maximumError";
+  static final double[] REPORTED_QUANTILES = { 0.01, 0.05, 0.25, 0.5, 0.75, 0.95, 0.99 };
+
+  private final IBDataHyperLogLog distinct;
+  private final IBDataQuantileSketch quantiles;
+  private final IBDataFrequentItems frequent;
+
+  public static IBDataColumnSketches numeric() {
+    return new IBDataColumnSketches(new IBDataHyperLogLog(), new IBDataQuantileSketch(), null);
+  }
+
+  public static IBDataColumnSketches categorical(int topK) {
+    return new IBDataColumnSketches(new IBDataHyperLogLog(), null, new IBDataFrequentItems(topK));
+  }
+
+  public static IBDataColumnSketches distinctOnly() {
+    return new IBDataColumnSketches(new IBDataHyperLogLog(), null, null);
+  }
+
+  public static IBDataColumnSketches fromMetadata(Xpp3Dom field) {
+    Base64.Decoder d = Base64.getDecoder();
+    IBDataHyperLogLog h = IBDataHyperLogLog.fromBytes(d.decode(field.getChild(DISTINCT).getValue()));
+    IBDataQuantileSketch q = ofNullable(field.getChild(QUANTILES))
+        .map(x -> IBDataQuantileSketch.fromBytes(d.decode(x.getValue()))).orElse(null);
+    IBDataFrequentItems f = ofNullable(field.getChild(TOP_K)).map(x -> {
+      IBDataFrequentItems i = new IBDataFrequentItems(Integer.parseInt(x.getAttribute("k")));
+      for (Xpp3Dom item : x.getChildren(ITEM))
+        i.update(item.getValue(), Long.parseLong(item.getAttribute("count")));
+      // Older metadata carries neither, leaving the sum of the items and no error
+      i.restore(ofNullable(x.getAttribute(TOTAL)).map(Long::parseLong).orElse(i.getTotal()),
+          ofNullable(x.getAttribute(MAXIMUM_ERROR)).map(Long::parseLong).orElse(0L));
+      return i;
+    }).orElse(null);
+    return new IBDataColumnSketches(h, q, f);
+  }
+
+  private IBDataColumnSketches(IBDataHyperLogLog h, IBDataQuantileSketch q, IBDataFrequentItems f) {
+    this.distinct = h;
+    this.quantiles = q;
+    this.frequent = f;
+  }
+
+  public void updateLong(long v) {
+    distinct.addLong(v);
+    if (quantiles != null)
+      quantiles.update(v);
+  }
+
+  public void updateDouble(double v) {
+    distinct.addDouble(v);
+    if (quantiles != null)
+      quantiles.update(v);
+  }
+
+  public void updateString(CharSequence v) {
+    distinct.add(v);
+    if (frequent != null)
+      frequent.update(v.toString());
+  }
+
+  /**
+   * Count a value by its hash alone, for example raw bytes
+   */
+  public void updateHash(long hash) {
+    distinct.addHash(hash);
+  }
+
+  public void merge(IBDataColumnSketches other) {
+    distinct.merge(other.distinct);
+    if (quantiles != null && other.quantiles != null)
+      quantiles.merge(other.quantiles);
+    if (frequent != null && other.frequent != null)
+      frequent.merge(other.frequent);
+  }
+
+  public IBDataHyperLogLog getDistinct() {
+    return distinct;
+  }
+
+  public Optional<IBDataQuantileSketch> getQuantiles() {
+    return ofNullable(quantiles);
+  }
+
+  public Optional<IBDataFrequentItems> getFrequentItems() {
+    return ofNullable(frequent);
+  }
+
+  /**
+   * @param index field index within the stream
+   * @return a "field" element with the serialized sketches and their human-readable summaries as attributes
+   */
+  public Xpp3Dom asMetadata(int index) {
+    Base64.Encoder e = Base64.getEncoder();
+    Xpp3Dom f = new Xpp3Dom(FIELD);
+    f.setAttribute(INDEX, Integer.toString(index));
+    Xpp3Dom d = new Xpp3Dom(DISTINCT);
+    d.setAttribute("estimate", Long.toString(distinct.estimate()));
+    d.setValue(e.encodeToString(distinct.toBytes()));
+    f.addChild(d);
+    getQuantiles().ifPresent(q -> {
+      Xpp3Dom x = new Xpp3Dom(QUANTILES);
+      x.setAttribute("count", Long.toString(q.getCount()));
+      if (q.getCount() > 0L)
+        for (double r : REPORTED_QUANTILES)
+          x.setAttribute("p" + Math.round(r * 100), Double.toString(q.getQuantile(r)));
+      x.setValue(e.encodeToString(q.toBytes()));
+      f.addChild(x);
+    });
+    getFrequentItems().ifPresent(i -> {
+      Xpp3Dom x = new Xpp3Dom(TOP_K);
+      x.setAttribute("k", Integer.toString(i.getK()));
+      x.setAttribute(TOTAL, Long.toString(i.getTotal()));
+      x.setAttribute(MAXIMUM_ERROR, Long.toString(i.getMaximumError()));
+      // Every retained item, not only the top k, so a restored sketch merges exactly as the original would
+      for (Entry<String, Long> en : i.getRetained()) {
+        Xpp3Dom item = new Xpp3Dom(ITEM);
+        item.setAttribute("count", en.getValue().toString());
+        item.setValue(en.getKey());
+        x.addChild(item);
+      }
+      f.addChild(x);
+    });
+    return f;
+  }
+}
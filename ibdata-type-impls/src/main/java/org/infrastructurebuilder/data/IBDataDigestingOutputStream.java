@@ -0,0 +1,96 @@
+/**
+ * Copyright © 2019 admin (admin@infrastructurebuilder.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.infrastructurebuilder.data;
+
+import static java.util.Optional.ofNullable;
+import static org.infrastructurebuilder.data.IBDataException.cet;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.util.Optional;
+
+import org.infrastructurebuilder.util.artifacts.Checksum;
+
+/**
+ * An OutputStream that computes the SHA-512 {@link Checksum} and length of everything written through it, so the
+ * written file never has to be read again to checksum it.
+ *
+ * The checksum is available once the stream is closed.
+ */
+public class IBDataDigestingOutputStream extends FilterOutputStream {
+  public static final String DIGEST_ALGORITHM = "SHA-512";
+  private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+  private final MessageDigest digest;
+  private long length = 0L;
+  private Checksum checksum = null;
+
+  public IBDataDigestingOutputStream(OutputStream out) {
+    super(out);
+    this.digest = cet.withReturningTranslation(() -> MessageDigest.getInstance(DIGEST_ALGORITHM));
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    out.write(b);
+    digest.update((byte) b);
+    ++length;
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) throws IOException {
+    // FilterOutputStream writes one byte at a time
+    out.write(b, off, len);
+    digest.update(b, off, len);
+    length += len;
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (checksum == null) {
+      try {
+        super.close();
+      } finally {
+        checksum = new Checksum(toHex(digest.digest()));
+      }
+    }
+  }
+
+  /**
+   * @return number of bytes written so far
+   */
+  public long getLength() {
+    return length;
+  }
+
+  /**
+   * @return checksum of everything written, or empty if the stream is not yet closed
+   */
+  public Optional<Checksum> getChecksum() {
+    return ofNullable(checksum);
+  }
+
+  private static String toHex(byte[] b) {
+    char[] c = new char[b.length * 2];
+    for (int i = 0; i < b.length; ++i) {
+      c[i * 2] = HEX[(b[i] >> 4) & 0xf];
+      c[i * 2 + 1] = HEX[b[i] & 0xf];
+    }
+    return new String(c);
+  }
+}
@@ -0,0 +1,130 @@
+/**
+ * Copyright © 2019 admin (admin@infrastructurebuilder.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.infrastructurebuilder.data;
+
+/**
+ * Running statistics for one field of a structured stream, kept in primitives so that accepting a value never
+ * allocates.
+ *
+ * Integral values (and lengths, for strings and bytes) and real values are tracked separately. Accumulators for the
+ * same field can be merged, so partial outputs written in parallel can be combined without rescanning.
+ *
+ * Instances are not thread safe.
+ */
+public final class IBDataFieldAccumulator {
+  private long count = 0L;
+  private long nullCount = 0L;
+  private long longCount = 0L;
+  private long longMin = Long.MAX_VALUE;
+  private long longMax = Long.MIN_VALUE;
+  private long longSum = 0L;
+  private long doubleCount = 0L;
+  private double doubleMin = Double.POSITIVE_INFINITY;
+  private double doubleMax = Double.NEGATIVE_INFINITY;
+  private double doubleSum = 0.0;
+
+  public void acceptNull() {
+    ++count;
+    ++nullCount;
+  }
+
+  /**
+   * Accept a value with no numeric statistics, such as an enum symbol or boolean
+   */
+  public void acceptOther() {
+    ++count;
+  }
+
+  public void acceptLong(long v) {
+    ++count;
+    ++longCount;
+    if (v < longMin)
+      longMin = v;
+    if (v > longMax)
+      longMax = v;
+    longSum += v;
+  }
+
+  public void acceptDouble(double v) {
+    ++count;
+    ++doubleCount;
+    if (v < doubleMin)
+      doubleMin = v;
+    if (v > doubleMax)
+      doubleMax = v;
+    doubleSum += v;
+  }
+
+  public void merge(IBDataFieldAccumulator o) {
+    count += o.count;
+    nullCount += o.nullCount;
+    if (o.longCount > 0) {
+      longCount += o.longCount;
+      longMin = Math.min(longMin, o.longMin);
+      longMax = Math.max(longMax, o.longMax);
+      longSum += o.longSum;
+    }
+    if (o.doubleCount > 0) {
+      doubleCount += o.doubleCount;
+      doubleMin = Math.min(doubleMin, o.doubleMin);
+      doubleMax = Math.max(doubleMax, o.doubleMax);
+      doubleSum += o.doubleSum;
+    }
+  }
+
+  /**
+   * @return number of values accepted, including nulls
+   */
+  public long getCount() {
+    return count;
+  }
+
+  public long getNullCount() {
+    return nullCount;
+  }
+
+  public boolean hasLongs() {
+    return longCount > 0;
+  }
+
+  public long getLongMin() {
+    return longMin;
+  }
+
+  public long getLongMax() {
+    return longMax;
+  }
+
+  public long getLongSum() {
+    return longSum;
+  }
+
+  public boolean hasDoubles() {
+    return doubleCount > 0;
+  }
+
+  public double getDoubleMin() {
+    return doubleMin;
+  }
+
+  public double getDoubleMax() {
+    return doubleMax;
+  }
+
+  public double getDoubleSum() {
+    return doubleSum;
+  }
+}
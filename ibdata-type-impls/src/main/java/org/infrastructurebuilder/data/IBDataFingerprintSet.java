@@ -0,0 +1,638 @@
+/**
+ * Copyright © 2019 admin (admin@infrastructurebuilder.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.infrastructurebuilder.data;
+
+import static java.nio.file.StandardOpenOption.READ;
+import static org.infrastructurebuilder.data.IBDataException.cet;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Set of 128-bit fingerprints, used to recognise records that have been seen before.
+ *
+ * Fingerprints are held off-heap in an open-addressing table of 16-byte slots with linear probing. The table doubles
+ * until it would exceed the memory budget. After that, a full table is spilled to disk and emptied. The spill is
+ * partitioned on the high bits of the fingerprint. Each partition gets one sorted segment file per spill, and the
+ * segments are written one partition at a time so only a single partition is ever copied onto the heap. A sparse index
+ * of every {@value #INDEX_STRIDE}th entry stays in memory for each segment, so checking a spilled partition costs one
+ * positioned read per segment. A partition with more than {@value #MAX_SEGMENTS} segments is merged into one.
+ *
+ * A fingerprint is only ever held in one place, either in memory or in a single segment, because it is only added
+ * after both have been checked.
+ *
+ * Instances are not thread safe.
+ */
+public class IBDataFingerprintSet implements AutoCloseable {
+  public static final int SLOT_BYTES = 16;
+  public static final int MIN_CAPACITY = 1024;
+  public static final int DEFAULT_PARTITION_BITS = 4;
+  public static final int MAX_PARTITION_BITS = 8;
+  /** Entries between sparse index points of a spilled segment */
+  public static final int INDEX_STRIDE = 256;
+  /** Segments a partition may hold before they are merged */
+  public static final int MAX_SEGMENTS = 8;
+
+  private final long memoryBudget;
+  private final int partitionBits;
+  private final Path spillDirectory;
+  private final List<List<Segment>> partitions;
+  private final int maxCapacity;
+  private final ByteBuffer block = ByteBuffer.allocateDirect(INDEX_STRIDE * SLOT_BYTES);
+  private ByteBuffer table;
+  private int capacity;
+  private int size = 0;
+  private boolean containsZero = false;
+  private long count = 0L;
+  private long spilledFingerprints = 0L;
+  private int spills = 0;
+  private int segmentsWritten = 0;
+
+  /**
+   * A set that may not spill. Adding more fingerprints than the budget holds is an error.
+   *
+   * @param memoryBudget bytes of off-heap memory the table may use
+   */
+  public IBDataFingerprintSet(long memoryBudget) {
+    this(memoryBudget, null, DEFAULT_PARTITION_BITS);
+  }
+
+  /**
+   * @param memoryBudget   bytes of off-heap memory the table may use
+   * @param spillDirectory directory for spilled partitions. Created on the first spill. May be null if spilling is not
+   *                         allowed
+   * @param partitionBits  number of high fingerprint bits used to choose a spill partition (1 to
+   *                         {@value #MAX_PARTITION_BITS})
+   */
+  public IBDataFingerprintSet(long memoryBudget, Path spillDirectory, int partitionBits) {
+    if (memoryBudget < (long) MIN_CAPACITY * SLOT_BYTES)
+      throw new IBDataException("Fingerprint memory budget must be at least " + (MIN_CAPACITY * SLOT_BYTES) + " bytes");
+    if (partitionBits < 1 || partitionBits > MAX_PARTITION_BITS)
+      throw new IBDataException("partitionBits must be between 1 and " + MAX_PARTITION_BITS);
+    this.memoryBudget = memoryBudget;
+    this.spillDirectory = spillDirectory;
+    this.partitionBits = partitionBits;
+    // Largest power of two number of slots within the budget and addressable by a ByteBuffer
+    long slots = Long.highestOneBit(Math.min(memoryBudget, Integer.MAX_VALUE) / SLOT_BYTES);
+    this.maxCapacity = (int) slots;
+    this.capacity = Math.min(MIN_CAPACITY * 16, maxCapacity);
+    this.table = ByteBuffer.allocateDirect(capacity * SLOT_BYTES);
+    this.partitions = new ArrayList<>(1 << partitionBits);
+    for (int i = 0; i < 1 << partitionBits; ++i)
+      this.partitions.add(new ArrayList<>());
+  }
+
+  /**
+   * Add a fingerprint
+   *
+   * @param hi high 64 bits
+   * @param lo low 64 bits
+   * @return true if the fingerprint was not already present
+   */
+  public boolean add(long hi, long lo) {
+    checkOpen();
+    // The all-zero fingerprint marks an empty slot, so it is tracked separately
+    if (hi == 0L && lo == 0L) {
+      if (containsZero)
+        return false;
+      containsZero = true;
+      ++count;
+      return true;
+    }
+    if (probe(hi, lo) < 0 || spilledContains(hi, lo))
+      return false;
+    if (size + 1 > capacity / 2 && !grow())
+      spill();
+    insert(hi, lo);
+    ++count;
+    return true;
+  }
+
+  /**
+   * Add the first two longs of an array, as produced by {@link #hash128(byte[], int, int, long[])}
+   */
+  public boolean add(long[] fingerprint) {
+    return add(fingerprint[0], fingerprint[1]);
+  }
+
+  public boolean contains(long hi, long lo) {
+    checkOpen();
+    if (hi == 0L && lo == 0L)
+      return containsZero;
+    return probe(hi, lo) < 0 || spilledContains(hi, lo);
+  }
+
+  /**
+   * @return number of distinct fingerprints added
+   */
+  public long size() {
+    return count;
+  }
+
+  /**
+   * @return number of fingerprints held on disk
+   */
+  public long getSpilledCount() {
+    return spilledFingerprints;
+  }
+
+  /**
+   * @return number of times the table has been spilled
+   */
+  public int getSpillCount() {
+    return spills;
+  }
+
+  public long getMemoryBudget() {
+    return memoryBudget;
+  }
+
+  /**
+   * @return number of segment files currently held for spilled partitions
+   */
+  public int getSegmentCount() {
+    return partitions.stream().mapToInt(List::size).sum();
+  }
+
+  /**
+   * Release the table and delete every spilled segment
+   */
+  @Override
+  public void close() {
+    if (table == null)
+      return;
+    table = null;
+    for (List<Segment> segments : partitions) {
+      for (Segment s : segments)
+        s.delete();
+      segments.clear();
+    }
+    if (spillDirectory != null && spills > 0)
+      cet.withTranslation(() -> {
+        try {
+          Files.deleteIfExists(spillDirectory);
+        } catch (DirectoryNotEmptyException e) {
+          // Not ours to remove
+        }
+      });
+  }
+
+  /**
+   * MurmurHash3 x64 128-bit hash
+   *
+   * @param data   bytes to hash
+   * @param length number of bytes from the start of <code>data</code>
+   * @param seed   hash seed
+   * @param out    receives the high and low 64 bits
+   * @return <code>out</code>
+   */
+  public static long[] hash128(byte[] data, int length, long seed, long[] out) {
+    final long c1 = 0x87c37b91114253d5L;
+    final long c2 = 0x4cf5ad432745937fL;
+    long h1 = seed;
+    long h2 = seed;
+    int blocks = length / 16;
+    for (int i = 0; i < blocks; ++i) {
+      long k1 = getLongLE(data, i * 16);
+      long k2 = getLongLE(data, i * 16 + 8);
+      k1 *= c1;
+      k1 = Long.rotateLeft(k1, 31);
+      k1 *= c2;
+      h1 ^= k1;
+      h1 = Long.rotateLeft(h1, 27);
+      h1 += h2;
+      h1 = h1 * 5 + 0x52dce729;
+      k2 *= c2;
+      k2 = Long.rotateLeft(k2, 33);
+      k2 *= c1;
+      h2 ^= k2;
+      h2 = Long.rotateLeft(h2, 31);
+      h2 += h1;
+      h2 = h2 * 5 + 0x38495ab5;
+    }
+    int tail = blocks * 16;
+    long k1 = 0L;
+    long k2 = 0L;
+    switch (length & 15) {
+    case 15:
+      k2 ^= (data[tail + 14] & 0xffL) << 48;
+    case 14:
+      k2 ^= (data[tail + 13] & 0xffL) << 40;
+    case 13:
+      k2 ^= (data[tail + 12] & 0xffL) << 32;
+    case 12:
+      k2 ^= (data[tail + 11] & 0xffL) << 24;
+    case 11:
+      k2 ^= (data[tail + 10] & 0xffL) << 16;
+    case 10:
+      k2 ^= (data[tail + 9] & 0xffL) << 8;
+    case 9:
+      k2 ^= (data[tail + 8] & 0xffL);
+      k2 *= c2;
+      k2 = Long.rotateLeft(k2, 33);
+      k2 *= c1;
+      h2 ^= k2;
+    case 8:
+      k1 ^= (data[tail + 7] & 0xffL) << 56;
+    case 7:
+      k1 ^= (data[tail + 6] & 0xffL) << 48;
+    case 6:
+      k1 ^= (data[tail + 5] & 0xffL) << 40;
+    case 5:
+      k1 ^= (data[tail + 4] & 0xffL) << 32;
+    case 4:
+      k1 ^= (data[tail + 3] & 0xffL) << 24;
+    case 3:
+      k1 ^= (data[tail + 2] & 0xffL) << 16;
+    case 2:
+      k1 ^= (data[tail + 1] & 0xffL) << 8;
+    case 1:
+      k1 ^= (data[tail] & 0xffL);
+      k1 *= c1;
+      k1 = Long.rotateLeft(k1, 31);
+      k1 *= c2;
+      h1 ^= k1;
+    default:
+      break;
+    }
+    h1 ^= length;
+    h2 ^= length;
+    h1 += h2;
+    h2 += h1;
+    h1 = fmix(h1);
+    h2 = fmix(h2);
+    h1 += h2;
+    h2 += h1;
+    out[0] = h1;
+    out[1] = h2;
+    return out;
+  }
+
+  private static long getLongLE(byte[] b, int i) {
+    return (b[i] & 0xffL) | (b[i + 1] & 0xffL) << 8 | (b[i + 2] & 0xffL) << 16 | (b[i + 3] & 0xffL) << 24
+        | (b[i + 4] & 0xffL) << 32 | (b[i + 5] & 0xffL) << 40 | (b[i + 6] & 0xffL) << 48 | (b[i + 7] & 0xffL) << 56;
+  }
+
+  private static long fmix(long k) {
+    k ^= k >>> 33;
+    k *= 0xff51afd7ed558ccdL;
+    k ^= k >>> 33;
+    k *= 0xc4ceb9fe1a85ec53L;
+    k ^= k >>> 33;
+    return k;
+  }
+
+  private static int compare(long hi1, long lo1, long hi2, long lo2) {
+    int c = Long.compareUnsigned(hi1, hi2);
+    return c != 0 ? c : Long.compareUnsigned(lo1, lo2);
+  }
+
+  private void checkOpen() {
+    if (table == null)
+      throw new IBDataException("Fingerprint set is closed");
+  }
+
+  private int partitionOf(long hi) {
+    return (int) (hi >>> (64 - partitionBits));
+  }
+
+  /**
+   * @return the index of an empty slot for the fingerprint, or -1 if it is already present
+   */
+  private int probe(long hi, long lo) {
+    int mask = capacity - 1;
+    for (int i = (int) lo & mask;; i = (i + 1) & mask) {
+      int p = i * SLOT_BYTES;
+      long h = table.getLong(p);
+      long l = table.getLong(p + 8);
+      if (h == 0L && l == 0L)
+        return i;
+      if (h == hi && l == lo)
+        return -1;
+    }
+  }
+
+  private void insert(long hi, long lo) {
+    int p = probe(hi, lo) * SLOT_BYTES;
+    table.putLong(p, hi);
+    table.putLong(p + 8, lo);
+    ++size;
+  }
+
+  private boolean grow() {
+    if (capacity >= maxCapacity)
+      return false;
+    ByteBuffer old = table;
+    int oldCapacity = capacity;
+    capacity *= 2;
+    table = ByteBuffer.allocateDirect(capacity * SLOT_BYTES);
+    size = 0;
+    for (int i = 0; i < oldCapacity; ++i) {
+      long h = old.getLong(i * SLOT_BYTES);
+      long l = old.getLong(i * SLOT_BYTES + 8);
+      if (h != 0L || l != 0L)
+        insert(h, l);
+    }
+    return true;
+  }
+
+  private void spill() {
+    if (spillDirectory == null)
+      throw new IBDataException("Fingerprint set exceeded its memory budget of " + memoryBudget + " bytes");
+    cet.withTranslation(() -> Files.createDirectories(spillDirectory));
+    int[] counts = new int[partitions.size()];
+    for (int i = 0; i < capacity; ++i) {
+      long h = table.getLong(i * SLOT_BYTES);
+      if (h != 0L || table.getLong(i * SLOT_BYTES + 8) != 0L)
+        ++counts[partitionOf(h)];
+    }
+    for (int part = 0; part < counts.length; ++part) {
+      if (counts[part] == 0)
+        continue;
+      long[] entries = new long[counts[part] * 2];
+      int n = 0;
+      for (int i = 0; i < capacity; ++i) {
+        long h = table.getLong(i * SLOT_BYTES);
+        long l = table.getLong(i * SLOT_BYTES + 8);
+        if ((h != 0L || l != 0L) && partitionOf(h) == part) {
+          entries[n++] = h;
+          entries[n++] = l;
+        }
+      }
+      sort(entries, 0, counts[part] - 1);
+      List<Segment> segments = partitions.get(part);
+      segments.add(writeSegment(part, new ArraySource(entries)));
+      if (segments.size() > MAX_SEGMENTS)
+        merge(part);
+    }
+    spilledFingerprints += size;
+    ++spills;
+    for (int i = 0; i < capacity * 2; ++i)
+      table.putLong(i * 8, 0L);
+    size = 0;
+  }
+
+  private void merge(int part) {
+    List<Segment> segments = partitions.get(part);
+    List<SegmentSource> sources = new ArrayList<>();
+    try {
+      for (Segment s : segments)
+        sources.add(new SegmentSource(s));
+      Segment merged = writeSegment(part, new MergeSource(sources));
+      for (Segment s : segments)
+        s.delete();
+      segments.clear();
+      segments.add(merged);
+    } finally {
+      sources.forEach(SegmentSource::close);
+    }
+  }
+
+  private Segment writeSegment(int part, Source source) {
+    Path p = spillDirectory.resolve(String.format("fp-%02x-%06d.bin", part, segmentsWritten++));
+    List<long[]> index = new ArrayList<>();
+    long n = 0L;
+    long[] next = new long[2];
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(p)))) {
+      while (source.next(next)) {
+        if (n % INDEX_STRIDE == 0)
+          index.add(new long[] { next[0], next[1] });
+        out.writeLong(next[0]);
+        out.writeLong(next[1]);
+        ++n;
+      }
+    } catch (IOException e) {
+      throw new IBDataException("Failed to write fingerprint segment " + p, e);
+    }
+    long[] idx = new long[index.size() * 2];
+    for (int i = 0; i < index.size(); ++i) {
+      idx[i * 2] = index.get(i)[0];
+      idx[i * 2 + 1] = index.get(i)[1];
+    }
+    return new Segment(p, n, idx);
+  }
+
+  private boolean spilledContains(long hi, long lo) {
+    if (spills == 0)
+      return false;
+    for (Segment s : partitions.get(partitionOf(hi)))
+      if (s.contains(hi, lo))
+        return true;
+    return false;
+  }
+
+  /**
+   * Sort fingerprint pairs from slot <code>from</code> to slot <code>to</code> inclusive
+   */
+  private static void sort(long[] a, int from, int to) {
+    while (to - from > 16) {
+      int mid = (from + to) >>> 1;
+      long ph = a[mid * 2];
+      long pl = a[mid * 2 + 1];
+      int i = from;
+      int j = to;
+      while (i <= j) {
+        while (compare(a[i * 2], a[i * 2 + 1], ph, pl) < 0)
+          ++i;
+        while (compare(a[j * 2], a[j * 2 + 1], ph, pl) > 0)
+          --j;
+        if (i <= j)
+          swap(a, i++, j--);
+      }
+      // Recurse into the smaller side to bound the stack
+      if (j - from < to - i) {
+        sort(a, from, j);
+        from = i;
+      } else {
+        sort(a, i, to);
+        to = j;
+      }
+    }
+    for (int i = from + 1; i <= to; ++i)
+      for (int j = i; j > from && compare(a[j * 2 - 2], a[j * 2 - 1], a[j * 2], a[j * 2 + 1]) > 0; --j)
+        swap(a, j, j - 1);
+  }
+
+  private static void swap(long[] a, int i, int j) {
+    long h = a[i * 2];
+    long l = a[i * 2 + 1];
+    a[i * 2] = a[j * 2];
+    a[i * 2 + 1] = a[j * 2 + 1];
+    a[j * 2] = h;
+    a[j * 2 + 1] = l;
+  }
+
+  @FunctionalInterface
+  private interface Source {
+    boolean next(long[] out);
+  }
+
+  private static class ArraySource implements Source {
+    private final long[] entries;
+    private int pos = 0;
+
+    ArraySource(long[] entries) {
+      this.entries = entries;
+    }
+
+    @Override
+    public boolean next(long[] out) {
+      if (pos >= entries.length)
+        return false;
+      out[0] = entries[pos++];
+      out[1] = entries[pos++];
+      return true;
+    }
+  }
+
+  private static class SegmentSource implements Source {
+    private final DataInputStream in;
+    private long remaining;
+    final long[] head = new long[2];
+
+    SegmentSource(Segment s) {
+      this.in = new DataInputStream(
+          new BufferedInputStream(cet.withReturningTranslation(() -> Files.newInputStream(s.path))));
+      this.remaining = s.entries;
+    }
+
+    @Override
+    public boolean next(long[] out) {
+      if (remaining == 0)
+        return false;
+      cet.withTranslation(() -> {
+        out[0] = in.readLong();
+        out[1] = in.readLong();
+      });
+      --remaining;
+      return true;
+    }
+
+    void close() {
+      cet.withTranslation(() -> in.close());
+    }
+  }
+
+  /**
+   * Merges sorted segments. Segments never share a fingerprint, so there is nothing to de-duplicate
+   */
+  private static class MergeSource implements Source {
+    private final List<SegmentSource> sources;
+    private final boolean[] live;
+
+    MergeSource(List<SegmentSource> sources) {
+      this.sources = sources;
+      this.live = new boolean[sources.size()];
+      for (int i = 0; i < live.length; ++i)
+        live[i] = sources.get(i).next(sources.get(i).head);
+    }
+
+    @Override
+    public boolean next(long[] out) {
+      int best = -1;
+      for (int i = 0; i < live.length; ++i)
+        if (live[i] && (best < 0 || compare(sources.get(i).head[0], sources.get(i).head[1],
+            sources.get(best).head[0], sources.get(best).head[1]) < 0))
+          best = i;
+      if (best < 0)
+        return false;
+      SegmentSource s = sources.get(best);
+      out[0] = s.head[0];
+      out[1] = s.head[1];
+      live[best] = s.next(s.head);
+      return true;
+    }
+  }
+
+  /**
+   * A sorted file of fingerprints with a sparse in-memory index
+   */
+  private class Segment {
+    final Path path;
+    final long entries;
+    // Pairs of fingerprints at every INDEX_STRIDE'th entry
+    final long[] index;
+    FileChannel channel;
+
+    Segment(Path path, long entries, long[] index) {
+      this.path = path;
+      this.entries = entries;
+      this.index = index;
+    }
+
+    boolean contains(long hi, long lo) {
+      // Last index point that is not greater than the fingerprint
+      int low = 0;
+      int high = index.length / 2 - 1;
+      int at = -1;
+      while (low <= high) {
+        int mid = (low + high) >>> 1;
+        int c = compare(index[mid * 2], index[mid * 2 + 1], hi, lo);
+        if (c == 0)
+          return true;
+        if (c < 0) {
+          at = mid;
+          low = mid + 1;
+        } else
+          high = mid - 1;
+      }
+      if (at < 0)
+        return false;
+      long first = (long) at * INDEX_STRIDE;
+      int n = (int) Math.min(INDEX_STRIDE, entries - first);
+      block.clear().limit(n * SLOT_BYTES);
+      cet.withTranslation(() -> {
+        if (channel == null)
+          channel = FileChannel.open(path, READ);
+        long pos = first * SLOT_BYTES;
+        while (block.hasRemaining())
+          if (channel.read(block, pos + block.position()) < 0)
+            throw new IBDataException("Fingerprint segment " + path + " is truncated");
+      });
+      low = 0;
+      high = n - 1;
+      while (low <= high) {
+        int mid = (low + high) >>> 1;
+        int c = compare(block.getLong(mid * SLOT_BYTES), block.getLong(mid * SLOT_BYTES + 8), hi, lo);
+        if (c == 0)
+          return true;
+        if (c < 0)
+          low = mid + 1;
+        else
+          high = mid - 1;
+      }
+      return false;
+    }
+
+    void delete() {
+      cet.withTranslation(() -> {
+        if (channel != null)
+          channel.close();
+        Files.deleteIfExists(path);
+      });
+    }
+  }
+}
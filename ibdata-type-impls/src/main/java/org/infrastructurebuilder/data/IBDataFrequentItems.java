@@ -0,0 +1,135 @@
+/**
+ * Copyright © 2019 admin (admin@infrastructurebuilder.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.infrastructurebuilder.data;
+
+import static java.util.stream.Collectors.toList;
+
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * Misra-Gries heavy hitters sketch.
+ *
+ * Tracks up to twice the requested number of items. When full, the median count is subtracted from every item and
+ * those that reach zero are dropped, so updates are amortized constant time. Reported counts are lower bounds, each
+ * at most {@link #getMaximumError()} below the true count. Sketches merge by adding counts.
+ */
+public final class IBDataFrequentItems {
+  public static final int DEFAULT_TOP_K = 10;
+
+  private final int k;
+  private final Map<String, long[]> counts;
+  private long offset = 0L;
+  private long total = 0L;
+
+  public IBDataFrequentItems() {
+    this(DEFAULT_TOP_K);
+  }
+
+  public IBDataFrequentItems(int k) {
+    if (k < 1)
+      throw new IBDataException("Frequent items k must be positive not " + k);
+    this.k = k;
+    this.counts = new HashMap<>(4 * k);
+  }
+
+  public void update(String item) {
+    update(item, 1L);
+  }
+
+  public void update(String item, long count) {
+    total += count;
+    long[] c = counts.get(item);
+    if (c != null)
+      c[0] += count;
+    else {
+      counts.put(item, new long[] { count });
+      if (counts.size() > 2 * k)
+        purge();
+    }
+  }
+
+  private void purge() {
+    long[] values = new long[counts.size()];
+    int i = 0;
+    for (long[] c : counts.values())
+      values[i++] = c[0];
+    Arrays.sort(values);
+    long median = values[values.length / 2];
+    offset += median;
+    counts.values().removeIf(c -> (c[0] -= median) <= 0L);
+  }
+
+  public void merge(IBDataFrequentItems other) {
+    long t = total + other.total;
+    for (Entry<String, long[]> e : other.counts.entrySet())
+      update(e.getKey(), e.getValue()[0]);
+    offset += other.offset;
+    total = t;
+  }
+
+  public int getK() {
+    return k;
+  }
+
+  public long getTotal() {
+    return total;
+  }
+
+  public long getMaximumError() {
+    return offset;
+  }
+
+  /**
+   * @return up to k items with their lower-bound counts, most frequent first
+   */
+  public List<Entry<String, Long>> getTopK() {
+    return retained(k);
+  }
+
+  /**
+   * @return every tracked item (up to 2k) with its lower-bound count, most frequent first. Serializing these with
+   *         {@link #getTotal()} and {@link #getMaximumError()} preserves the whole sketch.
+   */
+  public List<Entry<String, Long>> getRetained() {
+    return retained(counts.size());
+  }
+
+  private List<Entry<String, Long>> retained(int limit) {
+    return counts.entrySet().stream()
+        .sorted((a, b) -> Long.compare(b.getValue()[0], a.getValue()[0]))
+        .limit(limit)
+        .<Entry<String, Long>>map(e -> new SimpleImmutableEntry<>(e.getKey(), e.getValue()[0]))
+        .collect(toList());
+  }
+
+  /**
+   * Restore the total and error of a serialized sketch once its retained items have been updated back in
+   */
+  void restore(long total, long maximumError) {
+    this.total = total;
+    this.offset = maximumError;
+  }
+
+  @Override
+  public String toString() {
+    return "FrequentItems(k=" + k + ", total=" + total + ", top=" + getTopK() + ")";
+  }
+}
@@ -0,0 +1,135 @@
+/**
+ * Copyright © 2019 admin (admin@infrastructurebuilder.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.infrastructurebuilder.data;
+
+import java.nio.ByteBuffer;
+
+/**
+ * HyperLogLog distinct count estimate over 64-bit hashes.
+ *
+ * Sketches with the same precision merge by taking the register maxima, so partial outputs can be combined without
+ * rescanning.
+ */
+public final class IBDataHyperLogLog {
+  public static final int DEFAULT_PRECISION = 12;
+
+  private final int p;
+  private final byte[] registers;
+
+  public IBDataHyperLogLog() {
+    this(DEFAULT_PRECISION);
+  }
+
+  public IBDataHyperLogLog(int precision) {
+    if (precision < 4 || precision > 18)
+      throw new IBDataException("HyperLogLog precision must be in [4,18] not " + precision);
+    this.p = precision;
+    this.registers = new byte[1 << precision];
+  }
+
+  public static IBDataHyperLogLog fromBytes(byte[] b) {
+    ByteBuffer bb = ByteBuffer.wrap(b);
+    IBDataHyperLogLog h = new IBDataHyperLogLog(bb.get());
+    bb.get(h.registers);
+    return h;
+  }
+
+  /**
+   * Finalizer from SplitMix64, spreading the bits of a value or a weak hash
+   */
+  public static long mix(long z) {
+    z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+    z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+    return z ^ (z >>> 31);
+  }
+
+  public static long hash(CharSequence s) {
+    long h = 0xcbf29ce484222325L;
+    for (int i = 0; i < s.length(); ++i)
+      h = (h ^ s.charAt(i)) * 0x100000001b3L;
+    return mix(h);
+  }
+
+  public static long hash(byte[] b) {
+    long h = 0xcbf29ce484222325L;
+    for (int i = 0; i < b.length; ++i)
+      h = (h ^ (b[i] & 0xff)) * 0x100000001b3L;
+    return mix(h);
+  }
+
+  public static long hash(ByteBuffer b) {
+    long h = 0xcbf29ce484222325L;
+    for (int i = b.position(); i < b.limit(); ++i)
+      h = (h ^ (b.get(i) & 0xff)) * 0x100000001b3L;
+    return mix(h);
+  }
+
+  public void addLong(long v) {
+    addHash(mix(v));
+  }
+
+  public void addDouble(double v) {
+    addHash(mix(Double.doubleToLongBits(v == 0.0 ? 0.0 : v)));
+  }
+
+  public void add(CharSequence s) {
+    addHash(hash(s));
+  }
+
+  public void addHash(long hash) {
+    int idx = (int) (hash >>> (64 - p));
+    byte rho = (byte) (Long.numberOfLeadingZeros((hash << p) | (1L << (p - 1))) + 1);
+    if (rho > registers[idx])
+      registers[idx] = rho;
+  }
+
+  public void merge(IBDataHyperLogLog other) {
+    if (other.p != p)
+      throw new IBDataException("Cannot merge HyperLogLog of precision " + other.p + " into " + p);
+    for (int i = 0; i < registers.length; ++i)
+      if (other.registers[i] > registers[i])
+        registers[i] = other.registers[i];
+  }
+
+  public int getPrecision() {
+    return p;
+  }
+
+  public long estimate() {
+    int m = registers.length;
+    double sum = 0.0;
+    int zeros = 0;
+    for (byte r : registers) {
+      sum += Math.scalb(1.0, -r);
+      if (r == 0)
+        ++zeros;
+    }
+    double alpha = m == 16 ? 0.673 : m == 32 ? 0.697 : m == 64 ? 0.709 : 0.7213 / (1.0 + 1.079 / m);
+    double e = alpha * m * m / sum;
+    if (e <= 2.5 * m && zeros > 0)
+      e = m * Math.log((double) m / zeros);
+    return Math.round(e);
+  }
+
+  public byte[] toBytes() {
+    return ByteBuffer.allocate(1 + registers.length).put((byte) p).put(registers).array();
+  }
+
+  @Override
+  public String toString() {
+    return "HLL(p=" + p + ", estimate=" + estimate() + ")";
+  }
+}
@@ -0,0 +1,35 @@
+/**
+ * Copyright © 2019 admin (admin@infrastructurebuilder.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.infrastructurebuilder.data;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * A stream factory that can decode only some fields of each record, skipping the rest as it reads.
+ *
+ * @param <T> record type
+ */
+public interface IBDataProjectingStreamFactory<T> extends IBDataSpecificStreamFactory<T> {
+
+  /**
+   * @param ds     the stream to read
+   * @param fields names of the fields to read. Records hold only these fields
+   * @return a stream of projected records, or empty if the stream cannot be read
+   */
+  Optional<Stream<T>> from(IBDataStream ds, List<String> fields);
+}
@@ -0,0 +1,202 @@
+/**
+ * Copyright © 2019 admin (admin@infrastructurebuilder.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.infrastructurebuilder.data;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Mergeable quantile sketch built from a stack of compactors, in the manner of KLL.
+ *
+ * Level h holds up to k values, each standing for 2^h inputs. A full level is sorted and every other value (from a
+ * random offset) is promoted to the next level. Memory is O(k log(n/k)) and rank error is roughly O(1/k).
+ */
+public final class IBDataQuantileSketch {
+  public static final int DEFAULT_K = 200;
+
+  private final int k;
+  private final Random random = new Random(0x1bda7aL);
+  private double[][] levels = new double[1][];
+  private int[] sizes = new int[1];
+  private long count = 0L;
+  private double min = Double.NaN;
+  private double max = Double.NaN;
+
+  public IBDataQuantileSketch() {
+    this(DEFAULT_K);
+  }
+
+  public IBDataQuantileSketch(int k) {
+    if (k < 8)
+      throw new IBDataException("Quantile sketch k must be at least 8 not " + k);
+    this.k = k;
+    this.levels[0] = new double[k];
+  }
+
+  public static IBDataQuantileSketch fromBytes(byte[] b) {
+    ByteBuffer bb = ByteBuffer.wrap(b);
+    IBDataQuantileSketch q = new IBDataQuantileSketch(bb.getInt());
+    q.count = bb.getLong();
+    q.min = bb.getDouble();
+    q.max = bb.getDouble();
+    int n = bb.getInt();
+    q.grow(n);
+    for (int h = 0; h < n; ++h) {
+      q.sizes[h] = bb.getInt();
+      for (int i = 0; i < q.sizes[h]; ++i)
+        q.levels[h][i] = bb.getDouble();
+    }
+    return q;
+  }
+
+  public void update(double v) {
+    if (Double.isNaN(v))
+      return;
+    if (count++ == 0L) {
+      min = v;
+      max = v;
+    } else {
+      if (v < min)
+        min = v;
+      if (v > max)
+        max = v;
+    }
+    levels[0][sizes[0]++] = v;
+    if (sizes[0] == k)
+      compact(0);
+  }
+
+  public void merge(IBDataQuantileSketch other) {
+    if (other.count == 0L)
+      return;
+    if (count == 0L) {
+      min = other.min;
+      max = other.max;
+    } else {
+      min = Math.min(min, other.min);
+      max = Math.max(max, other.max);
+    }
+    count += other.count;
+    grow(other.levels.length);
+    for (int h = 0; h < other.levels.length; ++h)
+      for (int i = 0; i < other.sizes[h]; ++i) {
+        levels[h][sizes[h]++] = other.levels[h][i];
+        if (sizes[h] == k)
+          compact(h);
+      }
+  }
+
+  private void grow(int n) {
+    if (levels.length >= n)
+      return;
+    int old = levels.length;
+    levels = Arrays.copyOf(levels, n);
+    sizes = Arrays.copyOf(sizes, n);
+    for (int h = old; h < n; ++h)
+      levels[h] = new double[k];
+  }
+
+  private void compact(int h) {
+    grow(h + 2);
+    double[] l = levels[h];
+    Arrays.sort(l, 0, sizes[h]);
+    int size = sizes[h];
+    // k may be odd, in which case the largest value stays behind
+    int pairs = size / 2;
+    int offset = random.nextBoolean() ? 1 : 0;
+    for (int i = 0; i < pairs; ++i) {
+      levels[h + 1][sizes[h + 1]++] = l[2 * i + offset];
+      if (sizes[h + 1] == k)
+        compact(h + 1);
+    }
+    if (size % 2 == 1) {
+      l[0] = l[size - 1];
+      sizes[h] = 1;
+    } else
+      sizes[h] = 0;
+  }
+
+  public long getCount() {
+    return count;
+  }
+
+  public double getMin() {
+    return min;
+  }
+
+  public double getMax() {
+    return max;
+  }
+
+  /**
+   * @param q rank in [0,1]
+   * @return estimated value at rank q, or NaN if the sketch is empty
+   */
+  public double getQuantile(double q) {
+    if (count == 0L)
+      return Double.NaN;
+    if (q <= 0.0)
+      return min;
+    if (q >= 1.0)
+      return max;
+    int n = 0;
+    for (int s : sizes)
+      n += s;
+    double[] values = new double[n];
+    long[] weights = new long[n];
+    int j = 0;
+    for (int h = 0; h < levels.length; ++h)
+      for (int i = 0; i < sizes[h]; ++i) {
+        values[j] = levels[h][i];
+        weights[j++] = 1L << h;
+      }
+    Integer[] order = new Integer[n];
+    for (int i = 0; i < n; ++i)
+      order[i] = i;
+    Arrays.sort(order, (a, b) -> Double.compare(values[a], values[b]));
+    long total = 0L;
+    for (long w : weights)
+      total += w;
+    double target = q * total;
+    long cumulative = 0L;
+    for (int i = 0; i < n; ++i) {
+      cumulative += weights[order[i]];
+      if (cumulative >= target)
+        return values[order[i]];
+    }
+    return max;
+  }
+
+  public byte[] toBytes() {
+    int n = 0;
+    for (int s : sizes)
+      n += s;
+    ByteBuffer bb = ByteBuffer.allocate(4 + 8 + 8 + 8 + 4 + 4 * levels.length + 8 * n);
+    bb.putInt(k).putLong(count).putDouble(min).putDouble(max).putInt(levels.length);
+    for (int h = 0; h < levels.length; ++h) {
+      bb.putInt(sizes[h]);
+      for (int i = 0; i < sizes[h]; ++i)
+        bb.putDouble(levels[h][i]);
+    }
+    return bb.array();
+  }
+
+  @Override
+  public String toString() {
+    return "Quantiles(k=" + k + ", count=" + count + ", median=" + getQuantile(0.5) + ")";
+  }
+}
@@ -0,0 +1,161 @@
+/**
+ * Copyright © 2019 admin (admin@infrastructurebuilder.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.infrastructurebuilder.data;
+
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.util.Optional.ofNullable;
+import static org.infrastructurebuilder.data.IBDataException.cet;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Run-length index of row numbers, used to record which rows a transformer rejected.
+ *
+ * Rows are stored as ranges of consecutive row numbers, so a filter that drops long stretches of a stream costs a
+ * few bytes per stretch rather than an object per row. Rows are expected in ascending order but this is not required;
+ * a row that does not extend the last range simply starts a new one.
+ *
+ * Once the number of ranges held in memory reaches the configured limit they are appended to a spill file and the
+ * memory is reused. Ranges are always reported in the order they were added, spilled ranges first.
+ *
+ * Instances are not thread safe.
+ */
+public class IBDataRowRangeIndex {
+  public static final int DEFAULT_MAX_RANGES = 1 << 20;
+
+  @FunctionalInterface
+  public interface RangeConsumer {
+    void accept(long first, long last);
+  }
+
+  private final int maxRanges;
+  private final Supplier<Path> spillPathSupplier;
+  // Pairs of first/last row numbers
+  private long[] ranges = new long[16];
+  private int size = 0;
+  private long count = 0L;
+  private long spilledRanges = 0L;
+  private Path spillPath = null;
+
+  /**
+   * An index held entirely in memory
+   */
+  public IBDataRowRangeIndex() {
+    this(Integer.MAX_VALUE, null);
+  }
+
+  /**
+   * @param maxRanges         number of ranges held in memory before spilling
+   * @param spillPathSupplier supplies the file to spill to. Only called on the first spill
+   */
+  public IBDataRowRangeIndex(int maxRanges, Supplier<Path> spillPathSupplier) {
+    if (maxRanges < 2)
+      throw new IBDataException("maxRanges must be at least 2");
+    this.maxRanges = maxRanges;
+    this.spillPathSupplier = spillPathSupplier;
+  }
+
+  public void add(long row) {
+    addRange(row, row);
+  }
+
+  public void addRange(long first, long last) {
+    if (last < first)
+      throw new IBDataException("Range " + first + " to " + last + " is reversed");
+    count += last - first + 1;
+    if (size > 0 && first == ranges[size - 1] + 1) {
+      ranges[size - 1] = last;
+      return;
+    }
+    if (size / 2 == maxRanges)
+      spill();
+    if (size == ranges.length)
+      ranges = Arrays.copyOf(ranges, (int) Math.min((long) ranges.length * 2, (long) maxRanges * 2));
+    ranges[size++] = first;
+    ranges[size++] = last;
+  }
+
+  /**
+   * Append every range of another index to this one
+   *
+   * @param other index to copy from
+   */
+  public void addAll(IBDataRowRangeIndex other) {
+    other.forEachRange(this::addRange);
+  }
+
+  /**
+   * @return total number of rows added
+   */
+  public long getCount() {
+    return count;
+  }
+
+  /**
+   * @return number of ranges, including those spilled to disk
+   */
+  public long getRangeCount() {
+    return spilledRanges + size / 2;
+  }
+
+  public Optional<Path> getSpillPath() {
+    return ofNullable(spillPath);
+  }
+
+  public void forEachRange(RangeConsumer consumer) {
+    if (spillPath != null)
+      cet.withTranslation(() -> {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(spillPath)))) {
+          for (long i = 0; i < spilledRanges; ++i)
+            consumer.accept(in.readLong(), in.readLong());
+        } catch (EOFException e) {
+          throw new IBDataException("Spill file " + spillPath + " is truncated", e);
+        }
+      });
+    for (int i = 0; i < size; i += 2)
+      consumer.accept(ranges[i], ranges[i + 1]);
+  }
+
+  private void spill() {
+    if (spillPath == null)
+      spillPath = ofNullable(spillPathSupplier).map(Supplier::get)
+          .orElseThrow(() -> new IBDataException("Row index exceeded " + maxRanges + " ranges and cannot spill"));
+    cet.withTranslation(() -> {
+      try (DataOutputStream out = new DataOutputStream(
+          new BufferedOutputStream(Files.newOutputStream(spillPath, CREATE, APPEND)))) {
+        for (int i = 0; i < size; ++i)
+          out.writeLong(ranges[i]);
+      }
+    });
+    spilledRanges += size / 2;
+    size = 0;
+  }
+
+  @Override
+  public String toString() {
+    return "IBDataRowRangeIndex [count=" + count + ", ranges=" + getRangeCount() + "]";
+  }
+}
@@ -0,0 +1,201 @@
+/**
+ * Copyright © 2019 admin (admin@infrastructurebuilder.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.infrastructurebuilder.data;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters for one stage of a record-based transformation.
+ *
+ * Counters are {@link LongAdder}s, so they can be updated from several workers at once and sampled at any time
+ * without stopping the transformation. A sample taken while the transformation is running is not guaranteed to be
+ * consistent across counters.
+ */
+public class IBDataStageMetrics {
+  public static final String RECORDS_IN = "recordsIn";
+  public static final String RECORDS_OUT = "recordsOut";
+  public static final String REJECTED = "rejected";
+  public static final String NANOS = "nanos";
+  public static final String BYTES_READ = "bytesRead";
+  public static final String BYTES_WRITTEN = "bytesWritten";
+  public static final String STALL_NANOS = "stallNanos";
+  public static final String MAX_QUEUE_DEPTH = "maxQueueDepth";
+  public static final String MEAN_QUEUE_DEPTH = "meanQueueDepth";
+
+  private final String name;
+  private final LongAdder recordsIn = new LongAdder();
+  private final LongAdder recordsOut = new LongAdder();
+  private final LongAdder rejected = new LongAdder();
+  private final LongAdder nanos = new LongAdder();
+  private final LongAdder bytesRead = new LongAdder();
+  private final LongAdder bytesWritten = new LongAdder();
+  private final LongAdder stallNanos = new LongAdder();
+  private final LongAdder queueDepthSamples = new LongAdder();
+  private final LongAdder queueDepthTotal = new LongAdder();
+  private final LongAccumulator maxQueueDepth = new LongAccumulator(Math::max, 0L);
+
+  public IBDataStageMetrics(String name) {
+    this.name = requireNonNull(name);
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Account for one pass of records through this stage
+   *
+   * @param in       records offered to the stage
+   * @param out      records the stage passed on
+   * @param rejected records the stage rejected
+   * @param nanos    time spent in the stage
+   */
+  public void record(long in, long out, long rejected, long nanos) {
+    this.recordsIn.add(in);
+    this.recordsOut.add(out);
+    this.rejected.add(rejected);
+    this.nanos.add(nanos);
+  }
+
+  public void addBytesRead(long bytes) {
+    bytesRead.add(bytes);
+  }
+
+  public void addBytesWritten(long bytes) {
+    bytesWritten.add(bytes);
+  }
+
+  /**
+   * Account for time the stage spent blocked on a full or empty queue
+   *
+   * @param nanos time blocked
+   */
+  public void addStall(long nanos) {
+    stallNanos.add(nanos);
+  }
+
+  /**
+   * Record a sample of the depth of the queue feeding this stage
+   *
+   * @param depth number of entries waiting
+   */
+  public void sampleQueueDepth(int depth) {
+    queueDepthSamples.increment();
+    queueDepthTotal.add(depth);
+    maxQueueDepth.accumulate(depth);
+  }
+
+  public long getRecordsIn() {
+    return recordsIn.sum();
+  }
+
+  public long getRecordsOut() {
+    return recordsOut.sum();
+  }
+
+  public long getRejected() {
+    return rejected.sum();
+  }
+
+  public long getNanos() {
+    return nanos.sum();
+  }
+
+  public long getBytesRead() {
+    return bytesRead.sum();
+  }
+
+  public long getBytesWritten() {
+    return bytesWritten.sum();
+  }
+
+  public long getStallNanos() {
+    return stallNanos.sum();
+  }
+
+  public long getMaxQueueDepth() {
+    return maxQueueDepth.get();
+  }
+
+  public double getMeanQueueDepth() {
+    long n = queueDepthSamples.sum();
+    return n == 0L ? 0.0 : queueDepthTotal.sum() / (double) n;
+  }
+
+  /**
+   * @return records offered to the stage per second of time spent in it
+   */
+  public double getRecordsPerSecond() {
+    long n = getNanos();
+    return n == 0L ? 0.0 : getRecordsIn() * (double) TimeUnit.SECONDS.toNanos(1) / n;
+  }
+
+  /**
+   * Add a sample of every counter to a Properties, with keys of the form <code>prefix.name.counter</code>
+   *
+   * @param prefix key prefix
+   * @param p      target properties
+   */
+  public void addTo(String prefix, Properties p) {
+    String k = prefix + "." + name + ".";
+    p.setProperty(k + RECORDS_IN, Long.toString(getRecordsIn()));
+    p.setProperty(k + RECORDS_OUT, Long.toString(getRecordsOut()));
+    p.setProperty(k + REJECTED, Long.toString(getRejected()));
+    p.setProperty(k + NANOS, Long.toString(getNanos()));
+    p.setProperty(k + BYTES_READ, Long.toString(getBytesRead()));
+    p.setProperty(k + BYTES_WRITTEN, Long.toString(getBytesWritten()));
+    p.setProperty(k + STALL_NANOS, Long.toString(getStallNanos()));
+    p.setProperty(k + MAX_QUEUE_DEPTH, Long.toString(getMaxQueueDepth()));
+    p.setProperty(k + MEAN_QUEUE_DEPTH, Double.toString(getMeanQueueDepth()));
+  }
+
+  /**
+   * Write a list of stage metrics as a properties file. Stages are keyed by their position in the list and their
+   * name.
+   *
+   * @param metrics metrics to write
+   * @param target  file to write
+   * @throws IOException
+   */
+  public static void write(List<IBDataStageMetrics> metrics, Path target) throws IOException {
+    Properties p = new Properties();
+    for (int i = 0; i < metrics.size(); ++i)
+      metrics.get(i).addTo(String.format("stage%03d", i), p);
+    try (Writer w = Files.newBufferedWriter(target, StandardCharsets.UTF_8)) {
+      p.store(w, "Record transformation stage metrics");
+    }
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "%s: in=%d out=%d rejected=%d time=%dms (%.0f rec/s) read=%dB written=%dB stalled=%dms queue=%.1f/%d", name,
+        getRecordsIn(), getRecordsOut(), getRejected(), TimeUnit.NANOSECONDS.toMillis(getNanos()),
+        getRecordsPerSecond(), getBytesRead(), getBytesWritten(), TimeUnit.NANOSECONDS.toMillis(getStallNanos()),
+        getMeanQueueDepth(), getMaxQueueDepth());
+  }
+}
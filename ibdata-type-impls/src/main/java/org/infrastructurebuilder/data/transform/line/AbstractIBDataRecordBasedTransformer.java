@@ -25,28 +25,46 @@ import static org.infrastructurebuilder.data.IBDataConstants.TRANSFORMERSLIST;
 import static org.infrastructurebuilder.data.IBDataException.cet;
 import static org.infrastructurebuilder.data.IBDataModelUtils.getStructuredSupplyTypeClass;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.Date;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Supplier;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import org.codehaus.plexus.util.xml.Xpp3Dom;
 import org.infrastructurebuilder.IBConstants;
 import org.infrastructurebuilder.data.DefaultIBDataSet;
 import org.infrastructurebuilder.data.DefaultIBDataTransformationResult;
 import org.infrastructurebuilder.data.IBDataException;
+import org.infrastructurebuilder.data.IBDataRowRangeIndex;
 import org.infrastructurebuilder.data.IBDataSet;
+import org.infrastructurebuilder.data.IBDataStageMetrics;
 import org.infrastructurebuilder.data.IBDataStream;
 import org.infrastructurebuilder.data.IBDataStreamRecordFinalizer;
 import org.infrastructurebuilder.data.IBDataTransformationError;
@@ -64,14 +82,103 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 abstract public class AbstractIBDataRecordBasedTransformer extends AbstractIBDataTransformer {
+  /**
+   * Opt-in parallel processing. When "true", lines are read in chunks and each chunk is run through the configured
+   * record transformers on a fork/join worker. Records are still handed to the finalizer in their original order.
+   *
+   * Configured record transformers must be safe for concurrent use when this is enabled.
+   */
+  public static final String PARALLEL_PARAM = "parallel";
+  /**
+   * Opt-in pipelined processing. When "true", a reader thread fills batches of lines, a pool of workers runs them
+   * through the configured record transformers, and the calling thread writes them to the finalizer in their original
+   * order. The stages are connected by a fixed ring of batches, so a slow stage holds back the others and memory use
+   * is bounded. Takes precedence over {@link #PARALLEL_PARAM}. Workers number {@link #PARALLELISM_PARAM}.
+   *
+   * Configured record transformers must be safe for concurrent use when this is enabled.
+   */
+  public static final String PIPELINE_PARAM = "pipeline";
+  /** Number of batches in the pipeline ring */
+  public static final String PIPELINE_CAPACITY_PARAM = "pipelineCapacity";
+  public static final int DEFAULT_PIPELINE_CAPACITY = 16;
+  /** Number of lines in each chunk when processing in parallel */
+  public static final String PARALLEL_CHUNK_SIZE_PARAM = "parallelChunkSize";
+  /** Number of fork/join workers when processing in parallel. Defaults to the available processors */
+  public static final String PARALLELISM_PARAM = "parallelism";
+  public static final int DEFAULT_PARALLEL_CHUNK_SIZE = 4096;
+  /** Number of lines handed to the record transformers in each batch when processing serially */
+  public static final String BATCH_SIZE_PARAM = "batchSize";
+  public static final int DEFAULT_BATCH_SIZE = 1024;
+  /** Charset of the inbound streams. Defaults to UTF-8 */
+  public static final String CHARSET_PARAM = "charset";
+  /**
+   * Number of inbound streams processed at once. Each stream is written to its own partial finalizer, and the partials
+   * are merged in stream order. Requires a finalizer that implements {@link IBDataMergeableRecordFinalizer}.
+   * Defaults to 1, which processes streams one after another into the finalizer.
+   *
+   * Configured record transformers must be safe for concurrent use when this is greater than 1.
+   */
+  public static final String CONCURRENT_STREAMS_PARAM = "concurrentStreams";
+  /**
+   * Number of rejected row ranges each transformer may hold in memory before they are spilled to a file in the
+   * working path
+   */
+  public static final String ERROR_INDEX_MAX_RANGES_PARAM = "errorIndexMaxRanges";
+  /**
+   * Start a new output part after this many rows. Each part is registered as its own stream. Like the other
+   * partitioning options, requires a finalizer that implements {@link IBDataMergeableRecordFinalizer}
+   */
+  public static final String ROLL_ROWS_PARAM = "rollRows";
+  /** Start a new output part once the current one holds about this many bytes */
+  public static final String ROLL_BYTES_PARAM = "rollBytes";
+  /** Write records to a separate part for each value of this field */
+  public static final String PARTITION_FIELD_PARAM = "partitionField";
+  /** With {@link #PARTITION_FIELD_PARAM}, partition by the hash of the field into this many parts instead */
+  public static final String PARTITION_BUCKETS_PARAM = "partitionBuckets";
+  /**
+   * Number of parts that may be open at once. Beyond it the least recently written part is closed, and its key
+   * continues in a new part
+   */
+  public static final String PARTITION_MAX_OPEN_PARAM = "partitionMaxOpen";
+  /** Element added to the metadata of each part of partitioned output */
+  public static final String PARTITION_METADATA = "partition";
+  /**
+   * Opt-in write-behind. When "true", records are queued for the finalizer and written in batches of
+   * {@link #BATCH_SIZE_PARAM} on a dedicated I/O thread, so a slow or compressing writer does not stall parsing. Errors
+   * from the finalizer are collected when it is closed.
+   */
+  public static final String WRITE_BEHIND_PARAM = "writeBehind";
+  /** Maximum number of records queued for the write-behind thread */
+  public static final String WRITE_BEHIND_CAPACITY_PARAM = "writeBehindCapacity";
+  public static final int DEFAULT_WRITE_BEHIND_CAPACITY = 8192;
+
   private static final String IMPOSSIBLECLASSNAME = "_impossibleclassname###";
   public final static Logger log = LoggerFactory.getLogger(AbstractIBDataRecordBasedTransformer.class);
   private final Map<String, IBDataRecordTransformerSupplier> dataLineSuppliers;
   private final List<IBDataRecordTransformer<?, ?>> configuredTranformers;
+  private final IBDataRecordTransformerChain chain;
   private final IBDataStreamRecordFinalizer configuredFinalizer;
   private final Optional<Class<?>> finalType;
   private int countOfRowsSkippedSoFar = 0;
   private final List<String> firstType;
+  private final boolean parallel;
+  private final boolean pipeline;
+  private final int pipelineCapacity;
+  private final int parallelChunkSize;
+  private final int parallelism;
+  private final int batchSize;
+  private final Charset charset;
+  private final int errorIndexMaxRanges;
+  private final int concurrentStreams;
+  private final long rollRows;
+  private final long rollBytes;
+  private final String partitionField;
+  private final int partitionBuckets;
+  private final int partitionMaxOpen;
+  private final boolean writeBehind;
+  private final int writeBehindCapacity;
+  private final IBDataStageMetrics readMetrics = new IBDataStageMetrics("read");
+  private final IBDataStageMetrics finalizerMetrics = new IBDataStageMetrics("finalizer");
 
   protected AbstractIBDataRecordBasedTransformer(Path workingPath, Logger log, ConfigMap config,
       Map<String, IBDataRecordTransformerSupplier> dataRecTransformerSuppliers, IBDataStreamRecordFinalizer finalizer) {
@@ -130,6 +237,46 @@ abstract public class AbstractIBDataRecordBasedTransformer extends AbstractIBDat
       this.finalType = Optional.empty();
     }
     this.firstType = _fType.stream().map(Class::getCanonicalName).collect(Collectors.toList());
+    // The chain is fixed from here on, so compile it once rather than walking the list for every record
+    this.chain = ofNullable(this.configuredTranformers).map(IBDataRecordTransformerChain::new).orElse(null);
+    Optional<ConfigMap> cfg = ofNullable(config);
+    this.parallel = cfg.map(c -> c.getString(PARALLEL_PARAM)).map(Boolean::parseBoolean).orElse(false);
+    this.pipeline = cfg.map(c -> c.getString(PIPELINE_PARAM)).map(Boolean::parseBoolean).orElse(false);
+    this.pipelineCapacity = cfg.map(c -> c.getString(PIPELINE_CAPACITY_PARAM)).map(Integer::parseInt)
+        .orElse(DEFAULT_PIPELINE_CAPACITY);
+    this.parallelChunkSize = cfg.map(c -> c.getString(PARALLEL_CHUNK_SIZE_PARAM)).map(Integer::parseInt)
+        .orElse(DEFAULT_PARALLEL_CHUNK_SIZE);
+    this.parallelism = cfg.map(c -> c.getString(PARALLELISM_PARAM)).map(Integer::parseInt)
+        .orElse(Runtime.getRuntime().availableProcessors());
+    this.batchSize = cfg.map(c -> c.getString(BATCH_SIZE_PARAM)).map(Integer::parseInt).orElse(DEFAULT_BATCH_SIZE);
+    this.charset = cet.withReturningTranslation(
+        () -> cfg.map(c -> c.getString(CHARSET_PARAM)).map(Charset::forName).orElse(StandardCharsets.UTF_8));
+    this.errorIndexMaxRanges = cfg.map(c -> c.getString(ERROR_INDEX_MAX_RANGES_PARAM)).map(Integer::parseInt)
+        .orElse(IBDataRowRangeIndex.DEFAULT_MAX_RANGES);
+    this.concurrentStreams = cfg.map(c -> c.getString(CONCURRENT_STREAMS_PARAM)).map(Integer::parseInt).orElse(1);
+    if (this.parallelChunkSize < 1 || this.parallelism < 1 || this.batchSize < 1 || this.concurrentStreams < 1)
+      throw new IBDataException(BATCH_SIZE_PARAM + ", " + PARALLEL_CHUNK_SIZE_PARAM + ", " + PARALLELISM_PARAM + " and "
+          + CONCURRENT_STREAMS_PARAM + " must be positive");
+    if (this.pipelineCapacity < 1)
+      throw new IBDataException(PIPELINE_CAPACITY_PARAM + " must be positive");
+    if (this.errorIndexMaxRanges < 2)
+      throw new IBDataException(ERROR_INDEX_MAX_RANGES_PARAM + " must be at least 2");
+    this.rollRows = cfg.map(c -> c.getString(ROLL_ROWS_PARAM)).map(Long::parseLong).orElse(0L);
+    this.rollBytes = cfg.map(c -> c.getString(ROLL_BYTES_PARAM)).map(Long::parseLong).orElse(0L);
+    this.partitionField = cfg.map(c -> c.getString(PARTITION_FIELD_PARAM)).orElse(null);
+    this.partitionBuckets = cfg.map(c -> c.getString(PARTITION_BUCKETS_PARAM)).map(Integer::parseInt).orElse(0);
+    if (this.rollRows < 0 || this.rollBytes < 0 || this.partitionBuckets < 0)
+      throw new IBDataException(ROLL_ROWS_PARAM + ", " + ROLL_BYTES_PARAM + " and " + PARTITION_BUCKETS_PARAM
+          + " must not be negative");
+    this.partitionMaxOpen = cfg.map(c -> c.getString(PARTITION_MAX_OPEN_PARAM)).map(Integer::parseInt)
+        .orElse(IBDataPartitionedRecordFinalizer.DEFAULT_MAX_OPEN_PARTS);
+    if (this.partitionMaxOpen < 1)
+      throw new IBDataException(PARTITION_MAX_OPEN_PARAM + " must be positive");
+    this.writeBehind = cfg.map(c -> c.getString(WRITE_BEHIND_PARAM)).map(Boolean::parseBoolean).orElse(false);
+    this.writeBehindCapacity = cfg.map(c -> c.getString(WRITE_BEHIND_CAPACITY_PARAM)).map(Integer::parseInt)
+        .orElse(DEFAULT_WRITE_BEHIND_CAPACITY);
+    if (this.writeBehindCapacity < 1)
+      throw new IBDataException(WRITE_BEHIND_CAPACITY_PARAM + " must be positive");
   }
 
   @Override
@@ -169,6 +316,10 @@ abstract public class AbstractIBDataRecordBasedTransformer extends AbstractIBDat
         .orElseThrow(() -> new IBDataException("No list of configured record transformers"));
   }
 
+  public IBDataRecordTransformerChain getChain() {
+    return ofNullable(chain).orElseThrow(() -> new IBDataException("No list of configured record transformers"));
+  }
+
   protected Map<String, IBDataRecordTransformerSupplier> getDataLineSuppliers() {
     return dataLineSuppliers;
   }
@@ -177,6 +328,32 @@ abstract public class AbstractIBDataRecordBasedTransformer extends AbstractIBDat
     return configuredFinalizer;
   }
 
+  public boolean isParallel() {
+    return parallel;
+  }
+
+  public boolean isPipelined() {
+    return pipeline;
+  }
+
+  public Charset getCharset() {
+    return charset;
+  }
+
+  /**
+   * Live metrics for every stage: reading lines, each configured record transformer in order, and the finalizer.
+   * Counters accumulate over every stream this transformer processes and may be sampled while it runs.
+   *
+   * @return stage metrics in pipeline order
+   */
+  public List<IBDataStageMetrics> getStageMetrics() {
+    List<IBDataStageMetrics> l = new ArrayList<>();
+    l.add(readMetrics);
+    ofNullable(chain).ifPresent(c -> l.addAll(c.getMetrics()));
+    l.add(finalizerMetrics);
+    return l;
+  }
+
   /*
    * TODO Make this a (non-parallel!) stream process private Stream<String>
    * streamFor(IBDataStreamSupplier ibds) { try (InputStream ins =
@@ -188,66 +365,377 @@ abstract public class AbstractIBDataRecordBasedTransformer extends AbstractIBDat
   // This is a LITTLE bit dangerous
   @SuppressWarnings({ "rawtypes", "unchecked" })
   protected String processStream(IBDataStream stream, IBDataStreamRecordFinalizer finalizer,
-      Map<String, List<Long>> errors, List<IBDataTransformationError> errorList) {
+      Map<String, IBDataRowRangeIndex> errors, List<IBDataTransformationError> errorList) {
     return cet.withReturningTranslation(() -> {
       int skipRows = finalizer.getNumberOfRowsToSkip();
-      Class<?> inbound;
-      try (BufferedReader r = new BufferedReader(new InputStreamReader(stream.get()))) {
-        String line;
-        inbound = String.class;
-        Optional<Object> inboundObject = empty(), s;
-        long lineCount = 0;
-        while ((line = cet.withReturningTranslation(() -> r.readLine())) != null) {
-          lineCount++;
-          if (skipRows > 0) {
-            skipRows -= 1;
-            getLog().debug("Skipping row " + lineCount);
-            continue;
-          }
-          // log.info(String.format("Line %05d '%s'", lineCount, line));
-          s = of(line);
-          for (IBDataRecordTransformer t : getConfiguredTransformers()) {
-
-            inboundObject = ofNullable(t.apply(s.get()));
-            // log.info(String.format(" '%s'", line));
-            if (!inboundObject.isPresent()) {
-              errors.computeIfAbsent(t.getHint(), k -> new ArrayList<Long>()).add(lineCount);
-              break;
+      try (IBDataLineSource r = IBDataLineSource.from(stream, getCharset())) {
+        // Skipped rows are never decoded
+        long lineCount = r.skipLines(skipRows);
+        if (lineCount > 0)
+          getLog().debug("Skipped " + lineCount + " rows");
+        if (isPipelined())
+          processPipelined(r, lineCount, finalizer, errors, errorList);
+        else if (isParallel())
+          processChunked(r, lineCount, finalizer, errors, errorList);
+        else {
+          Object[] batch = new Object[batchSize];
+          int n = 0;
+          String line;
+          long firstLine = 0;
+          long readStart = System.nanoTime();
+          while ((line = r.readLine()) != null) {
+            lineCount++;
+            // log.info(String.format("Line %05d '%s'", lineCount, line));
+            if (n == 0)
+              firstLine = lineCount;
+            batch[n++] = line;
+            if (n == batchSize) {
+              readMetrics.record(n, n, 0, System.nanoTime() - readStart);
+              writeBatch(batch, transformBatch(batch, n, firstLine, errors), finalizer, errorList);
+              n = 0;
+              readStart = System.nanoTime();
             }
-            s = inboundObject;
-            inbound = (Class<?>) t.produces().orElse(inbound);
           }
-
-          inboundObject.ifPresent(l -> {
-            // log.info(String.format(" as '%s'", l));
-            finalizer.writeRecord(l).ifPresent(e -> errorList.add((IBDataTransformationError) e));
-          });
-
+          readMetrics.record(n, n, 0, System.nanoTime() - readStart);
+          if (n > 0)
+            writeBatch(batch, transformBatch(batch, n, firstLine, errors), finalizer, errorList);
         }
+        readMetrics.addBytesRead(r.getBytesRead());
       }
       return (String) finalizer.produces().orElse(stream.getMimeType());
     });
   }
 
-  protected IBDataTransformationResult localTransform(Transformer t, IBDataSet ds2, List<IBDataStream> suppliedStreams,
-      IBDataStreamRecordFinalizer finalizer, boolean failOnError) {
-    requireNonNull(finalizer, "No finalizer supplied to localTransform");
-    final Map<String, List<Long>> errors = new HashMap<>();
-    final List<IBDataTransformationError> errorList = new ArrayList<>();
-    Map<UUID, Supplier<IBDataStream>> map = new HashMap<>();
+  /**
+   * Run a batch of records through the compiled chain of configured transformers.
+   *
+   * @param batch     records to transform in place
+   * @param length    number of records in the batch
+   * @param firstLine line number of the first record of the batch within its stream
+   * @param errors    rejected line numbers, by transformer hint
+   * @return bitmap of the slots in the batch that were rejected
+   */
+  protected BitSet transformBatch(Object[] batch, int length, long firstLine,
+      Map<String, IBDataRowRangeIndex> errors) {
+    return getChain().apply(batch, length, firstLine, hint -> errors.computeIfAbsent(hint, this::newRowIndex));
+  }
 
-    String finalType = null;
-    for (IBDataStream stream : Stream
-        .concat(requireNonNull(ds2, "Supplied transform dataset").asStreamsList().stream(), suppliedStreams.stream())
-        .collect(Collectors.toList())) {
-      if (this.respondsTo(stream)) {
-        finalType = processStream(stream, finalizer, errors, errorList);
+  private IBDataRowRangeIndex newRowIndex(String hint) {
+    return new IBDataRowRangeIndex(errorIndexMaxRanges,
+        () -> getWorkingPath().resolve("rejected-" + UUID.randomUUID().toString() + ".idx"));
+  }
+
+  @SuppressWarnings({ "rawtypes", "unchecked" })
+  private void writeBatch(Object[] batch, BitSet rejected, IBDataStreamRecordFinalizer finalizer,
+      List<IBDataTransformationError> errorList) {
+    long start = System.nanoTime();
+    int written = 0, failed = 0;
+    for (int i = 0; i < batch.length; ++i) {
+      if (batch[i] != null && !rejected.get(i)) {
+        ++written;
+        Optional<IBDataTransformationError> e = finalizer.writeRecord(batch[i]);
+        if (e.isPresent()) {
+          ++failed;
+          errorList.add(e.get());
+        }
+      }
+      batch[i] = null;
+    }
+    finalizerMetrics.record(written, written - failed, failed, System.nanoTime() - start);
+  }
+
+  @SuppressWarnings({ "rawtypes", "unchecked" })
+  private void processChunked(IBDataLineSource r, long lineCount, IBDataStreamRecordFinalizer finalizer,
+      Map<String, IBDataRowRangeIndex> errors, List<IBDataTransformationError> errorList) throws IOException {
+    ForkJoinPool pool = new ForkJoinPool(parallelism);
+    try {
+      // Bound the number of chunks held in memory. Chunks are written strictly in submission order
+      int maxInFlight = parallelism * 2;
+      Deque<ForkJoinTask<TransformedChunk>> inFlight = new ArrayDeque<>();
+      List<String> lines = new ArrayList<>(parallelChunkSize);
+      String line;
+      long firstLine = 0;
+      long readStart = System.nanoTime();
+      while ((line = r.readLine()) != null) {
+        lineCount++;
+        if (lines.isEmpty())
+          firstLine = lineCount;
+        lines.add(line);
+        if (lines.size() == parallelChunkSize) {
+          readMetrics.record(lines.size(), lines.size(), 0, System.nanoTime() - readStart);
+          inFlight.addLast(pool.submit(chunkTask(firstLine, lines)));
+          lines = new ArrayList<>(parallelChunkSize);
+          while (inFlight.size() >= maxInFlight)
+            writeChunk(inFlight.removeFirst().join(), finalizer, errors, errorList);
+          readStart = System.nanoTime();
+        }
+      }
+      readMetrics.record(lines.size(), lines.size(), 0, System.nanoTime() - readStart);
+      if (!lines.isEmpty())
+        inFlight.addLast(pool.submit(chunkTask(firstLine, lines)));
+      while (!inFlight.isEmpty())
+        writeChunk(inFlight.removeFirst().join(), finalizer, errors, errorList);
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  private Callable<TransformedChunk> chunkTask(long firstLine, List<String> lines) {
+    return () -> {
+      TransformedChunk c = new TransformedChunk(lines.toArray());
+      c.rejected = transformBatch(c.records, c.records.length, firstLine, c.errors);
+      return c;
+    };
+  }
+
+  @SuppressWarnings({ "rawtypes", "unchecked" })
+  private void writeChunk(TransformedChunk c, IBDataStreamRecordFinalizer finalizer,
+      Map<String, IBDataRowRangeIndex> errors, List<IBDataTransformationError> errorList) {
+    c.errors.forEach((k, v) -> errors.computeIfAbsent(k, this::newRowIndex).addAll(v));
+    writeBatch(c.records, c.rejected, finalizer, errorList);
+  }
+
+  /**
+   * Reader thread, transform workers and the calling thread as writer, connected by a ring of
+   * {@link #pipelineCapacity} reusable batches. The reader blocks when every batch is in use, which is the only
+   * backpressure needed: the work and done queues can never hold more than the ring.
+   */
+  @SuppressWarnings("rawtypes")
+  private void processPipelined(IBDataLineSource r, long lineCount, IBDataStreamRecordFinalizer finalizer,
+      Map<String, IBDataRowRangeIndex> errors, List<IBDataTransformationError> errorList) throws Exception {
+    int n = pipelineCapacity;
+    BlockingQueue<PipelineBatch> free = new ArrayBlockingQueue<>(n);
+    BlockingQueue<PipelineBatch> work = new ArrayBlockingQueue<>(n + parallelism);
+    // Room for every batch, the end marker and a failure from every thread, so puts here never block
+    BlockingQueue<PipelineBatch> done = new ArrayBlockingQueue<>(n + parallelism + 2);
+    for (int i = 0; i < n; ++i)
+      free.add(new PipelineBatch(batchSize));
+    IBDataStageMetrics workerMetrics = getChain().size() > 0 ? getChain().getMetrics().get(0) : readMetrics;
+    ExecutorService pool = Executors.newFixedThreadPool(parallelism + 1);
+    try {
+      // Reader
+      pool.submit(() -> {
+        try {
+          long stall = 0L, start = System.nanoTime(), seq = 0L, line = lineCount, lines = 0L;
+          PipelineBatch b = null;
+          String s;
+          while ((s = r.readLine()) != null) {
+            if (b == null) {
+              long t = System.nanoTime();
+              b = free.take();
+              stall += System.nanoTime() - t;
+              b.seq = seq++;
+              b.firstLine = line + 1;
+              b.length = 0;
+            }
+            ++line;
+            ++lines;
+            b.records[b.length++] = s;
+            if (b.length == batchSize) {
+              work.put(b);
+              readMetrics.sampleQueueDepth(work.size());
+              b = null;
+            }
+          }
+          if (b != null)
+            work.put(b);
+          readMetrics.record(lines, lines, 0, System.nanoTime() - start - stall);
+          readMetrics.addStall(stall);
+          for (int i = 0; i < parallelism; ++i)
+            work.put(PipelineBatch.STOP);
+          done.put(PipelineBatch.end(seq));
+        } catch (Throwable t) {
+          done.offer(PipelineBatch.failed(t));
+        }
+        return null;
+      });
+      // Workers
+      for (int i = 0; i < parallelism; ++i)
+        pool.submit(() -> {
+          try {
+            while (true) {
+              long t = System.nanoTime();
+              PipelineBatch b = work.take();
+              workerMetrics.addStall(System.nanoTime() - t);
+              if (b == PipelineBatch.STOP)
+                return null;
+              b.rejected = transformBatch(b.records, b.length, b.firstLine, b.errors);
+              done.put(b);
+            }
+          } catch (Throwable t) {
+            done.offer(PipelineBatch.failed(t));
+          }
+          return null;
+        });
+      // Writer. Batches are written in sequence; at most n are outstanding so seq % n is a unique slot
+      PipelineBatch[] ring = new PipelineBatch[n];
+      long next = 0L, total = -1L;
+      while (total < 0 || next < total) {
+        long t = System.nanoTime();
+        finalizerMetrics.sampleQueueDepth(done.size());
+        PipelineBatch b = done.take();
+        finalizerMetrics.addStall(System.nanoTime() - t);
+        if (b.failure != null)
+          throw new IBDataException("Record pipeline failed", b.failure);
+        if (b.records == null) {
+          total = b.seq;
+          continue;
+        }
+        ring[(int) (b.seq % n)] = b;
+        PipelineBatch w;
+        while ((w = ring[(int) (next % n)]) != null && w.seq == next) {
+          ring[(int) (next % n)] = null;
+          w.errors.forEach((k, v) -> errors.computeIfAbsent(k, this::newRowIndex).addAll(v));
+          w.errors.clear();
+          writeBatch(w.records, w.rejected, finalizer, errorList);
+          free.put(w);
+          ++next;
+        }
       }
+    } finally {
+      pool.shutdownNow();
+      // The line source is closed when this returns, so the reader must be gone
+      pool.awaitTermination(1, TimeUnit.MINUTES);
     }
-    cet.withTranslation(() -> finalizer.close());
+  }
+
+  private final static class PipelineBatch {
+    private final static PipelineBatch STOP = new PipelineBatch(0);
+    private final Object[] records;
+    private final Map<String, IBDataRowRangeIndex> errors = new HashMap<>();
+    private long seq;
+    private long firstLine;
+    private int length;
+    private BitSet rejected;
+    private Throwable failure;
+
+    private PipelineBatch(int size) {
+      this.records = new Object[size];
+    }
+
+    private PipelineBatch(long seq, Throwable failure) {
+      this.records = null;
+      this.seq = seq;
+      this.failure = failure;
+    }
+
+    private static PipelineBatch end(long count) {
+      return new PipelineBatch(count, null);
+    }
+
+    private static PipelineBatch failed(Throwable t) {
+      return new PipelineBatch(-1L, t);
+    }
+  }
+
+  private final static class TransformedChunk {
+    private final Object[] records;
+    private final Map<String, IBDataRowRangeIndex> errors = new HashMap<>();
+    private BitSet rejected;
+
+    private TransformedChunk(Object[] records) {
+      this.records = records;
+    }
+  }
+
+  /**
+   * Process several streams at once, each into its own partial finalizer in the working path. Partials are merged
+   * into the finalizer in stream order, so the output is the same as processing the streams one after another.
+   */
+  @SuppressWarnings({ "rawtypes", "unchecked" })
+  private String processConcurrently(List<IBDataStream> streams, IBDataMergeableRecordFinalizer finalizer,
+      Map<String, IBDataRowRangeIndex> errors, List<IBDataTransformationError> errorList) {
+    ExecutorService pool = Executors.newFixedThreadPool(Math.min(concurrentStreams, streams.size()));
+    try {
+      List<Future<PartialStream>> futures = new ArrayList<>();
+      for (IBDataStream stream : streams)
+        futures.add(pool.submit(() -> {
+          PartialStream ps = new PartialStream(
+              finalizer.newPartial(getWorkingPath().resolve("partial-" + UUID.randomUUID().toString())));
+          try {
+            ps.type = processStream(stream, ps.finalizer, ps.errors, ps.errorList);
+          } finally {
+            cet.withTranslation(() -> ps.finalizer.close());
+          }
+          return ps;
+        }));
+      String finalType = null;
+      for (Future<PartialStream> f : futures) {
+        PartialStream ps = cet.withReturningTranslation(() -> f.get());
+        ps.errors.forEach((k, v) -> errors.computeIfAbsent(k, this::newRowIndex).addAll(v));
+        errorList.addAll(ps.errorList);
+        cet.withTranslation(() -> finalizer.merge(ps.finalizer));
+        cet.withTranslation(() -> Files.deleteIfExists(ps.finalizer.getWorkingPath()));
+        finalType = ps.type;
+      }
+      return finalType;
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  private static void closeAfterFailure(AutoCloseable c, Throwable failure) {
+    try {
+      c.close();
+    } catch (Throwable e) {
+      failure.addSuppressed(e);
+    }
+  }
+
+  private final static class PartialStream {
+    private final IBDataMergeableRecordFinalizer<?> finalizer;
+    private final Map<String, IBDataRowRangeIndex> errors = new LinkedHashMap<>();
+    private final List<IBDataTransformationError> errorList = new ArrayList<>();
+    private String type;
+
+    private PartialStream(IBDataMergeableRecordFinalizer<?> finalizer) {
+      this.finalizer = finalizer;
+    }
+  }
+
+  private static Optional<AbstractIBDataStreamRecordFinalizer<?, ?>> digestingFinalizer(
+      IBDataStreamRecordFinalizer<?> finalizer) {
+    if (!(finalizer instanceof AbstractIBDataStreamRecordFinalizer))
+      return Optional.empty();
+    AbstractIBDataStreamRecordFinalizer<?, ?> f = (AbstractIBDataStreamRecordFinalizer<?, ?>) finalizer;
+    return f.getChecksum().isPresent() ? Optional.of(f) : Optional.empty();
+  }
+
+  public boolean isWriteBehind() {
+    return writeBehind;
+  }
+
+  public boolean isPartitioned() {
+    return rollRows > 0 || rollBytes > 0 || partitionField != null;
+  }
+
+  @SuppressWarnings({ "rawtypes", "unchecked" })
+  private IBDataStreamRecordFinalizer partitioned(IBDataStreamRecordFinalizer finalizer) {
+    if (!isPartitioned())
+      return finalizer;
+    if (!(finalizer instanceof IBDataMergeableRecordFinalizer)) {
+      getLog().warn("Finalizer " + finalizer.getId() + " cannot start new parts. Writing a single output");
+      return finalizer;
+    }
+    return new IBDataPartitionedRecordFinalizer((IBDataMergeableRecordFinalizer) finalizer, rollRows, rollBytes,
+        partitionField, partitionBuckets, partitionMaxOpen);
+  }
+
+  /**
+   * Describe a closed finalizer's output as a new stream and add it to the map
+   */
+  @SuppressWarnings("rawtypes")
+  private void registerOutput(Transformer t, String finalType, IBDataStreamRecordFinalizer finalizer,
+      IBDataPartitionedRecordFinalizer.Part part, Map<UUID, Supplier<IBDataStream>> map) {
     Path targetPath = finalizer.getWorkingPath();
-    Checksum c = new Checksum(targetPath);
-    ds2.getStreamSuppliers().forEach(ss -> map.put(ss.get().getId(), ss));
+    // Finalizers that digest while writing already know the checksum and length of their output
+    Optional<AbstractIBDataStreamRecordFinalizer<?, ?>> digested = digestingFinalizer(finalizer);
+    if (digested.isPresent())
+      finalizerMetrics.addBytesWritten(digested.get().getLength().orElse(0L));
+    else if (Files.isRegularFile(targetPath))
+      finalizerMetrics.addBytesWritten(cet.withReturningTranslation(() -> Files.size(targetPath)));
+    Checksum c = digested.flatMap(AbstractIBDataStreamRecordFinalizer::getChecksum)
+        .orElseGet(() -> new Checksum(targetPath));
     DataStream newStream = new DataStream();
     newStream.setMimeType(Optional.ofNullable(finalType).orElse(IBConstants.APPLICATION_OCTET_STREAM));
     newStream.setMetadata(IBMetadataUtils.translateToXpp3Dom.apply(t.getTargetStreamMetadataAsDocument()));
@@ -257,10 +745,86 @@ abstract public class AbstractIBDataRecordBasedTransformer extends AbstractIBDat
     newStream.setSha512(c.toString());
     newStream.setDataStreamDescription(t.getTransformation().getDescription());
     newStream.setDataStreamName(t.getTransformation().getName());
+    if (part != null) {
+      String suffix = (part.getKey().isEmpty() ? "" : "-" + part.getKey())
+          + String.format("-part-%05d", part.getSequence());
+      newStream.setDataStreamName(ofNullable(newStream.getDataStreamName()).orElse("") + suffix);
+      // Parts with identical content must still be distinct streams
+      newStream.setUuid(UUID.nameUUIDFromBytes((c.toString() + suffix).getBytes(StandardCharsets.UTF_8)).toString());
+      if (newStream.getMetadata() instanceof Xpp3Dom) {
+        Xpp3Dom p = new Xpp3Dom(PARTITION_METADATA);
+        p.setAttribute("key", part.getKey());
+        p.setAttribute("sequence", Integer.toString(part.getSequence()));
+        p.setAttribute("rows", Long.toString(part.getRows()));
+        ((Xpp3Dom) newStream.getMetadata()).addChild(p);
+      }
+    }
     Supplier<IBDataStream> x = finalizer.finalizeRecord(newStream);
     map.put(x.get().getId(), x);
+  }
+
+  protected IBDataTransformationResult localTransform(Transformer t, IBDataSet ds2, List<IBDataStream> suppliedStreams,
+      IBDataStreamRecordFinalizer finalizer, boolean failOnError) {
+    requireNonNull(finalizer, "No finalizer supplied to localTransform");
+    finalizer = partitioned(finalizer);
+    IBDataStreamRecordFinalizer writer = finalizer;
+    final Map<String, IBDataRowRangeIndex> errors = new LinkedHashMap<>();
+    final List<IBDataTransformationError> errorList = new ArrayList<>();
+    Map<UUID, Supplier<IBDataStream>> map = new HashMap<>();
+
+    String finalType = null;
+    List<IBDataStream> responding = Stream
+        .concat(requireNonNull(ds2, "Supplied transform dataset").asStreamsList().stream(), suppliedStreams.stream())
+        .filter(this::respondsTo).collect(Collectors.toList());
+    Throwable failure = null;
+    try {
+      if (concurrentStreams > 1 && responding.size() > 1 && finalizer instanceof IBDataMergeableRecordFinalizer)
+        finalType = processConcurrently(responding, (IBDataMergeableRecordFinalizer) finalizer, errors, errorList);
+      else {
+        if (concurrentStreams > 1 && responding.size() > 1)
+          getLog()
+              .warn("Finalizer " + finalizer.getId() + " cannot merge partial outputs. Processing streams serially");
+        if (writeBehind)
+          writer = new IBDataWriteBehindRecordFinalizer(finalizer, writeBehindCapacity, batchSize);
+        for (IBDataStream stream : responding) {
+          finalType = processStream(stream, writer, errors, errorList);
+        }
+      }
+    } catch (RuntimeException | Error e) {
+      failure = e;
+      throw e;
+    } finally {
+      // Every record has been through the transformers, or the run failed, so any state they kept for it can go.
+      // A failed run still stops a write-behind thread and closes open parts. The original failure stays primary
+      if (failure == null)
+        ofNullable(chain).ifPresent(IBDataRecordTransformerChain::close);
+      else {
+        if (chain != null)
+          closeAfterFailure(chain, failure);
+        closeAfterFailure(writer, failure);
+      }
+    }
+    final IBDataStreamRecordFinalizer f = finalizer;
+    final IBDataStreamRecordFinalizer w = writer;
+    long closeStart = System.nanoTime();
+    // Closing a write-behind finalizer writes everything queued and joins its thread before the output is digested
+    cet.withTranslation(() -> w.close());
+    finalizerMetrics.record(0, 0, 0, System.nanoTime() - closeStart);
+    if (w instanceof IBDataDeferredErrorsRecordFinalizer) {
+      int failed = ((IBDataDeferredErrorsRecordFinalizer) w).drainErrors(errorList);
+      // Deferred records were counted as written
+      finalizerMetrics.record(0, -failed, failed, 0L);
+    }
+    ds2.getStreamSuppliers().forEach(ss -> map.put(ss.get().getId(), ss));
+    if (f instanceof IBDataPartitionedRecordFinalizer)
+      for (IBDataPartitionedRecordFinalizer.Part<?> p : ((IBDataPartitionedRecordFinalizer<?>) f).getParts())
+        registerOutput(t, finalType, p.getFinalizer(), p, map);
+    else
+      registerOutput(t, finalType, f, null, map);
     IBDataSet newSet = new DefaultIBDataSet(ds2).withStreamSuppliers(map);
-    return new DefaultIBDataTransformationResult(ofNullable(newSet), errorList, getWorkingPath());
+    errors.forEach((k, v) -> getLog().info("Transformer " + k + " rejected " + v.getCount() + " rows"));
+    return new DefaultIBDataTransformationResult(ofNullable(newSet), errorList, getWorkingPath(), errors,
+        getStageMetrics());
   }
 
 }
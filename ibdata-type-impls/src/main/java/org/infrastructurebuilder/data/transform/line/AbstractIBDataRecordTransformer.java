@@ -21,13 +21,15 @@ import static java.util.Optional.ofNullable;
 
 import java.nio.file.Path;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
 import java.util.Optional;
 
 import org.infrastructurebuilder.util.config.ConfigMap;
 import org.slf4j.Logger;
 
-abstract public class AbstractIBDataRecordTransformer<I, O> implements IBDataRecordTransformer<I, O> {
+abstract public class AbstractIBDataRecordTransformer<I, O>
+    implements IBDataRecordTransformer<I, O>, IBDataBatchRecordTransformer<I, O> {
 
   private final Path workingPath;
   private final ConfigMap config;
@@ -100,4 +102,16 @@ abstract public class AbstractIBDataRecordTransformer<I, O> implements IBDataRec
     return getTypedObject(o).isPresent();
   }
 
+  /**
+   * Default batch implementation, which calls {@link #apply(Object)} for every slot that has not been rejected.
+   * Override this to supply a native batch implementation.
+   */
+  @SuppressWarnings("unchecked")
+  @Override
+  public void applyBatch(Object[] in, Object[] out, int length, BitSet rejected) {
+    for (int i = rejected.nextClearBit(0); i < length; i = rejected.nextClearBit(i + 1))
+      if ((out[i] = apply((I) in[i])) == null)
+        rejected.set(i);
+  }
+
 }
\ No newline at end of file
@@ -33,11 +33,13 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
 import java.util.Optional;
+import java.util.function.Function;
 import java.util.function.Supplier;
 
 import org.infrastructurebuilder.data.DefaultIBDataStream;
 import org.infrastructurebuilder.data.DefaultIBDataStreamSupplier;
 import org.infrastructurebuilder.data.DefaultIBDataTransformationError;
+import org.infrastructurebuilder.data.IBDataDigestingOutputStream;
 import org.infrastructurebuilder.data.IBDataException;
 import org.infrastructurebuilder.data.IBDataStream;
 import org.infrastructurebuilder.data.IBDataStreamIdentifier;
@@ -46,7 +48,9 @@ import org.infrastructurebuilder.data.IBDataStructuredDataMetadata;
 import org.infrastructurebuilder.data.IBDataTransformationError;
 import org.infrastructurebuilder.data.IBStreamerFactory;
 import org.infrastructurebuilder.data.model.DataStreamStructuredMetadata;
+import org.infrastructurebuilder.util.artifacts.Checksum;
 import org.infrastructurebuilder.util.config.ConfigMap;
+import org.infrastructurebuilder.util.files.BasicIBChecksumPathType;
 import org.slf4j.Logger;
 
 abstract public class AbstractIBDataStreamRecordFinalizer<T, O> implements IBDataStreamRecordFinalizer<T> {
@@ -55,11 +59,29 @@ abstract public class AbstractIBDataStreamRecordFinalizer<T, O> implements IBDat
   private final Path workingPath;
   private final Optional<O> writer;
   private final Logger log;
+  private final IBDataDigestingOutputStream target;
   private boolean closed = false;
+  private long recordCount = 0L;
   protected DataStreamStructuredMetadata smd = null;
 
   public AbstractIBDataStreamRecordFinalizer(String id, Path workingPath, Logger l, ConfigMap map,
       Optional<O> optionalWriter) {
+    this(id, workingPath, l, map, optionalWriter, null);
+  }
+
+  /**
+   * Create a finalizer whose writer writes to a digesting target at the working path, so that the checksum and length
+   * of the output are known at close without reading it again.
+   *
+   * @param writerFactory produces the writer from the target stream
+   */
+  public AbstractIBDataStreamRecordFinalizer(String id, Path workingPath, Logger l, ConfigMap map,
+      Function<OutputStream, O> writerFactory) {
+    this(id, workingPath, l, map, null, requireNonNull(writerFactory));
+  }
+
+  private AbstractIBDataStreamRecordFinalizer(String id, Path workingPath, Logger l, ConfigMap map,
+      Optional<O> optionalWriter, Function<OutputStream, O> writerFactory) {
     this.log = requireNonNull(l);
     this.config = map;
     this.workingPath = requireNonNull(workingPath);
@@ -67,7 +89,14 @@ abstract public class AbstractIBDataStreamRecordFinalizer<T, O> implements IBDat
     if (!isDirectory(k) || !exists(k))
       cet.withTranslation(() -> createDirectories(k));
     this.id = requireNonNull(id);
-    this.writer = requireNonNull(optionalWriter);
+    if (writerFactory != null) {
+      this.target = new IBDataDigestingOutputStream(
+          cet.withReturningTranslation(() -> Files.newOutputStream(workingPath, CREATE_NEW)));
+      this.writer = Optional.of(writerFactory.apply(this.target));
+    } else {
+      this.target = null;
+      this.writer = requireNonNull(optionalWriter);
+    }
   }
 
   public Logger getLog() {
@@ -94,7 +123,13 @@ abstract public class AbstractIBDataStreamRecordFinalizer<T, O> implements IBDat
 
   @Override
   public Supplier<IBDataStream> finalizeRecord(IBDataStreamIdentifier ds) {
-    DefaultIBDataStream stream = new DefaultIBDataStream(ds, getWorkingPath(), getStructuredMetadata());
+    // A checksum digested while writing is handed to the stream so it never reads the output again to compute one
+    DefaultIBDataStream stream = getChecksum().map(c -> {
+      DefaultIBDataStream d = new DefaultIBDataStream(ds,
+          new BasicIBChecksumPathType(getWorkingPath(), c, ds.getMimeType()));
+      getStructuredMetadata().ifPresent(d::setStructuredDataMetadata);
+      return d;
+    }).orElseGet(() -> new DefaultIBDataStream(ds, getWorkingPath(), getStructuredMetadata()));
     return new DefaultIBDataStreamSupplier(stream);
   }
 
@@ -123,6 +158,7 @@ abstract public class AbstractIBDataStreamRecordFinalizer<T, O> implements IBDat
     try {
       this.smd = updateStructuredMetadata(this.smd, recordToWrite);
       writeThrows(recordToWrite);
+      ++recordCount;
       return empty();
     } catch (Throwable e) {
       return of(new DefaultIBDataTransformationError(of(e), ofNullable(recordToWrite).map(k -> k.toString())));
@@ -138,9 +174,46 @@ abstract public class AbstractIBDataStreamRecordFinalizer<T, O> implements IBDat
     return ofNullable(this.smd);
   }
 
+  /**
+   * The digesting target that the writer-factory constructor opened at the working path. Bytes written to it count
+   * towards {@link #getChecksum()} and {@link #getLength()}.
+   *
+   * @throws IOException if this finalizer was not created with a writer factory
+   */
   @Override
   public OutputStream getWriterTarget() throws IOException {
-    return Files.newOutputStream(getWorkingPath(), CREATE_NEW);
+    if (target == null)
+      throw new IOException("Finalizer " + getId() + " was not created with a writer factory, so it has no target");
+    return target;
+  }
+
+  /**
+   * @return number of records successfully written
+   */
+  public long getRecordCount() {
+    return recordCount;
+  }
+
+  /**
+   * Add the records written by a merged partial to this finalizer's count
+   */
+  protected void mergeRecordCount(IBDataStreamRecordFinalizer<?> partial) {
+    if (partial instanceof AbstractIBDataStreamRecordFinalizer)
+      recordCount += ((AbstractIBDataStreamRecordFinalizer<?, ?>) partial).getRecordCount();
+  }
+
+  /**
+   * @return checksum of the output, if it was computed while writing and the finalizer is closed
+   */
+  public Optional<Checksum> getChecksum() {
+    return ofNullable(target).flatMap(IBDataDigestingOutputStream::getChecksum);
+  }
+
+  /**
+   * @return number of bytes written to the output, if it was counted while writing
+   */
+  public Optional<Long> getLength() {
+    return ofNullable(target).map(IBDataDigestingOutputStream::getLength);
   }
 
 }
@@ -0,0 +1,65 @@
+/**
+ * Copyright © 2019 admin (admin@infrastructurebuilder.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.infrastructurebuilder.data.transform.line;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.BitSet;
+
+/**
+ * Batch contract for record transformers.
+ *
+ * A batch is processed in one call rather than by calling {@link IBDataRecordTransformer#apply(Object)} per record.
+ * Slots whose bit is already set in the rejection bitmap are skipped. A slot that the transformer rejects has its bit
+ * set and its output slot cleared.
+ *
+ * @param <I> inbound record type
+ * @param <O> outbound record type
+ */
+@FunctionalInterface
+public interface IBDataBatchRecordTransformer<I, O> {
+
+  /**
+   * Transform the first <code>length</code> slots of <code>in</code> into <code>out</code>.
+   *
+   * @param in       inbound records
+   * @param out      outbound records. May be the same array as <code>in</code>
+   * @param length   number of slots to process
+   * @param rejected rejection bitmap. Set bits are skipped, and newly rejected slots are set
+   */
+  void applyBatch(Object[] in, Object[] out, int length, BitSet rejected);
+
+  /**
+   * Obtain a batch view of any record transformer. Transformers that do not implement this interface natively are
+   * adapted to call {@link IBDataRecordTransformer#apply(Object)} once per record.
+   *
+   * @param t the transformer
+   * @return a batch transformer
+   */
+  @SuppressWarnings({ "rawtypes", "unchecked" })
+  public static IBDataBatchRecordTransformer<?, ?> from(IBDataRecordTransformer<?, ?> t) {
+    requireNonNull(t);
+    if (t instanceof IBDataBatchRecordTransformer)
+      return (IBDataBatchRecordTransformer<?, ?>) t;
+    IBDataRecordTransformer r = t;
+    return (in, out, length, rejected) -> {
+      for (int i = rejected.nextClearBit(0); i < length; i = rejected.nextClearBit(i + 1)) {
+        if ((out[i] = r.apply(in[i])) == null)
+          rejected.set(i);
+      }
+    };
+  }
+}
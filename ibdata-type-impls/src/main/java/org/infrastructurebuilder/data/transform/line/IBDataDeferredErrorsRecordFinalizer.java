@@ -0,0 +1,39 @@
+/**
+ * Copyright © 2019 admin (admin@infrastructurebuilder.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.infrastructurebuilder.data.transform.line;
+
+import java.util.Collection;
+
+import org.infrastructurebuilder.data.IBDataStreamRecordFinalizer;
+import org.infrastructurebuilder.data.IBDataTransformationError;
+
+/**
+ * A record finalizer that writes records after {@link #writeRecord(Object)} has returned, so errors writing them are
+ * only known later. Errors are held, each with its original record, until drained.
+ *
+ * @param <T> record type
+ */
+public interface IBDataDeferredErrorsRecordFinalizer<T> extends IBDataStreamRecordFinalizer<T> {
+
+  /**
+   * Move the errors reported so far to a collection, in the order they occurred. Call after close to collect all of
+   * them.
+   *
+   * @param target receives the errors
+   * @return number of errors moved
+   */
+  int drainErrors(Collection<IBDataTransformationError> target);
+}
@@ -0,0 +1,87 @@
+/**
+ * Copyright © 2019 admin (admin@infrastructurebuilder.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.infrastructurebuilder.data.transform.line;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Optional;
+
+import org.infrastructurebuilder.data.IBDataStream;
+
+/**
+ * Source of text lines for record-based transformation.
+ *
+ * Lines are terminated by <code>\n</code>, <code>\r</code> or <code>\r\n</code>, as with BufferedReader.
+ * Terminators are not included in the returned lines.
+ */
+public interface IBDataLineSource extends Closeable {
+
+  /**
+   * @return the next line, or null at the end of the source
+   */
+  String readLine() throws IOException;
+
+  /**
+   * Skip lines without returning them.
+   *
+   * @param n number of lines to skip
+   * @return number of lines actually skipped, which is less than n only at the end of the source
+   */
+  long skipLines(long n) throws IOException;
+
+  /**
+   * @return number of bytes consumed from the underlying file or stream so far. May run ahead of the lines returned
+   *         when the source reads ahead
+   */
+  long getBytesRead();
+
+  /**
+   * Produce a line source for a stream. Streams backed by a file on the default filesystem are memory mapped. Anything
+   * else is read through the stream's InputStream.
+   *
+   * @param stream the stream to read
+   * @param cs     charset of the stream
+   * @return a line source. The caller must close it.
+   * @throws IOException
+   */
+  public static IBDataLineSource from(IBDataStream stream, Charset cs) throws IOException {
+    requireNonNull(cs);
+    Optional<Path> p = requireNonNull(stream).getPathIfAvailable()
+        // Only real files can be mapped
+        .filter(path -> path.getFileSystem() == FileSystems.getDefault()).filter(Files::isRegularFile);
+    if (p.isPresent() && isByteScannable(cs))
+      return new MappedFileLineSource(p.get(), cs);
+    return new InputStreamLineSource(stream.get(), cs);
+  }
+
+  /**
+   * Lines can only be found by scanning bytes for <code>\n</code> and <code>\r</code> when the charset encodes them
+   * (and so every other character) the way ASCII does. That excludes UTF-16 and UTF-32, for example.
+   *
+   * @param cs charset
+   * @return true if newlines can be found at the byte level
+   */
+  public static boolean isByteScannable(Charset cs) {
+    return cs.canEncode() && Arrays.equals(new byte[] { '\r', '\n' }, "\r\n".getBytes(cs));
+  }
+}
@@ -0,0 +1,65 @@
+/**
+ * Copyright © 2019 admin (admin@infrastructurebuilder.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.infrastructurebuilder.data.transform.line;
+
+import java.nio.file.Path;
+import java.util.Map;
+
+import org.infrastructurebuilder.data.IBDataException;
+import org.infrastructurebuilder.data.IBDataStreamRecordFinalizer;
+
+/**
+ * A record finalizer whose output can be produced in pieces.
+ *
+ * Each piece is written by a partial finalizer obtained from {@link #newPartial(Path)}, typically on its own thread.
+ * Once a partial is closed its output is appended to this finalizer's output with
+ * {@link #merge(IBDataMergeableRecordFinalizer)}.
+ *
+ * @param <T> record type
+ */
+public interface IBDataMergeableRecordFinalizer<T> extends IBDataStreamRecordFinalizer<T> {
+
+  /**
+   * Create a finalizer with the same configuration as this one that writes to a different file
+   *
+   * @param workingPath file the partial writes to
+   * @return a new, empty partial finalizer
+   */
+  IBDataMergeableRecordFinalizer<T> newPartial(Path workingPath);
+
+  /**
+   * Append the output of a closed partial to this finalizer's output, along with any structured metadata it
+   * collected. Records appear after every record already written here.
+   *
+   * @param partial a closed partial produced by {@link #newPartial(Path)}
+   * @throws Exception
+   */
+  void merge(IBDataMergeableRecordFinalizer<T> partial) throws Exception;
+
+  /**
+   * Value of a named field of a record, used to partition output. Records that are maps are supported here;
+   * finalizers of other structured records override this.
+   *
+   * @param recordToWrite the record
+   * @param field         name of the field
+   * @return the value, which may be null
+   */
+  default Object fieldValue(T recordToWrite, String field) {
+    if (recordToWrite instanceof Map)
+      return ((Map<?, ?>) recordToWrite).get(field);
+    throw new IBDataException("Finalizer " + getId() + " cannot read field " + field + " of its records");
+  }
+}
@@ -0,0 +1,253 @@
+/**
+ * Copyright © 2019 admin (admin@infrastructurebuilder.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.infrastructurebuilder.data.transform.line;
+
+import static java.util.Objects.requireNonNull;
+import static java.util.Optional.of;
+import static org.infrastructurebuilder.data.IBDataException.cet;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import org.infrastructurebuilder.data.DefaultIBDataTransformationError;
+import org.infrastructurebuilder.data.IBDataException;
+import org.infrastructurebuilder.data.IBDataStream;
+import org.infrastructurebuilder.data.IBDataStreamIdentifier;
+import org.infrastructurebuilder.data.IBDataStreamRecordFinalizer;
+import org.infrastructurebuilder.data.IBDataTransformationError;
+
+/**
+ * Splits the output of a mergeable finalizer into parts.
+ *
+ * Records are routed to a partition by the value of a field, or by its hash modulo a number of buckets, or all to a
+ * single partition when no field is given. Within a partition a new part is started once the current part holds a
+ * maximum number of rows or bytes. Each part is a finalizer obtained from
+ * {@link IBDataMergeableRecordFinalizer#newPartial(Path)}, so it has its own file, checksum and statistics. The
+ * wrapped finalizer writes the first part.
+ *
+ * At most a fixed number of parts are open at once. When a record needs another, the least recently written part is
+ * closed, and a later record with its key starts the next part in that key's sequence. This bounds the file handles
+ * and writers held when partitioning by a field with many distinct values.
+ *
+ * @param <T> record type
+ */
+public final class IBDataPartitionedRecordFinalizer<T> implements IBDataStreamRecordFinalizer<T> {
+  /** Partition key when records are not partitioned by a field */
+  public static final String NO_PARTITION = "";
+  public static final int DEFAULT_MAX_OPEN_PARTS = 64;
+
+  private final IBDataMergeableRecordFinalizer<T> template;
+  private final long maxRows;
+  private final long maxBytes;
+  private final String field;
+  private final int buckets;
+  private final int maxOpenParts;
+  /** Open parts by key, least recently written first */
+  private final LinkedHashMap<String, Part<T>> current = new LinkedHashMap<>(16, 0.75f, true);
+  private final Map<String, Integer> sequences = new HashMap<>();
+  private final List<Part<T>> parts = new ArrayList<>();
+
+  /**
+   * @param template finalizer that writes the first part and creates the others
+   * @param maxRows  rows per part, or 0 for no limit
+   * @param maxBytes approximate bytes per part, or 0 for no limit. Only finalizers that count their output while
+   *                 writing can be limited by size
+   * @param field    field to partition by, or null
+   * @param buckets  number of hash buckets to partition into, or 0 to partition by the field's value
+   */
+  public IBDataPartitionedRecordFinalizer(IBDataMergeableRecordFinalizer<T> template, long maxRows, long maxBytes,
+      String field, int buckets) {
+    this(template, maxRows, maxBytes, field, buckets, DEFAULT_MAX_OPEN_PARTS);
+  }
+
+  /**
+   * @param maxOpenParts number of parts that may be open at once
+   */
+  public IBDataPartitionedRecordFinalizer(IBDataMergeableRecordFinalizer<T> template, long maxRows, long maxBytes,
+      String field, int buckets, int maxOpenParts) {
+    if (maxOpenParts < 1)
+      throw new IBDataException("maxOpenParts must be positive");
+    this.template = requireNonNull(template);
+    this.maxRows = maxRows;
+    this.maxBytes = maxBytes;
+    this.field = field;
+    this.buckets = buckets;
+    this.maxOpenParts = maxOpenParts;
+  }
+
+  /**
+   * One file of partitioned output
+   */
+  public static final class Part<T> {
+    private final String key;
+    private final int sequence;
+    private final IBDataMergeableRecordFinalizer<T> finalizer;
+    private long rows = 0L;
+    private boolean closed = false;
+
+    private Part(String key, int sequence, IBDataMergeableRecordFinalizer<T> finalizer) {
+      this.key = key;
+      this.sequence = sequence;
+      this.finalizer = finalizer;
+    }
+
+    public String getKey() {
+      return key;
+    }
+
+    /**
+     * @return position of this part among the parts with the same key, from 0
+     */
+    public int getSequence() {
+      return sequence;
+    }
+
+    public IBDataMergeableRecordFinalizer<T> getFinalizer() {
+      return finalizer;
+    }
+
+    public long getRows() {
+      return rows;
+    }
+
+    private void close() {
+      if (!closed) {
+        cet.withTranslation(() -> finalizer.close());
+        closed = true;
+      }
+    }
+  }
+
+  @Override
+  public Optional<IBDataTransformationError> writeRecord(T recordToWrite) {
+    String key;
+    try {
+      key = keyOf(recordToWrite);
+    } catch (Throwable e) {
+      return of(new DefaultIBDataTransformationError(of(e), Optional.ofNullable(recordToWrite).map(Object::toString)));
+    }
+    Part<T> p = current.get(key);
+    if (p != null && isFull(p)) {
+      p.close();
+      current.remove(key);
+      p = null;
+    }
+    if (p == null) {
+      if (current.size() >= maxOpenParts) {
+        Iterator<Part<T>> eldest = current.values().iterator();
+        eldest.next().close();
+        eldest.remove();
+      }
+      p = newPart(key);
+      current.put(key, p);
+    }
+    Optional<IBDataTransformationError> e = p.finalizer.writeRecord(recordToWrite);
+    if (!e.isPresent())
+      ++p.rows;
+    return e;
+  }
+
+  private String keyOf(T recordToWrite) {
+    if (field == null)
+      return NO_PARTITION;
+    Object v = template.fieldValue(recordToWrite, field);
+    if (buckets > 0)
+      return Integer.toString(Math.floorMod(v == null ? 0 : v.toString().hashCode(), buckets));
+    return String.valueOf(v);
+  }
+
+  private boolean isFull(Part<T> p) {
+    if (maxRows > 0 && p.rows >= maxRows)
+      return true;
+    return maxBytes > 0 && p.finalizer instanceof AbstractIBDataStreamRecordFinalizer
+        && ((AbstractIBDataStreamRecordFinalizer<?, ?>) p.finalizer).getLength().orElse(0L) >= maxBytes;
+  }
+
+  private Part<T> newPart(String key) {
+    int seq = sequences.merge(key, 1, Integer::sum) - 1;
+    IBDataMergeableRecordFinalizer<T> f = parts.isEmpty() ? template
+        : template.newPartial(template.getWorkingPath().resolveSibling(UUID.randomUUID().toString()));
+    Part<T> p = new Part<>(key, seq, f);
+    parts.add(p);
+    return p;
+  }
+
+  /**
+   * @return every part in the order it was started. After close, at least one
+   */
+  public List<Part<T>> getParts() {
+    return Collections.unmodifiableList(parts);
+  }
+
+  @Override
+  public void close() throws Exception {
+    if (parts.isEmpty())
+      parts.add(new Part<>(NO_PARTITION, 0, template));
+    parts.forEach(Part::close);
+  }
+
+  @Override
+  public String getId() {
+    return template.getId();
+  }
+
+  @Override
+  public Path getWorkingPath() {
+    return template.getWorkingPath();
+  }
+
+  @Override
+  public InputStream get() {
+    return template.get();
+  }
+
+  @Override
+  public Supplier<IBDataStream> finalizeRecord(IBDataStreamIdentifier ds) {
+    return template.finalizeRecord(ds);
+  }
+
+  @Override
+  public OutputStream getWriterTarget() throws IOException {
+    return template.getWriterTarget();
+  }
+
+  @Override
+  public int getNumberOfRowsToSkip() {
+    return template.getNumberOfRowsToSkip();
+  }
+
+  @Override
+  public Optional<String> produces() {
+    return template.produces();
+  }
+
+  @Override
+  public Optional<List<Class<?>>> accepts() {
+    return template.accepts();
+  }
+}
@@ -0,0 +1,114 @@
+/**
+ * Copyright © 2019 admin (admin@infrastructurebuilder.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.infrastructurebuilder.data.transform.line;
+
+import static java.util.Objects.requireNonNull;
+import static org.infrastructurebuilder.data.IBDataException.cet;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+import org.infrastructurebuilder.data.IBDataRowRangeIndex;
+import org.infrastructurebuilder.data.IBDataStageMetrics;
+
+/**
+ * A configured list of record transformers, compiled once into a fixed set of batch stages.
+ *
+ * Running a batch through the chain does no per-record allocation, Optional wrapping or type lookup. The chain holds
+ * no per-batch state, so a single instance may be used by several threads at once as long as the stages allow it.
+ *
+ * Each stage keeps {@link IBDataStageMetrics} for the life of the chain.
+ *
+ * Closing the chain closes every transformer that is {@link AutoCloseable}, releasing state such as spill files that
+ * was built up over a transformation. Such transformers must be usable again after they are closed.
+ */
+public final class IBDataRecordTransformerChain implements AutoCloseable {
+  private final List<IBDataRecordTransformer<?, ?>> transformers;
+  private final IBDataBatchRecordTransformer<?, ?>[] stages;
+  private final String[] hints;
+  private final IBDataStageMetrics[] metrics;
+
+  public IBDataRecordTransformerChain(List<IBDataRecordTransformer<?, ?>> transformers) {
+    this.transformers = Collections.unmodifiableList(new ArrayList<>(requireNonNull(transformers)));
+    int n = transformers.size();
+    this.stages = new IBDataBatchRecordTransformer<?, ?>[n];
+    this.hints = new String[n];
+    this.metrics = new IBDataStageMetrics[n];
+    for (int i = 0; i < n; ++i) {
+      IBDataRecordTransformer<?, ?> t = transformers.get(i);
+      this.stages[i] = IBDataBatchRecordTransformer.from(t);
+      this.hints[i] = t.getHint();
+      this.metrics[i] = new IBDataStageMetrics(t.getHint());
+    }
+  }
+
+  public int size() {
+    return stages.length;
+  }
+
+  public String getHint(int stage) {
+    return hints[stage];
+  }
+
+  /**
+   * @return metrics for each stage, in chain order
+   */
+  public List<IBDataStageMetrics> getMetrics() {
+    return Collections.unmodifiableList(Arrays.asList(metrics));
+  }
+
+  /**
+   * Run a batch of records through every stage, in place.
+   *
+   * @param batch     records to transform. Slots are replaced with the output of the last stage
+   * @param length    number of records in the batch
+   * @param firstLine line number of the first record of the batch
+   * @param errors    index of rejected line numbers for a transformer hint
+   * @return bitmap of the slots that were rejected by some stage
+   */
+  public BitSet apply(Object[] batch, int length, long firstLine, Function<String, IBDataRowRangeIndex> errors) {
+    BitSet rejected = new BitSet(length);
+    BitSet previous = new BitSet(length);
+    int rejectedCount = 0;
+    for (int s = 0; s < stages.length && rejectedCount < length; ++s) {
+      long start = System.nanoTime();
+      stages[s].applyBatch(batch, batch, length, rejected);
+      long elapsed = System.nanoTime() - start;
+      int count = rejected.cardinality();
+      metrics[s].record(length - rejectedCount, length - count, count - rejectedCount, elapsed);
+      if (count > rejectedCount) {
+        IBDataRowRangeIndex l = errors.apply(hints[s]);
+        for (int i = rejected.nextSetBit(0); i >= 0; i = rejected.nextSetBit(i + 1))
+          if (!previous.get(i))
+            l.add(firstLine + i);
+        previous.or(rejected);
+        rejectedCount = count;
+      }
+    }
+    return rejected;
+  }
+
+  @Override
+  public void close() {
+    for (IBDataRecordTransformer<?, ?> t : transformers)
+      if (t instanceof AutoCloseable)
+        cet.withTranslation(() -> ((AutoCloseable) t).close());
+  }
+}
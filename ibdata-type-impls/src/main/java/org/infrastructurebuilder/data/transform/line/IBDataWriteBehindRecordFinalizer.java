@@ -0,0 +1,224 @@
+/**
+ * Copyright © 2019 admin (admin@infrastructurebuilder.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.infrastructurebuilder.data.transform.line;
+
+import static java.util.Objects.requireNonNull;
+import static java.util.Optional.empty;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Supplier;
+
+import org.infrastructurebuilder.data.IBDataException;
+import org.infrastructurebuilder.data.IBDataStream;
+import org.infrastructurebuilder.data.IBDataStreamIdentifier;
+import org.infrastructurebuilder.data.IBDataStreamRecordFinalizer;
+import org.infrastructurebuilder.data.IBDataTransformationError;
+
+/**
+ * Writes records to another finalizer on a dedicated I/O thread.
+ *
+ * {@link #writeRecord(Object)} only queues the record, blocking when the bounded queue is full, and returns no error.
+ * The I/O thread drains the queue in batches and appends them, in order, to the wrapped finalizer. Errors the wrapped
+ * finalizer reports, each carrying its original record, are kept until {@link #drainErrors(Collection)}, along with
+ * those of a wrapped finalizer that itself defers errors. A failure of
+ * the I/O thread itself is thrown from the next call to {@link #writeRecord(Object)} or from {@link #close()}.
+ *
+ * {@link #close()} waits for every queued record to be written, joins the I/O thread and then closes the wrapped
+ * finalizer, so its output is complete when close returns.
+ *
+ * @param <T> record type
+ */
+public final class IBDataWriteBehindRecordFinalizer<T> implements IBDataDeferredErrorsRecordFinalizer<T> {
+  private static final Object NULL_RECORD = new Object();
+  private static final Object END = new Object();
+  private static final long OFFER_WAIT_MS = 100L;
+
+  private final IBDataStreamRecordFinalizer<T> delegate;
+  private final int batchSize;
+  private final BlockingQueue<Object> queue;
+  private final ConcurrentLinkedQueue<IBDataTransformationError> errors = new ConcurrentLinkedQueue<>();
+  private final Thread writer;
+  private volatile Throwable failure = null;
+  private boolean closed = false;
+
+  /**
+   * @param delegate  finalizer that does the writing
+   * @param capacity  maximum number of records queued
+   * @param batchSize maximum number of records drained from the queue at once
+   */
+  public IBDataWriteBehindRecordFinalizer(IBDataStreamRecordFinalizer<T> delegate, int capacity, int batchSize) {
+    if (capacity < 1 || batchSize < 1)
+      throw new IBDataException("Write-behind capacity and batch size must be positive");
+    this.delegate = requireNonNull(delegate);
+    this.batchSize = batchSize;
+    this.queue = new ArrayBlockingQueue<>(capacity);
+    this.writer = new Thread(this::drain, "ibdata-write-behind-" + delegate.getId());
+    this.writer.setDaemon(true);
+    this.writer.start();
+  }
+
+  @SuppressWarnings("unchecked")
+  private void drain() {
+    List<Object> batch = new ArrayList<>(batchSize);
+    boolean end = false;
+    while (!end) {
+      try {
+        batch.add(queue.take());
+      } catch (InterruptedException e) {
+        failure = e;
+        return;
+      }
+      queue.drainTo(batch, batchSize - 1);
+      for (Object o : batch) {
+        if (o == END) {
+          end = true;
+          break;
+        }
+        // After a failure keep draining, so that writers never block on a full queue
+        if (failure == null)
+          try {
+            delegate.writeRecord(o == NULL_RECORD ? null : (T) o).ifPresent(errors::add);
+          } catch (Throwable t) {
+            failure = t;
+          }
+      }
+      batch.clear();
+    }
+  }
+
+  private void checkFailure() {
+    if (failure != null)
+      throw new IBDataException("Write-behind to " + delegate.getId() + " failed", failure);
+  }
+
+  /**
+   * Queue a record, waiting for room while the I/O thread is alive
+   *
+   * @return false if the I/O thread is gone
+   */
+  private boolean enqueue(Object o) {
+    try {
+      while (!queue.offer(o, OFFER_WAIT_MS, MILLISECONDS))
+        if (!writer.isAlive())
+          return false;
+      return true;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IBDataException("Interrupted while queueing a record for " + delegate.getId(), e);
+    }
+  }
+
+  @Override
+  public Optional<IBDataTransformationError> writeRecord(T recordToWrite) {
+    if (closed)
+      throw new IBDataException("Finalizer " + delegate.getId() + " is closed");
+    checkFailure();
+    if (!enqueue(recordToWrite == null ? NULL_RECORD : recordToWrite)) {
+      checkFailure();
+      throw new IBDataException("Write-behind to " + delegate.getId() + " stopped");
+    }
+    return empty();
+  }
+
+  @Override
+  public int drainErrors(Collection<IBDataTransformationError> target) {
+    int n = 0;
+    IBDataTransformationError e;
+    while ((e = errors.poll()) != null) {
+      target.add(e);
+      ++n;
+    }
+    if (delegate instanceof IBDataDeferredErrorsRecordFinalizer)
+      n += ((IBDataDeferredErrorsRecordFinalizer<?>) delegate).drainErrors(target);
+    return n;
+  }
+
+  /**
+   * @return number of records queued and not yet written
+   */
+  public int getQueueDepth() {
+    return queue.size();
+  }
+
+  public IBDataStreamRecordFinalizer<T> getDelegate() {
+    return delegate;
+  }
+
+  @Override
+  public void close() throws Exception {
+    if (closed)
+      return;
+    closed = true;
+    try {
+      enqueue(END);
+      writer.join();
+    } finally {
+      delegate.close();
+    }
+    checkFailure();
+  }
+
+  @Override
+  public String getId() {
+    return delegate.getId();
+  }
+
+  @Override
+  public Path getWorkingPath() {
+    return delegate.getWorkingPath();
+  }
+
+  @Override
+  public InputStream get() {
+    return delegate.get();
+  }
+
+  @Override
+  public Supplier<IBDataStream> finalizeRecord(IBDataStreamIdentifier ds) {
+    return delegate.finalizeRecord(ds);
+  }
+
+  @Override
+  public OutputStream getWriterTarget() throws IOException {
+    return delegate.getWriterTarget();
+  }
+
+  @Override
+  public int getNumberOfRowsToSkip() {
+    return delegate.getNumberOfRowsToSkip();
+  }
+
+  @Override
+  public Optional<String> produces() {
+    return delegate.produces();
+  }
+
+  @Override
+  public Optional<List<Class<?>>> accepts() {
+    return delegate.accepts();
+  }
+}
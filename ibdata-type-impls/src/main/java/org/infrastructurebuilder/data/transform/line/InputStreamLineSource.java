@@ -0,0 +1,132 @@
+/**
+ * Copyright © 2019 admin (admin@infrastructurebuilder.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.infrastructurebuilder.data.transform.line;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+
+/**
+ * Reads lines from an InputStream, for streams that are not available as a file.
+ *
+ * Lines skipped before the first read are skipped at the byte level, without decoding, when the charset allows it.
+ */
+public final class InputStreamLineSource implements IBDataLineSource {
+  private final CountingInputStream counter;
+  private final InputStream in;
+  private final Charset cs;
+  private BufferedReader reader = null;
+
+  public InputStreamLineSource(InputStream in, Charset cs) {
+    this.counter = new CountingInputStream(requireNonNull(in));
+    this.in = new BufferedInputStream(counter);
+    this.cs = requireNonNull(cs);
+  }
+
+  @Override
+  public String readLine() throws IOException {
+    return getReader().readLine();
+  }
+
+  @Override
+  public long skipLines(long n) throws IOException {
+    long skipped = 0;
+    if (reader == null && IBDataLineSource.isByteScannable(cs)) {
+      int b = 0;
+      boolean inLine = false;
+      while (skipped < n && (b = in.read()) != -1) {
+        inLine = true;
+        if (b == '\n' || b == '\r') {
+          ++skipped;
+          inLine = false;
+          // As with BufferedReader, \r\n is a single terminator and a lone \r ends a line
+          if (b == '\r') {
+            in.mark(1);
+            if (in.read() != '\n')
+              in.reset();
+          }
+        }
+      }
+      // A final line with no newline still counts as a line
+      if (b == -1 && inLine)
+        ++skipped;
+    } else
+      while (skipped < n && getReader().readLine() != null)
+        ++skipped;
+    return skipped;
+  }
+
+  @Override
+  public long getBytesRead() {
+    return counter.count;
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (reader != null)
+      reader.close();
+    else
+      in.close();
+  }
+
+  private BufferedReader getReader() {
+    if (reader == null)
+      reader = new BufferedReader(new InputStreamReader(in, cs));
+    return reader;
+  }
+
+  private final static class CountingInputStream extends FilterInputStream {
+    private long count = 0L;
+
+    private CountingInputStream(InputStream in) {
+      super(in);
+    }
+
+    @Override
+    public int read() throws IOException {
+      int b = super.read();
+      if (b != -1)
+        ++count;
+      return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      int n = super.read(b, off, len);
+      if (n > 0)
+        count += n;
+      return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+      long s = super.skip(n);
+      count += s;
+      return s;
+    }
+
+    @Override
+    public boolean markSupported() {
+      return false;
+    }
+  }
+}
@@ -0,0 +1,170 @@
+/**
+ * Copyright © 2019 admin (admin@infrastructurebuilder.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.infrastructurebuilder.data.transform.line;
+
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.util.Objects.requireNonNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Path;
+
+/**
+ * Reads lines from a memory-mapped file.
+ *
+ * The file is mapped in windows. Line ends are found by scanning the mapped bytes, and only the bytes of each
+ * returned line are decoded, into a reused CharBuffer. Skipped lines are never decoded. A line that crosses the end
+ * of a window causes the window to be remapped from the start of that line.
+ *
+ * The charset must be one for which {@link IBDataLineSource#isByteScannable(Charset)} is true.
+ */
+public final class MappedFileLineSource implements IBDataLineSource {
+  public static final int DEFAULT_WINDOW_SIZE = 64 * 1024 * 1024;
+
+  private final FileChannel channel;
+  private final long size;
+  private final int windowSize;
+  private final CharsetDecoder decoder;
+  private CharBuffer chars = CharBuffer.allocate(1024);
+  private MappedByteBuffer buf = null;
+  // File offset of buf position 0
+  private long bufStart = 0L;
+  // File offset of the next unread byte
+  private long pos = 0L;
+  // File offset of the line after the one last found by findLineEnd
+  private long next = 0L;
+
+  public MappedFileLineSource(Path path, Charset cs) throws IOException {
+    this(path, cs, DEFAULT_WINDOW_SIZE);
+  }
+
+  public MappedFileLineSource(Path path, Charset cs, int windowSize) throws IOException {
+    if (windowSize < 1)
+      throw new IllegalArgumentException("Window size must be positive");
+    this.windowSize = windowSize;
+    // Same handling of bad input as InputStreamReader
+    this.decoder = requireNonNull(cs).newDecoder().onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    this.channel = FileChannel.open(requireNonNull(path), READ);
+    this.size = channel.size();
+  }
+
+  @Override
+  public String readLine() throws IOException {
+    if (pos >= size)
+      return null;
+    long end = findLineEnd();
+    int from = (int) (pos - bufStart);
+    String line = decode(from, (int) (end - pos));
+    pos = next;
+    return line;
+  }
+
+  @Override
+  public long skipLines(long n) throws IOException {
+    long skipped = 0;
+    while (skipped < n && pos < size) {
+      findLineEnd();
+      pos = next;
+      ++skipped;
+    }
+    return skipped;
+  }
+
+  @Override
+  public long getBytesRead() {
+    return Math.min(pos, size);
+  }
+
+  @Override
+  public void close() throws IOException {
+    buf = null;
+    channel.close();
+  }
+
+  /**
+   * Find the offset of the terminator that ends the line starting at pos, or the size of the file if the last line has
+   * none. As with BufferedReader, a line ends at <code>\n</code>, <code>\r</code> or <code>\r\n</code>. On return
+   * the mapped window covers the whole line and next is the offset of the following line.
+   */
+  private long findLineEnd() throws IOException {
+    if (buf == null || pos < bufStart || pos >= bufStart + buf.limit())
+      map(pos, Math.min(size - pos, windowSize));
+    int i = (int) (pos - bufStart);
+    while (true) {
+      int limit = buf.limit();
+      for (; i < limit; ++i) {
+        byte b = buf.get(i);
+        if (b == '\n' || b == '\r') {
+          long end = bufStart + i;
+          next = end + 1;
+          if (b == '\r' && next < size && byteAt(next) == '\n')
+            ++next;
+          return end;
+        }
+      }
+      long scannedTo = bufStart + limit;
+      if (scannedTo >= size)
+        return next = size;
+      // The line crosses the end of the window. Remap starting at the line, big enough to make progress
+      long len = Math.min(size - pos, Math.max((long) windowSize, 2L * (scannedTo - pos)));
+      if (len > Integer.MAX_VALUE)
+        throw new IOException("Line starting at byte " + pos + " is too long to map");
+      map(pos, len);
+      i = (int) (scannedTo - pos);
+    }
+  }
+
+  /**
+   * The byte at a file offset, read without moving the mapped window
+   */
+  private byte byteAt(long offset) throws IOException {
+    if (offset < bufStart + buf.limit())
+      return buf.get((int) (offset - bufStart));
+    ByteBuffer one = ByteBuffer.allocate(1);
+    if (channel.read(one, offset) != 1)
+      throw new IOException("Could not read byte " + offset);
+    return one.get(0);
+  }
+
+  private void map(long start, long len) throws IOException {
+    buf = channel.map(READ_ONLY, start, len);
+    bufStart = start;
+  }
+
+  private String decode(int from, int len) {
+    if (len == 0)
+      return "";
+    int needed = (int) Math.ceil(len * (double) decoder.maxCharsPerByte());
+    if (chars.capacity() < needed)
+      chars = CharBuffer.allocate(needed);
+    ByteBuffer in = buf.duplicate();
+    in.limit(from + len).position(from);
+    chars.clear();
+    decoder.reset();
+    decoder.decode(in, chars, true);
+    decoder.flush(chars);
+    chars.flip();
+    return chars.toString();
+  }
+}
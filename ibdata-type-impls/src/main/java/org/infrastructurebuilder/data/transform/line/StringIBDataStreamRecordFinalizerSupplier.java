@@ -15,11 +15,12 @@
  */
 package org.infrastructurebuilder.data.transform.line;
 
-import static java.nio.file.StandardOpenOption.CREATE_NEW;
 import static org.infrastructurebuilder.data.IBDataConstants.IBDATA_WORKING_PATH_SUPPLIER;
-import static org.infrastructurebuilder.data.IBDataException.cet;
 
 import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Arrays;
@@ -67,13 +68,13 @@ public class StringIBDataStreamRecordFinalizerSupplier extends AbstractIBDataStr
         getCms().get());
   }
 
-  private class StringIBDataStreamRecordFinalizer extends AbstractIBDataStreamRecordFinalizer<String, BufferedWriter> {
+  private class StringIBDataStreamRecordFinalizer extends AbstractIBDataStreamRecordFinalizer<String, BufferedWriter>
+      implements IBDataMergeableRecordFinalizer<String> {
 
     private final int numberOfRowsToSkip;
 
     public StringIBDataStreamRecordFinalizer(String id, Path workingPath, Logger l, ConfigMap map) {
-      super(id, workingPath, l, map,
-          Optional.of(cet.withReturningTranslation(() -> Files.newBufferedWriter(workingPath, CREATE_NEW))));
+      super(id, workingPath, l, map, out -> new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8)));
       this.numberOfRowsToSkip = Integer.parseInt(map.getOrDefault(NUMBER_OF_ROWS_TO_SKIP_PARAM, "0"));
     }
 
@@ -99,6 +100,22 @@ public class StringIBDataStreamRecordFinalizerSupplier extends AbstractIBDataStr
     public Optional<List<Class<?>>> accepts() {
       return Optional.of(ACCEPTABLE_TYPES);
     }
+
+    @Override
+    public IBDataMergeableRecordFinalizer<String> newPartial(Path workingPath) {
+      return new StringIBDataStreamRecordFinalizer(getId(), workingPath, getLog(), getConfig());
+    }
+
+    @Override
+    public void merge(IBDataMergeableRecordFinalizer<String> partial) throws Exception {
+      char[] buf = new char[8192];
+      int n;
+      try (Reader r = Files.newBufferedReader(partial.getWorkingPath())) {
+        while ((n = r.read(buf)) != -1)
+          getWriter().write(buf, 0, n);
+      }
+      mergeRecordCount(partial);
+    }
   }
 
 }
@@ -16,10 +16,12 @@
 package org.infrastructurebuilder.data;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import java.nio.file.Path;
 import java.util.Collections;
 import java.util.Date;
+import java.util.Optional;
 import java.util.UUID;
 
 import org.codehaus.plexus.util.xml.Xpp3Dom;
@@ -90,4 +92,16 @@ public class DefaultIBDataTransformationResultTest {
     assertEquals(wp, d.getWorkingPathSupplier().get());
   }
 
+  @Test
+  public void testGetRejectedRows() {
+    assertTrue(d.getRejectedRows().isEmpty());
+    assertTrue(d.getStageMetrics().isEmpty());
+    IBDataRowRangeIndex i = new IBDataRowRangeIndex();
+    i.addRange(1, 10);
+    DefaultIBDataTransformationResult r = new DefaultIBDataTransformationResult(Optional.of(createdDataSet),
+        Collections.emptyList(), wp, Collections.singletonMap("x", i));
+    assertEquals(10L, r.getRejectedRowCount());
+    assertEquals(i, r.getRejectedRows().get("x"));
+  }
+
 }
@@ -18,11 +18,14 @@ package org.infrastructurebuilder.data;
 import static java.util.Optional.empty;
 import static java.util.stream.Collectors.toList;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 import java.util.stream.Stream;
 
@@ -86,4 +89,33 @@ public class DefaultIBStreamerFactoryTest {
     assertEquals(6, l.size());
   }
 
+  @SuppressWarnings("unchecked")
+  @Test
+  public void testFromWithFields() {
+    // Plain factories cannot project, so they produce whole records
+    assertEquals(6, ((Stream<String>) sf.from(ds, Arrays.asList("a")).get()).count());
+    List<List<String>> asked = new ArrayList<>();
+    class Projecting extends DefaultStringStreamSupplier implements IBDataProjectingStreamFactory<String> {
+      Projecting() {
+        super(() -> log);
+      }
+
+      @Override
+      public int getWeight() {
+        return 10;
+      }
+
+      @Override
+      public Optional<Stream<String>> from(IBDataStream ds, List<String> fields) {
+        asked.add(fields);
+        return from(ds).map(s -> s.map(l -> l.substring(0, Math.min(1, l.length()))));
+      }
+    }
+    DefaultIBStreamerFactory p = new DefaultIBStreamerFactory(Arrays.asList(stringSupplier, new Projecting()));
+    List<String> l = ((Stream<String>) p.from(ds, Arrays.asList("a")).get()).collect(toList());
+    assertEquals(6, l.size());
+    assertTrue(l.stream().allMatch(x -> x.length() <= 1));
+    assertEquals(Arrays.asList(Arrays.asList("a")), asked);
+  }
+
 }
@@ -16,13 +16,19 @@
 package org.infrastructurebuilder.data;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.infrastructurebuilder.util.config.TestingPathSupplier;
 import org.junit.AfterClass;
@@ -54,4 +60,36 @@ public class DefaultIBTypedDataStreamSupplierTest {
     assertEquals(list, k);
   }
 
+  @Test
+  public void testSpliterators() {
+    boolean[] closed = { false };
+    class Closing extends Spliterators.AbstractSpliterator<String> implements AutoCloseable {
+      private final Iterator<String> i = list.iterator();
+
+      Closing() {
+        super(3, Spliterator.ORDERED);
+      }
+
+      @Override
+      public boolean tryAdvance(Consumer<? super String> action) {
+        if (!i.hasNext())
+          return false;
+        action.accept(i.next());
+        return true;
+      }
+
+      @Override
+      public void close() {
+        closed[0] = true;
+      }
+    }
+    DefaultIBTypedDataStreamSupplier<String> q = new DefaultIBTypedDataStreamSupplier<>(original, Closing::new, true);
+    assertTrue(q.isParallel());
+    // Each get() starts again
+    assertEquals(list, q.get().collect(Collectors.toList()));
+    try (Stream<String> st = q.get()) {
+      assertEquals(list, st.collect(Collectors.toList()));
+    }
+    assertTrue(closed[0]);
+  }
 }
@@ -0,0 +1,74 @@
+/**
+ * Copyright © 2019 admin (admin@infrastructurebuilder.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.infrastructurebuilder.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import org.codehaus.plexus.util.xml.Xpp3Dom;
+import org.junit.Test;
+
+public class IBDataColumnSketchesTest {
+
+  @Test
+  public void testNumericRoundTrip() {
+    IBDataColumnSketches s = IBDataColumnSketches.numeric();
+    for (long i = 0; i < 1000; ++i)
+      s.updateLong(i);
+    Xpp3Dom m = s.asMetadata(3);
+    assertEquals("3", m.getAttribute(IBDataColumnSketches.INDEX));
+    assertNotNull(m.getChild(IBDataColumnSketches.QUANTILES).getAttribute("p50"));
+    IBDataColumnSketches r = IBDataColumnSketches.fromMetadata(m);
+    assertEquals(s.getDistinct().estimate(), r.getDistinct().estimate());
+    assertEquals(1000L, r.getQuantiles().get().getCount());
+    assertFalse(r.getFrequentItems().isPresent());
+  }
+
+  @Test
+  public void testCategoricalMerge() {
+    IBDataColumnSketches a = IBDataColumnSketches.categorical(2);
+    IBDataColumnSketches b = IBDataColumnSketches.categorical(2);
+    a.updateString("red");
+    b.updateString("red");
+    b.updateString("blue");
+    a.merge(IBDataColumnSketches.fromMetadata(b.asMetadata(0)));
+    assertEquals(2L, a.getDistinct().estimate());
+    assertEquals("red", a.getFrequentItems().get().getTopK().get(0).getKey());
+    assertEquals(2L, a.getFrequentItems().get().getTopK().get(0).getValue().longValue());
+    assertFalse(a.getQuantiles().isPresent());
+  }
+
+  @Test
+  public void testTopKTotalAndErrorRestored() {
+    IBDataColumnSketches s = IBDataColumnSketches.categorical(2);
+    for (int i = 0; i < 100; ++i)
+      s.updateString(i % 2 == 0 ? "hot" : "v" + (i % 7));
+    IBDataFrequentItems f = s.getFrequentItems().get();
+    assertTrue(f.getMaximumError() > 0L);
+    IBDataFrequentItems r = IBDataColumnSketches.fromMetadata(s.asMetadata(0)).getFrequentItems().get();
+    assertEquals(100L, r.getTotal());
+    assertEquals(f.getMaximumError(), r.getMaximumError());
+    assertEquals(f.getRetained(), r.getRetained());
+    assertEquals("hot", r.getTopK().get(0).getKey());
+    IBDataColumnSketches a = IBDataColumnSketches.categorical(2);
+    a.merge(IBDataColumnSketches.fromMetadata(s.asMetadata(0)));
+    a.merge(IBDataColumnSketches.fromMetadata(s.asMetadata(0)));
+    assertEquals(200L, a.getFrequentItems().get().getTotal());
+    assertTrue(a.getFrequentItems().get().getMaximumError() >= 2 * f.getMaximumError());
+  }
+}
@@ -16,61 +16,38 @@
 package org.infrastructurebuilder.data;
 
 import static org.junit.Assert.assertEquals;
-import static org.junit.Assert.fail;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
-import java.io.IOException;
-import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.Optional;
+import java.util.UUID;
 
 import org.infrastructurebuilder.util.artifacts.Checksum;
 import org.infrastructurebuilder.util.config.TestingPathSupplier;
-import org.junit.After;
 import org.junit.AfterClass;
-import org.junit.Before;
-import org.junit.BeforeClass;
 import org.junit.Test;
 
-public class DefaultSeekableInputFromInputStreamTest {
-
-  private static final String CHECKSUM = "c369ba6d026298ec8b5d0915fe35582b89882b11b48a04d8ffff586ec78fa391291deb8b72dad8dbd84b07ef4d87aba332b0b08572b6113344958805226d7b4d";
+public class IBDataDigestingOutputStreamTest {
   private final static TestingPathSupplier wps = new TestingPathSupplier();
 
-  @BeforeClass
-  public static void setUpBeforeClass() throws Exception {
-  }
-
   @AfterClass
   public static void tearDownAfterClass() throws Exception {
     wps.finalize();
   }
 
-  private Path p;
-
-  @Before
-  public void setUp() throws Exception {
-    p = wps.getTestClasses().resolve("ba.csv");
-  }
-
-  @After
-  public void tearDown() throws Exception {
-  }
-
   @Test
-  public void test() throws IOException {
-    DefaultSeekableInputFromInputStream q = null;
-    try (InputStream ins = Files.newInputStream(p)) {
-      q = new DefaultSeekableInputFromInputStream(wps.get(), ins);
-      assertEquals(284042, q.length());
-      q.seek(0L);
-      assertEquals(CHECKSUM, q.asChecksum().toString());
-      assertEquals(new Checksum(p), new Checksum(q.getSourcePath()));
-
-    } finally {
-      q.close();
-
-    }
+  public void testChecksumMatchesFile() throws Exception {
+    Path p = wps.get().resolve(UUID.randomUUID().toString());
+    IBDataDigestingOutputStream out = new IBDataDigestingOutputStream(Files.newOutputStream(p));
+    out.write('a');
+    out.write("bcdefg".getBytes(), 1, 4);
+    assertFalse(out.getChecksum().isPresent());
+    assertEquals(5L, out.getLength());
+    out.close();
+    out.close();
+    assertTrue(out.getChecksum().isPresent());
+    assertEquals(5L, Files.size(p));
+    assertEquals(new Checksum(p).toString(), out.getChecksum().get().toString());
   }
-
 }
@@ -0,0 +1,82 @@
+/**
+ * Copyright © 2019 admin (admin@infrastructurebuilder.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.infrastructurebuilder.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class IBDataFieldAccumulatorTest {
+
+  private IBDataFieldAccumulator a;
+
+  @Before
+  public void setUp() throws Exception {
+    a = new IBDataFieldAccumulator();
+  }
+
+  @Test
+  public void testEmpty() {
+    assertEquals(0L, a.getCount());
+    assertFalse(a.hasLongs());
+    assertFalse(a.hasDoubles());
+  }
+
+  @Test
+  public void testLongs() {
+    a.acceptLong(5);
+    a.acceptLong(-2);
+    a.acceptNull();
+    a.acceptLong(9);
+    assertEquals(4L, a.getCount());
+    assertEquals(1L, a.getNullCount());
+    assertTrue(a.hasLongs());
+    assertEquals(-2L, a.getLongMin());
+    assertEquals(9L, a.getLongMax());
+    assertEquals(12L, a.getLongSum());
+  }
+
+  @Test
+  public void testDoubles() {
+    a.acceptDouble(1.5);
+    a.acceptDouble(-0.5);
+    a.acceptOther();
+    assertEquals(3L, a.getCount());
+    assertEquals(-0.5, a.getDoubleMin(), 0.0);
+    assertEquals(1.5, a.getDoubleMax(), 0.0);
+    assertEquals(1.0, a.getDoubleSum(), 0.0);
+  }
+
+  @Test
+  public void testMerge() {
+    IBDataFieldAccumulator b = new IBDataFieldAccumulator();
+    a.acceptLong(3);
+    b.acceptLong(7);
+    b.acceptLong(1);
+    b.acceptNull();
+    a.merge(b);
+    a.merge(new IBDataFieldAccumulator());
+    assertEquals(4L, a.getCount());
+    assertEquals(1L, a.getNullCount());
+    assertEquals(1L, a.getLongMin());
+    assertEquals(7L, a.getLongMax());
+    assertEquals(11L, a.getLongSum());
+    assertFalse(a.hasDoubles());
+  }
+}
@@ -0,0 +1,138 @@
+/**
+ * Copyright © 2019 admin (admin@infrastructurebuilder.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.infrastructurebuilder.data;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import org.infrastructurebuilder.util.config.TestingPathSupplier;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+
+public class IBDataFingerprintSetTest {
+  private final static TestingPathSupplier wps = new TestingPathSupplier();
+
+  @AfterClass
+  public static void tearDownAfterClass() throws Exception {
+    wps.finalize();
+  }
+
+  private Path spill;
+
+  @Before
+  public void setUp() throws Exception {
+    spill = wps.get().resolve("spill");
+  }
+
+  @Test
+  public void testHash128() {
+    byte[] b = "The quick brown fox jumps over the lazy dog".getBytes(UTF_8);
+    assertArrayEquals(new long[] { 0xe34bbc7bbc071b6cL, 0x7a433ca9c49a9347L },
+        IBDataFingerprintSet.hash128(b, b.length, 0L, new long[2]));
+    assertArrayEquals(new long[] { 0L, 0L }, IBDataFingerprintSet.hash128(new byte[0], 0, 0L, new long[2]));
+    // Only the given length is hashed
+    byte[] c = "The quick brown fox jumps over the lazy dog and more".getBytes(UTF_8);
+    assertArrayEquals(IBDataFingerprintSet.hash128(b, b.length, 0L, new long[2]),
+        IBDataFingerprintSet.hash128(c, b.length, 0L, new long[2]));
+  }
+
+  @Test
+  public void testInMemory() {
+    try (IBDataFingerprintSet s = new IBDataFingerprintSet(1 << 20)) {
+      assertTrue(s.add(1L, 2L));
+      assertFalse(s.add(1L, 2L));
+      assertTrue(s.add(2L, 1L));
+      assertTrue(s.add(0L, 0L));
+      assertFalse(s.add(new long[] { 0L, 0L }));
+      assertTrue(s.contains(2L, 1L));
+      assertFalse(s.contains(3L, 3L));
+      assertEquals(3L, s.size());
+      assertEquals(0, s.getSpillCount());
+    }
+  }
+
+  @Test
+  public void testGrowsWithinBudget() {
+    try (IBDataFingerprintSet s = new IBDataFingerprintSet(1 << 22)) {
+      Random r = new Random(7L);
+      for (int i = 0; i < 100000; ++i)
+        assertTrue(s.add(r.nextLong(), r.nextLong()));
+      assertEquals(100000L, s.size());
+      assertEquals(0, s.getSpillCount());
+    }
+  }
+
+  @Test(expected = IBDataException.class)
+  public void testNoSpillDirectory() {
+    try (IBDataFingerprintSet s = new IBDataFingerprintSet(IBDataFingerprintSet.MIN_CAPACITY * 16)) {
+      for (long i = 1; i < 10000; ++i)
+        s.add(i, i);
+    }
+  }
+
+  @Test(expected = IBDataException.class)
+  public void testBudgetTooSmall() {
+    new IBDataFingerprintSet(1024L);
+  }
+
+  @Test(expected = IBDataException.class)
+  public void testBadPartitionBits() {
+    new IBDataFingerprintSet(1 << 20, spill, 0);
+  }
+
+  @Test(expected = IBDataException.class)
+  public void testClosed() {
+    IBDataFingerprintSet s = new IBDataFingerprintSet(1 << 20);
+    s.close();
+    s.close();
+    s.add(1L, 1L);
+  }
+
+  @Test
+  public void testSpillAndMerge() throws Exception {
+    int n = 50000;
+    long[] f = new long[n * 2];
+    Random r = new Random(11L);
+    for (int i = 0; i < f.length; ++i)
+      f[i] = r.nextLong();
+    IBDataFingerprintSet s = new IBDataFingerprintSet(IBDataFingerprintSet.MIN_CAPACITY * 16, spill, 2);
+    for (int i = 0; i < n; ++i)
+      assertTrue(s.add(f[i * 2], f[i * 2 + 1]));
+    assertTrue(s.getSpillCount() > IBDataFingerprintSet.MAX_SEGMENTS);
+    assertTrue(s.getSpilledCount() > 0);
+    // Merging keeps each of the 4 partitions at no more than MAX_SEGMENTS files
+    assertTrue(s.getSegmentCount() <= 4 * IBDataFingerprintSet.MAX_SEGMENTS);
+    try (Stream<Path> l = Files.list(spill)) {
+      assertEquals(s.getSegmentCount(), l.count());
+    }
+    for (int i = 0; i < n; ++i)
+      assertFalse("Duplicate " + i, s.add(f[i * 2], f[i * 2 + 1]));
+    for (int i = 0; i < 1000; ++i)
+      assertFalse(s.contains(r.nextLong(), r.nextLong()));
+    assertEquals(n, s.size());
+    s.close();
+    assertFalse(Files.exists(spill));
+  }
+}
@@ -0,0 +1,54 @@
+/**
+ * Copyright © 2019 admin (admin@infrastructurebuilder.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.infrastructurebuilder.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Map.Entry;
+
+import org.junit.Test;
+
+public class IBDataFrequentItemsTest {
+
+  @Test
+  public void testTopK() {
+    IBDataFrequentItems f = new IBDataFrequentItems(2);
+    for (int i = 0; i < 10000; ++i)
+      f.update(i % 10 < 5 ? "a" : i % 10 < 8 ? "b" : Integer.toString(i));
+    List<Entry<String, Long>> top = f.getTopK();
+    assertEquals(2, top.size());
+    assertEquals("a", top.get(0).getKey());
+    assertEquals("b", top.get(1).getKey());
+    assertTrue(top.get(0).getValue() <= 5000L);
+    assertTrue(top.get(0).getValue() + f.getMaximumError() >= 5000L);
+    assertEquals(10000L, f.getTotal());
+  }
+
+  @Test
+  public void testMerge() {
+    IBDataFrequentItems a = new IBDataFrequentItems(3);
+    IBDataFrequentItems b = new IBDataFrequentItems(3);
+    a.update("x", 5);
+    b.update("x", 2);
+    b.update("y", 4);
+    a.merge(b);
+    assertEquals("x", a.getTopK().get(0).getKey());
+    assertEquals(7L, a.getTopK().get(0).getValue().longValue());
+    assertEquals(11L, a.getTotal());
+  }
+}
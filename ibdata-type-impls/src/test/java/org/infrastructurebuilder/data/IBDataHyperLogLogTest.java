@@ -0,0 +1,58 @@
+/**
+ * Copyright © 2019 admin (admin@infrastructurebuilder.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.infrastructurebuilder.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class IBDataHyperLogLogTest {
+
+  @Test
+  public void testEstimate() {
+    IBDataHyperLogLog h = new IBDataHyperLogLog();
+    for (long i = 0; i < 100000; ++i)
+      h.addLong(i % 50000);
+    assertTrue(Math.abs(h.estimate() - 50000) < 2500);
+  }
+
+  @Test
+  public void testSmall() {
+    IBDataHyperLogLog h = new IBDataHyperLogLog();
+    h.add("a");
+    h.add("b");
+    h.add("a");
+    assertEquals(2L, h.estimate());
+  }
+
+  @Test
+  public void testMergeAndRoundTrip() {
+    IBDataHyperLogLog a = new IBDataHyperLogLog();
+    IBDataHyperLogLog b = new IBDataHyperLogLog();
+    for (long i = 0; i < 20000; ++i)
+      (i % 2 == 0 ? a : b).addLong(i);
+    a.merge(b);
+    IBDataHyperLogLog c = IBDataHyperLogLog.fromBytes(a.toBytes());
+    assertEquals(a.estimate(), c.estimate());
+    assertTrue(Math.abs(c.estimate() - 20000) < 1000);
+  }
+
+  @Test(expected = IBDataException.class)
+  public void testMergeMismatchedPrecision() {
+    new IBDataHyperLogLog(10).merge(new IBDataHyperLogLog(12));
+  }
+}
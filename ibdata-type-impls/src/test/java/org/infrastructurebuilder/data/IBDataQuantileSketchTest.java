@@ -0,0 +1,54 @@
+/**
+ * Copyright © 2019 admin (admin@infrastructurebuilder.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.infrastructurebuilder.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class IBDataQuantileSketchTest {
+
+  @Test
+  public void testEmpty() {
+    assertTrue(Double.isNaN(new IBDataQuantileSketch().getQuantile(0.5)));
+  }
+
+  @Test
+  public void testQuantiles() {
+    IBDataQuantileSketch q = new IBDataQuantileSketch();
+    for (int i = 0; i < 100000; ++i)
+      q.update(i);
+    assertEquals(100000L, q.getCount());
+    assertEquals(0.0, q.getQuantile(0.0), 0.0);
+    assertEquals(99999.0, q.getQuantile(1.0), 0.0);
+    assertEquals(50000.0, q.getQuantile(0.5), 2000.0);
+    assertEquals(95000.0, q.getQuantile(0.95), 2000.0);
+  }
+
+  @Test
+  public void testMergeAndRoundTrip() {
+    IBDataQuantileSketch a = new IBDataQuantileSketch();
+    IBDataQuantileSketch b = new IBDataQuantileSketch();
+    for (int i = 0; i < 100000; ++i)
+      (i < 30000 ? a : b).update(i);
+    a.merge(b);
+    IBDataQuantileSketch c = IBDataQuantileSketch.fromBytes(a.toBytes());
+    assertEquals(100000L, c.getCount());
+    assertEquals(a.getQuantile(0.25), c.getQuantile(0.25), 0.0);
+    assertEquals(25000.0, c.getQuantile(0.25), 2000.0);
+  }
+}
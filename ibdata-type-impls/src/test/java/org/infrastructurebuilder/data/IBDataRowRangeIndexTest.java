@@ -0,0 +1,109 @@
+/**
+ * Copyright © 2019 admin (admin@infrastructurebuilder.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.infrastructurebuilder.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import org.infrastructurebuilder.util.config.TestingPathSupplier;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+
+public class IBDataRowRangeIndexTest {
+  private final static TestingPathSupplier wps = new TestingPathSupplier();
+
+  @AfterClass
+  public static void tearDownAfterClass() throws Exception {
+    wps.finalize();
+  }
+
+  private IBDataRowRangeIndex i;
+
+  @Before
+  public void setUp() throws Exception {
+    i = new IBDataRowRangeIndex();
+  }
+
+  private List<String> ranges(IBDataRowRangeIndex x) {
+    List<String> l = new ArrayList<>();
+    x.forEachRange((f, t) -> l.add(f + "-" + t));
+    return l;
+  }
+
+  @Test
+  public void testRuns() {
+    for (long r = 1; r <= 1000; ++r)
+      i.add(r);
+    i.add(1002);
+    i.add(1003);
+    i.add(5);
+    assertEquals(1003L, i.getCount());
+    assertEquals(3L, i.getRangeCount());
+    assertEquals(Arrays.asList("1-1000", "1002-1003", "5-5"), ranges(i));
+    assertFalse(i.getSpillPath().isPresent());
+  }
+
+  @Test
+  public void testAddAll() {
+    IBDataRowRangeIndex other = new IBDataRowRangeIndex();
+    i.add(1);
+    other.addRange(2, 4);
+    other.add(9);
+    i.addAll(other);
+    assertEquals(Arrays.asList("1-4", "9-9"), ranges(i));
+    assertEquals(5L, i.getCount());
+  }
+
+  @Test
+  public void testSpill() throws Exception {
+    Path p = wps.get().resolve(UUID.randomUUID().toString());
+    IBDataRowRangeIndex s = new IBDataRowRangeIndex(2, () -> p);
+    for (long r = 0; r < 10; r += 2)
+      s.add(r);
+    assertEquals(5L, s.getRangeCount());
+    assertEquals(5L, s.getCount());
+    assertTrue(Files.exists(p));
+    assertEquals(p, s.getSpillPath().get());
+    assertEquals(Arrays.asList("0-0", "2-2", "4-4", "6-6", "8-8"), ranges(s));
+  }
+
+  @Test(expected = IBDataException.class)
+  public void testNoSpillPath() {
+    IBDataRowRangeIndex s = new IBDataRowRangeIndex(2, null);
+    s.add(1);
+    s.add(3);
+    s.add(5);
+  }
+
+  @Test(expected = IBDataException.class)
+  public void testReversed() {
+    i.addRange(2, 1);
+  }
+
+  @Test(expected = IBDataException.class)
+  public void testBadMax() {
+    new IBDataRowRangeIndex(1, null);
+  }
+}
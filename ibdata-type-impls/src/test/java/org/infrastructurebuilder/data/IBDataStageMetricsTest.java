@@ -0,0 +1,85 @@
+/**
+ * Copyright © 2019 admin (admin@infrastructurebuilder.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.infrastructurebuilder.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.UUID;
+
+import org.infrastructurebuilder.util.config.TestingPathSupplier;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+
+public class IBDataStageMetricsTest {
+  private final static TestingPathSupplier wps = new TestingPathSupplier();
+
+  @AfterClass
+  public static void tearDownAfterClass() throws Exception {
+    wps.finalize();
+  }
+
+  private IBDataStageMetrics m;
+
+  @Before
+  public void setUp() throws Exception {
+    m = new IBDataStageMetrics("x");
+    m.record(10, 7, 3, 1000L);
+    m.record(5, 5, 0, 1000L);
+    m.addBytesRead(100);
+    m.addBytesWritten(50);
+    m.addStall(500L);
+    m.sampleQueueDepth(1);
+    m.sampleQueueDepth(4);
+  }
+
+  @Test
+  public void testCounters() {
+    assertEquals("x", m.getName());
+    assertEquals(15L, m.getRecordsIn());
+    assertEquals(12L, m.getRecordsOut());
+    assertEquals(3L, m.getRejected());
+    assertEquals(2000L, m.getNanos());
+    assertEquals(100L, m.getBytesRead());
+    assertEquals(50L, m.getBytesWritten());
+    assertEquals(7.5e6, m.getRecordsPerSecond(), 0.001);
+    assertEquals(500L, m.getStallNanos());
+    assertEquals(4L, m.getMaxQueueDepth());
+    assertEquals(2.5, m.getMeanQueueDepth(), 0.0);
+    assertEquals(0.0, new IBDataStageMetrics("y").getMeanQueueDepth(), 0.0);
+    assertEquals(0.0, new IBDataStageMetrics("y").getRecordsPerSecond(), 0.0);
+    assertTrue(m.toString().startsWith("x: in=15 out=12 rejected=3"));
+  }
+
+  @Test
+  public void testWrite() throws Exception {
+    Path p = wps.get().resolve(UUID.randomUUID().toString());
+    IBDataStageMetrics.write(Arrays.asList(m, new IBDataStageMetrics("y")), p);
+    Properties props = new Properties();
+    try (Reader r = Files.newBufferedReader(p)) {
+      props.load(r);
+    }
+    assertEquals("15", props.getProperty("stage000.x." + IBDataStageMetrics.RECORDS_IN));
+    assertEquals("0", props.getProperty("stage001.y." + IBDataStageMetrics.NANOS));
+    assertEquals(18, props.size());
+  }
+}
@@ -20,13 +20,19 @@ import static java.util.Optional.of;
 import static org.infrastructurebuilder.data.IBDataConstants.MAP_SPLITTER;
 import static org.infrastructurebuilder.data.IBDataConstants.RECORD_SPLITTER;
 import static org.infrastructurebuilder.data.IBDataConstants.TRANSFORMERSLIST;
+import static org.infrastructurebuilder.data.IBDataException.cet;
 import static org.infrastructurebuilder.util.files.DefaultIBChecksumPathType.copyToDeletedOnExitTempChecksumAndPath;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -47,13 +53,16 @@ import org.infrastructurebuilder.data.IBDataException;
 import org.infrastructurebuilder.data.IBDataSet;
 import org.infrastructurebuilder.data.IBDataStream;
 import org.infrastructurebuilder.data.IBDataStreamIdentifier;
+import org.infrastructurebuilder.data.IBDataStreamRecordFinalizer;
 import org.infrastructurebuilder.data.IBDataTransformationResult;
 import org.infrastructurebuilder.data.IBMetadataUtils;
 import org.infrastructurebuilder.data.model.DataSet;
+import org.infrastructurebuilder.data.model.DataStream;
 import org.infrastructurebuilder.data.transform.Transformation;
 import org.infrastructurebuilder.data.transform.Transformer;
 import org.infrastructurebuilder.util.IBUtils;
 import org.infrastructurebuilder.util.LoggerSupplier;
+import org.infrastructurebuilder.util.artifacts.Checksum;
 import org.infrastructurebuilder.util.config.ConfigMap;
 import org.infrastructurebuilder.util.config.ConfigMapSupplier;
 import org.infrastructurebuilder.util.config.DefaultConfigMapSupplier;
@@ -151,9 +160,196 @@ public class DefaultIBDataRecordBasedTransformerTest {
   public void testTransform() {
     IBDataTransformationResult q = t.transform(transformer, ds, suppliedStreams, true);
     assertEquals(0, q.getErrors().size());
+    // Checksum was computed while writing
+    AbstractIBDataStreamRecordFinalizer<?, ?> f = (AbstractIBDataStreamRecordFinalizer<?, ?>) t
+        .getConfiguredFinalizer();
+    assertEquals(new Checksum(f.getWorkingPath()).toString(), f.getChecksum().get().toString());
+    assertEquals(Long.valueOf(f.getWorkingPath().toFile().length()), f.getLength().get());
+    assertTrue(f.getRecordCount() > 0);
+    // The finalized stream takes that checksum rather than reading the output again
+    DataStream id = new DataStream();
+    id.setUuid(UUID.randomUUID().toString());
+    id.setCreationDate(new Date());
+    id.setMimeType("text/plain");
+    id.setMetadata(new Xpp3Dom("metadata"));
+    IBDataStream out = f.finalizeRecord(id).get();
+    cet.withTranslation(() -> Files.delete(f.getWorkingPath()));
+    assertEquals(f.getChecksum().get().toString(), out.getChecksum().toString());
     // FIXME Test the actual output
   }
 
+  @Test
+  public void testWriterTargetIsDigested() throws Exception {
+    IBDataStreamRecordFinalizer<String> w = finalizerSupplier.get();
+    OutputStream o = w.getWriterTarget();
+    assertSame(o, w.getWriterTarget());
+    o.write("written directly\n".getBytes(StandardCharsets.UTF_8));
+    w.close();
+    AbstractIBDataStreamRecordFinalizer<?, ?> f = (AbstractIBDataStreamRecordFinalizer<?, ?>) w;
+    assertEquals(Long.valueOf(Files.size(f.getWorkingPath())), f.getLength().get());
+    assertEquals(new Checksum(f.getWorkingPath()).toString(), f.getChecksum().get().toString());
+  }
+
+  private HashMap<String, Object> configCopy() {
+    HashMap<String, Object> hm = new HashMap<>();
+    hm.put(TRANSFORMERSLIST, cfg.getString(TRANSFORMERSLIST));
+    hm.put("A", "A");
+    return hm;
+  }
+
+  @Test
+  public void testTransformParallelMatchesSerial() throws Exception {
+    HashMap<String, Object> hm = configCopy();
+    hm.put(AbstractIBDataRecordBasedTransformer.PARALLEL_PARAM, "true");
+    hm.put(AbstractIBDataRecordBasedTransformer.PARALLEL_CHUNK_SIZE_PARAM, "2");
+    hm.put(AbstractIBDataRecordBasedTransformer.PARALLELISM_PARAM, "3");
+    ConfigMap pcfg = new ConfigMap(hm);
+    IBDataStreamRecordFinalizer<String> serialFinalizer = finalizerSupplier.get();
+    IBDataStreamRecordFinalizer<String> parallelFinalizer = finalizerSupplier.get();
+    t = new DefaultIBDataRecordBasedTransformerSupplier.DefaultIBDataRecordBasedTransformer(thePath, log, cfg, rs,
+        serialFinalizer);
+    DefaultIBDataRecordBasedTransformerSupplier.DefaultIBDataRecordBasedTransformer p = new DefaultIBDataRecordBasedTransformerSupplier.DefaultIBDataRecordBasedTransformer(
+        thePath, log, pcfg, rs, parallelFinalizer);
+    assertFalse(t.isParallel());
+    assertTrue(p.isParallel());
+    assertEquals(0, t.transform(transformer, ds, suppliedStreams, true).getErrors().size());
+    assertEquals(0, p.transform(transformer, ds, suppliedStreams, true).getErrors().size());
+    assertEquals(Files.readAllLines(serialFinalizer.getWorkingPath()),
+        Files.readAllLines(parallelFinalizer.getWorkingPath()));
+    assertEquals(t.getStageMetrics().size(), p.getStageMetrics().size());
+    for (int i = 0; i < t.getStageMetrics().size(); ++i) {
+      assertEquals(t.getStageMetrics().get(i).getRecordsIn(), p.getStageMetrics().get(i).getRecordsIn());
+      assertEquals(t.getStageMetrics().get(i).getRecordsOut(), p.getStageMetrics().get(i).getRecordsOut());
+    }
+    assertEquals(Files.size(serialFinalizer.getWorkingPath()),
+        t.getStageMetrics().get(t.getStageMetrics().size() - 1).getBytesWritten());
+  }
+
+  @Test
+  public void testTransformPipelinedMatchesSerial() throws Exception {
+    HashMap<String, Object> hm = configCopy();
+    hm.put(AbstractIBDataRecordBasedTransformer.PIPELINE_PARAM, "true");
+    hm.put(AbstractIBDataRecordBasedTransformer.PIPELINE_CAPACITY_PARAM, "2");
+    hm.put(AbstractIBDataRecordBasedTransformer.BATCH_SIZE_PARAM, "1");
+    hm.put(AbstractIBDataRecordBasedTransformer.PARALLELISM_PARAM, "3");
+    IBDataStreamRecordFinalizer<String> serialFinalizer = finalizerSupplier.get();
+    IBDataStreamRecordFinalizer<String> pipelinedFinalizer = finalizerSupplier.get();
+    t = new DefaultIBDataRecordBasedTransformerSupplier.DefaultIBDataRecordBasedTransformer(thePath, log, cfg, rs,
+        serialFinalizer);
+    DefaultIBDataRecordBasedTransformerSupplier.DefaultIBDataRecordBasedTransformer p = new DefaultIBDataRecordBasedTransformerSupplier.DefaultIBDataRecordBasedTransformer(
+        thePath, log, new ConfigMap(hm), rs, pipelinedFinalizer);
+    assertTrue(p.isPipelined());
+    assertEquals(0, t.transform(transformer, ds, suppliedStreams, true).getErrors().size());
+    assertEquals(0, p.transform(transformer, ds, suppliedStreams, true).getErrors().size());
+    assertEquals(Files.readAllLines(serialFinalizer.getWorkingPath()),
+        Files.readAllLines(pipelinedFinalizer.getWorkingPath()));
+    assertEquals(t.getStageMetrics().get(0).getRecordsIn(), p.getStageMetrics().get(0).getRecordsIn());
+    assertTrue(p.getStageMetrics().get(p.getStageMetrics().size() - 1).getMaxQueueDepth() <= 2 + 3 + 2);
+  }
+
+  @Test
+  public void testTransformConcurrentStreamsMatchesSerial() throws Exception {
+    HashMap<String, Object> hm = configCopy();
+    hm.put(AbstractIBDataRecordBasedTransformer.CONCURRENT_STREAMS_PARAM, "2");
+    List<IBDataStream> streams = new ArrayList<>(suppliedStreams);
+    streams.add(getStreamFromURL(getClass().getResource("/lines.txt").toExternalForm()));
+    streams.add(getStreamFromURL(getClass().getResource("/lines.txt").toExternalForm()));
+    IBDataStreamRecordFinalizer<String> serialFinalizer = finalizerSupplier.get();
+    IBDataStreamRecordFinalizer<String> concurrentFinalizer = finalizerSupplier.get();
+    t = new DefaultIBDataRecordBasedTransformerSupplier.DefaultIBDataRecordBasedTransformer(thePath, log, cfg, rs,
+        serialFinalizer);
+    DefaultIBDataRecordBasedTransformerSupplier.DefaultIBDataRecordBasedTransformer c = new DefaultIBDataRecordBasedTransformerSupplier.DefaultIBDataRecordBasedTransformer(
+        thePath, log, new ConfigMap(hm), rs, concurrentFinalizer);
+    assertEquals(0, t.transform(transformer, ds, streams, true).getErrors().size());
+    assertEquals(0, c.transform(transformer, ds, streams, true).getErrors().size());
+    List<String> serial = Files.readAllLines(serialFinalizer.getWorkingPath());
+    assertFalse(serial.isEmpty());
+    assertEquals(serial, Files.readAllLines(concurrentFinalizer.getWorkingPath()));
+  }
+
+  @Test
+  public void testTransformRollsPartsByRows() throws Exception {
+    IBDataStreamRecordFinalizer<String> serialFinalizer = finalizerSupplier.get();
+    t = new DefaultIBDataRecordBasedTransformerSupplier.DefaultIBDataRecordBasedTransformer(thePath, log, cfg, rs,
+        serialFinalizer);
+    assertEquals(0, t.transform(transformer, ds, suppliedStreams, true).getErrors().size());
+    int lines = Files.readAllLines(serialFinalizer.getWorkingPath()).size();
+
+    HashMap<String, Object> hm = configCopy();
+    hm.put(AbstractIBDataRecordBasedTransformer.ROLL_ROWS_PARAM, "2");
+    DefaultIBDataRecordBasedTransformerSupplier.DefaultIBDataRecordBasedTransformer c = new DefaultIBDataRecordBasedTransformerSupplier.DefaultIBDataRecordBasedTransformer(
+        thePath, log, new ConfigMap(hm), rs, finalizerSupplier.get());
+    assertTrue(c.isPartitioned());
+    IBDataTransformationResult r = c.transform(transformer, ds, suppliedStreams, true);
+    assertEquals(0, r.getErrors().size());
+    assertEquals(ds.getStreamSuppliers().size() + (lines + 1) / 2, r.get().get().getStreamSuppliers().size());
+  }
+
+  @Test
+  public void testTransformWriteBehind() throws Exception {
+    IBDataStreamRecordFinalizer<String> serialFinalizer = finalizerSupplier.get();
+    t = new DefaultIBDataRecordBasedTransformerSupplier.DefaultIBDataRecordBasedTransformer(thePath, log, cfg, rs,
+        serialFinalizer);
+    assertEquals(0, t.transform(transformer, ds, suppliedStreams, true).getErrors().size());
+
+    HashMap<String, Object> hm = configCopy();
+    hm.put(AbstractIBDataRecordBasedTransformer.WRITE_BEHIND_PARAM, "true");
+    hm.put(AbstractIBDataRecordBasedTransformer.WRITE_BEHIND_CAPACITY_PARAM, "3");
+    hm.put(AbstractIBDataRecordBasedTransformer.BATCH_SIZE_PARAM, "2");
+    IBDataStreamRecordFinalizer<String> writeBehindFinalizer = finalizerSupplier.get();
+    DefaultIBDataRecordBasedTransformerSupplier.DefaultIBDataRecordBasedTransformer w = new DefaultIBDataRecordBasedTransformerSupplier.DefaultIBDataRecordBasedTransformer(
+        thePath, log, new ConfigMap(hm), rs, writeBehindFinalizer);
+    assertTrue(w.isWriteBehind());
+    IBDataTransformationResult r = w.transform(transformer, ds, suppliedStreams, true);
+    assertEquals(0, r.getErrors().size());
+    assertEquals(Files.readAllLines(serialFinalizer.getWorkingPath()),
+        Files.readAllLines(writeBehindFinalizer.getWorkingPath()));
+  }
+
+  @Test
+  public void testWriteBehindClosedWhenAStreamFails() throws Exception {
+    HashMap<String, Object> hm = configCopy();
+    hm.put(AbstractIBDataRecordBasedTransformer.WRITE_BEHIND_PARAM, "true");
+    IBDataStreamRecordFinalizer<String> writeBehindFinalizer = finalizerSupplier.get();
+    DefaultIBDataRecordBasedTransformerSupplier.DefaultIBDataRecordBasedTransformer w = new DefaultIBDataRecordBasedTransformerSupplier.DefaultIBDataRecordBasedTransformer(
+        thePath, log, new ConfigMap(hm), rs, writeBehindFinalizer);
+    IBDataStream broken = getStreamFromURL(getClass().getResource("/lines.txt").toExternalForm());
+    Files.delete(broken.getPathIfAvailable().get());
+    List<IBDataStream> streams = new ArrayList<>(suppliedStreams);
+    streams.add(broken);
+    try {
+      w.transform(transformer, ds, streams, true);
+      fail("The missing stream should fail the transform");
+    } catch (RuntimeException e) {
+      // The wrapped finalizer was closed, so its output was digested
+      assertTrue(((AbstractIBDataStreamRecordFinalizer<?, ?>) writeBehindFinalizer).getChecksum().isPresent());
+    }
+  }
+
+  @Test(expected = IBDataException.class)
+  public void testBadWriteBehindCapacity() {
+    HashMap<String, Object> hm = configCopy();
+    hm.put(AbstractIBDataRecordBasedTransformer.WRITE_BEHIND_CAPACITY_PARAM, "0");
+    new DefaultIBDataRecordBasedTransformerSupplier.DefaultIBDataRecordBasedTransformer(thePath, log,
+        new ConfigMap(hm), rs, finalizerSupplier.get());
+  }
+
+  @Test(expected = IBDataException.class)
+  public void testBadRollRows() {
+    HashMap<String, Object> hm = configCopy();
+    hm.put(AbstractIBDataRecordBasedTransformer.ROLL_ROWS_PARAM, "-1");
+    new DefaultIBDataRecordBasedTransformerSupplier.DefaultIBDataRecordBasedTransformer(thePath, log,
+        new ConfigMap(hm), rs, finalizerSupplier.get());
+  }
+
+  @Test(expected = IBDataException.class)
+  public void testBadChunkSize() {
+    HashMap<String, Object> hm = configCopy();
+    hm.put(AbstractIBDataRecordBasedTransformer.PARALLEL_CHUNK_SIZE_PARAM, "0");
+    new DefaultIBDataRecordBasedTransformerSupplier.DefaultIBDataRecordBasedTransformer(thePath, log,
+        new ConfigMap(hm), rs, finalizerSupplier.get());
+  }
+
   @Test
   public void testGetLogger() {
     assertEquals(log, t.getLog());
@@ -0,0 +1,71 @@
+/**
+ * Copyright © 2019 admin (admin@infrastructurebuilder.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.infrastructurebuilder.data.transform.line;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.BitSet;
+
+import org.infrastructurebuilder.data.transform.line.DefaultTestIBDataRecordTransformerSupplierStringToString.StringToStringRecordTransformer;
+import org.infrastructurebuilder.util.config.TestingPathSupplier;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class IBDataBatchRecordTransformerTest {
+  private final static Logger log = LoggerFactory.getLogger(IBDataBatchRecordTransformerTest.class);
+  private final static TestingPathSupplier wps = new TestingPathSupplier();
+
+  private StringToStringRecordTransformer t;
+
+  @Before
+  public void setUp() throws Exception {
+    t = new StringToStringRecordTransformer(wps.get(), log);
+  }
+
+  @Test
+  public void testFromReturnsNativeImplementation() {
+    assertTrue(t == IBDataBatchRecordTransformer.from(t));
+  }
+
+  @Test
+  public void testDefaultApplyBatch() {
+    Object[] in = { "a", null, "c", "d" };
+    Object[] out = new Object[in.length];
+    BitSet rejected = new BitSet();
+    rejected.set(2); // Already rejected by some predecessor
+    IBDataBatchRecordTransformer.from(t).applyBatch(in, out, 3, rejected);
+    assertArrayEquals(new Object[] { "a", null, null, null }, out);
+    assertFalse(rejected.get(0));
+    assertTrue(rejected.get(1));
+    assertTrue(rejected.get(2));
+    assertFalse(rejected.get(3)); // Beyond length
+    assertEquals(2, rejected.cardinality());
+  }
+
+  @Test
+  public void testInPlaceApplyBatch() {
+    Object[] in = { "a", "b" };
+    BitSet rejected = new BitSet();
+    t.applyBatch(in, in, in.length, rejected);
+    assertArrayEquals(new Object[] { "a", "b" }, in);
+    assertTrue(rejected.isEmpty());
+  }
+}
@@ -0,0 +1,204 @@
+/**
+ * Copyright © 2019 admin (admin@infrastructurebuilder.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.infrastructurebuilder.data.transform.line;
+
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static java.nio.charset.StandardCharsets.UTF_16;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import org.infrastructurebuilder.util.config.TestingPathSupplier;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+
+public class IBDataLineSourceTest {
+  private final static TestingPathSupplier wps = new TestingPathSupplier();
+  // Multi-byte characters, an empty line, CRLF and no final newline
+  private final static String CONTENT = "abc\r\n\ndéfghïjklmnop\nq";
+  private final static List<String> LINES = Arrays.asList("abc", "", "défghïjklmnop", "q");
+  // Lone CRs, as in old Mac files, mixed with CRLF and LF. Ends with a CR
+  private final static String CR_CONTENT = "abc\rdéf\r\rq\r\nr\ns\r";
+  private final static List<String> CR_LINES = Arrays.asList("abc", "déf", "", "q", "r", "s");
+
+  @AfterClass
+  public static void tearDownAfterClass() throws Exception {
+    wps.finalize();
+  }
+
+  private Path p;
+
+  @Before
+  public void setUp() throws Exception {
+    p = wps.get().resolve(UUID.randomUUID().toString());
+    Files.write(p, CONTENT.getBytes(UTF_8));
+  }
+
+  private Path crFile() throws IOException {
+    Path c = wps.get().resolve(UUID.randomUUID().toString());
+    Files.write(c, CR_CONTENT.getBytes(UTF_8));
+    return c;
+  }
+
+  private List<String> readAll(IBDataLineSource s) throws IOException {
+    List<String> l = new ArrayList<>();
+    String line;
+    while ((line = s.readLine()) != null)
+      l.add(line);
+    return l;
+  }
+
+  @Test
+  public void testByteScannable() {
+    assertTrue(IBDataLineSource.isByteScannable(UTF_8));
+    assertTrue(IBDataLineSource.isByteScannable(ISO_8859_1));
+    assertFalse(IBDataLineSource.isByteScannable(UTF_16));
+  }
+
+  @Test
+  public void testMapped() throws IOException {
+    try (IBDataLineSource s = new MappedFileLineSource(p, UTF_8)) {
+      assertEquals(LINES, readAll(s));
+      assertNull(s.readLine());
+      assertEquals(CONTENT.getBytes(UTF_8).length, s.getBytesRead());
+    }
+  }
+
+  @Test
+  public void testMappedSmallWindow() throws IOException {
+    // Every line crosses a window boundary
+    try (IBDataLineSource s = new MappedFileLineSource(p, UTF_8, 2)) {
+      assertEquals(LINES, readAll(s));
+    }
+  }
+
+  @Test
+  public void testMappedSkip() throws IOException {
+    try (IBDataLineSource s = new MappedFileLineSource(p, UTF_8, 3)) {
+      assertEquals(2, s.skipLines(2));
+      assertEquals(LINES.subList(2, 4), readAll(s));
+      assertEquals(0, s.skipLines(1));
+    }
+    try (IBDataLineSource s = new MappedFileLineSource(p, UTF_8)) {
+      assertEquals(4, s.skipLines(10));
+    }
+  }
+
+  @Test
+  public void testMappedEmpty() throws IOException {
+    Path e = wps.get().resolve(UUID.randomUUID().toString());
+    Files.write(e, new byte[0]);
+    try (IBDataLineSource s = new MappedFileLineSource(e, UTF_8)) {
+      assertNull(s.readLine());
+      assertEquals(0, s.skipLines(1));
+    }
+  }
+
+  @Test
+  public void testInputStream() throws IOException {
+    try (IBDataLineSource s = new InputStreamLineSource(new ByteArrayInputStream(CONTENT.getBytes(UTF_8)), UTF_8)) {
+      assertEquals(LINES, readAll(s));
+      assertEquals(CONTENT.getBytes(UTF_8).length, s.getBytesRead());
+    }
+  }
+
+  @Test
+  public void testInputStreamSkip() throws IOException {
+    try (IBDataLineSource s = new InputStreamLineSource(new ByteArrayInputStream(CONTENT.getBytes(UTF_8)), UTF_8)) {
+      assertEquals(2, s.skipLines(2));
+      assertEquals(LINES.subList(2, 4), readAll(s));
+    }
+    try (IBDataLineSource s = new InputStreamLineSource(new ByteArrayInputStream(CONTENT.getBytes(UTF_8)), UTF_8)) {
+      assertEquals(4, s.skipLines(10));
+    }
+  }
+
+  @Test
+  public void testInputStreamSkipUTF16() throws IOException {
+    try (IBDataLineSource s = new InputStreamLineSource(new ByteArrayInputStream(CONTENT.getBytes(UTF_16)),
+        UTF_16)) {
+      assertEquals(1, s.skipLines(1));
+      assertEquals(LINES.subList(1, 4), readAll(s));
+    }
+  }
+
+  @Test
+  public void testCarriageReturnsMatchBufferedReader() throws IOException {
+    List<String> expected = new ArrayList<>();
+    try (BufferedReader r = new BufferedReader(new StringReader(CR_CONTENT))) {
+      String line;
+      while ((line = r.readLine()) != null)
+        expected.add(line);
+    }
+    assertEquals(CR_LINES, expected);
+  }
+
+  @Test
+  public void testMappedCarriageReturns() throws IOException {
+    Path c = crFile();
+    try (IBDataLineSource s = new MappedFileLineSource(c, UTF_8)) {
+      assertEquals(CR_LINES, readAll(s));
+      assertEquals(CR_CONTENT.getBytes(UTF_8).length, s.getBytesRead());
+    }
+    // Every CR sits at the end of a window, so the byte after it is outside the mapping
+    try (IBDataLineSource s = new MappedFileLineSource(c, UTF_8, 1)) {
+      assertEquals(CR_LINES, readAll(s));
+    }
+    try (IBDataLineSource s = new MappedFileLineSource(c, UTF_8, 2)) {
+      assertEquals(1, s.skipLines(1));
+      assertEquals(CR_LINES.subList(1, 6), readAll(s));
+    }
+    try (IBDataLineSource s = new MappedFileLineSource(c, UTF_8)) {
+      assertEquals(4, s.skipLines(4));
+      assertEquals(CR_LINES.subList(4, 6), readAll(s));
+    }
+  }
+
+  @Test
+  public void testInputStreamCarriageReturns() throws IOException {
+    byte[] b = CR_CONTENT.getBytes(UTF_8);
+    try (IBDataLineSource s = new InputStreamLineSource(new ByteArrayInputStream(b), UTF_8)) {
+      assertEquals(CR_LINES, readAll(s));
+    }
+    // A header row ended by a lone CR is skipped without consuming the rest
+    try (IBDataLineSource s = new InputStreamLineSource(new ByteArrayInputStream(b), UTF_8)) {
+      assertEquals(1, s.skipLines(1));
+      assertEquals(CR_LINES.subList(1, 6), readAll(s));
+    }
+    // The LF of a CRLF is part of the skipped line
+    try (IBDataLineSource s = new InputStreamLineSource(new ByteArrayInputStream(b), UTF_8)) {
+      assertEquals(4, s.skipLines(4));
+      assertEquals(CR_LINES.subList(4, 6), readAll(s));
+    }
+    try (IBDataLineSource s = new InputStreamLineSource(new ByteArrayInputStream(b), UTF_8)) {
+      assertEquals(6, s.skipLines(10));
+    }
+  }
+}
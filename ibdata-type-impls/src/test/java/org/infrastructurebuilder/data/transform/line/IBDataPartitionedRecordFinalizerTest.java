@@ -0,0 +1,148 @@
+/**
+ * Copyright © 2019 admin (admin@infrastructurebuilder.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.infrastructurebuilder.data.transform.line;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.infrastructurebuilder.data.IBDataStreamRecordFinalizer;
+import org.infrastructurebuilder.util.config.DefaultConfigMapSupplier;
+import org.infrastructurebuilder.util.config.TestingPathSupplier;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class IBDataPartitionedRecordFinalizerTest {
+  private final static Logger log = LoggerFactory.getLogger(IBDataPartitionedRecordFinalizerTest.class);
+  private final static TestingPathSupplier wps = new TestingPathSupplier();
+
+  @AfterClass
+  public static void tearDownAfterClass() throws Exception {
+    wps.finalize();
+  }
+
+  private IBDataMergeableRecordFinalizer<String> template;
+
+  @Before
+  public void setUp() throws Exception {
+    Path p = wps.get();
+    IBDataStreamRecordFinalizer<String> f = new StringIBDataStreamRecordFinalizerSupplier(() -> p, () -> log)
+        .configure(new DefaultConfigMapSupplier()).get();
+    template = (IBDataMergeableRecordFinalizer<String>) f;
+  }
+
+  @Test
+  public void testRollByRows() throws Exception {
+    IBDataPartitionedRecordFinalizer<String> f = new IBDataPartitionedRecordFinalizer<>(template, 2, 0, null, 0);
+    for (String s : Arrays.asList("a", "b", "c", "d", "e"))
+      assertFalse(f.writeRecord(s).isPresent());
+    f.close();
+    assertEquals(3, f.getParts().size());
+    assertEquals(template, f.getParts().get(0).getFinalizer());
+    List<String> all = new ArrayList<>();
+    for (int i = 0; i < 3; ++i) {
+      assertEquals(IBDataPartitionedRecordFinalizer.NO_PARTITION, f.getParts().get(i).getKey());
+      assertEquals(i, f.getParts().get(i).getSequence());
+      all.addAll(Files.readAllLines(f.getParts().get(i).getFinalizer().getWorkingPath()));
+    }
+    assertEquals(1L, f.getParts().get(2).getRows());
+    assertEquals(Arrays.asList("a", "b", "c", "d", "e"), all);
+  }
+
+  @Test
+  public void testEmptyHasOnePart() throws Exception {
+    IBDataPartitionedRecordFinalizer<String> f = new IBDataPartitionedRecordFinalizer<>(template, 2, 0, null, 0);
+    f.close();
+    assertEquals(1, f.getParts().size());
+    assertEquals(0L, f.getParts().get(0).getRows());
+  }
+
+  @Test
+  public void testUnpartitionableRecords() throws Exception {
+    IBDataPartitionedRecordFinalizer<String> f = new IBDataPartitionedRecordFinalizer<>(template, 0, 0, "field", 4);
+    assertTrue(f.writeRecord("a").isPresent());
+    f.close();
+  }
+
+  @Test
+  public void testOpenPartsAreCapped() throws Exception {
+    AtomicInteger open = new AtomicInteger(), maxOpen = new AtomicInteger();
+    IBDataPartitionedRecordFinalizer<Map<String, Object>> f = new IBDataPartitionedRecordFinalizer<>(
+        counting(wps.get(), open, maxOpen), 0, 0, "field", 0, 2);
+    for (String v : Arrays.asList("a", "b", "c", "a"))
+      assertFalse(f.writeRecord(Collections.<String, Object> singletonMap("field", v)).isPresent());
+    assertEquals(2, maxOpen.get());
+    f.close();
+    assertEquals(0, open.get());
+    assertEquals(4, f.getParts().size());
+    IBDataPartitionedRecordFinalizer.Part<Map<String, Object>> last = f.getParts().get(3);
+    assertEquals("a", last.getKey());
+    assertEquals(1, last.getSequence());
+    assertEquals(1L, last.getRows());
+  }
+
+  /**
+   * A finalizer of maps that writes nothing and counts how many of its instances are open
+   */
+  @SuppressWarnings("unchecked")
+  private static IBDataMergeableRecordFinalizer<Map<String, Object>> counting(Path p, AtomicInteger open,
+      AtomicInteger maxOpen) {
+    maxOpen.accumulateAndGet(open.incrementAndGet(), Math::max);
+    AtomicBoolean closed = new AtomicBoolean();
+    return (IBDataMergeableRecordFinalizer<Map<String, Object>>) Proxy.newProxyInstance(
+        IBDataMergeableRecordFinalizer.class.getClassLoader(), new Class<?>[] { IBDataMergeableRecordFinalizer.class },
+        (proxy, m, args) -> {
+          switch (m.getName()) {
+          case "writeRecord":
+            return Optional.empty();
+          case "fieldValue":
+            return ((Map<?, ?>) args[0]).get(args[1]);
+          case "newPartial":
+            return counting((Path) args[0], open, maxOpen);
+          case "getWorkingPath":
+            return p;
+          case "close":
+            if (closed.compareAndSet(false, true))
+              open.decrementAndGet();
+            return null;
+          case "hashCode":
+            return System.identityHashCode(proxy);
+          case "equals":
+            return proxy == args[0];
+          case "getId":
+          case "toString":
+            return "counting";
+          default:
+            return null;
+          }
+        });
+  }
+}
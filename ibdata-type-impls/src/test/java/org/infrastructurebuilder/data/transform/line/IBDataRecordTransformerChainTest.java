@@ -0,0 +1,105 @@
+/**
+ * Copyright © 2019 admin (admin@infrastructurebuilder.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.infrastructurebuilder.data.transform.line;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.infrastructurebuilder.data.IBDataRowRangeIndex;
+import org.infrastructurebuilder.data.transform.line.DefaultTestIBDataRecordTransformerSupplierStringToString.StringToStringRecordTransformer;
+import org.infrastructurebuilder.util.config.TestingPathSupplier;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class IBDataRecordTransformerChainTest {
+  private final static Logger log = LoggerFactory.getLogger(IBDataRecordTransformerChainTest.class);
+  private final static TestingPathSupplier wps = new TestingPathSupplier();
+
+  private IBDataRecordTransformerChain chain;
+  private StringToStringRecordTransformer t;
+
+  @Before
+  public void setUp() throws Exception {
+    t = new StringToStringRecordTransformer(wps.get(), log);
+    chain = new IBDataRecordTransformerChain(Arrays.asList(t, t));
+  }
+
+  @Test
+  public void testSize() {
+    assertEquals(2, chain.size());
+    assertEquals(t.getHint(), chain.getHint(1));
+  }
+
+  @Test
+  public void testApply() {
+    Map<String, IBDataRowRangeIndex> errors = new HashMap<>();
+    Object[] batch = { "a", null, "c", null };
+    BitSet rejected = chain.apply(batch, 3, 10L, h -> errors.computeIfAbsent(h, k -> new IBDataRowRangeIndex()));
+    assertArrayEquals(new Object[] { "a", null, "c", null }, batch);
+    assertEquals(1, rejected.cardinality());
+    assertTrue(rejected.get(1));
+    // Only the first stage saw the rejection
+    assertEquals(Collections.singleton(t.getHint()), errors.keySet());
+    List<Long> rows = new ArrayList<>();
+    errors.get(t.getHint()).forEachRange((f, l) -> rows.add(f));
+    assertEquals(Arrays.asList(11L), rows);
+    assertEquals(1L, errors.get(t.getHint()).getCount());
+    assertEquals(3L, chain.getMetrics().get(0).getRecordsIn());
+    assertEquals(1L, chain.getMetrics().get(0).getRejected());
+    assertEquals(2L, chain.getMetrics().get(1).getRecordsIn());
+    assertEquals(2L, chain.getMetrics().get(1).getRecordsOut());
+  }
+
+  @Test
+  public void testEmptyChain() {
+    Map<String, IBDataRowRangeIndex> errors = new HashMap<>();
+    Object[] batch = { "a" };
+    assertTrue(new IBDataRecordTransformerChain(Collections.emptyList())
+        .apply(batch, 1, 1L, h -> errors.computeIfAbsent(h, k -> new IBDataRowRangeIndex())).isEmpty());
+    assertTrue(errors.isEmpty());
+  }
+
+  @Test
+  public void testCloseClosesCloseableTransformers() {
+    int[] closed = { 0 };
+    class Closing extends StringToStringRecordTransformer implements AutoCloseable {
+      Closing() {
+        super(wps.get(), log);
+      }
+
+      @Override
+      public void close() {
+        ++closed[0];
+      }
+    }
+    Closing c = new Closing();
+    try (IBDataRecordTransformerChain ch = new IBDataRecordTransformerChain(Arrays.asList(t, c, c))) {
+      assertEquals(3, ch.size());
+    }
+    assertEquals(2, closed[0]);
+  }
+}
@@ -0,0 +1,109 @@
+/**
+ * Copyright © 2019 admin (admin@infrastructurebuilder.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.infrastructurebuilder.data.transform.line;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.infrastructurebuilder.data.IBDataException;
+import org.infrastructurebuilder.data.IBDataStreamRecordFinalizer;
+import org.infrastructurebuilder.data.IBDataTransformationError;
+import org.infrastructurebuilder.util.config.DefaultConfigMapSupplier;
+import org.infrastructurebuilder.util.config.TestingPathSupplier;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class IBDataWriteBehindRecordFinalizerTest {
+  private final static Logger log = LoggerFactory.getLogger(IBDataWriteBehindRecordFinalizerTest.class);
+  private final static TestingPathSupplier wps = new TestingPathSupplier();
+
+  @AfterClass
+  public static void tearDownAfterClass() throws Exception {
+    wps.finalize();
+  }
+
+  private IBDataStreamRecordFinalizer<String> delegate;
+
+  @Before
+  public void setUp() throws Exception {
+    Path p = wps.get();
+    delegate = new StringIBDataStreamRecordFinalizerSupplier(() -> p, () -> log).configure(new DefaultConfigMapSupplier())
+        .get();
+  }
+
+  @Test
+  public void testWritesEverythingInOrder() throws Exception {
+    IBDataWriteBehindRecordFinalizer<String> f = new IBDataWriteBehindRecordFinalizer<>(delegate, 16, 7);
+    List<String> expected = new ArrayList<>();
+    for (int i = 0; i < 10000; ++i) {
+      expected.add("line" + i);
+      assertFalse(f.writeRecord("line" + i).isPresent());
+    }
+    f.close();
+    assertEquals(0, f.getQueueDepth());
+    assertEquals(expected, Files.readAllLines(delegate.getWorkingPath()));
+    assertEquals(10000L, ((AbstractIBDataStreamRecordFinalizer<?, ?>) delegate).getRecordCount());
+    // Closing again does nothing
+    f.close();
+  }
+
+  @Test
+  public void testErrorsAreCollected() throws Exception {
+    // Strings have no fields, so every record is rejected by the partitioner
+    IBDataPartitionedRecordFinalizer<String> p = new IBDataPartitionedRecordFinalizer<>(
+        (IBDataMergeableRecordFinalizer<String>) delegate, 0, 0, "field", 4);
+    IBDataWriteBehindRecordFinalizer<String> f = new IBDataWriteBehindRecordFinalizer<>(p, 2, 2);
+    for (int i = 0; i < 5; ++i)
+      assertFalse(f.writeRecord("r" + i).isPresent());
+    f.close();
+    List<IBDataTransformationError> errors = new ArrayList<>();
+    assertEquals(5, f.drainErrors(errors));
+    assertEquals(5, errors.size());
+    assertEquals(0, f.drainErrors(errors));
+  }
+
+  @Test
+  public void testDelegation() throws Exception {
+    try (IBDataWriteBehindRecordFinalizer<String> f = new IBDataWriteBehindRecordFinalizer<>(delegate, 1, 1)) {
+      assertEquals(delegate, f.getDelegate());
+      assertEquals(delegate.getId(), f.getId());
+      assertEquals(delegate.getWorkingPath(), f.getWorkingPath());
+      assertEquals(delegate.getNumberOfRowsToSkip(), f.getNumberOfRowsToSkip());
+      assertEquals(delegate.produces(), f.produces());
+      assertEquals(delegate.accepts(), f.accepts());
+    }
+  }
+
+  @Test(expected = IBDataException.class)
+  public void testWriteAfterClose() throws Exception {
+    IBDataWriteBehindRecordFinalizer<String> f = new IBDataWriteBehindRecordFinalizer<>(delegate, 1, 1);
+    f.close();
+    f.writeRecord("late");
+  }
+
+  @Test(expected = IBDataException.class)
+  public void testBadCapacity() {
+    new IBDataWriteBehindRecordFinalizer<>(delegate, 0, 1);
+  }
+}